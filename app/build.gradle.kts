@@ -1,3 +1,6 @@
+import javax.inject.Inject
+import org.gradle.process.ExecOperations
+
 plugins {
     alias(libs.plugins.android.application)
 }
@@ -42,6 +45,84 @@ android {
     }
 }
 
+/**
+ * Encodes PNG textures to ETC2 RGBA8 KTX files with a full mip chain using Google's etc2comp
+ * `EtcTool`. The encoder path comes from the `racingsim.etcTool` Gradle property; without it the
+ * task produces no files and the app falls back to decoding the PNGs at runtime.
+ */
+abstract class CompressTexturesTask : DefaultTask() {
+    @get:InputFiles
+    @get:PathSensitive(PathSensitivity.NAME_ONLY)
+    abstract val sources: ConfigurableFileCollection
+
+    @get:Input
+    @get:Optional
+    abstract val encoder: Property<String>
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    @get:Inject
+    abstract val execOperations: ExecOperations
+
+    @TaskAction
+    fun compress() {
+        val textureDir = outputDir.get().asFile.resolve("textures")
+        textureDir.deleteRecursively()
+        textureDir.mkdirs()
+        val tool = encoder.orNull
+        if (tool.isNullOrBlank()) {
+            logger.lifecycle("racingsim.etcTool not set; shipping PNG textures only")
+            return
+        }
+        sources.files.forEach { png ->
+            val ktx = textureDir.resolve(png.nameWithoutExtension + ".ktx")
+            execOperations.exec {
+                commandLine(tool, png.absolutePath, "-format", "RGBA8", "-mipmaps", "16",
+                    "-output", ktx.absolutePath)
+            }
+        }
+    }
+}
+
+val compressTextures = tasks.register<CompressTexturesTask>("compressTextures") {
+    sources.from("src/main/res/drawable/car_nora.png")
+    encoder.set(providers.gradleProperty("racingsim.etcTool"))
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.assets?.addGeneratedSourceDirectory(compressTextures, CompressTexturesTask::outputDir)
+    }
+}
+
+// The native core built for the development host, so JVM unit tests can load racingsim_headless
+// (see LapSimulator). Needs CMake, a C++17 compiler and a JDK with JNI headers on the host, so it is
+// opt-in through the `racingsim.hostNative` Gradle property; without it LapSimulatorTest is skipped.
+val hostNativeDir = layout.buildDirectory.dir("host-native")
+
+val configureHostNative = tasks.register<Exec>("configureHostNative") {
+    val source = file("src/main/cpp")
+    inputs.file(source.resolve("CMakeLists.txt"))
+    outputs.file(hostNativeDir.map { it.file("CMakeCache.txt") })
+    commandLine("cmake", "-S", source.absolutePath, "-B", hostNativeDir.get().asFile.absolutePath,
+        "-DCMAKE_BUILD_TYPE=Release")
+}
+
+// Always runs; CMake itself skips the build when nothing changed.
+val buildHostNative = tasks.register<Exec>("buildHostNative") {
+    dependsOn(configureHostNative)
+    commandLine("cmake", "--build", hostNativeDir.get().asFile.absolutePath,
+        "--target", "racingsim_headless", "--parallel")
+}
+
+if (providers.gradleProperty("racingsim.hostNative").map(String::toBoolean).getOrElse(false)) {
+    tasks.withType<Test>().configureEach {
+        dependsOn(buildHostNative)
+        systemProperty("java.library.path", hostNativeDir.get().asFile.absolutePath)
+    }
+}
+
 dependencies {
 
     implementation(libs.appcompat)
@@ -0,0 +1,290 @@
+// Throughput of the platform-free native core on a development host:
+//  - buildTrackMesh (resampling, mesh chunks, projection index, surface raster) for centerlines of
+//    1k to 1M points,
+//  - vehicle step() and full Simulation::tick() rates,
+//  - car-ticks per second for fields of 50 to 50k cars on one track: scalar step() plus the surface
+//    constraint per car, VehicleBatch on the calling thread, and VehicleBatch on worker threads,
+//  - telemetry size per recorded minute and recorder cost per frame, and ghost decode cost,
+//  - headless lap simulation: simulated seconds per wall-clock second, on one and on four threads,
+//  - racing line solves for centerlines of 1k to 1M points, with the solver reused between runs.
+//
+// Built by the non-Android branch of CMakeLists.txt; pass --quick for a shorter run.
+
+#include <algorithm>
+#include <chrono>
+#include <cmath>
+#include <cstdio>
+#include <cstring>
+#include <memory>
+#include <vector>
+
+#include "ghost_car.h"
+#include "lap_simulator.h"
+#include "parallel_for.h"
+#include "racing_line.h"
+#include "sample_tracks.h"
+#include "simulation.h"
+#include "telemetry_recorder.h"
+#include "track_contact.h"
+#include "track_mesh.h"
+#include "vehicle.h"
+#include "vehicle_batch.h"
+
+namespace {
+
+using Clock = std::chrono::steady_clock;
+
+double secondsSince(Clock::time_point start) {
+    return std::chrono::duration<double>(Clock::now() - start).count();
+}
+
+void benchBuildTrackMesh(bool quick) {
+    std::printf("buildTrackMesh (2.5 m input spacing, 10 m width)\n");
+    std::printf("%10s %10s %10s %12s %14s\n", "points", "samples", "chunks", "best ms", "Mpoints/s");
+    const int counts[] = {1000, 10000, 100000, 1000000};
+    for (int count : counts) {
+        std::vector<glm::vec2> centerline = sample_tracks::twisty(count, 2.5f);
+        int repeats = quick ? 1 : std::max(1, 200000 / count);
+        double best = 1e30;
+        size_t samples = 0;
+        size_t chunks = 0;
+        for (int r = 0; r < repeats; ++r) {
+            TrackMesh mesh;
+            TrackGeometry geometry;
+            Clock::time_point start = Clock::now();
+            buildTrackMesh(centerline, 10.0f, mesh, geometry);
+            best = std::min(best, secondsSince(start));
+            samples = geometry.samples.size();
+            chunks = mesh.chunks.size();
+        }
+        std::printf("%10d %10zu %10zu %12.2f %14.2f\n", count, samples, chunks, best * 1e3,
+                    count / best / 1e6);
+    }
+}
+
+void benchStep(bool quick) {
+    const int ticks = quick ? 1000000 : 20000000;
+    Car car;
+    car.throttle = 0.6f;
+    float sink = 0.0f;
+    Clock::time_point start = Clock::now();
+    for (int i = 0; i < ticks; ++i) {
+        car.steer = 0.3f * std::sin(static_cast<float>(i) * 1e-3f);
+        step(car, 1.0f / 120.0f);
+        sink += car.pos.x;
+    }
+    double seconds = secondsSince(start);
+    std::printf("step()             %10.2f M ticks/s (%.1f ns/tick)%s\n", ticks / seconds / 1e6,
+                seconds / ticks * 1e9, sink == 0.12345f ? " " : "");
+}
+
+void benchSimulation(bool quick) {
+    std::vector<glm::vec2> centerline = sample_tracks::twisty(10000, 2.5f);
+    auto geometry = std::make_shared<TrackGeometry>();
+    TrackMesh mesh;
+    buildTrackMesh(centerline, 10.0f, mesh, *geometry);
+    std::vector<glm::vec2> left;
+    std::vector<glm::vec2> right;
+    sample_tracks::cones(centerline, 5.0f, 4, left, right);
+    geometry->cones.build(left, right, Simulation::kCarRadius + Simulation::kConeRadius);
+
+    Simulation simulation;
+    simulation.loadTrack(geometry);
+    const int ticks = quick ? 200000 : 5000000;
+    Controls controls;
+    controls.throttle = 0.5f;
+    Clock::time_point start = Clock::now();
+    for (int i = 0; i < ticks; ++i) {
+        controls.steer = 0.4f * std::sin(static_cast<float>(i) * 2e-3f);
+        simulation.tick(1.0f / 120.0f, controls);
+    }
+    double seconds = secondsSince(start);
+    const SimState &state = simulation.state();
+    std::printf("Simulation::tick() %10.2f M ticks/s (%.1f ns/tick, %zu cones, %d knocked)\n",
+                ticks / seconds / 1e6, seconds / ticks * 1e9, geometry->cones.size(), state.knockedCones);
+}
+
+// Field inputs change at a driver-model rate, every half second, so the loop measures the cars.
+constexpr int kInputPeriod = 60;
+
+void fieldInputs(size_t car, int tick, float &steer, float &throttle) {
+    steer = 0.3f * std::sin(static_cast<float>(car) * 0.7f + static_cast<float>(tick) * 2e-3f);
+    throttle = 0.6f;
+}
+
+// The scalar path a field would take without VehicleBatch: Simulation's per-car work minus cones,
+// projection and camera.
+void stepScalarField(std::vector<Car> &cars, int tick, float dt, const TrackGeometry &track) {
+    float barrier = track.width * track_contact::kRunOffFraction;
+    for (size_t c = 0; c < cars.size(); ++c) {
+        Car &car = cars[c];
+        if (tick % kInputPeriod == 0) {
+            fieldInputs(c, tick, car.steer, car.throttle);
+        }
+        step(car, dt);
+        SurfaceSample surface = track.surface.sample(car.pos);
+        if (surface.edgeDistance > 0.0f) {
+            car.speed *= std::exp(-track_contact::kOffTrackDrag * dt);
+            track_contact::resolveBarrier(barrier, surface, car.pos, car.heading, car.speed);
+        }
+        car.grip = track_contact::gripFor(surface.edgeDistance);
+    }
+}
+
+void benchField(bool quick) {
+    std::vector<glm::vec2> centerline = sample_tracks::twisty(10000, 2.5f);
+    TrackGeometry track;
+    TrackMesh mesh;
+    buildTrackMesh(centerline, 10.0f, mesh, track);
+    ParallelFor workers(4);
+    const float dt = 1.0f / 120.0f;
+
+    std::printf("car fields (M car-ticks/s)\n");
+    std::printf("%8s %12s %12s %16s\n", "cars", "scalar", "batch", "batch 4 threads");
+    const size_t counts[] = {50, 500, 5000, 50000};
+    for (size_t count : counts) {
+        std::vector<Car> cars(count);
+        VehicleBatch batch;
+        batch.resize(count);
+        for (size_t c = 0; c < count; ++c) {
+            cars[c].pos = track.samples[c * 7 % track.samples.size()];
+            cars[c].heading = std::atan2(track.tangents[c * 7 % track.samples.size()].y,
+                                         track.tangents[c * 7 % track.samples.size()].x);
+            batch.setCar(c, cars[c]);
+        }
+        const int ticks = static_cast<int>((quick ? 2000000 : 40000000) / count);
+        double rates[3];
+        for (int mode = 0; mode < 3; ++mode) {
+            Clock::time_point start = Clock::now();
+            for (int tick = 0; tick < ticks; ++tick) {
+                if (mode == 0) {
+                    stepScalarField(cars, tick, dt, track);
+                    continue;
+                }
+                for (size_t c = 0; tick % kInputPeriod == 0 && c < count; ++c) {
+                    fieldInputs(c, tick, batch.steer()[c], batch.throttle()[c]);
+                }
+                batch.step(dt, &track, mode == 2 ? &workers : nullptr);
+            }
+            rates[mode] = static_cast<double>(count) * ticks / secondsSince(start) / 1e6;
+        }
+        std::printf("%8zu %12.2f %12.2f %16.2f\n", count, rates[0], rates[1], rates[2]);
+    }
+}
+
+void benchTelemetry(bool quick) {
+    std::vector<glm::vec2> centerline = sample_tracks::twisty(10000, 2.5f);
+    auto geometry = std::make_shared<TrackGeometry>();
+    TrackMesh mesh;
+    buildTrackMesh(centerline, 10.0f, mesh, *geometry);
+    Simulation simulation;
+    simulation.loadTrack(geometry);
+    const int minutes = quick ? 2 : 20;
+    const int frames = minutes * 60 * telemetry::kDefaultRateHz;
+    std::vector<TelemetrySample> samples;
+    samples.reserve(static_cast<size_t>(frames));
+    Controls controls;
+    controls.throttle = 0.7f;
+    for (int i = 0; i < frames; ++i) {
+        controls.steer = 0.4f * std::sin(static_cast<float>(i) * 0.01f);
+        controls.throttle = (i / 300) % 4 == 3 ? 0.0f : 0.7f;
+        controls.brake = (i / 300) % 4 == 3 ? 0.3f : 0.0f;
+        simulation.tick(1.0f / telemetry::kDefaultRateHz, controls);
+        samples.push_back(telemetry::sampleOf(simulation.state().car));
+    }
+
+    const char *path = "racingsim_bench.rstl";
+    double recordSeconds;
+    uint64_t bytes;
+    {
+        // Sized for the whole burst; in real time the flush thread drains the ring every 250 ms.
+        TelemetryRecorder recorder(samples.size() * 8);
+        recorder.begin(path);
+        Clock::time_point start = Clock::now();
+        for (const TelemetrySample &sample : samples) {
+            recorder.record(sample);
+        }
+        recordSeconds = secondsSince(start);
+        bytes = recorder.bytesRecorded();
+    }
+    GhostCar ghost;
+    ghost.load(path);
+    std::remove(path);
+    Clock::time_point start = Clock::now();
+    int replayed = 0;
+    while (ghost.advance(1.0f / telemetry::kDefaultRateHz)) {
+        ++replayed;
+    }
+    double replaySeconds = secondsSince(start);
+    std::printf("telemetry @ %d Hz: %.1f KiB/min (%.2f B/frame), record %.0f ns/frame, ghost %.0f ns/frame\n",
+                telemetry::kDefaultRateHz, static_cast<double>(bytes) / 1024.0 / minutes,
+                static_cast<double>(bytes) / frames, recordSeconds / frames * 1e9,
+                replaySeconds / std::max(replayed, 1) * 1e9);
+}
+
+void benchLapSimulation(bool quick) {
+    std::vector<std::shared_ptr<const TrackGeometry>> tracks;
+    const int count = quick ? 4 : 16;
+    for (int i = 0; i < count; ++i) {
+        auto geometry = std::make_shared<TrackGeometry>();
+        TrackMesh mesh;
+        buildTrackMesh(sample_tracks::twisty(1500 + 250 * i, 2.5f), 10.0f, mesh, *geometry);
+        tracks.push_back(std::move(geometry));
+    }
+    ParallelFor workers(4);
+    for (ParallelFor *pool : {static_cast<ParallelFor *>(nullptr), &workers}) {
+        Clock::time_point start = Clock::now();
+        std::vector<LapResult> results = simulateLaps(tracks, LapOptions(), pool);
+        double seconds = secondsSince(start);
+        double simulated = 0.0;
+        int completed = 0;
+        for (const LapResult &result : results) {
+            simulated += static_cast<double>(result.ticks) * LapOptions().dt;
+            completed += result.completed ? 1 : 0;
+        }
+        std::printf("lap simulation %d thread%s: %d/%d laps in %.2f s, %.0fx real time\n",
+                    pool != nullptr ? pool->threads() : 1, pool != nullptr ? "s" : "", completed,
+                    count, seconds, simulated / seconds);
+    }
+}
+
+void benchRacingLine(bool quick) {
+    std::printf("racing line (2 m spacing, 10 m width)\n");
+    std::printf("%10s %10s %8s %12s %14s\n", "points", "line", "passes", "best ms", "Mpoints/s");
+    const int counts[] = {1000, 10000, 100000, 1000000};
+    RacingLineSolver solver;
+    for (int count : counts) {
+        TrackGeometry geometry;
+        TrackMesh mesh;
+        buildTrackMesh(sample_tracks::twisty(count, 2.5f), 10.0f, mesh, geometry);
+        int repeats = quick ? 1 : std::max(1, 100000 / count);
+        double best = 1e30;
+        RacingLine line;
+        for (int r = 0; r < repeats; ++r) {
+            Clock::time_point start = Clock::now();
+            solver.solve(geometry, line);
+            best = std::min(best, secondsSince(start));
+        }
+        std::printf("%10d %10zu %8d %12.2f %14.2f\n", count, line.points.size(), line.iterations, best * 1e3,
+                    line.points.size() / best / 1e6);
+    }
+}
+
+} // namespace
+
+int main(int argc, char **argv) {
+    bool quick = argc > 1 && std::strcmp(argv[1], "--quick") == 0;
+    benchBuildTrackMesh(quick);
+    std::printf("\n");
+    benchStep(quick);
+    benchSimulation(quick);
+    std::printf("\n");
+    benchField(quick);
+    std::printf("\n");
+    benchTelemetry(quick);
+    std::printf("\n");
+    benchLapSimulation(quick);
+    std::printf("\n");
+    benchRacingLine(quick);
+    return 0;
+}
@@ -0,0 +1,143 @@
+// Measures how long the UI thread waits to hand over driver input, and how long the GL thread
+// waits to start a frame, with the old single renderer mutex versus the lock-free ControlInput and
+// TripleBuffer handoff. The GL thread does ~6 ms of work per 16.7 ms frame while holding whatever
+// the render path holds; the UI thread delivers input at 200 Hz like a fast accelerometer.
+//
+// Build and run on a host or device shell:
+//   g++ -O2 -std=c++17 -pthread -I.. -I../math_glm input_contention_bench.cpp -o input_contention_bench
+//   ./input_contention_bench
+
+#include <algorithm>
+#include <atomic>
+#include <chrono>
+#include <cstdio>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+#include "control_input.h"
+#include "triple_buffer.h"
+
+namespace {
+
+using Clock = std::chrono::steady_clock;
+
+constexpr auto kRunTime = std::chrono::seconds(3);
+constexpr auto kFramePeriod = std::chrono::microseconds(16667);
+constexpr auto kFrameWork = std::chrono::microseconds(6000);
+constexpr auto kInputPeriod = std::chrono::microseconds(5000);
+
+struct State {
+    float values[32] = {};
+};
+
+void spin(Clock::duration duration) {
+    auto end = Clock::now() + duration;
+    volatile float sink = 0.0f;
+    while (Clock::now() < end) {
+        sink = sink + 1.0f;
+    }
+}
+
+void report(const char *label, std::vector<double> &micros) {
+    if (micros.empty()) {
+        std::printf("%-28s no samples\n", label);
+        return;
+    }
+    std::sort(micros.begin(), micros.end());
+    auto at = [&](double fraction) {
+        return micros[std::min(micros.size() - 1, static_cast<size_t>(fraction * micros.size()))];
+    };
+    std::printf("%-28s n=%5zu  p50 %9.2f us  p99 %9.2f us  max %9.2f us\n",
+                label, micros.size(), at(0.50), at(0.99), micros.back());
+}
+
+double microsSince(Clock::time_point start) {
+    return std::chrono::duration<double, std::micro>(Clock::now() - start).count();
+}
+
+void runMutex() {
+    std::mutex mutex;
+    float steer = 0.0f;
+    float drive = 0.0f;
+    State state;
+    std::atomic<bool> running{true};
+    std::vector<double> uiWaits;
+    std::vector<double> glWaits;
+
+    std::thread gl([&] {
+        auto next = Clock::now();
+        while (running.load(std::memory_order_relaxed)) {
+            auto start = Clock::now();
+            mutex.lock();
+            glWaits.push_back(microsSince(start));
+            state.values[0] += steer + drive;
+            spin(kFrameWork);
+            mutex.unlock();
+            next += kFramePeriod;
+            std::this_thread::sleep_until(next);
+        }
+    });
+    auto end = Clock::now() + kRunTime;
+    auto next = Clock::now();
+    for (int i = 0; Clock::now() < end; ++i) {
+        auto start = Clock::now();
+        {
+            std::lock_guard<std::mutex> lock(mutex);
+            steer = static_cast<float>(i % 7) * 0.1f;
+            drive = 1.0f;
+        }
+        uiWaits.push_back(microsSince(start));
+        next += kInputPeriod;
+        std::this_thread::sleep_until(next);
+    }
+    running = false;
+    gl.join();
+    report("mutex: UI input handoff", uiWaits);
+    report("mutex: GL frame start", glWaits);
+}
+
+void runLockFree() {
+    ControlInput controls;
+    TripleBuffer<State> states;
+    std::atomic<bool> running{true};
+    std::vector<double> uiWaits;
+    std::vector<double> glWaits;
+
+    std::thread gl([&] {
+        auto next = Clock::now();
+        while (running.load(std::memory_order_relaxed)) {
+            auto start = Clock::now();
+            Controls input = controls.load();
+            State &state = states.writeBuffer();
+            state.values[0] += input.steer + input.throttle;
+            states.publish();
+            states.update();
+            glWaits.push_back(microsSince(start));
+            spin(kFrameWork);
+            next += kFramePeriod;
+            std::this_thread::sleep_until(next);
+        }
+    });
+    auto end = Clock::now() + kRunTime;
+    auto next = Clock::now();
+    for (int i = 0; Clock::now() < end; ++i) {
+        auto start = Clock::now();
+        controls.set(static_cast<float>(i % 7) * 0.1f, 1.0f);
+        uiWaits.push_back(microsSince(start));
+        next += kInputPeriod;
+        std::this_thread::sleep_until(next);
+    }
+    running = false;
+    gl.join();
+    report("lock-free: UI input handoff", uiWaits);
+    report("lock-free: GL frame start", glWaits);
+}
+
+} // namespace
+
+int main() {
+    runMutex();
+    runLockFree();
+    return 0;
+}
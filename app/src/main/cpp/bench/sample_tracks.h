@@ -0,0 +1,76 @@
+#pragma once
+
+// Synthetic centerlines shared by the host benchmarks and tests. Units are metres.
+
+#include <algorithm>
+#include <cmath>
+#include <cstdint>
+#include <vector>
+
+#include "math_glm/glm.hpp"
+
+namespace sample_tracks {
+
+// Counter-clockwise circle of `count` points; the first point is at (radius, 0).
+inline std::vector<glm::vec2> circle(int count, float radius) {
+    std::vector<glm::vec2> points;
+    points.reserve(static_cast<size_t>(count));
+    for (int i = 0; i < count; ++i) {
+        float angle = 2.0f * static_cast<float>(M_PI) * static_cast<float>(i) / static_cast<float>(count);
+        points.emplace_back(radius * std::cos(angle), radius * std::sin(angle));
+    }
+    return points;
+}
+
+// Two straights of `straight` metres joined by semicircles of `radius`, points every `spacing`.
+inline std::vector<glm::vec2> stadium(float straight, float radius, float spacing) {
+    std::vector<glm::vec2> points;
+    auto arc = [&](glm::vec2 center, float start) {
+        int steps = static_cast<int>(static_cast<float>(M_PI) * radius / spacing);
+        for (int i = 0; i < steps; ++i) {
+            float angle = start + static_cast<float>(M_PI) * static_cast<float>(i) / static_cast<float>(steps);
+            points.emplace_back(center.x + radius * std::cos(angle), center.y + radius * std::sin(angle));
+        }
+    };
+    int steps = static_cast<int>(straight / spacing);
+    for (int i = 0; i < steps; ++i) {
+        points.emplace_back(static_cast<float>(i) * spacing, 0.0f);
+    }
+    arc({straight, radius}, -0.5f * static_cast<float>(M_PI));
+    for (int i = 0; i < steps; ++i) {
+        points.emplace_back(straight - static_cast<float>(i) * spacing, 2.0f * radius);
+    }
+    arc({0.0f, radius}, 0.5f * static_cast<float>(M_PI));
+    return points;
+}
+
+// A closed, twisty course of `count` points about `spacing` apart, like a long endurance circuit:
+// a large loop with 30 m and 12 m swerves every few hundred metres.
+inline std::vector<glm::vec2> twisty(int count, float spacing) {
+    float circumference = static_cast<float>(count) * spacing;
+    float radius = circumference / (2.0f * static_cast<float>(M_PI));
+    auto slow = static_cast<float>(std::max(3, static_cast<int>(circumference / 400.0f)));
+    auto fast = static_cast<float>(std::max(7, static_cast<int>(circumference / 150.0f)));
+    std::vector<glm::vec2> points;
+    points.reserve(static_cast<size_t>(count));
+    for (int i = 0; i < count; ++i) {
+        float angle = 2.0f * static_cast<float>(M_PI) * static_cast<float>(i) / static_cast<float>(count);
+        float r = radius + 30.0f * std::sin(angle * slow) + 12.0f * std::sin(angle * fast);
+        points.emplace_back(r * std::cos(angle), r * std::sin(angle));
+    }
+    return points;
+}
+
+// Cones `offset` to each side of the centerline every `every` points.
+inline void cones(const std::vector<glm::vec2> &centerline, float offset, int every,
+                  std::vector<glm::vec2> &left, std::vector<glm::vec2> &right) {
+    size_t count = centerline.size();
+    for (size_t i = 0; i < count; i += static_cast<size_t>(every)) {
+        glm::vec2 tangent = glm::normalize(centerline[(i + 1) % count] - centerline[(i + count - 1) % count]);
+        glm::vec2 normal{-tangent.y, tangent.x};
+        left.push_back(centerline[i] + normal * offset);
+        right.push_back(centerline[i] - normal * offset);
+    }
+}
+
+} // namespace sample_tracks
@@ -0,0 +1,90 @@
+#include "cone_field.h"
+
+#include <algorithm>
+#include <cmath>
+
+namespace {
+
+int cellOf(float coordinate, float cellSize) {
+    return static_cast<int>(std::floor(coordinate / cellSize));
+}
+
+} // namespace
+
+void ConeField::build(const std::vector<glm::vec2> &left, const std::vector<glm::vec2> &right,
+                      float cellSize) {
+    cones_.clear();
+    cones_.reserve(left.size() + right.size());
+    for (const glm::vec2 &pos : left) {
+        cones_.push_back({pos, kLeft});
+    }
+    for (const glm::vec2 &pos : right) {
+        cones_.push_back({pos, kRight});
+    }
+    cellSize_ = std::max(cellSize, 1e-3f);
+
+    // About two buckets per cone keeps collisions between unrelated cells rare.
+    uint32_t buckets = 1;
+    while (buckets < cones_.size() * 2) {
+        buckets <<= 1;
+    }
+    bucketMask_ = buckets - 1;
+    bucketStart_.assign(buckets + 1, 0);
+    for (const Cone &cone : cones_) {
+        ++bucketStart_[bucket(cellOf(cone.pos.x, cellSize_), cellOf(cone.pos.y, cellSize_)) + 1];
+    }
+    for (uint32_t i = 1; i <= buckets; ++i) {
+        bucketStart_[i] += bucketStart_[i - 1];
+    }
+    bucketCones_.resize(cones_.size());
+    std::vector<uint32_t> cursor(bucketStart_.begin(), bucketStart_.end() - 1);
+    for (uint32_t i = 0; i < cones_.size(); ++i) {
+        const glm::vec2 &pos = cones_[i].pos;
+        bucketCones_[cursor[bucket(cellOf(pos.x, cellSize_), cellOf(pos.y, cellSize_))]++] = i;
+    }
+}
+
+size_t ConeField::memoryBytes() const {
+    return cones_.size() * sizeof(Cone) + bucketStart_.size() * sizeof(uint32_t)
+           + bucketCones_.size() * sizeof(uint32_t);
+}
+
+size_t ConeField::query(glm::vec2 center, float radius, uint32_t *out, size_t capacity) const {
+    if (cones_.empty() || capacity == 0) {
+        return 0;
+    }
+    int column = cellOf(center.x, cellSize_);
+    int row = cellOf(center.y, cellSize_);
+    float radiusSq = radius * radius;
+    // Neighbouring cells can hash to the same bucket; visit each bucket once.
+    uint32_t visited[9];
+    size_t visitedCount = 0;
+    size_t found = 0;
+    for (int dr = -1; dr <= 1; ++dr) {
+        for (int dc = -1; dc <= 1; ++dc) {
+            uint32_t b = bucket(column + dc, row + dr);
+            if (std::find(visited, visited + visitedCount, b) != visited + visitedCount) {
+                continue;
+            }
+            visited[visitedCount++] = b;
+            for (uint32_t i = bucketStart_[b]; i < bucketStart_[b + 1]; ++i) {
+                uint32_t index = bucketCones_[i];
+                glm::vec2 offset = cones_[index].pos - center;
+                if (glm::dot(offset, offset) > radiusSq) {
+                    continue;
+                }
+                out[found++] = index;
+                if (found == capacity) {
+                    return found;
+                }
+            }
+        }
+    }
+    return found;
+}
+
+uint32_t ConeField::bucket(int column, int row) const {
+    // Large odd primes (Teschner et al.) spread neighbouring cells across the table.
+    auto hash = static_cast<uint32_t>(column) * 73856093u ^ static_cast<uint32_t>(row) * 19349663u;
+    return hash & bucketMask_;
+}
@@ -0,0 +1,41 @@
+#pragma once
+
+#include <cstddef>
+#include <cstdint>
+#include <vector>
+
+#include "math_glm/glm.hpp"
+
+// Spatial hash of the course's cones. Cones are bucketed by grid cell into a table sized to the
+// cone count, stored as one compressed bucket -> cone list, so a query touches the 3x3 cells around
+// a point and costs the same on a 50-cone course as on one with thousands.
+class ConeField {
+public:
+    enum Side : uint8_t { kLeft = 0, kRight = 1 };
+
+    struct Cone {
+        glm::vec2 pos{0.0f, 0.0f};
+        Side side = kLeft;
+    };
+
+    // `cellSize` must be at least the largest query radius plus the cone radius.
+    void build(const std::vector<glm::vec2> &left, const std::vector<glm::vec2> &right, float cellSize);
+    bool empty() const { return cones_.empty(); }
+    size_t size() const { return cones_.size(); }
+    const Cone &cone(uint32_t index) const { return cones_[index]; }
+    float cellSize() const { return cellSize_; }
+    size_t memoryBytes() const;
+
+    // Writes the indices of cones whose centres lie within `radius` of `center`, up to `capacity`,
+    // and returns how many were written.
+    size_t query(glm::vec2 center, float radius, uint32_t *out, size_t capacity) const;
+
+private:
+    uint32_t bucket(int column, int row) const;
+
+    std::vector<Cone> cones_;
+    float cellSize_ = 1.0f;
+    uint32_t bucketMask_ = 0;
+    std::vector<uint32_t> bucketStart_;
+    std::vector<uint32_t> bucketCones_;
+};
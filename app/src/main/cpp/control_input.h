@@ -0,0 +1,46 @@
+#pragma once
+
+#include <atomic>
+#include <cstdint>
+#include <cstring>
+
+struct Controls {
+    float steer = 0.0f;
+    float throttle = 0.0f;
+    float brake = 0.0f;
+};
+
+// Latest driver input, written by the UI thread and read by the simulation without locks. Steering
+// and the combined throttle/brake axis are packed into one 64-bit atomic so a reader never pairs the
+// steering of one event with the pedals of another.
+class ControlInput {
+public:
+    // drive > 0 is throttle, drive < 0 is brake; both axes are expected in [-1, 1].
+    void set(float steer, float drive) {
+        uint32_t steerBits;
+        uint32_t driveBits;
+        std::memcpy(&steerBits, &steer, sizeof(steerBits));
+        std::memcpy(&driveBits, &drive, sizeof(driveBits));
+        packed_.store((static_cast<uint64_t>(steerBits) << 32) | driveBits, std::memory_order_release);
+    }
+
+    void release() { packed_.store(0, std::memory_order_release); }
+
+    Controls load() const {
+        uint64_t packed = packed_.load(std::memory_order_acquire);
+        auto steerBits = static_cast<uint32_t>(packed >> 32);
+        auto driveBits = static_cast<uint32_t>(packed);
+        float steer;
+        float drive;
+        std::memcpy(&steer, &steerBits, sizeof(steer));
+        std::memcpy(&drive, &driveBits, sizeof(drive));
+        Controls controls;
+        controls.steer = steer;
+        controls.throttle = drive > 0.0f ? drive : 0.0f;
+        controls.brake = drive < 0.0f ? -drive : 0.0f;
+        return controls;
+    }
+
+private:
+    std::atomic<uint64_t> packed_{0};
+};
@@ -0,0 +1,153 @@
+#include "environment_batch.h"
+
+#include <algorithm>
+#include <cmath>
+#include <utility>
+
+#include "parallel_for.h"
+#include "simulation.h"
+
+using environment::kActionSize;
+using environment::kObservationSize;
+
+namespace {
+constexpr float kTwoPi = 2.0f * static_cast<float>(M_PI);
+// Spawns are spread over the middle half of the track width and within this of the centerline heading.
+constexpr float kSpawnLateralFraction = 0.25f;
+constexpr float kSpawnHeadingJitter = 0.1f;
+// Open tracks respawn cars this far from the end, and never spawn them in the last fifth.
+constexpr float kOpenTrackFinish = 5.0f;
+constexpr float kOpenTrackSpawnFraction = 0.8f;
+
+uint32_t nextRandom(uint32_t &state) {
+    state ^= state << 13;
+    state ^= state >> 17;
+    state ^= state << 5;
+    return state;
+}
+
+float uniform(uint32_t &state) {
+    return static_cast<float>(nextRandom(state) >> 8) * (1.0f / 16777216.0f);
+}
+
+float wrapAngle(float angle) {
+    return std::remainder(angle, kTwoPi);
+}
+} // namespace
+
+EnvironmentBatch::EnvironmentBatch(std::shared_ptr<const TrackGeometry> track, const EnvironmentOptions &options)
+        : track_(std::move(track)), options_(options) {
+    options_.actionRepeat = std::max(1, options_.actionRepeat);
+}
+
+void EnvironmentBatch::reset(size_t count, uint32_t seed, float *observations) {
+    progress_.assign(count, 0.0f);
+    steps_.assign(count, 0);
+    random_.resize(count);
+    for (size_t i = 0; i < count; ++i) {
+        // Never zero, which would stall xorshift.
+        random_[i] = (seed ^ static_cast<uint32_t>((i + 1) * 0x9e3779b9u)) | 1u;
+    }
+    shards_.resize((count + kShardSize - 1) / kShardSize);
+    for (size_t s = 0; s < shards_.size(); ++s) {
+        Shard &shard = shards_[s];
+        shard.first = s * kShardSize;
+        shard.cars.resize(0);
+        shard.cars.resize(std::min(kShardSize, count - shard.first));
+        for (size_t slot = 0; slot < shard.cars.size(); ++slot) {
+            spawn(shard, slot, observations + (shard.first + slot) * kObservationSize);
+        }
+    }
+}
+
+void EnvironmentBatch::step(const float *actions, float *observations, float *rewards, uint8_t *dones,
+                            ParallelFor *workers) {
+    auto body = [&](size_t begin, size_t end) {
+        for (size_t s = begin; s < end; ++s) {
+            stepShard(shards_[s], actions, observations, rewards, dones);
+        }
+    };
+    if (workers != nullptr) {
+        workers->run(shards_.size(), 1, body);
+    } else {
+        body(0, shards_.size());
+    }
+}
+
+void EnvironmentBatch::stepShard(Shard &shard, const float *actions, float *observations, float *rewards,
+                                 uint8_t *dones) {
+    VehicleBatch &cars = shard.cars;
+    const size_t count = cars.size();
+    const float *action = actions + shard.first * kActionSize;
+    for (size_t i = 0; i < count; ++i, action += kActionSize) {
+        cars.steer()[i] = glm::clamp(action[0], -1.0f, 1.0f) * Simulation::kSteerRange;
+        cars.throttle()[i] = glm::clamp(action[1], 0.0f, 1.0f);
+        cars.brake()[i] = glm::clamp(action[2], 0.0f, 1.0f);
+        rewards[shard.first + i] = 0.0f;
+    }
+
+    const TrackGeometry &track = *track_;
+    float penalty = options_.offTrackPenalty * options_.dt;
+    for (int tick = 0; tick < options_.actionRepeat; ++tick) {
+        cars.step(options_.dt, &track);
+        for (size_t i = 0; i < count; ++i) {
+            rewards[shard.first + i] -= cars.edgeDistance()[i] > 0.0f ? penalty : 0.0f;
+        }
+    }
+
+    for (size_t i = 0; i < count; ++i) {
+        size_t env = shard.first + i;
+        float *observation = observations + env * kObservationSize;
+        glm::vec2 pos{cars.x()[i], cars.y()[i]};
+        TrackProjection projection;
+        track.index.project(pos, projection);
+        rewards[env] += track.index.progressDelta(progress_[env], projection.progress);
+        progress_[env] = projection.progress;
+
+        bool finished = !track.closed && projection.progress >= track.totalLength - kOpenTrackFinish;
+        bool done = ++steps_[env] >= options_.episodeSteps || finished;
+        dones[env] = done ? 1 : 0;
+        if (done) {
+            spawn(shard, i, observation);
+        } else {
+            observe(pos, cars.heading()[i], cars.speed()[i], cars.edgeDistance()[i], projection, observation);
+        }
+    }
+}
+
+void EnvironmentBatch::spawn(Shard &shard, size_t slot, float *observation) {
+    const TrackGeometry &track = *track_;
+    size_t env = shard.first + slot;
+    uint32_t &random = random_[env];
+    size_t samples = track.samples.size();
+    size_t range = track.closed ? samples : std::max<size_t>(1, static_cast<size_t>(
+            static_cast<float>(samples) * kOpenTrackSpawnFraction));
+    size_t sample = nextRandom(random) % range;
+
+    glm::vec2 tangent = track.tangents[sample];
+    glm::vec2 normal{-tangent.y, tangent.x};
+    float lateral = (uniform(random) * 2.0f - 1.0f) * kSpawnLateralFraction * track.width;
+    Car car;
+    car.pos = track.samples[sample] + normal * lateral;
+    car.heading = std::atan2(tangent.y, tangent.x) + (uniform(random) * 2.0f - 1.0f) * kSpawnHeadingJitter;
+    shard.cars.setCar(slot, car);
+
+    TrackProjection projection;
+    track.index.project(car.pos, projection);
+    progress_[env] = projection.progress;
+    steps_[env] = 0;
+    observe(car.pos, car.heading, car.speed, track.surface.edgeDistance(car.pos), projection, observation);
+}
+
+void EnvironmentBatch::observe(glm::vec2 pos, float heading, float speed, float edgeDistance,
+                               const TrackProjection &projection, float *observation) const {
+    float length = track_->totalLength;
+    observation[0] = pos.x;
+    observation[1] = pos.y;
+    observation[2] = wrapAngle(heading);
+    observation[3] = speed;
+    observation[4] = projection.lateral;
+    observation[5] = wrapAngle(heading - std::atan2(projection.tangent.y, projection.tangent.x));
+    observation[6] = edgeDistance;
+    observation[7] = length > 0.0f ? projection.progress / length : 0.0f;
+}
@@ -0,0 +1,81 @@
+#pragma once
+
+#include <cstddef>
+#include <cstdint>
+#include <memory>
+#include <vector>
+
+#include "track_mesh.h"
+#include "vehicle_batch.h"
+
+class ParallelFor;
+
+struct EnvironmentOptions {
+    float dt = 1.0f / 120.0f;
+    // Physics ticks per agent step: the default agent acts at 60 Hz.
+    int actionRepeat = 2;
+    // Agent steps before an environment ends its episode and respawns.
+    uint32_t episodeSteps = 3600;
+    // Reward taken away per second spent off the track surface.
+    float offTrackPenalty = 5.0f;
+};
+
+namespace environment {
+
+// steer (-1..1, scaled by Simulation::kSteerRange), throttle (0..1), brake (0..1).
+constexpr int kActionSize = 3;
+// x, y, heading (-pi..pi), speed, lateral offset from the centerline, heading relative to the
+// centerline (-pi..pi), signed edge distance, progress along the track (0..1).
+constexpr int kObservationSize = 8;
+
+} // namespace environment
+
+// Independent copies of one driving task for training policies: each environment is a car on a
+// shared track with the same dynamics, surface and barrier as Simulation, but no cones, lap timer
+// or camera. An agent step applies one action per car for actionRepeat ticks and rewards the
+// metres of centerline progress it made, less the off-track penalty. An environment whose episode
+// ends (its step budget, or the end of an open track) respawns at once at a random point of the
+// track; its `done` flag is set and its observation is already the new episode's first.
+//
+// Cars are held in VehicleBatch shards of kShardSize, and a ParallelFor steps whole shards, so
+// even a few hundred environments spread over the cores. Not thread-safe.
+class EnvironmentBatch {
+public:
+    static constexpr size_t kShardSize = 64;
+
+    // `track` must have been built by buildTrackMesh.
+    explicit EnvironmentBatch(std::shared_ptr<const TrackGeometry> track,
+                              const EnvironmentOptions &options = EnvironmentOptions());
+
+    size_t size() const { return progress_.size(); }
+    const EnvironmentOptions &options() const { return options_; }
+    const TrackGeometry &track() const { return *track_; }
+
+    // Replaces every environment with `count` fresh ones, spawned from `seed`, and writes their
+    // observations (count * kObservationSize floats).
+    void reset(size_t count, uint32_t seed, float *observations);
+    // `actions` holds size() * kActionSize floats, out-of-range values are clamped. Writes
+    // size() * kObservationSize observations, size() rewards and size() done flags (0 or 1).
+    void step(const float *actions, float *observations, float *rewards, uint8_t *dones,
+              ParallelFor *workers = nullptr);
+
+private:
+    struct Shard {
+        VehicleBatch cars;
+        size_t first = 0;
+    };
+
+    void stepShard(Shard &shard, const float *actions, float *observations, float *rewards, uint8_t *dones);
+    // Places car `slot` of `shard` at a random point of the track and writes its observation.
+    void spawn(Shard &shard, size_t slot, float *observation);
+    void observe(glm::vec2 pos, float heading, float speed, float edgeDistance,
+                 const TrackProjection &projection, float *observation) const;
+
+    std::shared_ptr<const TrackGeometry> track_;
+    EnvironmentOptions options_;
+    std::vector<Shard> shards_;
+    // Per environment: last projected progress, steps into the episode, and random state.
+    std::vector<float> progress_;
+    std::vector<uint32_t> steps_;
+    std::vector<uint32_t> random_;
+};
@@ -0,0 +1,158 @@
+#include "frame_stats.h"
+
+#include <algorithm>
+#include <cinttypes>
+#include <cmath>
+#include <cstdio>
+#include <memory>
+#include <vector>
+
+namespace {
+
+constexpr int64_t kNoInterval = -1;
+constexpr const char *kColumnNames[FrameStats::kColumns] = {"handoff", "upload", "draw", "interval"};
+
+int64_t nanosBetween(FrameStats::Clock::time_point from, FrameStats::Clock::time_point to) {
+    return std::chrono::duration_cast<std::chrono::nanoseconds>(to - from).count();
+}
+
+} // namespace
+
+FrameStats::FrameStats(std::chrono::nanoseconds frameBudget)
+        : jankThresholdNanos_(frameBudget.count() + frameBudget.count() / 2) {}
+
+void FrameStats::beginFrame(Clock::time_point now) {
+    int64_t interval = intervalValid_ ? nanosBetween(frameStart_, now) : kNoInterval;
+    frameStart_ = now;
+    current_.fill(0);
+    openPhase_ = -1;
+    uint64_t frame = published_.load(std::memory_order_relaxed);
+    rows_[frame % kCapacity][kInterval] = interval;
+    if (interval > jankThresholdNanos_) {
+        jankFrames_.fetch_add(1, std::memory_order_relaxed);
+    }
+}
+
+void FrameStats::beginPhase(Phase phase, Clock::time_point now) {
+    endPhase(now);
+    openPhase_ = phase;
+    phaseStart_ = now;
+}
+
+void FrameStats::endPhase(Clock::time_point now) {
+    if (openPhase_ >= 0) {
+        current_[static_cast<size_t>(openPhase_)] += nanosBetween(phaseStart_, now);
+        openPhase_ = -1;
+    }
+}
+
+void FrameStats::endFrame(Clock::time_point now, bool continuous) {
+    endPhase(now);
+    uint64_t frame = published_.load(std::memory_order_relaxed);
+    Row &row = rows_[frame % kCapacity];
+    for (int phase = 0; phase < kPhaseCount; ++phase) {
+        row[static_cast<size_t>(phase)] = current_[static_cast<size_t>(phase)];
+    }
+    intervalValid_ = continuous;
+    published_.store(frame + 1, std::memory_order_release);
+}
+
+uint64_t FrameStats::copyRows(Row *out, size_t &count) const {
+    uint64_t end = published_.load(std::memory_order_acquire);
+    uint64_t start = end > kCapacity ? end - kCapacity : 0;
+    size_t copied = static_cast<size_t>(end - start);
+    for (size_t i = 0; i < copied; ++i) {
+        out[i] = rows_[(start + i) % kCapacity];
+    }
+    std::atomic_thread_fence(std::memory_order_acquire);
+    // Frames the writer lapped while we were copying may be torn; drop them.
+    uint64_t after = published_.load(std::memory_order_relaxed);
+    uint64_t overwrittenBefore = after + 1 > kCapacity ? after + 1 - kCapacity : 0;
+    size_t skip = static_cast<size_t>(std::min<uint64_t>(copied, overwrittenBefore > start ? overwrittenBefore - start : 0));
+    std::copy(out + skip, out + copied, out);
+    count = copied - skip;
+    return start + skip;
+}
+
+FrameStats::Summary FrameStats::summarize() const {
+    Summary summary;
+    std::unique_ptr<Row[]> rows(new Row[kCapacity]);
+    size_t count = 0;
+    copyRows(rows.get(), count);
+    summary.frames = count;
+    summary.totalFrames = published_.load(std::memory_order_acquire);
+    summary.jankFrames = jankFrames_.load(std::memory_order_relaxed);
+
+    std::vector<int64_t> values;
+    values.reserve(count);
+    for (int column = 0; column < kColumns; ++column) {
+        values.clear();
+        for (size_t i = 0; i < count; ++i) {
+            int64_t value = rows[i][static_cast<size_t>(column)];
+            if (value >= 0) {
+                values.push_back(value);
+            }
+        }
+        std::sort(values.begin(), values.end());
+        const double fractions[3] = {0.50, 0.95, 0.99};
+        for (int p = 0; p < 3; ++p) {
+            float millis = 0.0f;
+            if (!values.empty()) {
+                double rank = std::ceil(fractions[p] * static_cast<double>(values.size())) - 1.0;
+                size_t index = std::min(static_cast<size_t>(std::max(0.0, rank)), values.size() - 1);
+                millis = static_cast<float>(values[index]) / 1.0e6f;
+            }
+            summary.percentiles[column][p] = millis;
+        }
+    }
+    return summary;
+}
+
+std::string FrameStats::format() const {
+    Summary summary = summarize();
+    char line[96];
+    std::snprintf(line, sizeof(line), "frames %" PRIu64 " (window %zu)  jank %" PRIu64,
+                  summary.totalFrames, summary.frames, summary.jankFrames);
+    std::string text = line;
+    for (int column = 0; column < kColumns; ++column) {
+        std::snprintf(line, sizeof(line), "\n%-8s p50 %6.2f  p95 %6.2f  p99 %6.2f ms",
+                      kColumnNames[column],
+                      static_cast<double>(summary.percentiles[column][0]),
+                      static_cast<double>(summary.percentiles[column][1]),
+                      static_cast<double>(summary.percentiles[column][2]));
+        text += line;
+    }
+    return text;
+}
+
+bool FrameStats::dumpCsv(const std::string &path) const {
+    std::unique_ptr<Row[]> rows(new Row[kCapacity]);
+    size_t count = 0;
+    uint64_t first = copyRows(rows.get(), count);
+    FILE *file = std::fopen(path.c_str(), "w");
+    if (file == nullptr) {
+        return false;
+    }
+    std::string summary = format();
+    std::fputs("# ", file);
+    for (char c : summary) {
+        std::fputc(c, file);
+        if (c == '\n') {
+            std::fputs("# ", file);
+        }
+    }
+    std::fputs("\nframe,handoff_ms,upload_ms,draw_ms,interval_ms\n", file);
+    for (size_t i = 0; i < count; ++i) {
+        std::fprintf(file, "%" PRIu64, first + i);
+        for (int column = 0; column < kColumns; ++column) {
+            int64_t value = rows[i][static_cast<size_t>(column)];
+            if (value >= 0) {
+                std::fprintf(file, ",%.3f", static_cast<double>(value) / 1.0e6);
+            } else {
+                std::fputc(',', file);
+            }
+        }
+        std::fputc('\n', file);
+    }
+    return std::fclose(file) == 0;
+}
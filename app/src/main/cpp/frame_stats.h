@@ -0,0 +1,60 @@
+#pragma once
+
+#include <array>
+#include <atomic>
+#include <chrono>
+#include <cstdint>
+#include <string>
+
+// Fixed-size ring of per-frame timings written by the render thread and read from any thread
+// without locks. Mirrors com.example.racingsim.perf.FrameStats, except that the first phase is the
+// handoff from the physics thread (triple-buffer update and interpolation) rather than physics,
+// which PhysicsThread times itself. Stores handoff, upload and draw CPU time per frame plus the
+// interval since the previous frame began. Recording never allocates.
+class FrameStats {
+public:
+    enum Phase { kHandoff = 0, kUpload = 1, kDraw = 2, kPhaseCount = 3 };
+    static constexpr int kInterval = kPhaseCount;
+    static constexpr int kColumns = kPhaseCount + 1;
+    static constexpr size_t kCapacity = 512;
+
+    using Clock = std::chrono::steady_clock;
+
+    struct Summary {
+        uint64_t totalFrames = 0;
+        uint64_t jankFrames = 0;
+        size_t frames = 0;
+        // [column][p50, p95, p99] in milliseconds.
+        float percentiles[kColumns][3] = {};
+    };
+
+    explicit FrameStats(std::chrono::nanoseconds frameBudget = std::chrono::nanoseconds(16666667));
+
+    void beginFrame(Clock::time_point now);
+    void beginPhase(Phase phase, Clock::time_point now);
+    void endPhase(Clock::time_point now);
+    // continuous=false marks the next frame's interval as not meaningful (e.g. after a pause).
+    void endFrame(Clock::time_point now, bool continuous);
+
+    Summary summarize() const;
+    std::string format() const;
+    bool dumpCsv(const std::string &path) const;
+
+private:
+    using Row = std::array<int64_t, kColumns>;
+
+    // Copies the rows still in the ring; returns the index of the first copied frame.
+    uint64_t copyRows(Row *out, size_t &count) const;
+
+    std::array<Row, kCapacity> rows_{};
+    std::atomic<uint64_t> published_{0};
+    std::atomic<uint64_t> jankFrames_{0};
+    int64_t jankThresholdNanos_;
+
+    // Render-thread state.
+    std::array<int64_t, kPhaseCount> current_{};
+    Clock::time_point frameStart_{};
+    Clock::time_point phaseStart_{};
+    int openPhase_ = -1;
+    bool intervalValid_ = false;
+};
@@ -0,0 +1,41 @@
+#pragma once
+
+#include <cmath>
+
+#include "math_glm/glm.hpp"
+
+// View frustum planes extracted from a column-major view-projection matrix (Gribb & Hartmann).
+// Planes point inwards; a box is culled only when it lies entirely behind one plane, so the test is
+// conservative near the frustum's corners.
+struct Frustum {
+    glm::vec4 planes[6];
+
+    static Frustum fromMatrix(const glm::mat4 &m) {
+        auto row = [&m](int i) { return glm::vec4(m.data[i], m.data[4 + i], m.data[8 + i], m.data[12 + i]); };
+        glm::vec4 x = row(0);
+        glm::vec4 y = row(1);
+        glm::vec4 z = row(2);
+        glm::vec4 w = row(3);
+        Frustum frustum;
+        frustum.planes[0] = w + x;
+        frustum.planes[1] = w - x;
+        frustum.planes[2] = w + y;
+        frustum.planes[3] = w - y;
+        frustum.planes[4] = w + z;
+        frustum.planes[5] = w - z;
+        return frustum;
+    }
+
+    bool intersects(const glm::vec3 &boundsMin, const glm::vec3 &boundsMax) const {
+        for (const glm::vec4 &plane : planes) {
+            // The box corner farthest along the plane normal.
+            float px = plane.x >= 0.0f ? boundsMax.x : boundsMin.x;
+            float py = plane.y >= 0.0f ? boundsMax.y : boundsMin.y;
+            float pz = plane.z >= 0.0f ? boundsMax.z : boundsMin.z;
+            if (plane.x * px + plane.y * py + plane.z * pz + plane.w < 0.0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+};
@@ -0,0 +1,105 @@
+#include "ghost_car.h"
+
+#include <cmath>
+#include <cstdio>
+#include <utility>
+
+#include "native_log.h"
+
+namespace {
+constexpr const char *kTag = "GhostCar";
+}
+
+bool GhostCar::load(const std::string &path) {
+    std::FILE *file = std::fopen(path.c_str(), "rb");
+    if (file == nullptr) {
+        logging::warn(kTag, "Cannot open %s", path.c_str());
+        return false;
+    }
+    std::vector<uint8_t> recording;
+    uint8_t buffer[4096];
+    size_t read;
+    while ((read = std::fread(buffer, 1, sizeof(buffer), file)) > 0) {
+        recording.insert(recording.end(), buffer, buffer + read);
+    }
+    std::fclose(file);
+    if (!load(std::move(recording))) {
+        logging::warn(kTag, "%s is not a telemetry recording", path.c_str());
+        return false;
+    }
+    return true;
+}
+
+bool GhostCar::load(std::vector<uint8_t> recording) {
+    int rateHz = telemetry::readFileHeader(recording.data(), recording.size());
+    if (rateHz <= 0) {
+        rateHz_ = 0;
+        recording_.clear();
+        finished_ = true;
+        return false;
+    }
+    recording_ = std::move(recording);
+    rateHz_ = rateHz;
+    restart();
+    return true;
+}
+
+void GhostCar::restart() {
+    cursor_ = telemetry::kFileHeaderBytes;
+    decoder_.reset();
+    time_ = 0.0f;
+    finished_ = !loaded() || !decodeNext(from_);
+    to_ = from_;
+    if (!finished_ && !decodeNext(to_)) {
+        to_ = from_;
+    }
+    interpolate(0.0f);
+}
+
+bool GhostCar::advance(float dt) {
+    if (finished_) {
+        return false;
+    }
+    float period = 1.0f / static_cast<float>(rateHz_);
+    time_ += dt;
+    while (time_ >= period) {
+        TelemetrySample next;
+        if (!decodeNext(next)) {
+            // This call still shows the last frame; the next one reports the end.
+            finished_ = true;
+            from_ = to_;
+            interpolate(0.0f);
+            return true;
+        }
+        time_ -= period;
+        from_ = to_;
+        to_ = next;
+    }
+    interpolate(time_ / period);
+    return true;
+}
+
+bool GhostCar::decodeNext(TelemetrySample &out) {
+    while (cursor_ < recording_.size()) {
+        size_t length = decoder_.decode(recording_.data() + cursor_, recording_.size() - cursor_, out);
+        if (length == 0) {
+            // A truncated final frame, e.g. from a recording cut off mid-write.
+            cursor_ = recording_.size();
+            return false;
+        }
+        cursor_ += length;
+        if (decoder_.synced()) {
+            return true;
+        }
+    }
+    return false;
+}
+
+void GhostCar::interpolate(float alpha) {
+    car_.pos = {from_.x + (to_.x - from_.x) * alpha, from_.y + (to_.y - from_.y) * alpha};
+    car_.heading = from_.heading + (to_.heading - from_.heading) * alpha;
+    car_.speed = from_.speed + (to_.speed - from_.speed) * alpha;
+    car_.steer = to_.steer;
+    car_.throttle = to_.throttle;
+    car_.brake = to_.brake;
+}
@@ -0,0 +1,44 @@
+#pragma once
+
+#include <cstdint>
+#include <string>
+#include <vector>
+
+#include "telemetry.h"
+#include "vehicle.h"
+
+// Plays a telemetry recording back as a car pose. Only the compressed recording is held in memory;
+// frames are decoded one at a time as playback reaches them and the pose is interpolated between
+// the two around the playback time, so a ghost costs a few bytes of decoding per frame at any lap
+// length. Not thread-safe: the simulation thread advances it.
+class GhostCar {
+public:
+    // Reads the recording into memory. Blocking file I/O: call it off the simulation thread.
+    bool load(const std::string &path);
+    // Takes an in-memory recording, header included.
+    bool load(std::vector<uint8_t> recording);
+    bool loaded() const { return rateHz_ > 0; }
+
+    // Rewinds to the first frame.
+    void restart();
+    // Moves playback on by dt. Returns false once the last frame has been shown; the pose then
+    // holds there.
+    bool advance(float dt);
+    const Car &car() const { return car_; }
+    bool finished() const { return finished_; }
+
+private:
+    bool decodeNext(TelemetrySample &out);
+    void interpolate(float alpha);
+
+    std::vector<uint8_t> recording_;
+    size_t cursor_ = 0;
+    TelemetryDecoder decoder_;
+    int rateHz_ = 0;
+    // Seconds into the interval between from_ and to_.
+    float time_ = 0.0f;
+    TelemetrySample from_;
+    TelemetrySample to_;
+    Car car_;
+    bool finished_ = true;
+};
@@ -1,10 +1,27 @@
 #include <jni.h>
 #include <android/log.h>
+#include <string>
+#include <vector>
 
 #include "renderer.h"
+#include "trace.h"
 
 namespace {
 constexpr const char *kTag = "JNI";
+
+// Copies an optional interleaved x/y array; a null or odd-length array yields no points.
+std::vector<float> copyPoints(JNIEnv *env, jfloatArray array) {
+    std::vector<float> xy;
+    if (array == nullptr) {
+        return xy;
+    }
+    jsize length = env->GetArrayLength(array) & ~1;
+    xy.resize(static_cast<size_t>(length));
+    if (length > 0) {
+        env->GetFloatArrayRegion(array, 0, length, xy.data());
+    }
+    return xy;
+}
 }
 
 extern "C" {
@@ -14,14 +31,38 @@ Java_com_example_racingsim_preview_PreviewActivity_nativeInit(JNIEnv *, jclass)
     GetRenderer().init();
 }
 
+JNIEXPORT void JNICALL
+Java_com_example_racingsim_preview_PreviewActivity_nativeSetProgramCacheDir(JNIEnv *env, jclass, jstring path) {
+    if (path == nullptr) {
+        GetRenderer().setProgramCacheDir(std::string());
+        return;
+    }
+    const char *chars = env->GetStringUTFChars(path, nullptr);
+    if (!chars) {
+        return;
+    }
+    GetRenderer().setProgramCacheDir(chars);
+    env->ReleaseStringUTFChars(path, chars);
+}
+
 JNIEXPORT void JNICALL
 Java_com_example_racingsim_preview_PreviewActivity_nativeResize(JNIEnv *, jclass, jint width, jint height) {
     GetRenderer().resize(width, height);
 }
 
-JNIEXPORT void JNICALL
+JNIEXPORT jboolean JNICALL
 Java_com_example_racingsim_preview_PreviewActivity_nativeRender(JNIEnv *, jclass) {
-    GetRenderer().render();
+    return GetRenderer().render() ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL
+Java_com_example_racingsim_preview_PreviewActivity_nativeSetPaused(JNIEnv *, jclass, jboolean paused) {
+    GetRenderer().setPaused(paused == JNI_TRUE);
+}
+
+JNIEXPORT void JNICALL
+Java_com_example_racingsim_preview_PreviewActivity_nativeSetPhysicsTickRate(JNIEnv *, jclass, jint hz) {
+    GetRenderer().setPhysicsTickRate(hz);
 }
 
 JNIEXPORT void JNICALL
@@ -30,7 +71,9 @@ Java_com_example_racingsim_preview_PreviewActivity_nativeOnTouch(JNIEnv *, jclas
 }
 
 JNIEXPORT void JNICALL
-Java_com_example_racingsim_preview_PreviewActivity_nativeLoadTrack(JNIEnv *env, jclass, jfloatArray pointsArray, jint count, jfloat width) {
+Java_com_example_racingsim_preview_PreviewActivity_nativeLoadTrack(JNIEnv *env, jclass, jfloatArray pointsArray, jint count, jfloat width,
+                                                                   jfloatArray leftConesArray, jfloatArray rightConesArray, jlong traceId) {
+    trace::Scope span("nativeLoadTrack", traceId);
     if (pointsArray == nullptr) {
         __android_log_print(ANDROID_LOG_WARN, kTag, "nativeLoadTrack received null array");
         return;
@@ -40,15 +83,80 @@ Java_com_example_racingsim_preview_PreviewActivity_nativeLoadTrack(JNIEnv *env,
         __android_log_print(ANDROID_LOG_WARN, kTag, "nativeLoadTrack invalid length=%d for count=%d", length, count);
         return;
     }
+    std::vector<float> leftCones = copyPoints(env, leftConesArray);
+    std::vector<float> rightCones = copyPoints(env, rightConesArray);
     jboolean isCopy = JNI_FALSE;
     jfloat *data = env->GetFloatArrayElements(pointsArray, &isCopy);
     if (!data) {
         __android_log_print(ANDROID_LOG_WARN, kTag, "nativeLoadTrack unable to access array");
         return;
     }
-    GetRenderer().loadTrack(data, count, width);
+    GetRenderer().loadTrack(data, count, width,
+                            leftCones.data(), static_cast<int>(leftCones.size() / 2),
+                            rightCones.data(), static_cast<int>(rightCones.size() / 2), traceId);
     env->ReleaseFloatArrayElements(pointsArray, data, JNI_ABORT);
 }
 
+JNIEXPORT void JNICALL
+Java_com_example_racingsim_preview_PreviewActivity_nativeStartRecording(JNIEnv *env, jclass, jstring path) {
+    if (path == nullptr) {
+        return;
+    }
+    const char *chars = env->GetStringUTFChars(path, nullptr);
+    if (!chars) {
+        return;
+    }
+    GetRenderer().startRecording(chars);
+    env->ReleaseStringUTFChars(path, chars);
+}
+
+JNIEXPORT void JNICALL
+Java_com_example_racingsim_preview_PreviewActivity_nativeStopRecording(JNIEnv *, jclass) {
+    GetRenderer().stopRecording();
+}
+
+JNIEXPORT jboolean JNICALL
+Java_com_example_racingsim_preview_PreviewActivity_nativeLoadGhost(JNIEnv *env, jclass, jstring path) {
+    if (path == nullptr) {
+        return JNI_FALSE;
+    }
+    const char *chars = env->GetStringUTFChars(path, nullptr);
+    if (!chars) {
+        return JNI_FALSE;
+    }
+    bool loaded = GetRenderer().loadGhost(chars);
+    env->ReleaseStringUTFChars(path, chars);
+    return loaded ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL
+Java_com_example_racingsim_preview_PreviewActivity_nativeClearGhost(JNIEnv *, jclass) {
+    GetRenderer().clearGhost();
+}
+
+JNIEXPORT jstring JNICALL
+Java_com_example_racingsim_preview_PreviewActivity_nativeFrameStatsSummary(JNIEnv *env, jclass) {
+    return env->NewStringUTF(GetRenderer().describeStats().c_str());
+}
+
+JNIEXPORT jboolean JNICALL
+Java_com_example_racingsim_preview_PreviewActivity_nativeDumpFrameStats(JNIEnv *env, jclass, jstring path) {
+    if (path == nullptr) {
+        return JNI_FALSE;
+    }
+    const char *chars = env->GetStringUTFChars(path, nullptr);
+    if (!chars) {
+        return JNI_FALSE;
+    }
+    bool written = GetRenderer().frameStats().dumpCsv(chars);
+    env->ReleaseStringUTFChars(path, chars);
+    return written ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jstring JNICALL
+Java_com_example_racingsim_preview_PreviewActivity_nativeDrainTraceEvents(JNIEnv *env, jclass, jlong traceId) {
+    return env->NewStringUTF(trace::drainJson(traceId).c_str());
+}
+
 }
 
@@ -0,0 +1,97 @@
+#include "lap_simulator.h"
+
+#include <algorithm>
+#include <atomic>
+#include <cmath>
+#include <utility>
+
+#include "parallel_for.h"
+#include "racing_line.h"
+#include "simulation.h"
+
+namespace {
+constexpr float kAtLimitFraction = 0.9f;
+constexpr float kFullLock = 0.999f;
+// The launch ends once the car first reaches this fraction of the profile speed.
+constexpr float kLaunchFraction = 0.9f;
+}
+
+LapResult simulateLap(std::shared_ptr<const TrackGeometry> track, const LapOptions &options) {
+    LapResult result;
+    if (!track || track->samples.size() < 2 || options.dt <= 0.0f) {
+        return result;
+    }
+    PathFollower driver(options.driver);
+    RacingLine line;
+    if (options.racingLine && RacingLineSolver().solve(*track, line)) {
+        driver.setLine(line.points, line.closed, track->width * 1.5f);
+    } else {
+        driver.setLine(track->samples, track->closed, track->width * 1.5f);
+    }
+    Simulation simulation;
+    bool closed = track->closed;
+    simulation.loadTrack(std::move(track));
+
+    // A closed track's timed lap is the second one.
+    int timedLap = closed ? 2 : 1;
+    bool timing = !closed;
+    bool launched = false;
+    float distance = 0.0f;
+    result.minSpeed = vehicle::kMaxSpeed;
+    auto limit = static_cast<uint64_t>(options.timeLimit / options.dt) * static_cast<uint64_t>(timedLap);
+    for (uint64_t tick = 0; tick < limit; ++tick) {
+        Controls controls = driver.drive(simulation.state().car);
+        glm::vec2 before = simulation.state().car.pos;
+        simulation.tick(options.dt, controls);
+        const SimState &state = simulation.state();
+        if (state.laps.completedLaps >= timedLap) {
+            result.completed = true;
+            result.lapTime = state.laps.lastLapTime;
+            break;
+        }
+        if (!timing) {
+            timing = state.laps.completedLaps == timedLap - 1;
+            continue;
+        }
+        const Car &car = state.car;
+        ++result.ticks;
+        distance += glm::distance(before, car.pos);
+        launched = launched || car.speed >= driver.targetSpeed() * kLaunchFraction;
+        if (launched) {
+            result.minSpeed = std::min(result.minSpeed, car.speed);
+        }
+        float wheelAngle = glm::clamp(car.steer, -vehicle::kMaxSteer, vehicle::kMaxSteer);
+        float lateral = std::fabs(car.speed * car.speed * std::tan(wheelAngle) / car.wheelbase * car.grip);
+        if (lateral >= options.driver.lateralLimit * kAtLimitFraction || std::fabs(controls.steer) >= kFullLock) {
+            result.timeAtLimit += options.dt;
+        }
+        if (state.surface.edgeDistance > 0.0f) {
+            result.timeOffTrack += options.dt;
+        }
+    }
+    if (result.ticks > 0) {
+        result.averageSpeed = distance / (static_cast<float>(result.ticks) * options.dt);
+    }
+    if (!launched) {
+        result.minSpeed = 0.0f;
+    }
+    return result;
+}
+
+std::vector<LapResult> simulateLaps(const std::vector<std::shared_ptr<const TrackGeometry>> &tracks,
+                                    const LapOptions &options, ParallelFor *workers) {
+    std::vector<LapResult> results(tracks.size());
+    std::atomic<size_t> next{0};
+    auto drain = [&](size_t, size_t) {
+        for (size_t i = next.fetch_add(1); i < tracks.size(); i = next.fetch_add(1)) {
+            results[i] = simulateLap(tracks[i], options);
+        }
+    };
+    if (workers != nullptr) {
+        size_t threads = std::min(static_cast<size_t>(workers->threads()), tracks.size());
+        workers->run(threads, 1, drain);
+    } else {
+        drain(0, tracks.size());
+    }
+    return results;
+}
@@ -0,0 +1,41 @@
+#pragma once
+
+#include <cstdint>
+#include <memory>
+#include <vector>
+
+#include "path_follower.h"
+#include "track_mesh.h"
+
+class ParallelFor;
+
+struct LapOptions {
+    float dt = 1.0f / 120.0f;
+    // Simulated seconds per lap before a car that cannot get round is given up on.
+    float timeLimit = 600.0f;
+    // Drive the minimum-curvature racing line (see racing_line.h) rather than the centerline.
+    bool racingLine = false;
+    PathFollower::Options driver;
+};
+
+struct LapResult {
+    bool completed = false;
+    float lapTime = 0.0f;
+    float minSpeed = 0.0f;
+    float averageSpeed = 0.0f;
+    // Seconds cornering at 90% or more of the driver's lateral limit, or at full steering lock.
+    float timeAtLimit = 0.0f;
+    float timeOffTrack = 0.0f;
+    uint64_t ticks = 0;
+};
+
+// Headless lap simulation for scoring tracks: the full Simulation (surface, barrier and lap
+// timing), driven along the centerline or the racing line by a PathFollower, ticked back to back with no rendering
+// or pacing. A closed track is timed on a flying lap after an out lap from the standing start; an
+// open one from the start to the end, with the minimum speed taken after the launch.
+LapResult simulateLap(std::shared_ptr<const TrackGeometry> track, const LapOptions &options = LapOptions());
+
+// One lap per track. With workers, tracks are handed out one at a time to whichever thread is
+// free, so a long track does not hold up a slice of short ones.
+std::vector<LapResult> simulateLaps(const std::vector<std::shared_ptr<const TrackGeometry>> &tracks,
+                                    const LapOptions &options = LapOptions(), ParallelFor *workers = nullptr);
@@ -0,0 +1,74 @@
+// JNI entry point for LapSimulator. Built into the app library and, on a development host with a
+// JDK, into racingsim_headless so JVM tests can score tracks without a device.
+
+#include <jni.h>
+
+#include <algorithm>
+#include <memory>
+#include <vector>
+
+#include "lap_simulator.h"
+#include "native_log.h"
+#include "parallel_for.h"
+
+namespace {
+constexpr const char *kTag = "LapSimulator";
+// Per track: completed, lap time, minimum speed, average speed, time at the limit, time off track.
+constexpr int kResultFields = 6;
+}
+
+extern "C" JNIEXPORT jfloatArray JNICALL
+Java_com_example_racingsim_track_LapSimulator_nativeSimulate(JNIEnv *env, jclass, jobjectArray centerlines,
+                                                             jfloatArray widthsArray, jint threads) {
+    if (centerlines == nullptr || widthsArray == nullptr) {
+        return nullptr;
+    }
+    jsize count = env->GetArrayLength(centerlines);
+    if (env->GetArrayLength(widthsArray) < count) {
+        logging::warn(kTag, "nativeSimulate got %d centerlines but fewer widths", count);
+        return nullptr;
+    }
+    std::vector<float> widths(static_cast<size_t>(count));
+    env->GetFloatArrayRegion(widthsArray, 0, count, widths.data());
+
+    // Copy everything out of the JVM first; the builds and laps then run on plain threads.
+    std::vector<std::vector<glm::vec2>> points(static_cast<size_t>(count));
+    for (jsize i = 0; i < count; ++i) {
+        auto xy = static_cast<jfloatArray>(env->GetObjectArrayElement(centerlines, i));
+        if (xy == nullptr) {
+            continue;
+        }
+        jsize length = env->GetArrayLength(xy) & ~1;
+        std::vector<float> values(static_cast<size_t>(length));
+        env->GetFloatArrayRegion(xy, 0, length, values.data());
+        env->DeleteLocalRef(xy);
+        for (jsize p = 0; p < length; p += 2) {
+            points[i].emplace_back(values[p], values[p + 1]);
+        }
+    }
+
+    ParallelFor workers(std::max(1, static_cast<int>(threads)));
+    std::vector<std::shared_ptr<const TrackGeometry>> tracks(static_cast<size_t>(count));
+    workers.run(tracks.size(), 1, [&](size_t begin, size_t end) {
+        for (size_t i = begin; i < end; ++i) {
+            auto geometry = std::make_shared<TrackGeometry>();
+            TrackMesh mesh;
+            if (buildTrackMesh(points[i], widths[i], mesh, *geometry)) {
+                tracks[i] = std::move(geometry);
+            }
+        }
+    });
+    std::vector<LapResult> results = simulateLaps(tracks, LapOptions(), &workers);
+
+    std::vector<float> packed;
+    packed.reserve(results.size() * kResultFields);
+    for (const LapResult &result : results) {
+        packed.insert(packed.end(), {result.completed ? 1.0f : 0.0f, result.lapTime, result.minSpeed,
+                                     result.averageSpeed, result.timeAtLimit, result.timeOffTrack});
+    }
+    jfloatArray out = env->NewFloatArray(static_cast<jsize>(packed.size()));
+    if (out != nullptr) {
+        env->SetFloatArrayRegion(out, 0, static_cast<jsize>(packed.size()), packed.data());
+    }
+    return out;
+}
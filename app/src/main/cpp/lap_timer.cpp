@@ -0,0 +1,40 @@
+#include "lap_timer.h"
+
+void LapTimer::reset(const TrackIndex *index, float startProgress) {
+    index_ = index;
+    status_ = LapStatus{};
+    lastProgress_ = startProgress;
+    lapDistance_ = 0.0f;
+    sectorStartTime_ = 0.0f;
+}
+
+void LapTimer::update(float progress, float dt) {
+    if (index_ == nullptr || index_->length() <= 0.0f) {
+        return;
+    }
+    status_.lapTime += dt;
+    lapDistance_ += index_->progressDelta(lastProgress_, progress);
+    lastProgress_ = progress;
+
+    float sectorLength = index_->length() / LapStatus::kSectors;
+    while (lapDistance_ >= sectorLength * static_cast<float>(status_.sector + 1)) {
+        status_.sectorTimes[status_.sector] = status_.lapTime - sectorStartTime_;
+        sectorStartTime_ = status_.lapTime;
+        if (++status_.sector < LapStatus::kSectors) {
+            continue;
+        }
+        ++status_.completedLaps;
+        status_.lastLapTime = status_.lapTime;
+        if (status_.bestLapTime < 0.0f || status_.lapTime < status_.bestLapTime) {
+            status_.bestLapTime = status_.lapTime;
+        }
+        for (int i = 0; i < LapStatus::kSectors; ++i) {
+            status_.lastSectorTimes[i] = status_.sectorTimes[i];
+            status_.sectorTimes[i] = -1.0f;
+        }
+        status_.sector = 0;
+        status_.lapTime = 0.0f;
+        sectorStartTime_ = 0.0f;
+        lapDistance_ -= index_->length();
+    }
+}
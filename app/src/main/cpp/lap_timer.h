@@ -0,0 +1,34 @@
+#pragma once
+
+#include "track_index.h"
+
+struct LapStatus {
+    static constexpr int kSectors = 3;
+
+    int completedLaps = 0;
+    int sector = 0;
+    float lapTime = 0.0f;
+    float lastLapTime = -1.0f;
+    float bestLapTime = -1.0f;
+    // Sector times of the lap in progress and of the last completed lap; -1 when not yet set.
+    float sectorTimes[kSectors] = {-1.0f, -1.0f, -1.0f};
+    float lastSectorTimes[kSectors] = {-1.0f, -1.0f, -1.0f};
+};
+
+// Lap and sector timing from arc-length progress. Each update is a handful of arithmetic
+// operations: the distance covered since the start line is integrated from progress deltas, so
+// laps only count when the car really drove around the track, not when it reverses over the line.
+class LapTimer {
+public:
+    void reset(const TrackIndex *index, float startProgress);
+    void update(float progress, float dt);
+
+    const LapStatus &status() const { return status_; }
+
+private:
+    const TrackIndex *index_ = nullptr;
+    LapStatus status_;
+    float lastProgress_ = 0.0f;
+    float lapDistance_ = 0.0f;
+    float sectorStartTime_ = 0.0f;
+};
@@ -50,5 +50,16 @@ inline mat4 perspective(float fovyRadians, float aspect, float zNear, float zFar
     return result;
 }
 
+inline mat4 ortho(float left, float right, float bottom, float top, float zNear, float zFar) {
+    mat4 result = mat4::identity();
+    result.data[0] = 2.0f / (right - left);
+    result.data[5] = 2.0f / (top - bottom);
+    result.data[10] = -2.0f / (zFar - zNear);
+    result.data[12] = -(right + left) / (right - left);
+    result.data[13] = -(top + bottom) / (top - bottom);
+    result.data[14] = -(zFar + zNear) / (zFar - zNear);
+    return result;
+}
+
 } // namespace glm
 
@@ -0,0 +1,59 @@
+#include "native_log.h"
+
+#include <cstdarg>
+
+#ifdef __ANDROID__
+#include <android/log.h>
+#else
+#include <cstdio>
+#endif
+
+namespace logging {
+namespace {
+
+#ifdef __ANDROID__
+using Level = android_LogPriority;
+constexpr Level kInfo = ANDROID_LOG_INFO;
+constexpr Level kWarn = ANDROID_LOG_WARN;
+constexpr Level kError = ANDROID_LOG_ERROR;
+
+void write(Level level, const char *tag, const char *format, va_list args) {
+    __android_log_vprint(level, tag, format, args);
+}
+#else
+using Level = char;
+constexpr Level kInfo = 'I';
+constexpr Level kWarn = 'W';
+constexpr Level kError = 'E';
+
+void write(Level level, const char *tag, const char *format, va_list args) {
+    std::fprintf(stderr, "%c/%s: ", level, tag);
+    std::vfprintf(stderr, format, args);
+    std::fputc('\n', stderr);
+}
+#endif
+
+} // namespace
+
+void info(const char *tag, const char *format, ...) {
+    va_list args;
+    va_start(args, format);
+    write(kInfo, tag, format, args);
+    va_end(args);
+}
+
+void warn(const char *tag, const char *format, ...) {
+    va_list args;
+    va_start(args, format);
+    write(kWarn, tag, format, args);
+    va_end(args);
+}
+
+void error(const char *tag, const char *format, ...) {
+    va_list args;
+    va_start(args, format);
+    write(kError, tag, format, args);
+    va_end(args);
+}
+
+} // namespace logging
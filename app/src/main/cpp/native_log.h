@@ -0,0 +1,11 @@
+#pragma once
+
+// Logging for code that also builds on a development host: logcat on Android, stderr elsewhere.
+// Android-only sources (JNI, GL) keep using <android/log.h> directly.
+namespace logging {
+
+void info(const char *tag, const char *format, ...) __attribute__((format(printf, 2, 3)));
+void warn(const char *tag, const char *format, ...) __attribute__((format(printf, 2, 3)));
+void error(const char *tag, const char *format, ...) __attribute__((format(printf, 2, 3)));
+
+} // namespace logging
@@ -0,0 +1,74 @@
+#include "parallel_for.h"
+
+#include <algorithm>
+
+ParallelFor::ParallelFor(int threads) {
+    for (int slot = 1; slot < std::max(threads, 1); ++slot) {
+        workers_.emplace_back(&ParallelFor::work, this, slot);
+    }
+}
+
+ParallelFor::~ParallelFor() {
+    {
+        std::lock_guard<std::mutex> lock(mutex_);
+        stopping_ = true;
+    }
+    start_.notify_all();
+    for (std::thread &worker : workers_) {
+        worker.join();
+    }
+}
+
+void ParallelFor::run(size_t count, size_t grain, const Body &body) {
+    if (count == 0) {
+        return;
+    }
+    auto slices = static_cast<int>(std::min<size_t>(static_cast<size_t>(threads()),
+                                                    std::max<size_t>(count / std::max<size_t>(grain, 1), 1)));
+    if (slices <= 1) {
+        body(0, count);
+        return;
+    }
+    {
+        std::lock_guard<std::mutex> lock(mutex_);
+        body_ = &body;
+        count_ = count;
+        slices_ = slices;
+        pending_ = slices - 1;
+        ++generation_;
+    }
+    start_.notify_all();
+    body(0, count / static_cast<size_t>(slices));
+
+    std::unique_lock<std::mutex> lock(mutex_);
+    done_.wait(lock, [this] { return pending_ == 0; });
+    body_ = nullptr;
+}
+
+void ParallelFor::work(int slot) {
+    uint64_t seen = 0;
+    for (;;) {
+        const Body *body;
+        size_t begin;
+        size_t end;
+        {
+            std::unique_lock<std::mutex> lock(mutex_);
+            start_.wait(lock, [&] { return stopping_ || generation_ != seen; });
+            if (stopping_) {
+                return;
+            }
+            seen = generation_;
+            if (slot >= slices_) {
+                continue;
+            }
+            body = body_;
+            begin = count_ * static_cast<size_t>(slot) / static_cast<size_t>(slices_);
+            end = count_ * static_cast<size_t>(slot + 1) / static_cast<size_t>(slices_);
+        }
+        (*body)(begin, end);
+        std::lock_guard<std::mutex> lock(mutex_);
+        if (--pending_ == 0) {
+            done_.notify_one();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+#pragma once
+
+#include <condition_variable>
+#include <cstddef>
+#include <cstdint>
+#include <functional>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+// A fixed set of worker threads that split an index range between themselves and the caller. The
+// threads persist between calls, so a run costs a wake-up rather than a thread start; run() returns
+// once every slice has finished. One caller at a time.
+class ParallelFor {
+public:
+    using Body = std::function<void(size_t begin, size_t end)>;
+
+    // `threads` includes the calling thread; 1 runs everything inline.
+    explicit ParallelFor(int threads);
+    ~ParallelFor();
+
+    ParallelFor(const ParallelFor &) = delete;
+    ParallelFor &operator=(const ParallelFor &) = delete;
+
+    int threads() const { return static_cast<int>(workers_.size()) + 1; }
+
+    // Calls body over disjoint slices of [0, count), each at least `grain` long.
+    void run(size_t count, size_t grain, const Body &body);
+
+private:
+    void work(int slot);
+
+    std::vector<std::thread> workers_;
+    std::mutex mutex_;
+    std::condition_variable start_;
+    std::condition_variable done_;
+    const Body *body_ = nullptr;
+    size_t count_ = 0;
+    int slices_ = 0;
+    uint64_t generation_ = 0;
+    int pending_ = 0;
+    bool stopping_ = false;
+};
@@ -0,0 +1,112 @@
+#include "path_follower.h"
+
+#include <algorithm>
+#include <cmath>
+
+#include "simulation.h"
+
+namespace {
+// Menger curvature of the circle through three points; 0 when they are collinear or coincide.
+float curvature(glm::vec2 a, glm::vec2 b, glm::vec2 c) {
+    glm::vec2 ab = b - a;
+    glm::vec2 bc = c - b;
+    float cross = std::fabs(ab.x * bc.y - ab.y * bc.x);
+    float lengths = glm::length(ab) * glm::length(bc) * glm::distance(a, c);
+    return lengths > 1e-9f ? 2.0f * cross / lengths : 0.0f;
+}
+} // namespace
+
+void PathFollower::setLine(const std::vector<glm::vec2> &line, bool closed, float reach) {
+    points_ = line;
+    closed_ = closed && line.size() > 2;
+    profile_.clear();
+    distances_.clear();
+    index_.build(points_, closed_, reach);
+    if (index_.empty()) {
+        return;
+    }
+    size_t n = points_.size();
+    size_t segments = closed_ ? n : n - 1;
+    distances_.assign(segments + 1, 0.0f);
+    for (size_t s = 0; s < segments; ++s) {
+        distances_[s + 1] = distances_[s] + glm::distance(points_[s], points_[(s + 1) % n]);
+    }
+
+    // Cornering limit at each point, then a backward pass so every point can still brake down to
+    // the points after it. A closed line needs a second lap for the wrap-around.
+    profile_.resize(n);
+    for (size_t i = 0; i < n; ++i) {
+        bool interior = closed_ || (i > 0 && i + 1 < n);
+        float k = interior ? curvature(points_[(i + n - 1) % n], points_[i], points_[(i + 1) % n]) : 0.0f;
+        profile_[i] = k > 1e-6f ? std::min(vehicle::kMaxSpeed, std::sqrt(options_.lateralLimit / k))
+                                : vehicle::kMaxSpeed;
+    }
+    size_t passes = closed_ ? 2 * n : n - 1;
+    for (size_t step = 0; step < passes; ++step) {
+        size_t i = (n - 1 - step % n + n - 1) % n;  // n-2, n-3, ..., wrapping on closed lines
+        size_t next = (i + 1) % n;
+        float room = profile_[next] * profile_[next] + 2.0f * options_.brakingLimit * segmentLength(static_cast<uint32_t>(i));
+        profile_[i] = std::min(profile_[i], std::sqrt(room));
+    }
+}
+
+Controls PathFollower::drive(const Car &car) {
+    Controls controls;
+    TrackProjection projection;
+    if (index_.empty() || !index_.project(car.pos, projection)) {
+        targetSpeed_ = 0.0f;
+        controls.brake = 1.0f;
+        return controls;
+    }
+    float speed = std::max(car.speed, 0.0f);
+
+    uint32_t segment = projection.segment;
+    float t = projection.t;
+    advance(segment, t, std::max(options_.minLookahead, speed * options_.lookaheadTime));
+    glm::vec2 toTarget = pointAt(segment, t) - car.pos;
+    glm::vec2 forward{std::cos(car.heading), std::sin(car.heading)};
+    float ahead = glm::dot(toTarget, forward);
+    float left = forward.x * toTarget.y - forward.y * toTarget.x;
+    float distanceSq = std::max(ahead * ahead + left * left, 1e-4f);
+    float wheelAngle = std::atan(2.0f * left / distanceSq * car.wheelbase);
+    controls.steer = glm::clamp(wheelAngle / Simulation::kSteerRange, -1.0f, 1.0f);
+
+    segment = projection.segment;
+    t = projection.t;
+    advance(segment, t, speed * options_.speedLead);
+    targetSpeed_ = profileAt(segment, t);
+    float error = targetSpeed_ - car.speed;
+    controls.throttle = glm::clamp(error * options_.pedalGain, 0.0f, 1.0f);
+    controls.brake = glm::clamp(-error * options_.pedalGain, 0.0f, 1.0f);
+    return controls;
+}
+
+void PathFollower::advance(uint32_t &segment, float &t, float distance) const {
+    float remaining = distance + segmentLength(segment) * t;
+    for (uint32_t visited = 0; visited <= segmentCount(); ++visited) {
+        float length = segmentLength(segment);
+        if (remaining <= length) {
+            t = length > 1e-6f ? remaining / length : 0.0f;
+            return;
+        }
+        if (!closed_ && segment + 1 == segmentCount()) {
+            t = 1.0f;
+            return;
+        }
+        remaining -= length;
+        segment = (segment + 1) % segmentCount();
+    }
+    t = 1.0f;
+}
+
+glm::vec2 PathFollower::pointAt(uint32_t segment, float t) const {
+    glm::vec2 a = points_[segment];
+    glm::vec2 b = points_[(segment + 1) % points_.size()];
+    return a + (b - a) * t;
+}
+
+float PathFollower::profileAt(uint32_t segment, float t) const {
+    float a = profile_[segment];
+    float b = profile_[(segment + 1) % profile_.size()];
+    return a + (b - a) * t;
+}
@@ -0,0 +1,58 @@
+#pragma once
+
+#include <vector>
+
+#include "control_input.h"
+#include "math_glm/glm.hpp"
+#include "track_index.h"
+#include "vehicle.h"
+
+// Drives a car along a reference line: the centerline when scoring tracks, or a racing line.
+// Steering is pure pursuit towards a point a speed-dependent distance ahead. Throttle and brake
+// track a speed profile that keeps lateral acceleration under a limit and leaves room to brake for
+// every corner ahead. setLine() is linear in the line length; drive() is one projection and a
+// short walk along the line.
+class PathFollower {
+public:
+    struct Options {
+        float lateralLimit = 8.0f;      // m/s^2 of cornering the profile allows
+        float brakingLimit = 15.0f;     // m/s^2 of braking the profile plans with
+        float lookaheadTime = 0.4f;     // s of travel to the steering target
+        float minLookahead = 4.0f;      // m
+        float speedLead = 0.2f;         // s ahead at which the profile speed is read
+        float pedalGain = 0.5f;         // pedal travel per m/s of speed error
+    };
+
+    PathFollower() = default;
+    explicit PathFollower(const Options &options) : options_(options) {}
+
+    // `reach` is how far from the line the car can be while projection stays exact; the track
+    // width is plenty.
+    void setLine(const std::vector<glm::vec2> &line, bool closed, float reach);
+    bool empty() const { return index_.empty(); }
+    const Options &options() const { return options_; }
+    // Planned speed at each line point.
+    const std::vector<float> &speedProfile() const { return profile_; }
+
+    // Controls for the next tick, in Simulation's units.
+    Controls drive(const Car &car);
+    // The profile speed used by the last drive().
+    float targetSpeed() const { return targetSpeed_; }
+
+private:
+    // Moves `distance` along the line from a projection; stops at the end of an open line.
+    void advance(uint32_t &segment, float &t, float distance) const;
+    glm::vec2 pointAt(uint32_t segment, float t) const;
+    float profileAt(uint32_t segment, float t) const;
+    float segmentLength(uint32_t segment) const { return distances_[segment + 1] - distances_[segment]; }
+    uint32_t segmentCount() const { return static_cast<uint32_t>(distances_.size() - 1); }
+
+    Options options_;
+    std::vector<glm::vec2> points_;
+    // Arc length at the start of each segment, plus the total.
+    std::vector<float> distances_;
+    std::vector<float> profile_;
+    bool closed_ = false;
+    TrackIndex index_;
+    float targetSpeed_ = 0.0f;
+};
@@ -0,0 +1,236 @@
+#include "physics_thread.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cinttypes>
+#include <cstdio>
+#include <utility>
+
+#include "native_log.h"
+
+namespace {
+constexpr const char *kTag = "PhysicsThread";
+constexpr int kMinTickRate = 10;
+constexpr int kMaxTickRate = 1000;
+
+int32_t toMillis(float seconds) {
+    return seconds < 0.0f ? -1 : static_cast<int32_t>(seconds * 1000.0f + 0.5f);
+}
+} // namespace
+
+PhysicsThread::PhysicsThread(const ControlInput &controls, TripleBuffer<SimFrame> &output)
+        : controls_(controls), output_(output) {}
+
+PhysicsThread::~PhysicsThread() {
+    stop();
+}
+
+void PhysicsThread::start() {
+    std::lock_guard<std::mutex> lock(lifecycleMutex_);
+    if (thread_.joinable()) {
+        return;
+    }
+    running_.store(true, std::memory_order_relaxed);
+    thread_ = std::thread(&PhysicsThread::run, this);
+}
+
+void PhysicsThread::stop() {
+    std::lock_guard<std::mutex> lock(lifecycleMutex_);
+    if (!thread_.joinable()) {
+        return;
+    }
+    running_.store(false, std::memory_order_relaxed);
+    thread_.join();
+}
+
+void PhysicsThread::setTickRate(int hz) {
+    int clamped = std::max(kMinTickRate, std::min(hz, kMaxTickRate));
+    tickNanos_.store(1000000000LL / clamped, std::memory_order_relaxed);
+}
+
+void PhysicsThread::loadTrack(std::shared_ptr<const TrackGeometry> geometry) {
+    std::lock_guard<std::mutex> lock(pendingMutex_);
+    pendingGeometry_ = std::move(geometry);
+    trackPending_.store(true, std::memory_order_release);
+}
+
+void PhysicsThread::startRecording(std::string path) {
+    std::lock_guard<std::mutex> lock(pendingMutex_);
+    pendingRecordPath_ = std::move(path);
+    recordingChanged_ = true;
+    commandsPending_.store(true, std::memory_order_release);
+}
+
+void PhysicsThread::stopRecording() {
+    startRecording(std::string());
+}
+
+void PhysicsThread::loadGhost(std::unique_ptr<GhostCar> ghost) {
+    std::lock_guard<std::mutex> lock(pendingMutex_);
+    pendingGhost_ = std::move(ghost);
+    ghostChanged_ = true;
+    commandsPending_.store(true, std::memory_order_release);
+}
+
+PhysicsThread::Stats PhysicsThread::stats() const {
+    Stats stats;
+    stats.ticks = ticks_.load(std::memory_order_relaxed);
+    stats.catchUpTicks = catchUpTicks_.load(std::memory_order_relaxed);
+    stats.missedTicks = missedTicks_.load(std::memory_order_relaxed);
+    stats.catchUpNanos = catchUpNanos_.load(std::memory_order_relaxed);
+    stats.completedLaps = completedLaps_.load(std::memory_order_relaxed);
+    stats.lastLapMillis = lastLapMillis_.load(std::memory_order_relaxed);
+    stats.bestLapMillis = bestLapMillis_.load(std::memory_order_relaxed);
+    stats.knockedCones = knockedCones_.load(std::memory_order_relaxed);
+    stats.telemetryFrames = recorder_.framesRecorded();
+    stats.telemetryBytes = recorder_.bytesRecorded();
+    stats.telemetryDropped = recorder_.framesDropped();
+    return stats;
+}
+
+std::string PhysicsThread::describe() const {
+    Stats current = stats();
+    char text[288];
+    int length = std::snprintf(text, sizeof(text),
+                  "sim %.0f Hz  ticks %" PRIu64 "  catch-up %" PRIu64 " (%.1f ms)  missed %" PRIu64,
+                  1.0e9 / static_cast<double>(tickNanos_.load(std::memory_order_relaxed)),
+                  current.ticks, current.catchUpTicks,
+                  static_cast<double>(current.catchUpNanos) / 1.0e6, current.missedTicks);
+    if (current.completedLaps > 0 && length > 0 && static_cast<size_t>(length) < sizeof(text)) {
+        length += std::snprintf(text + length, sizeof(text) - static_cast<size_t>(length),
+                                "\nlaps %d  last %.3f s  best %.3f s", current.completedLaps,
+                                current.lastLapMillis / 1000.0, current.bestLapMillis / 1000.0);
+    }
+    if (current.knockedCones > 0 && length > 0 && static_cast<size_t>(length) < sizeof(text)) {
+        length += std::snprintf(text + length, sizeof(text) - static_cast<size_t>(length),
+                                "\ncones %d  +%.0f s", current.knockedCones,
+                                current.knockedCones * static_cast<double>(Simulation::kConePenaltySeconds));
+    }
+    if (current.telemetryFrames > 0 && length > 0 && static_cast<size_t>(length) < sizeof(text)) {
+        std::snprintf(text + length, sizeof(text) - static_cast<size_t>(length),
+                      "\ntelemetry %" PRIu64 " frames  %.1f KiB  dropped %" PRIu64, current.telemetryFrames,
+                      static_cast<double>(current.telemetryBytes) / 1024.0, current.telemetryDropped);
+    }
+    return text;
+}
+
+void PhysicsThread::run() {
+    auto tick = Clock::duration(std::chrono::nanoseconds(tickNanos_.load(std::memory_order_relaxed)));
+    adoptPendingCommands();
+    adoptPendingTrack();
+    previous_ = simulation_.state();
+    Clock::time_point due = Clock::now();
+    publish(due, tick);
+
+    while (running_.load(std::memory_order_relaxed)) {
+        tick = std::chrono::nanoseconds(tickNanos_.load(std::memory_order_relaxed));
+        due += tick;
+        std::this_thread::sleep_until(due);
+
+        Clock::time_point now = Clock::now();
+        auto behind = static_cast<int64_t>((now - due) / tick);
+        if (behind > kMaxCatchUpTicks) {
+            // Too far behind to catch up without stalling the renderer; drop the excess.
+            auto dropped = behind - kMaxCatchUpTicks;
+            missedTicks_.fetch_add(static_cast<uint64_t>(dropped), std::memory_order_relaxed);
+            due += tick * dropped;
+            behind = kMaxCatchUpTicks;
+        }
+
+        float dt = std::chrono::duration<float>(tick).count();
+        Clock::time_point catchUpStart{};
+        for (int64_t i = 0; i <= behind; ++i) {
+            if (i == 1) {
+                catchUpStart = Clock::now();
+            }
+            if (commandsPending_.load(std::memory_order_acquire)) {
+                adoptPendingCommands();
+            }
+            if (trackPending_.load(std::memory_order_acquire)) {
+                adoptPendingTrack();
+            }
+            previous_ = simulation_.state();
+            simulation_.tick(dt, controls_.load());
+            record();
+            if (i > 0) {
+                due += tick;
+            }
+        }
+        if (behind > 0) {
+            catchUpTicks_.fetch_add(static_cast<uint64_t>(behind), std::memory_order_relaxed);
+            catchUpNanos_.fetch_add(std::chrono::duration_cast<std::chrono::nanoseconds>(
+                    Clock::now() - catchUpStart).count(), std::memory_order_relaxed);
+        }
+        ticks_.fetch_add(static_cast<uint64_t>(behind + 1), std::memory_order_relaxed);
+        publish(due, tick);
+    }
+    logging::info(kTag, "Stopped: %s", describe().c_str());
+}
+
+void PhysicsThread::adoptPendingTrack() {
+    std::shared_ptr<const TrackGeometry> geometry;
+    {
+        std::lock_guard<std::mutex> lock(pendingMutex_);
+        if (!trackPending_.load(std::memory_order_relaxed)) {
+            return;
+        }
+        geometry = std::move(pendingGeometry_);
+        trackPending_.store(false, std::memory_order_relaxed);
+    }
+    simulation_.loadTrack(std::move(geometry));
+    // No motion to interpolate across a track change.
+    previous_ = simulation_.state();
+    if (recorder_.recording()) {
+        beginRecording();
+    }
+}
+
+void PhysicsThread::adoptPendingCommands() {
+    std::lock_guard<std::mutex> lock(pendingMutex_);
+    commandsPending_.store(false, std::memory_order_relaxed);
+    if (ghostChanged_) {
+        ghostChanged_ = false;
+        simulation_.setGhost(std::move(pendingGhost_));
+    }
+    if (recordingChanged_) {
+        recordingChanged_ = false;
+        recordPath_ = std::move(pendingRecordPath_);
+        if (recordPath_.empty()) {
+            recorder_.end();
+        } else {
+            beginRecording();
+        }
+    }
+}
+
+void PhysicsThread::beginRecording() {
+    auto tickHz = static_cast<int>(std::lround(1.0e9 / static_cast<double>(tickNanos_.load(std::memory_order_relaxed))));
+    recordEvery_ = std::max(1, (tickHz + telemetry::kDefaultRateHz - 1) / telemetry::kDefaultRateHz);
+    ticksSinceRecord_ = 0;
+    recorder_.begin(recordPath_, std::max(1, tickHz / recordEvery_));
+    recorder_.record(telemetry::sampleOf(simulation_.state().car));
+}
+
+void PhysicsThread::record() {
+    if (!recorder_.recording() || ++ticksSinceRecord_ < recordEvery_) {
+        return;
+    }
+    ticksSinceRecord_ = 0;
+    recorder_.record(telemetry::sampleOf(simulation_.state().car));
+}
+
+void PhysicsThread::publish(Clock::time_point dueTime, Clock::duration tick) {
+    SimFrame &frame = output_.writeBuffer();
+    frame.previous = previous_;
+    frame.current = simulation_.state();
+    frame.currentTime = dueTime;
+    frame.tick = std::chrono::duration_cast<std::chrono::nanoseconds>(tick);
+    output_.publish();
+
+    const SimState &state = simulation_.state();
+    const LapStatus &laps = state.laps;
+    completedLaps_.store(laps.completedLaps, std::memory_order_relaxed);
+    lastLapMillis_.store(toMillis(laps.lastLapTime), std::memory_order_relaxed);
+    bestLapMillis_.store(toMillis(laps.bestLapTime), std::memory_order_relaxed);
+    knockedCones_.store(state.knockedCones, std::memory_order_relaxed);
+}
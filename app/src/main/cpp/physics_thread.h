@@ -0,0 +1,117 @@
+#pragma once
+
+#include <atomic>
+#include <chrono>
+#include <cstdint>
+#include <memory>
+#include <mutex>
+#include <string>
+#include <thread>
+
+#include "control_input.h"
+#include "simulation.h"
+#include "telemetry_recorder.h"
+#include "track_mesh.h"
+#include "triple_buffer.h"
+
+// The two most recent simulation states, so the renderer can interpolate between them.
+struct SimFrame {
+    SimState previous;
+    SimState current;
+    // When `current` became due, and the tick length that separates it from `previous`.
+    std::chrono::steady_clock::time_point currentTime{};
+    std::chrono::nanoseconds tick{0};
+};
+
+// Runs a Simulation on its own thread at a fixed tick rate. When the thread falls behind it runs up
+// to kMaxCatchUpTicks extra ticks per wake-up and drops the rest, counting both instead of
+// silently stretching simulated time.
+class PhysicsThread {
+public:
+    static constexpr int kMaxCatchUpTicks = 5;
+
+    struct Stats {
+        uint64_t ticks = 0;
+        uint64_t catchUpTicks = 0;
+        uint64_t missedTicks = 0;
+        int64_t catchUpNanos = 0;
+        int completedLaps = 0;
+        // -1 until the first lap is completed.
+        int32_t lastLapMillis = -1;
+        int32_t bestLapMillis = -1;
+        int knockedCones = 0;
+        uint64_t telemetryFrames = 0;
+        uint64_t telemetryBytes = 0;
+        uint64_t telemetryDropped = 0;
+    };
+
+    PhysicsThread(const ControlInput &controls, TripleBuffer<SimFrame> &output);
+    ~PhysicsThread();
+
+    PhysicsThread(const PhysicsThread &) = delete;
+    PhysicsThread &operator=(const PhysicsThread &) = delete;
+
+    void start();
+    void stop();
+    // Takes effect from the next tick; may be called from any thread.
+    void setTickRate(int hz);
+    // Hands a new track to the simulation; adopted at the start of the next tick.
+    void loadTrack(std::shared_ptr<const TrackGeometry> geometry);
+    // Records the player's car to `path` from the next tick, at the tick rate divided down to at
+    // most telemetry::kDefaultRateHz. The recording starts over with every track load, so it lines
+    // up with a ghost replayed from the same start. Any thread.
+    void startRecording(std::string path);
+    void stopRecording();
+    // Replaces the ghost car from the next tick; null removes it. Any thread.
+    void loadGhost(std::unique_ptr<GhostCar> ghost);
+
+    Stats stats() const;
+    std::string describe() const;
+
+private:
+    using Clock = std::chrono::steady_clock;
+
+    void run();
+    void adoptPendingTrack();
+    void adoptPendingCommands();
+    void beginRecording();
+    void record();
+    void publish(Clock::time_point dueTime, Clock::duration tick);
+
+    const ControlInput &controls_;
+    TripleBuffer<SimFrame> &output_;
+
+    // Physics thread.
+    Simulation simulation_;
+    SimState previous_;
+
+    std::mutex lifecycleMutex_;
+    std::thread thread_;
+    std::atomic<bool> running_{false};
+    std::atomic<int64_t> tickNanos_{16666667};
+
+    std::mutex pendingMutex_;
+    std::shared_ptr<const TrackGeometry> pendingGeometry_;
+    std::atomic<bool> trackPending_{false};
+    // Recording and ghost changes, under pendingMutex_.
+    bool recordingChanged_ = false;
+    std::string pendingRecordPath_;
+    bool ghostChanged_ = false;
+    std::unique_ptr<GhostCar> pendingGhost_;
+    std::atomic<bool> commandsPending_{false};
+
+    // Physics thread.
+    TelemetryRecorder recorder_;
+    std::string recordPath_;
+    int recordEvery_ = 1;
+    int ticksSinceRecord_ = 0;
+
+    std::atomic<uint64_t> ticks_{0};
+    std::atomic<uint64_t> catchUpTicks_{0};
+    std::atomic<uint64_t> missedTicks_{0};
+    std::atomic<int64_t> catchUpNanos_{0};
+    std::atomic<int> completedLaps_{0};
+    std::atomic<int32_t> lastLapMillis_{-1};
+    std::atomic<int32_t> bestLapMillis_{-1};
+    std::atomic<int> knockedCones_{0};
+};
@@ -0,0 +1,196 @@
+#include "program_cache.h"
+
+#include <android/log.h>
+#include <algorithm>
+#include <cstdint>
+#include <cstdio>
+#include <cstring>
+#include <vector>
+
+namespace {
+
+constexpr const char *kTag = "ProgramCache";
+constexpr uint32_t kMagic = 0x52534250u;
+constexpr GLint kMaxBinaryBytes = 4 * 1024 * 1024;
+
+GLuint compileShader(GLenum type, const char *source) {
+    GLuint shader = glCreateShader(type);
+    glShaderSource(shader, 1, &source, nullptr);
+    glCompileShader(shader);
+    GLint status = 0;
+    glGetShaderiv(shader, GL_COMPILE_STATUS, &status);
+    if (status != GL_TRUE) {
+        GLint length = 0;
+        glGetShaderiv(shader, GL_INFO_LOG_LENGTH, &length);
+        std::vector<char> info(static_cast<size_t>(std::max(1, length)));
+        glGetShaderInfoLog(shader, length, nullptr, info.data());
+        __android_log_print(ANDROID_LOG_ERROR, kTag, "Shader compile failed: %s", info.data());
+        glDeleteShader(shader);
+        return 0;
+    }
+    return shader;
+}
+
+GLuint linkProgram(GLuint vertexShader, GLuint fragmentShader, bool retrievable) {
+    GLuint program = glCreateProgram();
+    if (retrievable) {
+        glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+    }
+    glAttachShader(program, vertexShader);
+    glAttachShader(program, fragmentShader);
+    glLinkProgram(program);
+    GLint status = 0;
+    glGetProgramiv(program, GL_LINK_STATUS, &status);
+    if (status != GL_TRUE) {
+        GLint length = 0;
+        glGetProgramiv(program, GL_INFO_LOG_LENGTH, &length);
+        std::vector<char> info(static_cast<size_t>(std::max(1, length)));
+        glGetProgramInfoLog(program, length, nullptr, info.data());
+        __android_log_print(ANDROID_LOG_ERROR, kTag, "Program link failed: %s", info.data());
+        glDeleteProgram(program);
+        return 0;
+    }
+    return program;
+}
+
+GLuint buildFromSource(const char *vertexSource, const char *fragmentSource, bool retrievable) {
+    GLuint vertex = compileShader(GL_VERTEX_SHADER, vertexSource);
+    GLuint fragment = compileShader(GL_FRAGMENT_SHADER, fragmentSource);
+    GLuint program = 0;
+    if (vertex != 0 && fragment != 0) {
+        program = linkProgram(vertex, fragment, retrievable);
+    }
+    if (vertex != 0) {
+        glDeleteShader(vertex);
+    }
+    if (fragment != 0) {
+        glDeleteShader(fragment);
+    }
+    return program;
+}
+
+uint64_t fnv1a(uint64_t hash, const char *text) {
+    if (text == nullptr) {
+        text = "";
+    }
+    for (const char *c = text; *c != '\0'; ++c) {
+        hash ^= static_cast<uint8_t>(*c);
+        hash *= 1099511628211ull;
+    }
+    // Separator so ("ab", "c") and ("a", "bc") hash differently.
+    hash ^= 0xFFu;
+    hash *= 1099511628211ull;
+    return hash;
+}
+
+std::string cachePath(const std::string &cacheDir, const char *vertexSource, const char *fragmentSource) {
+    uint64_t hash = 14695981039346656037ull;
+    hash = fnv1a(hash, vertexSource);
+    hash = fnv1a(hash, fragmentSource);
+    hash = fnv1a(hash, reinterpret_cast<const char *>(glGetString(GL_VENDOR)));
+    hash = fnv1a(hash, reinterpret_cast<const char *>(glGetString(GL_RENDERER)));
+    hash = fnv1a(hash, reinterpret_cast<const char *>(glGetString(GL_VERSION)));
+    char name[32];
+    std::snprintf(name, sizeof(name), "/%016llx.bin", static_cast<unsigned long long>(hash));
+    return cacheDir + name;
+}
+
+bool binariesSupported() {
+    GLint formats = 0;
+    glGetIntegerv(GL_NUM_PROGRAM_BINARY_FORMATS, &formats);
+    return formats > 0;
+}
+
+GLuint loadBinary(const std::string &path, bool *rejected) {
+    FILE *file = std::fopen(path.c_str(), "rb");
+    if (file == nullptr) {
+        return 0;
+    }
+    uint32_t header[3] = {0, 0, 0};
+    std::vector<uint8_t> binary;
+    bool valid = std::fread(header, sizeof(header), 1, file) == 1
+                 && header[0] == kMagic
+                 && header[2] > 0 && header[2] <= static_cast<uint32_t>(kMaxBinaryBytes);
+    if (valid) {
+        binary.resize(header[2]);
+        valid = std::fread(binary.data(), 1, binary.size(), file) == binary.size();
+    }
+    std::fclose(file);
+
+    GLuint program = 0;
+    if (valid) {
+        program = glCreateProgram();
+        glProgramBinary(program, static_cast<GLenum>(header[1]), binary.data(),
+                        static_cast<GLsizei>(binary.size()));
+        GLint status = 0;
+        glGetProgramiv(program, GL_LINK_STATUS, &status);
+        if (status != GL_TRUE) {
+            glDeleteProgram(program);
+            program = 0;
+        }
+    }
+    if (program == 0) {
+        __android_log_print(ANDROID_LOG_INFO, kTag, "Discarding unusable program binary %s", path.c_str());
+        std::remove(path.c_str());
+        *rejected = true;
+    }
+    return program;
+}
+
+void storeBinary(const std::string &path, GLuint program) {
+    GLint length = 0;
+    glGetProgramiv(program, GL_PROGRAM_BINARY_LENGTH, &length);
+    if (length <= 0 || length > kMaxBinaryBytes) {
+        return;
+    }
+    std::vector<uint8_t> binary(static_cast<size_t>(length));
+    GLsizei written = 0;
+    GLenum format = 0;
+    glGetProgramBinary(program, length, &written, &format, binary.data());
+    if (written <= 0) {
+        return;
+    }
+
+    // Write beside the target and rename so a crash never leaves a truncated entry.
+    std::string temp = path + ".tmp";
+    FILE *file = std::fopen(temp.c_str(), "wb");
+    if (file == nullptr) {
+        __android_log_print(ANDROID_LOG_WARN, kTag, "Unable to write %s", temp.c_str());
+        return;
+    }
+    uint32_t header[3] = {kMagic, format, static_cast<uint32_t>(written)};
+    bool ok = std::fwrite(header, sizeof(header), 1, file) == 1
+              && std::fwrite(binary.data(), 1, static_cast<size_t>(written), file) == static_cast<size_t>(written);
+    ok = std::fclose(file) == 0 && ok;
+    if (!ok || std::rename(temp.c_str(), path.c_str()) != 0) {
+        std::remove(temp.c_str());
+    }
+}
+
+} // namespace
+
+GLuint loadOrBuildProgram(const std::string &cacheDir,
+                          const char *vertexSource,
+                          const char *fragmentSource,
+                          ProgramCacheResult *result) {
+    ProgramCacheResult local;
+    ProgramCacheResult &out = result != nullptr ? *result : local;
+    out = ProgramCacheResult{};
+
+    bool useCache = !cacheDir.empty() && binariesSupported();
+    if (!useCache) {
+        return buildFromSource(vertexSource, fragmentSource, false);
+    }
+
+    std::string path = cachePath(cacheDir, vertexSource, fragmentSource);
+    GLuint program = loadBinary(path, &out.rejected);
+    if (program != 0) {
+        out.fromCache = true;
+        return program;
+    }
+    program = buildFromSource(vertexSource, fragmentSource, true);
+    if (program != 0) {
+        storeBinary(path, program);
+    }
+    return program;
+}
@@ -0,0 +1,18 @@
+#pragma once
+
+#include <GLES3/gl3.h>
+#include <string>
+
+struct ProgramCacheResult {
+    bool fromCache = false;
+    bool rejected = false;
+};
+
+// Builds a program from GLSL source, going through linked binaries stored in cacheDir when the
+// driver supports them. Entries are keyed by a hash of both sources and the GL vendor, renderer
+// and version strings; a binary the driver rejects is deleted and rebuilt from source. An empty
+// cacheDir disables the cache. Returns 0 if compilation or linking fails.
+GLuint loadOrBuildProgram(const std::string &cacheDir,
+                          const char *vertexSource,
+                          const char *fragmentSource,
+                          ProgramCacheResult *result);
@@ -0,0 +1,290 @@
+#include "racing_line.h"
+
+#include <algorithm>
+#include <cmath>
+
+namespace {
+constexpr size_t kMinPoints = 8;
+// A slight pull towards the centerline, so a straight, where any straight line is as good as
+// another, still has a single solution. Far below the curvature terms of even a gentle bend.
+constexpr double kRegularization = 1e-9;
+// Metres an offset may cross a limit before it counts as outside.
+constexpr double kLimitTolerance = 1e-3;
+// Passes that may let held points go. Letting go of points can cycle on long tracks, a few points
+// in one corner swapping in and out pass after pass; after these passes points are only held.
+constexpr int kReleasePasses = 12;
+} // namespace
+
+bool RacingLineSolver::solve(const TrackGeometry &track, RacingLine &out) {
+    out.points.clear();
+    out.offsets.clear();
+    out.closed = track.closed;
+    out.iterations = 0;
+    if (track.samples.size() < 2 || track.totalLength <= 0.0f) {
+        return false;
+    }
+    resample(track);
+    size_t n = centers_.size();
+    if (n < kMinPoints) {
+        return false;
+    }
+    limit_ = std::max(0.0f, track.width * 0.5f - options_.margin);
+    assemble();
+
+    held_.assign(n, 0);
+    int iteration = 0;
+    bool settled = false;
+    while (!settled && iteration < std::max(1, options_.maxIterations)) {
+        ++iteration;
+        solveHeld();
+        nextHeld_ = held_;
+        bool added = holdOutside();
+        bool released = iteration <= kReleasePasses && releaseHeld();
+        held_.swap(nextHeld_);
+        // Past the release passes the first line inside the limits is kept. What letting go of the
+        // remaining points would gain is a fraction of a percent of the summed curvature.
+        settled = !added && !released;
+    }
+
+    out.iterations = iteration;
+    out.points.resize(n);
+    out.offsets.resize(n);
+    for (size_t i = 0; i < n; ++i) {
+        auto offset = static_cast<float>(std::max(-limit_, std::min(limit_, offsets_[i])));
+        out.offsets[i] = offset;
+        out.points[i] = centers_[i] + normals_[i] * offset;
+    }
+    return true;
+}
+
+void RacingLineSolver::resample(const TrackGeometry &track) {
+    const std::vector<glm::vec2> &samples = track.samples;
+    size_t count = samples.size();
+    closed_ = track.closed;
+    size_t segments = closed_ ? count : count - 1;
+    double length = 0.0;
+    for (size_t s = 0; s < segments; ++s) {
+        length += glm::distance(samples[s], samples[(s + 1) % count]);
+    }
+    auto intervals = static_cast<size_t>(std::max(1.0, std::round(length / std::max(options_.spacing, 0.01f))));
+    size_t n = closed_ ? intervals : intervals + 1;
+    spacing_ = length / static_cast<double>(intervals);
+
+    centers_.resize(n);
+    size_t segment = 0;
+    double segmentStart = 0.0;
+    double segmentLength = glm::distance(samples[0], samples[1]);
+    for (size_t i = 0; i < n; ++i) {
+        double at = spacing_ * static_cast<double>(i);
+        while (segment + 1 < segments && at > segmentStart + segmentLength) {
+            segmentStart += segmentLength;
+            ++segment;
+            segmentLength = glm::distance(samples[segment], samples[(segment + 1) % count]);
+        }
+        auto t = static_cast<float>(segmentLength > 0.0 ? std::min(1.0, (at - segmentStart) / segmentLength) : 0.0);
+        centers_[i] = glm::mix(samples[segment], samples[(segment + 1) % count], t);
+    }
+
+    normals_.resize(n);
+    turns_.resize(n);
+    for (size_t i = 0; i < n; ++i) {
+        bool interior = closed_ || (i > 0 && i + 1 < n);
+        size_t previous = closed_ ? (i + n - 1) % n : (i > 0 ? i - 1 : 0);
+        size_t next = closed_ ? (i + 1) % n : std::min(i + 1, n - 1);
+        glm::vec2 tangent = centers_[next] - centers_[previous];
+        float tangentLength = glm::length(tangent);
+        tangent = tangentLength > 1e-6f ? tangent / tangentLength : glm::vec2(1.0f, 0.0f);
+        normals_[i] = {-tangent.y, tangent.x};
+        glm::vec2 in = centers_[i] - centers_[previous];
+        glm::vec2 out = centers_[next] - centers_[i];
+        turns_[i] = interior ? std::atan2(static_cast<double>(in.x) * out.y - static_cast<double>(in.y) * out.x,
+                                          static_cast<double>(in.x) * out.x + static_cast<double>(in.y) * out.y)
+                             : 0.0;
+    }
+}
+
+// Curvature residual at point i, times spacing^2:
+//   turn_i * spacing + turn_i^2 a_i + (a_{i-1} - 2 a_i + a_{i+1}).
+// H and b collect the sum of their squares; each residual touches three neighbouring offsets.
+void RacingLineSolver::assemble() {
+    size_t n = centers_.size();
+    baseDiagonal_.assign(n, kRegularization);
+    baseFirst_.assign(n, 0.0);
+    baseSecond_.assign(n, 0.0);
+    baseRhs_.assign(n, 0.0);
+    size_t begin = closed_ ? 0 : 1;
+    size_t end = closed_ ? n : n - 1;
+    for (size_t i = begin; i < end; ++i) {
+        size_t previous = (i + n - 1) % n;
+        size_t next = (i + 1) % n;
+        double middle = -2.0 + turns_[i] * turns_[i];
+        double constant = turns_[i] * spacing_;
+        baseDiagonal_[previous] += 1.0;
+        baseDiagonal_[i] += middle * middle;
+        baseDiagonal_[next] += 1.0;
+        baseFirst_[previous] += middle;
+        baseFirst_[i] += middle;
+        baseSecond_[previous] += 1.0;
+        baseRhs_[previous] -= constant;
+        baseRhs_[i] -= middle * constant;
+        baseRhs_[next] -= constant;
+    }
+}
+
+void RacingLineSolver::solveHeld() {
+    size_t n = centers_.size();
+    diagonal_ = baseDiagonal_;
+    first_ = baseFirst_;
+    second_ = baseSecond_;
+    rhs_ = baseRhs_;
+    // Move each held offset to the right-hand side and leave an identity row in its place. An open
+    // system has no entries across its ends, so the wrapped indices only ever meet zeros there.
+    for (size_t i = 0; i < n; ++i) {
+        if (held_[i] == 0) {
+            continue;
+        }
+        double value = held_[i] * limit_;
+        size_t before2 = (i + n - 2) % n;
+        size_t before1 = (i + n - 1) % n;
+        rhs_[before2] -= second_[before2] * value;
+        rhs_[before1] -= first_[before1] * value;
+        rhs_[(i + 1) % n] -= first_[i] * value;
+        rhs_[(i + 2) % n] -= second_[i] * value;
+        second_[before2] = 0.0;
+        first_[before1] = 0.0;
+        first_[i] = 0.0;
+        second_[i] = 0.0;
+        diagonal_[i] = 1.0;
+        rhs_[i] = value;
+    }
+
+    if (!closed_) {
+        factor(n);
+        offsets_ = rhs_;
+        substitute(n, offsets_);
+        return;
+    }
+
+    // Closed: the last two offsets form a border. The leading m rows are an ordinary banded system,
+    // and the border columns U couple to rows 0, 1, m-2 and m-1 only. With Y = H11^-1 U and
+    // z = H11^-1 b1, the border solves the 2x2 Schur system (H22 - U^T Y) x2 = b2 - U^T z, and
+    // then x1 = z - Y x2.
+    size_t m = n - 2;
+    factor(m);
+    const double a0 = second_[n - 2];
+    const double aM2 = second_[n - 4];
+    const double aM1 = first_[n - 3];
+    const double b0 = first_[n - 1];
+    const double b1 = second_[n - 1];
+    const double bM1 = second_[n - 3];
+    auto dotA = [&](const std::vector<double> &x) { return a0 * x[0] + aM2 * x[m - 2] + aM1 * x[m - 1]; };
+    auto dotB = [&](const std::vector<double> &x) { return b0 * x[0] + b1 * x[1] + bM1 * x[m - 1]; };
+
+    offsets_.assign(rhs_.begin(), rhs_.begin() + static_cast<std::ptrdiff_t>(m));
+    substitute(m, offsets_);
+    borderA_.assign(m, 0.0);
+    borderA_[0] = a0;
+    borderA_[m - 2] = aM2;
+    borderA_[m - 1] = aM1;
+    substitute(m, borderA_);
+    borderB_.assign(m, 0.0);
+    borderB_[0] = b0;
+    borderB_[1] = b1;
+    borderB_[m - 1] = bM1;
+    substitute(m, borderB_);
+
+    double s00 = diagonal_[n - 2] - dotA(borderA_);
+    double s01 = first_[n - 2] - dotA(borderB_);
+    double s11 = diagonal_[n - 1] - dotB(borderB_);
+    double r0 = rhs_[n - 2] - dotA(offsets_);
+    double r1 = rhs_[n - 1] - dotB(offsets_);
+    double determinant = s00 * s11 - s01 * s01;
+    double x0 = (s11 * r0 - s01 * r1) / determinant;
+    double x1 = (s00 * r1 - s01 * r0) / determinant;
+    for (size_t i = 0; i < m; ++i) {
+        offsets_[i] -= borderA_[i] * x0 + borderB_[i] * x1;
+    }
+    offsets_.push_back(x0);
+    offsets_.push_back(x1);
+}
+
+void RacingLineSolver::factor(size_t count) {
+    d_.resize(count);
+    l1_.resize(count);
+    l2_.resize(count);
+    for (size_t i = 0; i < count; ++i) {
+        double l2 = i >= 2 ? second_[i - 2] / d_[i - 2] : 0.0;
+        double l1 = i >= 1 ? (first_[i - 1] - (i >= 2 ? l2 * d_[i - 2] * l1_[i - 1] : 0.0)) / d_[i - 1] : 0.0;
+        double d = diagonal_[i];
+        d -= i >= 1 ? l1 * l1 * d_[i - 1] : 0.0;
+        d -= i >= 2 ? l2 * l2 * d_[i - 2] : 0.0;
+        l1_[i] = l1;
+        l2_[i] = l2;
+        d_[i] = d;
+    }
+}
+
+void RacingLineSolver::substitute(size_t count, std::vector<double> &x) const {
+    for (size_t i = 1; i < count; ++i) {
+        x[i] -= l1_[i] * x[i - 1] + (i >= 2 ? l2_[i] * x[i - 2] : 0.0);
+    }
+    for (size_t i = 0; i < count; ++i) {
+        x[i] /= d_[i];
+    }
+    for (size_t i = count - 1; i-- > 0;) {
+        x[i] -= l1_[i + 1] * x[i + 1] + (i + 2 < count ? l2_[i + 2] * x[i + 2] : 0.0);
+    }
+}
+
+double RacingLineSolver::gradient(size_t i) const {
+    size_t n = centers_.size();
+    size_t before2 = (i + n - 2) % n;
+    size_t before1 = (i + n - 1) % n;
+    return baseDiagonal_[i] * offsets_[i] + baseFirst_[before1] * offsets_[before1]
+           + baseFirst_[i] * offsets_[(i + 1) % n] + baseSecond_[before2] * offsets_[before2]
+           + baseSecond_[i] * offsets_[(i + 2) % n] - baseRhs_[i];
+}
+
+// Holding every point past a limit at once overshoots: the line bends around the held points and
+// the next solve lets most of them go. Holding only the worst point of each stretch that crosses a
+// limit, the way a string pulled taut touches the inside of a corner at its apex, settles quickly.
+bool RacingLineSolver::holdOutside() {
+    size_t n = centers_.size();
+    auto outside = [&](size_t i, int side) {
+        return held_[i] == 0 && offsets_[i] * side > limit_ + kLimitTolerance;
+    };
+    // On a closed track, start the scan where no stretch can be cut in two.
+    size_t start = 0;
+    while (closed_ && start < n && (outside(start, 1) || outside(start, -1))) {
+        ++start;
+    }
+    bool added = false;
+    for (size_t k = 0; k < n;) {
+        size_t i = (start + k) % n;
+        int side = offsets_[i] > 0.0 ? 1 : -1;
+        if (!outside(i, side)) {
+            ++k;
+            continue;
+        }
+        size_t worst = i;
+        for (; k < n && outside((start + k) % n, side); ++k) {
+            size_t j = (start + k) % n;
+            worst = std::fabs(offsets_[j]) > std::fabs(offsets_[worst]) ? j : worst;
+        }
+        nextHeld_[worst] = static_cast<int8_t>(side);
+        added = true;
+    }
+    return added;
+}
+
+bool RacingLineSolver::releaseHeld() {
+    size_t n = centers_.size();
+    bool released = false;
+    for (size_t i = 0; i < n; ++i) {
+        if (held_[i] != 0 && gradient(i) * held_[i] > 0.0) {
+            nextHeld_[i] = 0;
+            released = true;
+        }
+    }
+    return released;
+}
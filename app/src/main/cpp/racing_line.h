@@ -0,0 +1,93 @@
+#pragma once
+
+#include <cstddef>
+#include <cstdint>
+#include <vector>
+
+#include "math_glm/glm.hpp"
+#include "track_mesh.h"
+
+// A line through the track, as points a fixed spacing apart along the centerline, each moved
+// `offsets[i]` metres along the centerline's left normal.
+struct RacingLine {
+    std::vector<glm::vec2> points;
+    std::vector<float> offsets;
+    bool closed = false;
+    // Passes the solve took; see RacingLineSolver.
+    int iterations = 0;
+};
+
+// Minimum-curvature line inside the track limits. The centerline is resampled every `spacing`
+// metres and each point may move sideways by an offset a, bounded by the track edges less a margin.
+// To first order the curvature of the offset line is k + k^2 a + a'', with k the centerline
+// curvature, so with a'' as a second difference the squared curvature summed over the points is a
+// quadratic in the offsets whose normal equations are banded: five diagonals, wrapping around on a
+// closed track. Each pass factors them as LDL^T, with a closed track's wrap-around coupling folded
+// into a 2x2 Schur complement, and solves: linear in the number of points. The limits are an
+// active set. After each solve the worst point of every stretch that crosses a limit is held at
+// that limit, and held points the line now pulls away from are let go. The passes track the
+// corners, not the points, so a few tens of them settle a track of any length.
+//
+// A solver owns its working buffers, so once they have grown to the longest track seen, further
+// solves allocate nothing. Not thread-safe; one solver per thread.
+class RacingLineSolver {
+public:
+    struct Options {
+        float spacing = 2.0f;       // m between line points
+        float margin = 1.5f;        // m kept clear of each track edge
+        int maxIterations = 64;     // passes; the line is clamped to the limits if they run out
+    };
+
+    RacingLineSolver() = default;
+    explicit RacingLineSolver(const Options &options) : options_(options) {}
+
+    // False when the track is too short to solve; `out` is then empty.
+    bool solve(const TrackGeometry &track, RacingLine &out);
+
+private:
+    void resample(const TrackGeometry &track);
+    void assemble();
+    // Solves for offsets_ with the held points fixed at their limits.
+    void solveHeld();
+    // LDL^T of the leading `count` rows of the working bands.
+    void factor(size_t count);
+    // Solves with those factors, in place.
+    void substitute(size_t count, std::vector<double> &x) const;
+    // (H a - b)_i for the full system: how the summed curvature changes as offset i grows.
+    double gradient(size_t i) const;
+    // Mark changes to the held points in nextHeld_ from the last solve; true if there were any.
+    bool holdOutside();
+    bool releaseHeld();
+
+    Options options_;
+    bool closed_ = false;
+    double limit_ = 0.0;
+    // Resampled centerline, its left normals, and the signed turn at each point (curvature times
+    // spacing).
+    std::vector<glm::vec2> centers_;
+    std::vector<glm::vec2> normals_;
+    std::vector<double> turns_;
+    double spacing_ = 0.0;
+    // Normal equations H a = b: the diagonal, first and second superdiagonals, each entry (i, i+1)
+    // and (i, i+2) indexed by i and wrapping on closed tracks. The base copies hold the full
+    // system, the working ones the system with the held offsets eliminated. Doubles: the system is
+    // only loosely conditioned over long straights.
+    std::vector<double> baseDiagonal_;
+    std::vector<double> baseFirst_;
+    std::vector<double> baseSecond_;
+    std::vector<double> baseRhs_;
+    std::vector<double> diagonal_;
+    std::vector<double> first_;
+    std::vector<double> second_;
+    std::vector<double> rhs_;
+    // -1, 0 or +1: held at the right limit, free, or held at the left limit.
+    std::vector<int8_t> held_;
+    std::vector<int8_t> nextHeld_;
+    std::vector<double> offsets_;
+    // LDL^T factors, and the border columns of a closed system solved against the leading block.
+    std::vector<double> d_;
+    std::vector<double> l1_;
+    std::vector<double> l2_;
+    std::vector<double> borderA_;
+    std::vector<double> borderB_;
+};
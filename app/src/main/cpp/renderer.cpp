@@ -3,16 +3,27 @@
 #include <android/log.h>
 #include <algorithm>
 #include <cmath>
-#include <limits>
+#include <cstdio>
+#include <cstring>
 #include <utility>
 #include <vector>
 
+#include "frustum.h"
+#include "program_cache.h"
 #include "shader_sources.h"
+#include "trace.h"
 
 namespace {
 
 constexpr const char *kTag = "Renderer";
-constexpr float kPhysicsStep = 1.0f / 60.0f;
+constexpr float kFarPlane = 500.0f;
+// Chunks farther than this from the camera are skipped even when inside the frustum.
+constexpr float kDrawDistance = kFarPlane;
+// Height of the racing line over the surface, enough to win the depth test.
+constexpr float kLineLift = 0.05f;
+// Minimap texture edge in pixels, and its on-screen edge as a fraction of the shorter screen side.
+constexpr GLsizei kMinimapSize = 512;
+constexpr float kMinimapScreenFraction = 0.3f;
 
 Renderer gRenderer;
 
@@ -27,41 +38,39 @@ void checkGlError(const char *label) {
 void checkGlError(const char *) {}
 #endif
 
-GLuint compileShader(GLenum type, const char *source) {
-    GLuint shader = glCreateShader(type);
-    glShaderSource(shader, 1, &source, nullptr);
-    glCompileShader(shader);
-    GLint status = 0;
-    glGetShaderiv(shader, GL_COMPILE_STATUS, &status);
-    if (status != GL_TRUE) {
-        GLint length = 0;
-        glGetShaderiv(shader, GL_INFO_LOG_LENGTH, &length);
-        std::vector<char> info(static_cast<size_t>(std::max(1, length)));
-        glGetShaderInfoLog(shader, length, nullptr, info.data());
-        __android_log_print(ANDROID_LOG_ERROR, kTag, "Shader compile failed: %s", info.data());
-        glDeleteShader(shader);
-        return 0;
-    }
-    return shader;
+// Blends the two latest ticks so motion is smooth at any display rate; the view trails the
+// simulation by one tick.
+SimState interpolate(const SimFrame &frame, std::chrono::steady_clock::time_point now) {
+    if (frame.tick.count() <= 0) {
+        return frame.current;
+    }
+    float alpha = std::chrono::duration<float>(now - frame.currentTime).count()
+                  / std::chrono::duration<float>(frame.tick).count();
+    alpha = glm::clamp(alpha, 0.0f, 1.0f);
+    SimState state = frame.current;
+    const SimState &from = frame.previous;
+    const SimState &to = frame.current;
+    state.car.pos = glm::mix(from.car.pos, to.car.pos, alpha);
+    state.car.speed = from.car.speed + (to.car.speed - from.car.speed) * alpha;
+    float turn = std::remainder(to.car.heading - from.car.heading, 2.0f * static_cast<float>(M_PI));
+    state.car.heading = from.car.heading + turn * alpha;
+    state.ghost.pos = glm::mix(from.ghost.pos, to.ghost.pos, alpha);
+    state.ghost.heading = from.ghost.heading + (to.ghost.heading - from.ghost.heading) * alpha;
+    state.cameraPos = glm::mix(from.cameraPos, to.cameraPos, alpha);
+    state.cameraTarget = glm::mix(from.cameraTarget, to.cameraTarget, alpha);
+    return state;
 }
 
-GLuint linkProgram(GLuint vertexShader, GLuint fragmentShader) {
-    GLuint program = glCreateProgram();
-    glAttachShader(program, vertexShader);
-    glAttachShader(program, fragmentShader);
-    glLinkProgram(program);
-    GLint status = 0;
-    glGetProgramiv(program, GL_LINK_STATUS, &status);
-    if (status != GL_TRUE) {
-        GLint length = 0;
-        glGetProgramiv(program, GL_INFO_LOG_LENGTH, &length);
-        std::vector<char> info(static_cast<size_t>(std::max(1, length)));
-        glGetProgramInfoLog(program, length, nullptr, info.data());
-        __android_log_print(ANDROID_LOG_ERROR, kTag, "Program link failed: %s", info.data());
-        glDeleteProgram(program);
-        return 0;
-    }
-    return program;
+std::vector<glm::vec2> toPoints(const float *xy, int count) {
+    std::vector<glm::vec2> points;
+    if (xy == nullptr || count <= 0) {
+        return points;
+    }
+    points.reserve(static_cast<size_t>(count));
+    for (int i = 0; i < count; ++i) {
+        points.emplace_back(xy[i * 2], xy[i * 2 + 1]);
+    }
+    return points;
 }
 
 } // namespace
@@ -71,172 +80,277 @@ Renderer &GetRenderer() {
 }
 
 void Renderer::init() {
-    std::lock_guard<std::mutex> lock(mutex_);
     if (initialized_) {
         return;
     }
 
-    GLuint vertex = compileShader(GL_VERTEX_SHADER, shaders::kVertexShader);
-    GLuint fragment = compileShader(GL_FRAGMENT_SHADER, shaders::kFragmentShader);
-    if (vertex == 0 || fragment == 0) {
-        return;
+    initStartTime_ = std::chrono::steady_clock::now();
+    std::string programCacheDir;
+    {
+        std::lock_guard<std::mutex> lock(programCacheMutex_);
+        programCacheDir = programCacheDir_;
     }
-
-    program_ = linkProgram(vertex, fragment);
-    glDeleteShader(vertex);
-    glDeleteShader(fragment);
-
+    ProgramCacheResult cacheResult;
+    program_ = loadOrBuildProgram(programCacheDir, shaders::kVertexShader, shaders::kFragmentShader,
+                                  &cacheResult);
+    programFromCache_ = cacheResult.fromCache;
     if (program_ == 0) {
         return;
     }
 
-    glGenVertexArrays(1, &vao_);
-    glGenBuffers(1, &vbo_);
-    glGenBuffers(1, &ibo_);
+    for (BufferSet &set : buffers_) {
+        glGenVertexArrays(1, &set.vao);
+        glGenBuffers(1, &set.vbo);
+        glGenBuffers(1, &set.ibo);
+    }
+    glGenVertexArrays(1, &racingLine_.vao);
+    glGenBuffers(1, &racingLine_.vbo);
+    // The track mesh's vertex layout, so the one program draws both.
+    auto lineStride = static_cast<GLsizei>(5 * sizeof(float));
+    glBindVertexArray(racingLine_.vao);
+    glBindBuffer(GL_ARRAY_BUFFER, racingLine_.vbo);
+    glEnableVertexAttribArray(0);
+    glEnableVertexAttribArray(1);
+    glVertexAttribPointer(0, 3, GL_FLOAT, GL_FALSE, lineStride, nullptr);
+    glVertexAttribPointer(1, 2, GL_FLOAT, GL_FALSE, lineStride, reinterpret_cast<void *>(3 * sizeof(float)));
+    glBindVertexArray(0);
 
     uMvpLocation_ = glGetUniformLocation(program_, "uMvp");
     uColorLocation_ = glGetUniformLocation(program_, "uColor");
+    initMinimap(programCacheDir);
 
     glEnable(GL_DEPTH_TEST);
     glEnable(GL_CULL_FACE);
     glCullFace(GL_BACK);
 
     initialized_ = true;
-    lastFrameTime_ = std::chrono::steady_clock::now();
-    physicsAccumulator_ = 0.0f;
+    firstFramePending_ = true;
     checkGlError("init");
 }
 
+void Renderer::setProgramCacheDir(const std::string &path) {
+    std::lock_guard<std::mutex> lock(programCacheMutex_);
+    programCacheDir_ = path;
+}
+
 void Renderer::resize(int width, int height) {
-    std::lock_guard<std::mutex> lock(mutex_);
     viewportWidth_ = std::max(width, 1);
     viewportHeight_ = std::max(height, 1);
     float aspect = static_cast<float>(viewportWidth_) / static_cast<float>(viewportHeight_);
-    projection_ = glm::perspective(glm::radians(60.0f), aspect, 0.1f, 500.0f);
+    projection_ = glm::perspective(glm::radians(60.0f), aspect, 0.1f, kFarPlane);
 }
 
-void Renderer::render() {
-    std::lock_guard<std::mutex> lock(mutex_);
+bool Renderer::render() {
     if (!initialized_) {
-        return;
+        return false;
     }
 
     auto now = std::chrono::steady_clock::now();
-    if (lastFrameTime_.time_since_epoch().count() == 0) {
-        lastFrameTime_ = now;
+    frameStats_.beginFrame(now);
+    frameStats_.beginPhase(FrameStats::kHandoff, now);
+    if (loader_.hasReady()) {
+        if (std::unique_ptr<LoadedTrack> track = loader_.takeReady()) {
+            // A newer track replaces one that is still streaming in.
+            upload_.track = std::move(track);
+            upload_.allocated = false;
+            upload_.vertexBytesDone = 0;
+            upload_.indexBytesDone = 0;
+        }
     }
-    float delta = std::chrono::duration<float>(now - lastFrameTime_).count();
-    lastFrameTime_ = now;
-    delta = std::min(delta, 0.25f);
-    physicsAccumulator_ += delta;
-
-    while (physicsAccumulator_ >= kPhysicsStep) {
-        updatePhysics(kPhysicsStep);
-        physicsAccumulator_ -= kPhysicsStep;
+    if (upload_.track) {
+        frameStats_.beginPhase(FrameStats::kUpload, std::chrono::steady_clock::now());
+        trace::Scope span("uploadMesh", upload_.track->traceId);
+        continueUpload();
     }
-
-    if (meshDirty_) {
-        uploadMeshLocked();
+    if (loader_.hasRacingLine()) {
+        if (std::unique_ptr<LoadedRacingLine> line = loader_.takeRacingLine()) {
+            pendingLine_ = std::move(line);
+        }
+    }
+    if (pendingLine_) {
+        if (pendingLine_->traceId == meshTraceId_) {
+            stageRacingLine(pendingLine_->line);
+            pendingLine_.reset();
+        } else if (!upload_.track || pendingLine_->traceId != upload_.track->traceId) {
+            // Neither the track on screen nor the one streaming in; it will never be drawn.
+            pendingLine_.reset();
+        }
+    }
+    if (!racingLine_.staged.empty()) {
+        continueRacingLine();
     }
+    simFrames_.update();
+    SimState state = interpolate(simFrames_.read(), now);
 
+    frameStats_.beginPhase(FrameStats::kDraw, std::chrono::steady_clock::now());
+    if (minimap_.dirty) {
+        redrawMinimap();
+    }
     int width = std::max(viewportWidth_, 1);
     int height = std::max(viewportHeight_, 1);
     glViewport(0, 0, width, height);
     glClearColor(0.02f, 0.04f, 0.08f, 1.0f);
     glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
 
-    if (mesh_.indices.empty() || vao_ == 0 || program_ == 0) {
-        return;
+    BufferSet &front = buffers_[front_];
+    if (front.indexCount == 0 || front.vao == 0 || program_ == 0) {
+        frameStats_.endFrame(std::chrono::steady_clock::now(), true);
+        return false;
     }
 
-    glm::mat4 view = glm::lookAt(cameraPos_, cameraTarget_, glm::vec3(0.0f, 1.0f, 0.0f));
+    glm::mat4 view = glm::lookAt(state.cameraPos, state.cameraTarget, glm::vec3(0.0f, 1.0f, 0.0f));
     glm::mat4 mvp = projection_ * view;
 
     glUseProgram(program_);
     glUniformMatrix4fv(uMvpLocation_, 1, GL_FALSE, glm::value_ptr(mvp));
     glUniform4f(uColorLocation_, 0.3f, 0.7f, 0.3f, 1.0f);
 
-    glBindVertexArray(vao_);
-    glDrawElements(GL_TRIANGLES, static_cast<GLsizei>(mesh_.indices.size()), GL_UNSIGNED_INT, nullptr);
-    glBindVertexArray(0);
+    drawChunks(front, mvp, state.cameraPos);
+    if (racingLine_.vertexCount > 0) {
+        glUniform4f(uColorLocation_, 1.0f, 0.2f, 0.1f, 1.0f);
+        glBindVertexArray(racingLine_.vao);
+        glDrawArrays(racingLine_.mode, 0, racingLine_.vertexCount);
+        glBindVertexArray(0);
+    }
+    compositeMinimap(state);
 
     checkGlError("render");
+    frameStats_.endFrame(std::chrono::steady_clock::now(), true);
+
+    bool firstTrackFrame = trackFramePending_;
+    if (trackFramePending_) {
+        trackFramePending_ = false;
+        trace::instant("firstTrackFrame", meshTraceId_);
+    }
+    if (firstFramePending_) {
+        firstFramePending_ = false;
+        float millis = std::chrono::duration<float, std::milli>(
+                std::chrono::steady_clock::now() - initStartTime_).count();
+        __android_log_print(ANDROID_LOG_INFO, kTag, "First frame after %.1f ms (%s program cache)",
+                            millis, programFromCache_ ? "warm" : "cold");
+    }
+    return firstTrackFrame;
 }
 
 void Renderer::onTouch(int action, float x, float y) {
-    std::lock_guard<std::mutex> lock(mutex_);
     if (action == 1 /*UP*/ || action == 3 /*CANCEL*/) {
-        steerInput_ = 0.0f;
-        throttleInput_ = 0.0f;
-        brakeInput_ = 0.0f;
+        controls_.release();
         return;
     }
-    float steer = glm::clamp(x, -1.0f, 1.0f);
-    float drive = glm::clamp(y, -1.0f, 1.0f);
-    steerInput_ = steer;
-    if (drive >= 0.0f) {
-        throttleInput_ = drive;
-        brakeInput_ = 0.0f;
-    } else {
-        throttleInput_ = 0.0f;
-        brakeInput_ = -drive;
-    }
+    controls_.set(glm::clamp(x, -1.0f, 1.0f), glm::clamp(y, -1.0f, 1.0f));
 }
 
-void Renderer::loadTrack(const float *xy, int count, float width) {
+void Renderer::loadTrack(const float *xy, int count, float width, const float *leftCones, int leftCount,
+                         const float *rightCones, int rightCount, int64_t traceId) {
     if (xy == nullptr || count < 2) {
         __android_log_print(ANDROID_LOG_WARN, kTag, "nativeLoadTrack called with insufficient data");
         return;
     }
 
-    std::vector<glm::vec2> points;
-    points.reserve(static_cast<size_t>(count));
-    for (int i = 0; i < count; ++i) {
-        points.emplace_back(xy[i * 2], xy[i * 2 + 1]);
-    }
+    TrackRequest request;
+    request.centerline = toPoints(xy, count);
+    request.leftCones = toPoints(leftCones, leftCount);
+    request.rightCones = toPoints(rightCones, rightCount);
+    request.width = width;
+    request.traceId = traceId;
+    controls_.release();
+    loader_.submit(std::move(request));
+}
 
-    TrackMesh mesh;
-    TrackGeometry geometry;
-    if (!buildTrackMesh(points, width, mesh, geometry)) {
-        return;
+void Renderer::setPaused(bool paused) {
+    if (paused) {
+        physics_.stop();
+    } else {
+        physics_.start();
     }
+}
 
-    std::lock_guard<std::mutex> lock(mutex_);
-    mesh_ = std::move(mesh);
-    geometry_ = std::move(geometry);
-    meshDirty_ = true;
-    car_ = Car{};
-    if (!geometry_.samples.empty()) {
-        car_.pos = geometry_.samples.front();
-        glm::vec2 tangent = geometry_.tangents.front();
-        if (glm::length(tangent) < 1e-4f && geometry_.samples.size() > 1) {
-            tangent = geometry_.samples[1] - geometry_.samples[0];
-        }
-        if (glm::length(tangent) < 1e-4f) {
-            tangent = {1.0f, 0.0f};
-        }
-        car_.heading = std::atan2(tangent.y, tangent.x);
+void Renderer::setPhysicsTickRate(int hz) {
+    physics_.setTickRate(hz);
+}
+
+void Renderer::startRecording(const std::string &path) {
+    physics_.startRecording(path);
+}
+
+void Renderer::stopRecording() {
+    physics_.stopRecording();
+}
+
+bool Renderer::loadGhost(const std::string &path) {
+    auto ghost = std::make_unique<GhostCar>();
+    if (!ghost->load(path)) {
+        clearGhost();
+        return false;
     }
-    steerInput_ = 0.0f;
-    throttleInput_ = 0.0f;
-    brakeInput_ = 0.0f;
-    lastNearestSample_ = 0;
-    resetCamera();
+    physics_.loadGhost(std::move(ghost));
+    return true;
+}
+
+void Renderer::clearGhost() {
+    physics_.loadGhost(nullptr);
+}
+
+std::string Renderer::describeStats() const {
+    DrawCounts counts = drawCounts();
+    char text[96];
+    std::snprintf(text, sizeof(text), "track chunks %u/%u  triangles %u", counts.drawnChunks, counts.chunks,
+                  counts.drawnTriangles);
+    return frameStats_.format() + "\n" + physics_.describe() + "\n" + text;
+}
+
+Renderer::DrawCounts Renderer::drawCounts() const {
+    DrawCounts counts;
+    counts.chunks = chunkCount_.load(std::memory_order_relaxed);
+    counts.drawnChunks = drawnChunks_.load(std::memory_order_relaxed);
+    counts.drawnTriangles = drawnTriangles_.load(std::memory_order_relaxed);
+    return counts;
 }
 
 void Renderer::destroy() {
-    if (vao_ != 0) {
-        glDeleteVertexArrays(1, &vao_);
-        vao_ = 0;
+    for (BufferSet &set : buffers_) {
+        if (set.vao != 0) {
+            glDeleteVertexArrays(1, &set.vao);
+        }
+        if (set.vbo != 0) {
+            glDeleteBuffers(1, &set.vbo);
+        }
+        if (set.ibo != 0) {
+            glDeleteBuffers(1, &set.ibo);
+        }
+        if (set.retired != nullptr) {
+            glDeleteSync(set.retired);
+        }
+        set = BufferSet{};
+    }
+    if (racingLine_.vao != 0) {
+        glDeleteVertexArrays(1, &racingLine_.vao);
+    }
+    if (racingLine_.vbo != 0) {
+        glDeleteBuffers(1, &racingLine_.vbo);
     }
-    if (vbo_ != 0) {
-        glDeleteBuffers(1, &vbo_);
-        vbo_ = 0;
+    racingLine_ = LineOverlay{};
+    pendingLine_.reset();
+    if (minimap_.program != 0) {
+        glDeleteProgram(minimap_.program);
     }
-    if (ibo_ != 0) {
-        glDeleteBuffers(1, &ibo_);
-        ibo_ = 0;
+    if (minimap_.framebuffer != 0) {
+        glDeleteFramebuffers(1, &minimap_.framebuffer);
     }
+    if (minimap_.texture != 0) {
+        glDeleteTextures(1, &minimap_.texture);
+    }
+    if (minimap_.quadVao != 0) {
+        glDeleteVertexArrays(1, &minimap_.quadVao);
+    }
+    if (minimap_.quadVbo != 0) {
+        glDeleteBuffers(1, &minimap_.quadVbo);
+    }
+    if (minimap_.markerVao != 0) {
+        glDeleteVertexArrays(1, &minimap_.markerVao);
+    }
+    minimap_ = Minimap{};
+    upload_ = Upload{};
     if (program_ != 0) {
         glDeleteProgram(program_);
         program_ = 0;
@@ -244,74 +358,332 @@ void Renderer::destroy() {
     initialized_ = false;
 }
 
-void Renderer::uploadMeshLocked() {
-    if (mesh_.vertices.empty() || mesh_.indices.empty() || vao_ == 0) {
+void Renderer::initMinimap(const std::string &programCacheDir) {
+    minimap_.program = loadOrBuildProgram(programCacheDir, shaders::kOverlayVertexShader,
+                                          shaders::kOverlayFragmentShader, nullptr);
+    if (minimap_.program == 0) {
+        __android_log_print(ANDROID_LOG_WARN, kTag, "Overlay program failed; no minimap");
         return;
     }
-    glBindVertexArray(vao_);
-    glBindBuffer(GL_ARRAY_BUFFER, vbo_);
-    glBufferData(GL_ARRAY_BUFFER,
-                 static_cast<GLsizeiptr>(mesh_.vertices.size() * sizeof(float)),
-                 mesh_.vertices.data(),
-                 GL_STATIC_DRAW);
-    glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo_);
-    glBufferData(GL_ELEMENT_ARRAY_BUFFER,
-                 static_cast<GLsizeiptr>(mesh_.indices.size() * sizeof(uint32_t)),
-                 mesh_.indices.data(),
-                 GL_STATIC_DRAW);
-
-    GLsizei strideBytes = static_cast<GLsizei>(mesh_.stride * sizeof(float));
+    minimap_.uMvp = glGetUniformLocation(minimap_.program, "uMvp");
+    minimap_.uColor = glGetUniformLocation(minimap_.program, "uColor");
+    minimap_.uTextured = glGetUniformLocation(minimap_.program, "uTextured");
+    minimap_.uPointSize = glGetUniformLocation(minimap_.program, "uPointSize");
+    glUseProgram(minimap_.program);
+    glUniform1i(glGetUniformLocation(minimap_.program, "uTexture"), 0);
+    glUseProgram(0);
+
+    glGenTextures(1, &minimap_.texture);
+    glBindTexture(GL_TEXTURE_2D, minimap_.texture);
+    glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, kMinimapSize, kMinimapSize, 0, GL_RGBA, GL_UNSIGNED_BYTE, nullptr);
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+    glBindTexture(GL_TEXTURE_2D, 0);
+    glGenFramebuffers(1, &minimap_.framebuffer);
+    glBindFramebuffer(GL_FRAMEBUFFER, minimap_.framebuffer);
+    glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, minimap_.texture, 0);
+    GLenum status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+    glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    if (status != GL_FRAMEBUFFER_COMPLETE) {
+        __android_log_print(ANDROID_LOG_WARN, kTag, "Minimap framebuffer incomplete (0x%x); no minimap", status);
+        glDeleteFramebuffers(1, &minimap_.framebuffer);
+        minimap_.framebuffer = 0;
+        return;
+    }
+
+    // A quad over the whole viewport, which compositeMinimap() shrinks to the corner.
+    const float quad[] = {-1.0f, -1.0f, 0.0f, 0.0f, 0.0f, 1.0f, -1.0f, 0.0f, 1.0f, 0.0f,
+                          -1.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f, 0.0f, 1.0f, 1.0f};
+    auto stride = static_cast<GLsizei>(5 * sizeof(float));
+    glGenVertexArrays(1, &minimap_.quadVao);
+    glGenBuffers(1, &minimap_.quadVbo);
+    glBindVertexArray(minimap_.quadVao);
+    glBindBuffer(GL_ARRAY_BUFFER, minimap_.quadVbo);
+    glBufferData(GL_ARRAY_BUFFER, sizeof(quad), quad, GL_STATIC_DRAW);
     glEnableVertexAttribArray(0);
-    glVertexAttribPointer(0, 3, GL_FLOAT, GL_FALSE, strideBytes, reinterpret_cast<void *>(0));
     glEnableVertexAttribArray(1);
-    glVertexAttribPointer(1, 2, GL_FLOAT, GL_FALSE, strideBytes, reinterpret_cast<void *>(3 * sizeof(float)));
+    glVertexAttribPointer(0, 3, GL_FLOAT, GL_FALSE, stride, nullptr);
+    glVertexAttribPointer(1, 2, GL_FLOAT, GL_FALSE, stride, reinterpret_cast<void *>(3 * sizeof(float)));
+    glBindVertexArray(0);
+    glGenVertexArrays(1, &minimap_.markerVao);
+    checkGlError("initMinimap");
+}
 
+void Renderer::redrawMinimap() {
+    minimap_.dirty = false;
+    minimap_.drawn = false;
+    BufferSet &set = buffers_[front_];
+    if (minimap_.framebuffer == 0 || set.chunks.empty()) {
+        return;
+    }
+    trace::Scope span("redrawMinimap", meshTraceId_);
+    glm::vec3 low = set.chunks.front().boundsMin;
+    glm::vec3 high = set.chunks.front().boundsMax;
+    for (const TrackChunk &chunk : set.chunks) {
+        low.x = std::min(low.x, chunk.boundsMin.x);
+        low.z = std::min(low.z, chunk.boundsMin.z);
+        high.x = std::max(high.x, chunk.boundsMax.x);
+        high.z = std::max(high.z, chunk.boundsMax.z);
+    }
+    // Square, with a little border, looking straight down with -z at the top.
+    float half = std::max(0.55f * std::max(high.x - low.x, high.z - low.z), 1.0f);
+    glm::vec3 center{(low.x + high.x) * 0.5f, 0.0f, (low.z + high.z) * 0.5f};
+    glm::mat4 view = glm::lookAt(center + glm::vec3(0.0f, 10.0f, 0.0f), center, glm::vec3(0.0f, 0.0f, -1.0f));
+    minimap_.projection = glm::ortho(-half, half, -half, half, 1.0f, 20.0f) * view;
+
+    glBindFramebuffer(GL_FRAMEBUFFER, minimap_.framebuffer);
+    glViewport(0, 0, kMinimapSize, kMinimapSize);
+    glClearColor(0.0f, 0.0f, 0.0f, 0.35f);
+    glClear(GL_COLOR_BUFFER_BIT);
+    glDisable(GL_DEPTH_TEST);
+    glDisable(GL_CULL_FACE);
+    glUseProgram(minimap_.program);
+    glUniformMatrix4fv(minimap_.uMvp, 1, GL_FALSE, glm::value_ptr(minimap_.projection));
+    glUniform1f(minimap_.uTextured, 0.0f);
+    glUniform4f(minimap_.uColor, 0.75f, 0.75f, 0.75f, 1.0f);
+    glBindVertexArray(set.vao);
+    for (const TrackChunk &chunk : set.chunks) {
+        if (chunk.baseVertex != set.attribBase) {
+            pointAttributes(set, chunk.baseVertex);
+        }
+        glDrawElements(GL_TRIANGLES, static_cast<GLsizei>(chunk.indexCount), GL_UNSIGNED_SHORT,
+                       reinterpret_cast<void *>(chunk.firstIndex * sizeof(uint16_t)));
+    }
+    if (racingLine_.vertexCount > 0) {
+        glUniform4f(minimap_.uColor, 1.0f, 0.2f, 0.1f, 1.0f);
+        glBindVertexArray(racingLine_.vao);
+        glDrawArrays(racingLine_.mode, 0, racingLine_.vertexCount);
+    }
     glBindVertexArray(0);
-    meshDirty_ = false;
-    checkGlError("uploadMesh");
+    glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    glEnable(GL_DEPTH_TEST);
+    glEnable(GL_CULL_FACE);
+    minimap_.drawn = true;
+    checkGlError("redrawMinimap");
 }
 
-void Renderer::updatePhysics(float dt) {
-    car_.steer = steerInput_ * 0.5f;
-    car_.throttle = throttleInput_;
-    car_.brake = brakeInput_;
-    step(car_, dt);
-
-    if (!geometry_.samples.empty()) {
-        size_t bestIndex = lastNearestSample_;
-        float bestDistance = std::numeric_limits<float>::max();
-        size_t searchStart = (bestIndex > 5) ? bestIndex - 5 : 0;
-        size_t searchEnd = std::min(geometry_.samples.size(), bestIndex + 6);
-        for (size_t i = searchStart; i < searchEnd; ++i) {
-            float distance = glm::distance(car_.pos, geometry_.samples[i]);
-            if (distance < bestDistance) {
-                bestDistance = distance;
-                bestIndex = i;
+void Renderer::compositeMinimap(const SimState &state) {
+    if (!minimap_.drawn) {
+        return;
+    }
+    int width = std::max(viewportWidth_, 1);
+    int height = std::max(viewportHeight_, 1);
+    auto size = static_cast<GLsizei>(static_cast<float>(std::min(width, height)) * kMinimapScreenFraction);
+    GLsizei margin = size / 16;
+    glViewport(width - size - margin, height - size - margin, size, size);
+    glDisable(GL_DEPTH_TEST);
+    glEnable(GL_BLEND);
+    glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+    glUseProgram(minimap_.program);
+
+    glm::mat4 identity = glm::mat4::identity();
+    glUniformMatrix4fv(minimap_.uMvp, 1, GL_FALSE, glm::value_ptr(identity));
+    glUniform1f(minimap_.uTextured, 1.0f);
+    glActiveTexture(GL_TEXTURE0);
+    glBindTexture(GL_TEXTURE_2D, minimap_.texture);
+    glBindVertexArray(minimap_.quadVao);
+    glDrawArrays(GL_TRIANGLE_STRIP, 0, 4);
+
+    glUniformMatrix4fv(minimap_.uMvp, 1, GL_FALSE, glm::value_ptr(minimap_.projection));
+    glUniform1f(minimap_.uTextured, 0.0f);
+    glUniform1f(minimap_.uPointSize, std::max(4.0f, static_cast<float>(size) / 24.0f));
+    glBindVertexArray(minimap_.markerVao);
+    if (state.ghostActive) {
+        glUniform4f(minimap_.uColor, 0.6f, 0.8f, 1.0f, 0.8f);
+        glVertexAttrib3f(0, state.ghost.pos.x, 0.0f, state.ghost.pos.y);
+        glDrawArrays(GL_POINTS, 0, 1);
+    }
+    glUniform4f(minimap_.uColor, 1.0f, 0.85f, 0.1f, 1.0f);
+    glVertexAttrib3f(0, state.car.pos.x, 0.0f, state.car.pos.y);
+    glDrawArrays(GL_POINTS, 0, 1);
+
+    glBindVertexArray(0);
+    glBindTexture(GL_TEXTURE_2D, 0);
+    glDisable(GL_BLEND);
+    glEnable(GL_DEPTH_TEST);
+    glViewport(0, 0, width, height);
+    checkGlError("compositeMinimap");
+}
+
+void Renderer::continueUpload() {
+    BufferSet &back = buffers_[1 - front_];
+    const TrackMesh &mesh = upload_.track->mesh;
+    auto vertexBytes = static_cast<GLsizeiptr>(mesh.vertices.size() * sizeof(float));
+    auto indexBytes = static_cast<GLsizeiptr>(mesh.indices.size() * sizeof(uint16_t));
+    if (vertexBytes == 0 || indexBytes == 0 || back.vao == 0) {
+        upload_ = Upload{};
+        return;
+    }
+
+    if (!upload_.allocated) {
+        // Unsynchronized writes are only safe once the GPU has finished reading the back set.
+        if (back.retired != nullptr) {
+            if (glClientWaitSync(back.retired, 0, 0) == GL_TIMEOUT_EXPIRED) {
+                return;
             }
+            glDeleteSync(back.retired);
+            back.retired = nullptr;
+        }
+        // Element array bindings belong to the bound VAO; keep the back set's VAO untouched.
+        glBindVertexArray(0);
+        glBindBuffer(GL_ARRAY_BUFFER, back.vbo);
+        if (back.vboCapacity < vertexBytes) {
+            glBufferData(GL_ARRAY_BUFFER, vertexBytes, nullptr, GL_STATIC_DRAW);
+            back.vboCapacity = vertexBytes;
         }
-        lastNearestSample_ = bestIndex;
-        glm::vec2 nearest = geometry_.samples[bestIndex];
-        glm::vec2 offset = car_.pos - nearest;
-        float offsetLength = glm::length(offset);
-        float maxOffset = geometry_.width * 0.45f;
-        if (offsetLength > maxOffset && offsetLength > 1e-4f) {
-            offset = offset * (maxOffset / offsetLength);
-            car_.pos = nearest + offset;
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, back.ibo);
+        if (back.iboCapacity < indexBytes) {
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indexBytes, nullptr, GL_STATIC_DRAW);
+            back.iboCapacity = indexBytes;
         }
+        upload_.allocated = true;
     }
 
-    glm::vec2 forward2{std::cos(car_.heading), std::sin(car_.heading)};
-    glm::vec3 target{car_.pos.x, 0.5f, car_.pos.y};
-    glm::vec3 desiredPos = target - glm::vec3(forward2.x, 0.0f, forward2.y) * 8.0f + glm::vec3(0.0f, 3.0f, 0.0f);
-    float smoothing = 1.0f - std::exp(-dt * 6.0f);
-    cameraPos_ = glm::mix(cameraPos_, desiredPos, smoothing);
-    cameraTarget_ = glm::mix(cameraTarget_, target, smoothing);
+    // Copies the next slice of one buffer; returns false if the driver lost the mapped contents.
+    GLsizeiptr budget = kUploadBytesPerFrame;
+    auto copySlice = [&budget](GLenum target, GLuint buffer, const void *source, GLsizeiptr total,
+                               GLsizeiptr &done) {
+        if (done >= total || budget <= 0) {
+            return true;
+        }
+        GLsizeiptr length = std::min(total - done, budget);
+        glBindBuffer(target, buffer);
+        void *destination = glMapBufferRange(target, done, length,
+                                             GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT
+                                             | GL_MAP_UNSYNCHRONIZED_BIT);
+        if (destination == nullptr) {
+            glBufferSubData(target, done, length, static_cast<const char *>(source) + done);
+        } else {
+            std::memcpy(destination, static_cast<const char *>(source) + done, static_cast<size_t>(length));
+            if (glUnmapBuffer(target) == GL_FALSE) {
+                return false;
+            }
+        }
+        done += length;
+        budget -= length;
+        return true;
+    };
+    glBindVertexArray(0);
+    if (!copySlice(GL_ARRAY_BUFFER, back.vbo, mesh.vertices.data(), vertexBytes, upload_.vertexBytesDone)
+        || !copySlice(GL_ELEMENT_ARRAY_BUFFER, back.ibo, mesh.indices.data(), indexBytes,
+                      upload_.indexBytesDone)) {
+        __android_log_print(ANDROID_LOG_WARN, kTag, "Buffer contents lost during upload; restarting");
+        upload_.vertexBytesDone = 0;
+        upload_.indexBytesDone = 0;
+        return;
+    }
+    checkGlError("uploadMesh");
+    if (upload_.vertexBytesDone == vertexBytes && upload_.indexBytesDone == indexBytes) {
+        swapBuffers();
+    }
 }
 
-void Renderer::resetCamera() {
-    glm::vec2 forward2{std::cos(car_.heading), std::sin(car_.heading)};
-    glm::vec3 target{car_.pos.x, 0.5f, car_.pos.y};
-    cameraTarget_ = target;
-    cameraPos_ = target - glm::vec3(forward2.x, 0.0f, forward2.y) * 8.0f + glm::vec3(0.0f, 3.0f, 0.0f);
+void Renderer::swapBuffers() {
+    int backIndex = 1 - front_;
+    BufferSet &back = buffers_[backIndex];
+    TrackMesh &mesh = upload_.track->mesh;
+    back.strideBytes = static_cast<GLsizei>(mesh.stride * sizeof(float));
+    glBindVertexArray(back.vao);
+    glEnableVertexAttribArray(0);
+    glEnableVertexAttribArray(1);
+    pointAttributes(back, 0);
+    glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, back.ibo);
+    glBindVertexArray(0);
+    back.indexCount = static_cast<GLsizei>(mesh.indices.size());
+    back.chunks = std::move(mesh.chunks);
+    chunkCount_.store(static_cast<uint32_t>(back.chunks.size()), std::memory_order_relaxed);
+
+    // Everything that drew from the old front set has been submitted by now.
+    BufferSet &old = buffers_[front_];
+    if (old.indexCount > 0) {
+        if (old.retired != nullptr) {
+            glDeleteSync(old.retired);
+        }
+        old.retired = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+    front_ = backIndex;
+
+    // The simulation switches tracks on the frame the new mesh first draws.
+    physics_.loadTrack(upload_.track->geometry);
+    meshTraceId_ = upload_.track->traceId;
+    trackFramePending_ = true;
+    minimap_.dirty = true;
+    // The old track's line must not draw over the new one, even if no line follows for it.
+    racingLine_.vertexCount = 0;
+    racingLine_.staged.clear();
+    racingLine_.bytesDone = 0;
+    upload_ = Upload{};
+    checkGlError("swapBuffers");
 }
 
+void Renderer::stageRacingLine(const RacingLine &line) {
+    if (racingLine_.vao == 0) {
+        return;
+    }
+    racingLine_.vertexCount = 0;
+    racingLine_.mode = line.closed ? GL_LINE_LOOP : GL_LINE_STRIP;
+    racingLine_.staged.clear();
+    racingLine_.staged.reserve(line.points.size() * 5);
+    for (const glm::vec2 &point : line.points) {
+        racingLine_.staged.insert(racingLine_.staged.end(), {point.x, kLineLift, point.y, 0.5f, 0.0f});
+    }
+    racingLine_.bytesDone = 0;
+    auto bytes = static_cast<GLsizeiptr>(racingLine_.staged.size() * sizeof(float));
+    if (racingLine_.vboCapacity < bytes) {
+        glBindBuffer(GL_ARRAY_BUFFER, racingLine_.vbo);
+        glBufferData(GL_ARRAY_BUFFER, bytes, nullptr, GL_STATIC_DRAW);
+        racingLine_.vboCapacity = bytes;
+    }
+}
+
+void Renderer::continueRacingLine() {
+    auto total = static_cast<GLsizeiptr>(racingLine_.staged.size() * sizeof(float));
+    GLsizeiptr length = std::min(total - racingLine_.bytesDone, kUploadBytesPerFrame);
+    glBindBuffer(GL_ARRAY_BUFFER, racingLine_.vbo);
+    glBufferSubData(GL_ARRAY_BUFFER, racingLine_.bytesDone, length,
+                    reinterpret_cast<const char *>(racingLine_.staged.data()) + racingLine_.bytesDone);
+    racingLine_.bytesDone += length;
+    if (racingLine_.bytesDone == total) {
+        racingLine_.vertexCount = static_cast<GLsizei>(racingLine_.staged.size() / 5);
+        racingLine_.staged.clear();
+        minimap_.dirty = true;
+    }
+    checkGlError("uploadRacingLine");
+}
+
+void Renderer::drawChunks(BufferSet &set, const glm::mat4 &mvp, const glm::vec3 &eye) {
+    Frustum frustum = Frustum::fromMatrix(mvp);
+    float rangeSq = kDrawDistance * kDrawDistance;
+    uint32_t drawnChunks = 0;
+    uint32_t drawnIndices = 0;
+    glBindVertexArray(set.vao);
+    for (const TrackChunk &chunk : set.chunks) {
+        float dx = std::max({chunk.boundsMin.x - eye.x, 0.0f, eye.x - chunk.boundsMax.x});
+        float dz = std::max({chunk.boundsMin.z - eye.z, 0.0f, eye.z - chunk.boundsMax.z});
+        if (dx * dx + dz * dz > rangeSq || !frustum.intersects(chunk.boundsMin, chunk.boundsMax)) {
+            continue;
+        }
+        if (chunk.baseVertex != set.attribBase) {
+            pointAttributes(set, chunk.baseVertex);
+        }
+        glDrawElements(GL_TRIANGLES, static_cast<GLsizei>(chunk.indexCount), GL_UNSIGNED_SHORT,
+                       reinterpret_cast<void *>(chunk.firstIndex * sizeof(uint16_t)));
+        ++drawnChunks;
+        drawnIndices += chunk.indexCount;
+    }
+    glBindVertexArray(0);
+    drawnChunks_.store(drawnChunks, std::memory_order_relaxed);
+    drawnTriangles_.store(drawnIndices / 3, std::memory_order_relaxed);
+}
+
+void Renderer::pointAttributes(BufferSet &set, uint32_t baseVertex) {
+    // OpenGL ES 3.0 has no base-vertex draws; offsetting the attributes does the same job.
+    auto offset = static_cast<uintptr_t>(baseVertex) * static_cast<uintptr_t>(set.strideBytes);
+    glBindBuffer(GL_ARRAY_BUFFER, set.vbo);
+    glVertexAttribPointer(0, 3, GL_FLOAT, GL_FALSE, set.strideBytes, reinterpret_cast<void *>(offset));
+    glVertexAttribPointer(1, 2, GL_FLOAT, GL_FALSE, set.strideBytes,
+                          reinterpret_cast<void *>(offset + 3 * sizeof(float)));
+    set.attribBase = baseVertex;
+}
@@ -1,58 +1,173 @@
 #pragma once
 
 #include <GLES3/gl3.h>
+#include <atomic>
 #include <chrono>
+#include <cstdint>
+#include <memory>
 #include <mutex>
+#include <string>
+#include <vector>
 
+#include "control_input.h"
+#include "frame_stats.h"
 #include "math_glm/glm.hpp"
-#include "track_mesh.h"
-#include "vehicle.h"
+#include "physics_thread.h"
+#include "track_loader.h"
+#include "triple_buffer.h"
 
+// Threading: init, resize and render run on the GL thread. The simulation ticks on its own
+// PhysicsThread while the renderer is resumed. onTouch and loadTrack are called from the UI thread
+// and never block the GL thread in steady state: controls are a lock-free atomic, simulation output
+// is published through a triple buffer and interpolated per frame, and track meshes are built by a
+// TrackLoader worker. A finished mesh streams into the back buffer set a slice per frame while the
+// front set keeps drawing, then the sets swap and the physics thread switches to the new track.
+// The track's racing line, solved on the loader's worker after the mesh, is drawn over the surface
+// from the first frame after both have arrived. A top-down minimap of the whole track is drawn into
+// a texture when the track (or its racing line) arrives, so each frame it costs one textured quad
+// and a marker per car, whatever the size of the track.
 class Renderer {
 public:
     void init();
+    void setProgramCacheDir(const std::string &path);
     void resize(int width, int height);
-    void render();
+    // Returns true for the first frame that draws a newly loaded track.
+    bool render();
     void onTouch(int action, float x, float y);
-    void loadTrack(const float *xy, int count, float width);
+    // Cone arrays are interleaved x/y like the centerline and may be null.
+    void loadTrack(const float *xy, int count, float width, const float *leftCones, int leftCount,
+                   const float *rightCones, int rightCount, int64_t traceId);
+    // Starts or stops the physics thread; called from the UI thread.
+    void setPaused(bool paused);
+    void setPhysicsTickRate(int hz);
+    // Telemetry of the player's car; see PhysicsThread::startRecording. UI thread.
+    void startRecording(const std::string &path);
+    void stopRecording();
+    // Reads a recording and races it as a ghost from the next track start; false if it is unusable,
+    // in which case any previous ghost is removed. Reads the file on the calling thread.
+    bool loadGhost(const std::string &path);
+    // Removes the ghost. The renderer outlives activities, so each session must set or clear it.
+    void clearGhost();
+
+    // Safe to read from any thread without synchronisation.
+    const FrameStats &frameStats() const { return frameStats_; }
+    std::string describeStats() const;
+
+    // Track chunks drawn in the last frame, out of the chunks in the current mesh.
+    struct DrawCounts {
+        uint32_t chunks = 0;
+        uint32_t drawnChunks = 0;
+        uint32_t drawnTriangles = 0;
+    };
+    DrawCounts drawCounts() const;
 
 private:
+    // Upper bound on bytes copied into the back buffers per frame.
+    static constexpr GLsizeiptr kUploadBytesPerFrame = 1 << 20;
+
+    struct BufferSet {
+        GLuint vao = 0;
+        GLuint vbo = 0;
+        GLuint ibo = 0;
+        GLsizeiptr vboCapacity = 0;
+        GLsizeiptr iboCapacity = 0;
+        GLsizei indexCount = 0;
+        GLsizei strideBytes = 0;
+        std::vector<TrackChunk> chunks;
+        // The vertex the attribute pointers currently start at.
+        uint32_t attribBase = 0;
+        // Signalled once the GPU is done with the last frame that drew from this set.
+        GLsync retired = nullptr;
+    };
+
+    // A loaded track on its way into the back buffer set.
+    struct Upload {
+        std::unique_ptr<LoadedTrack> track;
+        bool allocated = false;
+        GLsizeiptr vertexBytesDone = 0;
+        GLsizeiptr indexBytesDone = 0;
+    };
+
+    // The racing line drawn over the front set's track. A new line streams in like a mesh and is
+    // hidden until it is complete; swapping in another track hides the old one.
+    struct LineOverlay {
+        GLuint vao = 0;
+        GLuint vbo = 0;
+        GLsizeiptr vboCapacity = 0;
+        GLsizei vertexCount = 0;
+        GLenum mode = GL_LINE_STRIP;
+        std::vector<float> staged;
+        GLsizeiptr bytesDone = 0;
+    };
+
+    struct Minimap {
+        GLuint program = 0;
+        GLint uMvp = -1;
+        GLint uColor = -1;
+        GLint uTextured = -1;
+        GLint uPointSize = -1;
+        GLuint framebuffer = 0;
+        GLuint texture = 0;
+        GLuint quadVao = 0;
+        GLuint quadVbo = 0;
+        // No arrays enabled: markers are single points from constant attributes.
+        GLuint markerVao = 0;
+        // World to map texture, for the markers as well as the track.
+        glm::mat4 projection = glm::mat4::identity();
+        bool dirty = false;
+        // Whether the texture holds the current track; until then there is nothing to composite.
+        bool drawn = false;
+    };
+
     void destroy();
-    void uploadMeshLocked();
-    void updatePhysics(float dt);
-    void resetCamera();
+    void initMinimap(const std::string &programCacheDir);
+    void redrawMinimap();
+    void compositeMinimap(const SimState &state);
+    void continueUpload();
+    void stageRacingLine(const RacingLine &line);
+    void continueRacingLine();
+    void swapBuffers();
+    void drawChunks(BufferSet &set, const glm::mat4 &mvp, const glm::vec3 &eye);
+    static void pointAttributes(BufferSet &set, uint32_t baseVertex);
 
     bool initialized_ = false;
     GLuint program_ = 0;
-    GLuint vao_ = 0;
-    GLuint vbo_ = 0;
-    GLuint ibo_ = 0;
     GLint uMvpLocation_ = -1;
     GLint uColorLocation_ = -1;
 
     int viewportWidth_ = 0;
     int viewportHeight_ = 0;
 
-    TrackMesh mesh_;
-    TrackGeometry geometry_;
-    bool meshDirty_ = false;
+    // GL thread.
+    BufferSet buffers_[2];
+    int front_ = 0;
+    Upload upload_;
+    int64_t meshTraceId_ = 0;
+    bool trackFramePending_ = false;
+    LineOverlay racingLine_;
+    Minimap minimap_;
+    // A racing line whose track is still streaming in.
+    std::unique_ptr<LoadedRacingLine> pendingLine_;
+    glm::mat4 projection_ = glm::mat4::identity();
 
-    Car car_;
-    size_t lastNearestSample_ = 0;
+    // UI thread -> GL thread.
+    ControlInput controls_;
+    TrackLoader loader_;
 
-    float steerInput_ = 0.0f;
-    float throttleInput_ = 0.0f;
-    float brakeInput_ = 0.0f;
+    // Physics thread -> renderer.
+    TripleBuffer<SimFrame> simFrames_;
+    PhysicsThread physics_{controls_, simFrames_};
 
-    glm::vec3 cameraPos_{0.0f, 4.0f, 12.0f};
-    glm::vec3 cameraTarget_{0.0f, 0.0f, 0.0f};
-    glm::mat4 projection_ = glm::mat4::identity();
+    std::mutex programCacheMutex_;
+    std::string programCacheDir_;
+    bool programFromCache_ = false;
+    bool firstFramePending_ = false;
+    std::chrono::steady_clock::time_point initStartTime_{};
 
-    std::chrono::steady_clock::time_point lastFrameTime_{};
-    float physicsAccumulator_ = 0.0f;
-
-    std::mutex mutex_;
+    FrameStats frameStats_;
+    std::atomic<uint32_t> chunkCount_{0};
+    std::atomic<uint32_t> drawnChunks_{0};
+    std::atomic<uint32_t> drawnTriangles_{0};
 };
 
 Renderer &GetRenderer();
-
@@ -32,5 +32,38 @@ void main() {
 }
 )";
 
+// Screen overlays: flat-coloured geometry and points, or a texture, with no lighting or stripes.
+constexpr const char *kOverlayVertexShader = R"(#version 300 es
+layout(location = 0) in vec3 aPosition;
+layout(location = 1) in vec2 aUv;
+
+uniform mat4 uMvp;
+uniform float uPointSize;
+
+out vec2 vUv;
+
+void main() {
+    vUv = aUv;
+    gl_Position = uMvp * vec4(aPosition, 1.0);
+    gl_PointSize = uPointSize;
+}
+)";
+
+constexpr const char *kOverlayFragmentShader = R"(#version 300 es
+precision mediump float;
+
+in vec2 vUv;
+
+uniform sampler2D uTexture;
+uniform vec4 uColor;
+uniform float uTextured;
+
+out vec4 fragColor;
+
+void main() {
+    fragColor = mix(uColor, texture(uTexture, vUv), uTextured);
+}
+)";
+
 } // namespace shaders
 
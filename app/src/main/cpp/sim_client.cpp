@@ -0,0 +1,136 @@
+#include "sim_client.h"
+
+#include <algorithm>
+#include <cstring>
+#include <netinet/in.h>
+#include <netinet/tcp.h>
+#include <sys/socket.h>
+#include <sys/un.h>
+#include <unistd.h>
+
+#include "environment_batch.h"
+#include "native_log.h"
+#include "sim_protocol.h"
+
+using environment::kActionSize;
+using environment::kObservationSize;
+
+namespace {
+constexpr const char *kTag = "SimClient";
+}
+
+SimClient::~SimClient() {
+    close();
+}
+
+bool SimClient::connectUnix(const std::string &path) {
+    close();
+    sockaddr_un address{};
+    address.sun_family = AF_UNIX;
+    if (path.size() >= sizeof(address.sun_path)) {
+        return false;
+    }
+    std::strcpy(address.sun_path, path.c_str());
+    fd_ = socket(AF_UNIX, SOCK_STREAM, 0);
+    if (fd_ < 0 || connect(fd_, reinterpret_cast<sockaddr *>(&address), sizeof(address)) != 0) {
+        logging::error(kTag, "Cannot connect to %s", path.c_str());
+        close();
+        return false;
+    }
+    return true;
+}
+
+bool SimClient::connectTcp(int port) {
+    close();
+    sockaddr_in address{};
+    address.sin_family = AF_INET;
+    address.sin_addr.s_addr = htonl(INADDR_LOOPBACK);
+    address.sin_port = htons(static_cast<uint16_t>(port));
+    fd_ = socket(AF_INET, SOCK_STREAM, 0);
+    if (fd_ < 0 || connect(fd_, reinterpret_cast<sockaddr *>(&address), sizeof(address)) != 0) {
+        logging::error(kTag, "Cannot connect to 127.0.0.1:%d", port);
+        close();
+        return false;
+    }
+    int noDelay = 1;
+    setsockopt(fd_, IPPROTO_TCP, TCP_NODELAY, &noDelay, sizeof(noDelay));
+    return true;
+}
+
+void SimClient::close() {
+    if (fd_ >= 0) {
+        ::close(fd_);
+    }
+    fd_ = -1;
+    environments_ = 0;
+}
+
+bool SimClient::reset(uint32_t count, uint32_t seed, std::vector<float> &observations) {
+    uint32_t request[2] = {count, seed};
+    observations.resize(static_cast<size_t>(count) * kObservationSize);
+    size_t bytes = observations.size() * sizeof(float);
+    if (!sim_protocol::sendMessage(fd_, sim_protocol::kReset, request, sizeof(request))
+        || !expect(sim_protocol::kReset, bytes) || !sim_protocol::readExact(fd_, observations.data(), bytes)) {
+        close();
+        return false;
+    }
+    environments_ = count;
+    return true;
+}
+
+bool SimClient::step(const std::vector<float> &actions, std::vector<float> &observations,
+                     std::vector<float> &rewards, std::vector<uint8_t> &dones) {
+    if (actions.size() != static_cast<size_t>(environments_) * kActionSize) {
+        logging::error(kTag, "step() needs %u actions, got %zu floats", environments_, actions.size());
+        return false;
+    }
+    observations.resize(static_cast<size_t>(environments_) * kObservationSize);
+    rewards.resize(environments_);
+    dones.resize(environments_);
+    size_t observationBytes = observations.size() * sizeof(float);
+    size_t rewardBytes = rewards.size() * sizeof(float);
+    if (!sim_protocol::sendMessage(fd_, sim_protocol::kStep, actions.data(), actions.size() * sizeof(float))
+        || !expect(sim_protocol::kStep, observationBytes + rewardBytes + dones.size())
+        || !sim_protocol::readExact(fd_, observations.data(), observationBytes)
+        || !sim_protocol::readExact(fd_, rewards.data(), rewardBytes)
+        || !sim_protocol::readExact(fd_, dones.data(), dones.size())) {
+        close();
+        return false;
+    }
+    return true;
+}
+
+bool SimClient::environmentSteps(uint64_t &served) {
+    uint8_t info[sim_protocol::kInfoBytes];
+    if (!sim_protocol::sendMessage(fd_, sim_protocol::kInfo, nullptr, 0)
+        || !expect(sim_protocol::kInfo, sizeof(info)) || !sim_protocol::readExact(fd_, info, sizeof(info))) {
+        close();
+        return false;
+    }
+    std::memcpy(&served, info + 16, 8);
+    return true;
+}
+
+bool SimClient::expect(uint32_t type, size_t payload) {
+    uint8_t header[sim_protocol::kHeaderBytes];
+    if (!sim_protocol::readExact(fd_, header, sizeof(header))) {
+        logging::error(kTag, "Connection closed by the server");
+        return false;
+    }
+    uint32_t replyType;
+    uint32_t replyPayload;
+    std::memcpy(&replyType, header, 4);
+    std::memcpy(&replyPayload, header + 4, 4);
+    if (replyType == sim_protocol::kError) {
+        // The connection closes after an error, so a long message is simply cut short.
+        std::string message(std::min<uint32_t>(replyPayload, 1024), '\0');
+        sim_protocol::readExact(fd_, &message[0], message.size());
+        logging::error(kTag, "Server error: %s", message.c_str());
+        return false;
+    }
+    if (replyType != type || replyPayload != payload) {
+        logging::error(kTag, "Unexpected reply %u of %u bytes", replyType, replyPayload);
+        return false;
+    }
+    return true;
+}
@@ -0,0 +1,37 @@
+#pragma once
+
+#include <cstdint>
+#include <string>
+#include <vector>
+
+// Blocking client for SimServer, for C++ training code, tools and tests. Other languages speak
+// sim_protocol directly. Failures are logged and close the connection.
+class SimClient {
+public:
+    SimClient() = default;
+    ~SimClient();
+
+    SimClient(const SimClient &) = delete;
+    SimClient &operator=(const SimClient &) = delete;
+
+    bool connectUnix(const std::string &path);
+    bool connectTcp(int port);
+    bool connected() const { return fd_ >= 0; }
+    void close();
+
+    // Starts `count` environments; observations is resized to count * kObservationSize.
+    bool reset(uint32_t count, uint32_t seed, std::vector<float> &observations);
+    // `actions` holds one action per environment. The outputs are resized to fit.
+    bool step(const std::vector<float> &actions, std::vector<float> &observations, std::vector<float> &rewards,
+              std::vector<uint8_t> &dones);
+    // Environment steps the server has served so far, across all its clients.
+    bool environmentSteps(uint64_t &served);
+
+private:
+    // Reads the reply header; false, with the server's message logged, unless it is `type` with
+    // `payload` bytes.
+    bool expect(uint32_t type, size_t payload);
+
+    int fd_ = -1;
+    uint32_t environments_ = 0;
+};
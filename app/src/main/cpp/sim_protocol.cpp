@@ -0,0 +1,66 @@
+#include "sim_protocol.h"
+
+#include <cerrno>
+#include <cstring>
+#include <sys/socket.h>
+#include <sys/uio.h>
+
+#ifndef MSG_NOSIGNAL
+#define MSG_NOSIGNAL 0
+#endif
+
+namespace sim_protocol {
+
+bool readExact(int fd, void *data, size_t size) {
+    auto *bytes = static_cast<uint8_t *>(data);
+    while (size > 0) {
+        ssize_t received = recv(fd, bytes, size, 0);
+        if (received < 0 && errno == EINTR) {
+            continue;
+        }
+        if (received <= 0) {
+            return false;
+        }
+        bytes += received;
+        size -= static_cast<size_t>(received);
+    }
+    return true;
+}
+
+bool sendMessage(int fd, uint32_t type, const void *a, size_t aSize, const void *b, size_t bSize, const void *c,
+                 size_t cSize) {
+    uint8_t header[kHeaderBytes];
+    auto payload = static_cast<uint32_t>(aSize + bSize + cSize);
+    std::memcpy(header, &type, 4);
+    std::memcpy(header + 4, &payload, 4);
+    iovec parts[4] = {{header, kHeaderBytes},
+                      {const_cast<void *>(a), aSize},
+                      {const_cast<void *>(b), bSize},
+                      {const_cast<void *>(c), cSize}};
+    msghdr message{};
+    message.msg_iov = parts;
+    message.msg_iovlen = 4;
+    // sendmsg rather than writev, so a vanished client is an error rather than SIGPIPE.
+    while (message.msg_iovlen > 0) {
+        ssize_t sent = sendmsg(fd, &message, MSG_NOSIGNAL);
+        if (sent < 0 && errno == EINTR) {
+            continue;
+        }
+        if (sent < 0) {
+            return false;
+        }
+        auto remaining = static_cast<size_t>(sent);
+        while (message.msg_iovlen > 0 && remaining >= message.msg_iov->iov_len) {
+            remaining -= message.msg_iov->iov_len;
+            ++message.msg_iov;
+            --message.msg_iovlen;
+        }
+        if (message.msg_iovlen > 0) {
+            message.msg_iov->iov_base = static_cast<uint8_t *>(message.msg_iov->iov_base) + remaining;
+            message.msg_iov->iov_len -= remaining;
+        }
+    }
+    return true;
+}
+
+} // namespace sim_protocol
@@ -0,0 +1,39 @@
+#pragma once
+
+#include <cstddef>
+#include <cstdint>
+
+// Wire format of the simulation server (SimServer, SimClient). Every message is an 8-byte header
+// (type, payload bytes; both uint32) followed by the payload. All values are in the host's byte
+// order, little-endian on every supported target; the server only listens on the local machine.
+//
+//   kReset  client: uint32 environments, uint32 seed
+//           server: float observations[environments][kObservationSize]
+//   kStep   client: float actions[environments][kActionSize]
+//           server: float observations[environments][kObservationSize], float rewards[environments],
+//                   uint8 dones[environments]
+//   kInfo   client: empty
+//           server: uint32 environments, uint32 kObservationSize, uint32 kActionSize,
+//                   float seconds per step, uint64 environment steps served
+//   kError  server: a message, not terminated; the server then closes the connection.
+//
+// Observation, action, reward and done semantics are EnvironmentBatch's.
+namespace sim_protocol {
+
+constexpr uint32_t kReset = 1;
+constexpr uint32_t kStep = 2;
+constexpr uint32_t kInfo = 3;
+constexpr uint32_t kError = 0xffff;
+
+constexpr size_t kHeaderBytes = 8;
+constexpr size_t kInfoBytes = 4 * 4 + 8;
+// Upper bound on environments per connection, which also bounds every payload.
+constexpr uint32_t kMaxEnvironments = 1u << 20;
+
+// Blocking I/O on a connected socket. Both return false when the peer closes or on error.
+bool readExact(int fd, void *data, size_t size);
+// Sends a header and a payload gathered from up to three buffers.
+bool sendMessage(int fd, uint32_t type, const void *a, size_t aSize, const void *b = nullptr, size_t bSize = 0,
+                 const void *c = nullptr, size_t cSize = 0);
+
+} // namespace sim_protocol
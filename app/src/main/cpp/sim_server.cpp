@@ -0,0 +1,238 @@
+#include "sim_server.h"
+
+#include <algorithm>
+#include <cerrno>
+#include <cstring>
+#include <netinet/in.h>
+#include <netinet/tcp.h>
+#include <sys/socket.h>
+#include <sys/un.h>
+#include <unistd.h>
+#include <utility>
+
+#include "native_log.h"
+#include "sim_protocol.h"
+
+using environment::kActionSize;
+using environment::kObservationSize;
+
+namespace {
+constexpr const char *kTag = "SimServer";
+}
+
+SimServer::SimServer(std::shared_ptr<const TrackGeometry> track, const Options &options)
+        : track_(std::move(track)), options_(options), workers_(std::max(1, options.threads)),
+          environments_(track_, options.environment) {}
+
+SimServer::~SimServer() {
+    stop();
+    if (listenFd_ >= 0) {
+        close(listenFd_);
+        if (!options_.socketPath.empty()) {
+            unlink(options_.socketPath.c_str());
+        }
+    }
+}
+
+bool SimServer::listen() {
+    if (!options_.socketPath.empty()) {
+        sockaddr_un address{};
+        address.sun_family = AF_UNIX;
+        if (options_.socketPath.size() >= sizeof(address.sun_path)) {
+            logging::error(kTag, "Socket path too long: %s", options_.socketPath.c_str());
+            return false;
+        }
+        std::strcpy(address.sun_path, options_.socketPath.c_str());
+        unlink(address.sun_path);
+        listenFd_ = socket(AF_UNIX, SOCK_STREAM, 0);
+        if (listenFd_ < 0 || bind(listenFd_, reinterpret_cast<sockaddr *>(&address), sizeof(address)) != 0
+            || ::listen(listenFd_, 1) != 0) {
+            logging::error(kTag, "Cannot listen on %s: %s", address.sun_path, std::strerror(errno));
+            return false;
+        }
+        logging::info(kTag, "Listening on %s", address.sun_path);
+        return true;
+    }
+
+    sockaddr_in address{};
+    address.sin_family = AF_INET;
+    address.sin_addr.s_addr = htonl(INADDR_LOOPBACK);
+    address.sin_port = htons(static_cast<uint16_t>(options_.port));
+    listenFd_ = socket(AF_INET, SOCK_STREAM, 0);
+    int reuse = 1;
+    socklen_t length = sizeof(address);
+    if (listenFd_ < 0 || setsockopt(listenFd_, SOL_SOCKET, SO_REUSEADDR, &reuse, sizeof(reuse)) != 0
+        || bind(listenFd_, reinterpret_cast<sockaddr *>(&address), sizeof(address)) != 0
+        || ::listen(listenFd_, 1) != 0
+        || getsockname(listenFd_, reinterpret_cast<sockaddr *>(&address), &length) != 0) {
+        logging::error(kTag, "Cannot listen on 127.0.0.1:%d: %s", options_.port, std::strerror(errno));
+        return false;
+    }
+    port_ = ntohs(address.sin_port);
+    logging::info(kTag, "Listening on 127.0.0.1:%d", port_);
+    return true;
+}
+
+void SimServer::serve() {
+    while (!stopping_.load()) {
+        int fd = accept(listenFd_, nullptr, nullptr);
+        if (fd < 0) {
+            if (errno == EINTR || errno == ECONNABORTED) {
+                continue;
+            }
+            break;
+        }
+        if (options_.socketPath.empty()) {
+            int noDelay = 1;
+            setsockopt(fd, IPPROTO_TCP, TCP_NODELAY, &noDelay, sizeof(noDelay));
+        }
+        {
+            std::lock_guard<std::mutex> lock(clientMutex_);
+            clientFd_ = fd;
+        }
+        // stop() may have run between accept() and publishing the descriptor.
+        if (!stopping_.load()) {
+            serveClient(fd);
+        }
+        {
+            std::lock_guard<std::mutex> lock(clientMutex_);
+            clientFd_ = -1;
+        }
+        close(fd);
+    }
+}
+
+void SimServer::stop() {
+    stopping_.store(true);
+    // shutdown() wakes a thread blocked in accept() or recv() on the descriptor; close() would not.
+    if (listenFd_ >= 0) {
+        shutdown(listenFd_, SHUT_RDWR);
+    }
+    std::lock_guard<std::mutex> lock(clientMutex_);
+    if (clientFd_ >= 0) {
+        shutdown(clientFd_, SHUT_RDWR);
+    }
+}
+
+SimServer::Stats SimServer::stats() const {
+    std::lock_guard<std::mutex> lock(statsMutex_);
+    return stats_;
+}
+
+void SimServer::serveClient(int fd) {
+    environments_.reset(0, 0, nullptr);
+    reportedAt_ = Clock::now();
+    reported_ = stats();
+    uint8_t header[sim_protocol::kHeaderBytes];
+    bool open = true;
+    while (open && sim_protocol::readExact(fd, header, sizeof(header))) {
+        uint32_t type;
+        uint32_t payload;
+        std::memcpy(&type, header, 4);
+        std::memcpy(&payload, header + 4, 4);
+        switch (type) {
+            case sim_protocol::kReset:
+                open = handleReset(fd, payload);
+                break;
+            case sim_protocol::kStep:
+                open = handleStep(fd, payload);
+                break;
+            case sim_protocol::kInfo:
+                open = handleInfo(fd, payload);
+                break;
+            default:
+                open = fail(fd, "unknown request type");
+                break;
+        }
+        std::lock_guard<std::mutex> lock(statsMutex_);
+        ++stats_.requests;
+    }
+    report();
+}
+
+bool SimServer::handleReset(int fd, uint32_t payload) {
+    uint32_t request[2];
+    if (payload != sizeof(request)) {
+        return fail(fd, "reset payload must be 8 bytes");
+    }
+    if (!sim_protocol::readExact(fd, request, sizeof(request))) {
+        return false;
+    }
+    uint32_t count = request[0];
+    if (count == 0 || count > sim_protocol::kMaxEnvironments) {
+        return fail(fd, "environment count out of range");
+    }
+    actions_.assign(static_cast<size_t>(count) * kActionSize, 0.0f);
+    observations_.resize(static_cast<size_t>(count) * kObservationSize);
+    rewards_.resize(count);
+    dones_.resize(count);
+    environments_.reset(count, request[1], observations_.data());
+    return sim_protocol::sendMessage(fd, sim_protocol::kReset, observations_.data(),
+                                     observations_.size() * sizeof(float));
+}
+
+bool SimServer::handleStep(int fd, uint32_t payload) {
+    if (environments_.size() == 0) {
+        return fail(fd, "step before reset");
+    }
+    if (payload != actions_.size() * sizeof(float)) {
+        return fail(fd, "step payload must hold one action per environment");
+    }
+    if (!sim_protocol::readExact(fd, actions_.data(), payload)) {
+        return false;
+    }
+    Clock::time_point start = Clock::now();
+    environments_.step(actions_.data(), observations_.data(), rewards_.data(), dones_.data(), &workers_);
+    double seconds = std::chrono::duration<double>(Clock::now() - start).count();
+    {
+        std::lock_guard<std::mutex> lock(statsMutex_);
+        stats_.environmentSteps += environments_.size();
+        stats_.stepSeconds += seconds;
+    }
+    if (std::chrono::duration<double>(Clock::now() - reportedAt_).count() >= kReportSeconds) {
+        report();
+    }
+    return sim_protocol::sendMessage(fd, sim_protocol::kStep, observations_.data(),
+                                     observations_.size() * sizeof(float), rewards_.data(),
+                                     rewards_.size() * sizeof(float), dones_.data(), dones_.size());
+}
+
+bool SimServer::handleInfo(int fd, uint32_t payload) {
+    if (payload != 0) {
+        return fail(fd, "info takes no payload");
+    }
+    const EnvironmentOptions &options = environments_.options();
+    uint8_t info[sim_protocol::kInfoBytes];
+    auto count = static_cast<uint32_t>(environments_.size());
+    uint32_t observationSize = kObservationSize;
+    uint32_t actionSize = kActionSize;
+    float stepSeconds = options.dt * static_cast<float>(options.actionRepeat);
+    uint64_t served = stats().environmentSteps;
+    std::memcpy(info, &count, 4);
+    std::memcpy(info + 4, &observationSize, 4);
+    std::memcpy(info + 8, &actionSize, 4);
+    std::memcpy(info + 12, &stepSeconds, 4);
+    std::memcpy(info + 16, &served, 8);
+    return sim_protocol::sendMessage(fd, sim_protocol::kInfo, info, sizeof(info));
+}
+
+bool SimServer::fail(int fd, const char *message) {
+    logging::warn(kTag, "Closing client: %s", message);
+    sim_protocol::sendMessage(fd, sim_protocol::kError, message, std::strlen(message));
+    return false;
+}
+
+void SimServer::report() {
+    Clock::time_point now = Clock::now();
+    double seconds = std::chrono::duration<double>(now - reportedAt_).count();
+    Stats current = stats();
+    uint64_t steps = current.environmentSteps - reported_.environmentSteps;
+    if (steps > 0 && seconds > 0.0) {
+        double stepping = current.stepSeconds - reported_.stepSeconds;
+        logging::info(kTag, "%.0f env-steps/s over %.1f s (%zu environments, %d threads, %.0f%% stepping)",
+                      static_cast<double>(steps) / seconds, seconds, environments_.size(), workers_.threads(),
+                      100.0 * stepping / seconds);
+    }
+    reported_ = current;
+    reportedAt_ = now;
+}
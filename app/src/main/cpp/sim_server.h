@@ -0,0 +1,87 @@
+#pragma once
+
+#include <atomic>
+#include <chrono>
+#include <cstdint>
+#include <memory>
+#include <mutex>
+#include <string>
+#include <vector>
+
+#include "environment_batch.h"
+#include "parallel_for.h"
+#include "track_mesh.h"
+
+// Serves batches of EnvironmentBatch environments to external training code over a local socket,
+// in the sim_protocol wire format: one request steps every environment of the connection, one
+// response returns all their observations, rewards and done flags. Listens on a Unix domain
+// socket, or on TCP bound to 127.0.0.1. Clients are served one after another, each with its own
+// environments; steps run on a ParallelFor of `threads`. Throughput is logged every
+// kReportSeconds and available from stats().
+class SimServer {
+public:
+    static constexpr double kReportSeconds = 5.0;
+
+    struct Options {
+        // A Unix domain socket path; when empty, TCP on localhost at `port` (0 picks a free one).
+        std::string socketPath;
+        int port = 0;
+        int threads = 1;
+        EnvironmentOptions environment;
+    };
+
+    struct Stats {
+        uint64_t requests = 0;
+        uint64_t environmentSteps = 0;
+        // Wall time spent stepping environments, excluding socket I/O.
+        double stepSeconds = 0.0;
+    };
+
+    // `track` must have been built by buildTrackMesh.
+    SimServer(std::shared_ptr<const TrackGeometry> track, const Options &options);
+    ~SimServer();
+
+    SimServer(const SimServer &) = delete;
+    SimServer &operator=(const SimServer &) = delete;
+
+    // Binds and listens; false (logged) on failure.
+    bool listen();
+    // The bound TCP port, once listening; 0 for a Unix socket.
+    int port() const { return port_; }
+    // Accepts and serves clients on the calling thread until stop().
+    void serve();
+    // Ends serve(), closing any current connection. Any thread.
+    void stop();
+
+    Stats stats() const;
+
+private:
+    using Clock = std::chrono::steady_clock;
+
+    void serveClient(int fd);
+    bool handleReset(int fd, uint32_t payload);
+    bool handleStep(int fd, uint32_t payload);
+    bool handleInfo(int fd, uint32_t payload);
+    bool fail(int fd, const char *message);
+    void report();
+
+    std::shared_ptr<const TrackGeometry> track_;
+    Options options_;
+    ParallelFor workers_;
+    EnvironmentBatch environments_;
+    std::vector<float> actions_;
+    std::vector<float> observations_;
+    std::vector<float> rewards_;
+    std::vector<uint8_t> dones_;
+
+    int listenFd_ = -1;
+    int port_ = 0;
+    std::atomic<bool> stopping_{false};
+    std::mutex clientMutex_;
+    int clientFd_ = -1;
+
+    mutable std::mutex statsMutex_;
+    Stats stats_;
+    Stats reported_;
+    Clock::time_point reportedAt_;
+};
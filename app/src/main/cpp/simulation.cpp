@@ -0,0 +1,119 @@
+#include "simulation.h"
+
+#include <algorithm>
+#include <cmath>
+#include <utility>
+
+#include "track_contact.h"
+
+void Simulation::loadTrack(std::shared_ptr<const TrackGeometry> geometry) {
+    geometry_ = std::move(geometry);
+    state_.car = Car{};
+    state_.tick = 0;
+    state_.track = TrackProjection{};
+    state_.surface = SurfaceSample{};
+    state_.knockedCones = 0;
+    state_.penaltyTime = 0.0f;
+    knocked_.assign(geometry_ ? geometry_->cones.size() : 0, 0);
+    if (geometry_ && !geometry_->samples.empty()) {
+        state_.car.pos = geometry_->samples.front();
+        glm::vec2 tangent = geometry_->tangents.front();
+        if (glm::length(tangent) < 1e-4f && geometry_->samples.size() > 1) {
+            tangent = geometry_->samples[1] - geometry_->samples[0];
+        }
+        if (glm::length(tangent) < 1e-4f) {
+            tangent = {1.0f, 0.0f};
+        }
+        state_.car.heading = std::atan2(tangent.y, tangent.x);
+        geometry_->index.project(state_.car.pos, state_.track);
+        state_.surface = geometry_->surface.sample(state_.car.pos);
+    }
+    lapTimer_.reset(geometry_ ? &geometry_->index : nullptr, state_.track.progress);
+    state_.laps = lapTimer_.status();
+    if (ghost_) {
+        ghost_->restart();
+    }
+    updateGhost(0.0f);
+    resetCamera();
+}
+
+void Simulation::setGhost(std::unique_ptr<GhostCar> ghost) {
+    ghost_ = std::move(ghost);
+    if (ghost_) {
+        ghost_->restart();
+    }
+    updateGhost(0.0f);
+}
+
+void Simulation::tick(float dt, const Controls &controls) {
+    Car &car = state_.car;
+    car.steer = controls.steer * kSteerRange;
+    car.throttle = controls.throttle;
+    car.brake = controls.brake;
+    car.grip = track_contact::gripFor(state_.surface.edgeDistance);
+    step(car, dt);
+    applySurface(dt);
+    checkCones();
+    if (geometry_) {
+        geometry_->index.project(car.pos, state_.track);
+    }
+    lapTimer_.update(state_.track.progress, dt);
+    state_.laps = lapTimer_.status();
+    updateGhost(dt);
+
+    glm::vec2 forward2{std::cos(car.heading), std::sin(car.heading)};
+    glm::vec3 target{car.pos.x, 0.5f, car.pos.y};
+    glm::vec3 desiredPos = target - glm::vec3(forward2.x, 0.0f, forward2.y) * 8.0f + glm::vec3(0.0f, 3.0f, 0.0f);
+    float smoothing = 1.0f - std::exp(-dt * 6.0f);
+    state_.cameraPos = glm::mix(state_.cameraPos, desiredPos, smoothing);
+    state_.cameraTarget = glm::mix(state_.cameraTarget, target, smoothing);
+    ++state_.tick;
+}
+
+void Simulation::applySurface(float dt) {
+    if (!geometry_ || geometry_->surface.empty()) {
+        return;
+    }
+    Car &car = state_.car;
+    SurfaceSample &surface = state_.surface;
+    surface = geometry_->surface.sample(car.pos);
+    if (surface.edgeDistance <= 0.0f) {
+        return;
+    }
+    car.speed *= std::exp(-track_contact::kOffTrackDrag * dt);
+    track_contact::resolveBarrier(geometry_->width * track_contact::kRunOffFraction, surface, car.pos,
+                                  car.heading, car.speed);
+}
+
+void Simulation::updateGhost(float dt) {
+    if (!ghost_) {
+        state_.ghostActive = false;
+        return;
+    }
+    state_.ghostActive = ghost_->advance(dt);
+    state_.ghost = ghost_->car();
+}
+
+void Simulation::checkCones() {
+    if (!geometry_ || geometry_->cones.empty()) {
+        return;
+    }
+    size_t count = geometry_->cones.query(state_.car.pos, kCarRadius + kConeRadius, contacts_.data(),
+                                          contacts_.size());
+    for (size_t i = 0; i < count; ++i) {
+        uint8_t &knocked = knocked_[contacts_[i]];
+        if (knocked == 0) {
+            knocked = 1;
+            ++state_.knockedCones;
+            state_.penaltyTime += kConePenaltySeconds;
+        }
+    }
+}
+
+void Simulation::resetCamera() {
+    const Car &car = state_.car;
+    glm::vec2 forward2{std::cos(car.heading), std::sin(car.heading)};
+    glm::vec3 target{car.pos.x, 0.5f, car.pos.y};
+    state_.cameraTarget = target;
+    state_.cameraPos = target - glm::vec3(forward2.x, 0.0f, forward2.y) * 8.0f + glm::vec3(0.0f, 3.0f, 0.0f);
+}
@@ -0,0 +1,63 @@
+#pragma once
+
+#include <array>
+#include <cstdint>
+#include <memory>
+#include <vector>
+
+#include "control_input.h"
+#include "ghost_car.h"
+#include "lap_timer.h"
+#include "math_glm/glm.hpp"
+#include "track_mesh.h"
+#include "vehicle.h"
+
+// Everything the renderer needs from one simulation tick.
+struct SimState {
+    Car car;
+    glm::vec3 cameraPos{0.0f, 4.0f, 12.0f};
+    glm::vec3 cameraTarget{0.0f, 0.0f, 0.0f};
+    // The car's projection onto the centerline: lateral offset and arc-length progress.
+    TrackProjection track;
+    SurfaceSample surface;
+    LapStatus laps;
+    int knockedCones = 0;
+    float penaltyTime = 0.0f;
+    // The ghost's pose, valid while ghostActive.
+    Car ghost;
+    bool ghostActive = false;
+    uint64_t tick = 0;
+};
+
+// Vehicle dynamics constrained to the track, plus the chase camera that follows the car. Not
+// thread-safe: one thread owns a Simulation and publishes its state().
+class Simulation {
+public:
+    static constexpr float kCarRadius = 1.3f;
+    static constexpr float kConeRadius = 0.25f;
+    static constexpr float kConePenaltySeconds = 2.0f;
+    // Wheel angle in radians at full steering input.
+    static constexpr float kSteerRange = 0.5f;
+
+    void loadTrack(std::shared_ptr<const TrackGeometry> geometry);
+    // Replaces the ghost, or removes it when null. The ghost restarts with every loadTrack().
+    void setGhost(std::unique_ptr<GhostCar> ghost);
+    void tick(float dt, const Controls &controls);
+
+    const SimState &state() const { return state_; }
+
+private:
+    void applySurface(float dt);
+    void checkCones();
+    void resetCamera();
+
+    void updateGhost(float dt);
+
+    std::shared_ptr<const TrackGeometry> geometry_;
+    std::unique_ptr<GhostCar> ghost_;
+    SimState state_;
+    LapTimer lapTimer_;
+    // One flag per cone of the current track; a cone only counts the first time it is hit.
+    std::vector<uint8_t> knocked_;
+    std::array<uint32_t, 16> contacts_{};
+};
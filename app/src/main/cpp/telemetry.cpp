@@ -0,0 +1,172 @@
+#include "telemetry.h"
+
+#include <cmath>
+#include <cstring>
+
+namespace {
+
+constexpr int kFields = 7;
+// Position and heading are predicted from the last two frames; the rest from the last one.
+constexpr int kSecondOrderFields = 3;
+constexpr uint8_t kKeyframeBit = 0x80;
+constexpr char kMagic[4] = {'R', 'S', 'T', 'L'};
+
+constexpr float kPositionStep = 0.01f;
+constexpr float kHeadingStep = 2.0f * static_cast<float>(M_PI) / 65536.0f;
+constexpr float kSpeedStep = 0.01f;
+constexpr float kInputStep = 1.0f / 250.0f;
+constexpr float kSteps[kFields] = {kPositionStep, kPositionStep, kHeadingStep, kSpeedStep,
+                                   kInputStep, kInputStep, kInputStep};
+
+void quantize(const TelemetrySample &sample, int32_t *out) {
+    const float values[kFields] = {sample.x, sample.y, sample.heading, sample.speed,
+                                   sample.steer, sample.throttle, sample.brake};
+    for (int f = 0; f < kFields; ++f) {
+        out[f] = static_cast<int32_t>(std::lround(values[f] / kSteps[f]));
+    }
+}
+
+TelemetrySample dequantize(const int32_t *values) {
+    TelemetrySample sample;
+    sample.x = static_cast<float>(values[0]) * kSteps[0];
+    sample.y = static_cast<float>(values[1]) * kSteps[1];
+    sample.heading = static_cast<float>(values[2]) * kSteps[2];
+    sample.speed = static_cast<float>(values[3]) * kSteps[3];
+    sample.steer = static_cast<float>(values[4]) * kSteps[4];
+    sample.throttle = static_cast<float>(values[5]) * kSteps[5];
+    sample.brake = static_cast<float>(values[6]) * kSteps[6];
+    return sample;
+}
+
+// Residuals wrap in 32 bits on both sides, so even a teleporting car round-trips exactly.
+int32_t predict(int field, const int32_t *previous, const int32_t *beforePrevious) {
+    if (field < kSecondOrderFields) {
+        return static_cast<int32_t>(2u * static_cast<uint32_t>(previous[field])
+                                    - static_cast<uint32_t>(beforePrevious[field]));
+    }
+    return previous[field];
+}
+
+size_t writeVarint(uint32_t value, uint8_t *out) {
+    size_t length = 0;
+    while (value >= 0x80) {
+        out[length++] = static_cast<uint8_t>(value | 0x80);
+        value >>= 7;
+    }
+    out[length++] = static_cast<uint8_t>(value);
+    return length;
+}
+
+// Returns the bytes read, or 0 when the varint is truncated or longer than 5 bytes.
+size_t readVarint(const uint8_t *data, size_t size, uint32_t &value) {
+    value = 0;
+    for (size_t i = 0; i < size && i < 5; ++i) {
+        value |= static_cast<uint32_t>(data[i] & 0x7f) << (7 * i);
+        if ((data[i] & 0x80) == 0) {
+            return i + 1;
+        }
+    }
+    return 0;
+}
+
+uint32_t zigzag(int32_t value) {
+    return (static_cast<uint32_t>(value) << 1) ^ static_cast<uint32_t>(value >> 31);
+}
+
+int32_t unzigzag(uint32_t value) {
+    return static_cast<int32_t>((value >> 1) ^ (0u - (value & 1u)));
+}
+
+} // namespace
+
+namespace telemetry {
+
+TelemetrySample sampleOf(const Car &car) {
+    TelemetrySample sample;
+    sample.x = car.pos.x;
+    sample.y = car.pos.y;
+    sample.heading = car.heading;
+    sample.speed = car.speed;
+    sample.steer = car.steer;
+    sample.throttle = car.throttle;
+    sample.brake = car.brake;
+    return sample;
+}
+
+void writeFileHeader(uint8_t *out, int rateHz) {
+    std::memcpy(out, kMagic, sizeof(kMagic));
+    out[4] = kFormatVersion;
+    out[5] = static_cast<uint8_t>(rateHz & 0xff);
+    out[6] = static_cast<uint8_t>((rateHz >> 8) & 0xff);
+    out[7] = 0;
+}
+
+int readFileHeader(const uint8_t *data, size_t size) {
+    if (size < kFileHeaderBytes || std::memcmp(data, kMagic, sizeof(kMagic)) != 0
+        || data[4] != kFormatVersion) {
+        return 0;
+    }
+    return data[5] | (data[6] << 8);
+}
+
+} // namespace telemetry
+
+size_t TelemetryEncoder::encode(const TelemetrySample &sample, uint8_t *out) {
+    int32_t values[kFields];
+    quantize(sample, values);
+    bool keyframe = framesSinceKey_ >= telemetry::kKeyframeInterval;
+    uint8_t tag = keyframe ? kKeyframeBit : 0;
+    size_t length = 1;
+    for (int f = 0; f < kFields; ++f) {
+        int32_t predicted = keyframe ? 0 : predict(f, previous_, beforePrevious_);
+        auto residual = static_cast<int32_t>(static_cast<uint32_t>(values[f]) - static_cast<uint32_t>(predicted));
+        if (residual != 0) {
+            tag |= static_cast<uint8_t>(1u << f);
+            length += writeVarint(zigzag(residual), out + length);
+        }
+    }
+    out[0] = tag;
+    for (int f = 0; f < kFields; ++f) {
+        beforePrevious_[f] = keyframe ? values[f] : previous_[f];
+        previous_[f] = values[f];
+    }
+    framesSinceKey_ = keyframe ? 1 : framesSinceKey_ + 1;
+    return length;
+}
+
+size_t TelemetryDecoder::decode(const uint8_t *data, size_t size, TelemetrySample &out) {
+    if (size == 0) {
+        return 0;
+    }
+    uint8_t tag = data[0];
+    bool keyframe = (tag & kKeyframeBit) != 0;
+    size_t length = 1;
+    int32_t residuals[kFields] = {};
+    for (int f = 0; f < kFields; ++f) {
+        if ((tag & (1u << f)) == 0) {
+            continue;
+        }
+        uint32_t encoded;
+        size_t read = readVarint(data + length, size - length, encoded);
+        if (read == 0) {
+            return 0;
+        }
+        residuals[f] = unzigzag(encoded);
+        length += read;
+    }
+    if (!keyframe && !synced_) {
+        return length;
+    }
+    int32_t values[kFields];
+    for (int f = 0; f < kFields; ++f) {
+        int32_t predicted = keyframe ? 0 : predict(f, previous_, beforePrevious_);
+        values[f] = static_cast<int32_t>(static_cast<uint32_t>(predicted) + static_cast<uint32_t>(residuals[f]));
+    }
+    for (int f = 0; f < kFields; ++f) {
+        beforePrevious_[f] = keyframe ? values[f] : previous_[f];
+        previous_[f] = values[f];
+    }
+    synced_ = true;
+    out = dequantize(values);
+    return length;
+}
@@ -0,0 +1,71 @@
+#pragma once
+
+#include <cstddef>
+#include <cstdint>
+
+#include "vehicle.h"
+
+// Compact per-tick car telemetry. Each frame quantizes the car state (1 cm, 1 cm/s, 2^-16 turn,
+// 1/250 of an input) and stores only what prediction misses: position and heading as the residual
+// from constant-velocity extrapolation, speed and inputs as the change from the last frame. A tag
+// byte says which residuals are non-zero and the rest are zigzag varints, so a car cruising or
+// holding a corner costs 2-4 bytes a frame. Encoder and decoder track the same quantized state,
+// so rounding never accumulates. A keyframe holds absolute values and lets a reader start or
+// resynchronize there.
+//
+// Recording files are an 8-byte header followed by frames:
+//   "RSTL", format version (1 byte), frame rate in Hz (2 bytes, little-endian), reserved (1 byte).
+struct TelemetrySample {
+    float x = 0.0f;
+    float y = 0.0f;
+    float heading = 0.0f;
+    float speed = 0.0f;
+    float steer = 0.0f;
+    float throttle = 0.0f;
+    float brake = 0.0f;
+};
+
+namespace telemetry {
+
+constexpr size_t kFileHeaderBytes = 8;
+constexpr uint8_t kFormatVersion = 1;
+constexpr int kDefaultRateHz = 60;
+// Upper bound on an encoded frame: a tag byte and seven 5-byte varints.
+constexpr size_t kMaxFrameBytes = 1 + 7 * 5;
+// A keyframe at least this often, so a reader that joins or drops data resyncs within 2 s at 60 Hz.
+constexpr uint32_t kKeyframeInterval = 120;
+
+TelemetrySample sampleOf(const Car &car);
+void writeFileHeader(uint8_t *out, int rateHz);
+// Returns the frame rate, or 0 when the bytes are not a telemetry header.
+int readFileHeader(const uint8_t *data, size_t size);
+
+} // namespace telemetry
+
+class TelemetryEncoder {
+public:
+    // The next frame will be a keyframe.
+    void reset() { framesSinceKey_ = telemetry::kKeyframeInterval; }
+    // Writes one frame into `out` (at least kMaxFrameBytes) and returns its length.
+    size_t encode(const TelemetrySample &sample, uint8_t *out);
+
+private:
+    int32_t previous_[7] = {};
+    int32_t beforePrevious_[7] = {};
+    uint32_t framesSinceKey_ = telemetry::kKeyframeInterval;
+};
+
+class TelemetryDecoder {
+public:
+    void reset() { synced_ = false; }
+    // Decodes the frame at the start of `data` and returns its length, or 0 when `data` holds no
+    // complete, well-formed frame. Delta frames before the first keyframe are consumed but leave
+    // `out` untouched and synced() false.
+    size_t decode(const uint8_t *data, size_t size, TelemetrySample &out);
+    bool synced() const { return synced_; }
+
+private:
+    int32_t previous_[7] = {};
+    int32_t beforePrevious_[7] = {};
+    bool synced_ = false;
+};
@@ -0,0 +1,149 @@
+#include "telemetry_recorder.h"
+
+#include <algorithm>
+#include <cstdio>
+#include <cstring>
+#include <utility>
+
+#include "native_log.h"
+
+namespace {
+constexpr const char *kTag = "TelemetryRecorder";
+}
+
+TelemetryRecorder::TelemetryRecorder(size_t capacity) : ring_(std::max<size_t>(capacity, telemetry::kMaxFrameBytes)) {}
+
+TelemetryRecorder::~TelemetryRecorder() {
+    {
+        std::lock_guard<std::mutex> lock(mutex_);
+        if (recording_) {
+            sessions_.back().end = head_.load(std::memory_order_relaxed);
+        }
+        stopping_ = true;
+    }
+    wake_.notify_one();
+    if (thread_.joinable()) {
+        thread_.join();
+    }
+}
+
+void TelemetryRecorder::begin(std::string path, int rateHz) {
+    end();
+    {
+        std::lock_guard<std::mutex> lock(mutex_);
+        Session session;
+        session.path = std::move(path);
+        session.rateHz = rateHz;
+        session.begin = head_.load(std::memory_order_relaxed);
+        sessions_.push_back(std::move(session));
+        if (!thread_.joinable()) {
+            thread_ = std::thread(&TelemetryRecorder::run, this);
+        }
+    }
+    encoder_.reset();
+    recording_ = true;
+}
+
+void TelemetryRecorder::end() {
+    if (!recording_) {
+        return;
+    }
+    recording_ = false;
+    {
+        std::lock_guard<std::mutex> lock(mutex_);
+        sessions_.back().end = head_.load(std::memory_order_relaxed);
+    }
+    wake_.notify_one();
+}
+
+void TelemetryRecorder::record(const TelemetrySample &sample) {
+    if (!recording_) {
+        return;
+    }
+    uint8_t frame[telemetry::kMaxFrameBytes];
+    size_t length = encoder_.encode(sample, frame);
+    uint64_t head = head_.load(std::memory_order_relaxed);
+    uint64_t tail = tail_.load(std::memory_order_acquire);
+    if (head + length - tail > ring_.size()) {
+        // The dropped frame was the reference for the next delta; start over from a keyframe.
+        encoder_.reset();
+        dropped_.fetch_add(1, std::memory_order_relaxed);
+        return;
+    }
+    size_t index = static_cast<size_t>(head % ring_.size());
+    size_t first = std::min(length, ring_.size() - index);
+    std::memcpy(ring_.data() + index, frame, first);
+    std::memcpy(ring_.data(), frame + first, length - first);
+    head_.store(head + length, std::memory_order_release);
+    frames_.fetch_add(1, std::memory_order_relaxed);
+}
+
+void TelemetryRecorder::flush() {
+    std::unique_lock<std::mutex> lock(mutex_);
+    if (!thread_.joinable()) {
+        return;
+    }
+    uint64_t target = head_.load(std::memory_order_acquire);
+    flushRequested_ = true;
+    wake_.notify_one();
+    drained_.wait(lock, [&] { return tail_.load(std::memory_order_acquire) >= target; });
+}
+
+void TelemetryRecorder::run() {
+    std::FILE *file = nullptr;
+    bool opened = false;
+    std::unique_lock<std::mutex> lock(mutex_);
+    for (;;) {
+        if (!stopping_ && !flushRequested_) {
+            wake_.wait_for(lock, kFlushInterval);
+        }
+        flushRequested_ = false;
+        while (!sessions_.empty()) {
+            Session session = sessions_.front();
+            uint64_t limit = std::min(head_.load(std::memory_order_acquire), session.end);
+            lock.unlock();
+            if (!opened) {
+                opened = true;
+                file = std::fopen(session.path.c_str(), "wb");
+                uint8_t header[telemetry::kFileHeaderBytes];
+                telemetry::writeFileHeader(header, session.rateHz);
+                if (file == nullptr || std::fwrite(header, 1, sizeof(header), file) != sizeof(header)) {
+                    logging::warn(kTag, "Cannot write %s; its telemetry is discarded", session.path.c_str());
+                }
+            }
+            if (file != nullptr) {
+                writeRange(file, tail_.load(std::memory_order_relaxed), limit);
+            }
+            tail_.store(limit, std::memory_order_release);
+            bool finished = limit == session.end;
+            if (finished && file != nullptr) {
+                std::fclose(file);
+                logging::info(kTag, "Wrote %llu bytes to %s",
+                              static_cast<unsigned long long>(session.end - session.begin), session.path.c_str());
+            }
+            if (finished) {
+                file = nullptr;
+                opened = false;
+            }
+            lock.lock();
+            if (!finished) {
+                break;
+            }
+            sessions_.pop_front();
+        }
+        drained_.notify_all();
+        if (stopping_ && sessions_.empty()) {
+            return;
+        }
+    }
+}
+
+void TelemetryRecorder::writeRange(std::FILE *file, uint64_t from, uint64_t to) const {
+    while (from < to) {
+        size_t index = static_cast<size_t>(from % ring_.size());
+        size_t length = static_cast<size_t>(std::min<uint64_t>(to - from, ring_.size() - index));
+        std::fwrite(ring_.data() + index, 1, length, file);
+        from += length;
+    }
+    std::fflush(file);
+}
@@ -0,0 +1,704 @@
+// Host unit tests for the platform-free native core. Built by the non-Android branch of
+// CMakeLists.txt and run with ctest; exits non-zero if any check fails.
+
+#include <cmath>
+#include <cstdio>
+#include <string>
+#include <memory>
+#include <thread>
+#include <vector>
+
+#include "../bench/sample_tracks.h"
+#include "control_input.h"
+#include "environment_batch.h"
+#include "ghost_car.h"
+#include "lap_simulator.h"
+#include "lap_timer.h"
+#include "parallel_for.h"
+#include "racing_line.h"
+#include "sim_client.h"
+#include "sim_server.h"
+#include "simulation.h"
+#include "telemetry.h"
+#include "telemetry_recorder.h"
+#include "track_mesh.h"
+#include "triple_buffer.h"
+#include "vehicle.h"
+#include "vehicle_batch.h"
+
+namespace {
+
+struct TestCase {
+    const char *name;
+    void (*run)();
+};
+
+std::vector<TestCase> &registry() {
+    static std::vector<TestCase> tests;
+    return tests;
+}
+
+struct Registrar {
+    Registrar(const char *name, void (*run)()) { registry().push_back({name, run}); }
+};
+
+int gFailures = 0;
+
+#define TEST(name)                                   \
+    void name();                                     \
+    Registrar name##Registrar(#name, name);          \
+    void name()
+
+#define CHECK(condition)                                                                   \
+    do {                                                                                   \
+        if (!(condition)) {                                                                \
+            std::printf("  %s:%d: CHECK(%s) failed\n", __FILE__, __LINE__, #condition);  \
+            ++gFailures;                                                                   \
+        }                                                                                  \
+    } while (false)
+
+#define CHECK_NEAR(actual, expected, tolerance)                                                    \
+    do {                                                                                           \
+        double actualValue = (actual);                                                             \
+        double expectedValue = (expected);                                                         \
+        if (std::fabs(actualValue - expectedValue) > (tolerance)) {                                \
+            std::printf("  %s:%d: %s = %g, expected %g +- %g\n", __FILE__, __LINE__, #actual,      \
+                        actualValue, expectedValue, static_cast<double>(tolerance));               \
+            ++gFailures;                                                                           \
+        }                                                                                          \
+    } while (false)
+
+constexpr float kPi = static_cast<float>(M_PI);
+
+std::shared_ptr<TrackGeometry> buildGeometry(const std::vector<glm::vec2> &centerline, float width,
+                                             TrackMesh *meshOut = nullptr) {
+    auto geometry = std::make_shared<TrackGeometry>();
+    TrackMesh mesh;
+    bool built = buildTrackMesh(centerline, width, mesh, *geometry);
+    CHECK(built);
+    if (meshOut != nullptr) {
+        *meshOut = std::move(mesh);
+    }
+    return geometry;
+}
+
+TEST(projectionGivesSignedLateralOffsetAndProgress) {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 50.0f), 8.0f);
+    CHECK(geometry->closed);
+    CHECK_NEAR(geometry->totalLength, 2.0f * kPi * 50.0f, 0.5);
+
+    TrackProjection inside;
+    TrackProjection outside;
+    CHECK(geometry->index.project({0.0f, -45.0f}, inside));
+    CHECK(geometry->index.project({0.0f, -55.0f}, outside));
+    // Counter-clockwise, so the inside of the circle is on the left.
+    CHECK_NEAR(inside.lateral, 5.0, 0.1);
+    CHECK_NEAR(outside.lateral, -5.0, 0.1);
+    CHECK_NEAR(inside.progress, geometry->totalLength * 0.75, 0.5);
+}
+
+TEST(progressDeltaWrapsOnClosedTracks) {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 50.0f), 8.0f);
+    float length = geometry->index.length();
+    CHECK_NEAR(geometry->index.progressDelta(length - 1.0f, 1.0f), 2.0, 1e-3);
+    CHECK_NEAR(geometry->index.progressDelta(1.0f, length - 1.0f), -2.0, 1e-3);
+}
+
+TEST(lapTimerCountsOnlyForwardLaps) {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 50.0f), 8.0f);
+    float length = geometry->index.length();
+    LapTimer forward;
+    forward.reset(&geometry->index, 0.0f);
+    for (int i = 1; i <= 2500; ++i) {
+        forward.update(std::fmod(static_cast<float>(i) * length / 1000.0f, length), 0.01f);
+    }
+    CHECK(forward.status().completedLaps == 2);
+    CHECK_NEAR(forward.status().bestLapTime, 10.0, 0.05);
+    CHECK(forward.status().lastSectorTimes[0] > 0.0f);
+
+    LapTimer backward;
+    backward.reset(&geometry->index, 0.0f);
+    for (int i = 1; i <= 2500; ++i) {
+        float progress = std::fmod(length - std::fmod(static_cast<float>(i) * length / 1000.0f, length), length);
+        backward.update(progress, 0.01f);
+    }
+    CHECK(backward.status().completedLaps == 0);
+}
+
+TEST(surfaceDistanceMatchesTrackEdges) {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 50.0f), 8.0f);
+    const TrackSurface &surface = geometry->surface;
+    // The ridge along the centerline is blunted by the bilinear blend.
+    CHECK_NEAR(surface.edgeDistance({50.0f, 0.3f}), -4.0, 0.2);
+    CHECK_NEAR(surface.edgeDistance({54.0f, 0.3f}), 0.0, 0.1);
+    CHECK_NEAR(surface.edgeDistance({58.0f, 0.3f}), 4.0, 0.1);
+    CHECK(surface.onSurface({47.0f, 0.0f}));
+    CHECK(!surface.onSurface({40.0f, 0.0f}));
+    SurfaceSample outside = surface.sample({56.0f, 0.0f});
+    CHECK_NEAR(outside.outward.x, 1.0, 0.05);
+
+    const float xs[] = {50.0f, 54.0f, 58.0f, 500.0f};
+    const float ys[] = {0.3f, 0.3f, 0.3f, 0.0f};
+    float distances[4];
+    surface.edgeDistances(xs, ys, 4, distances);
+    for (int i = 0; i < 4; ++i) {
+        CHECK(distances[i] == surface.edgeDistance({xs[i], ys[i]}));
+    }
+}
+
+TEST(surfaceStaysWithinMemoryBudget) {
+    auto geometry = buildGeometry(sample_tracks::circle(4000, 3000.0f), 10.0f);
+    CHECK(geometry->surface.memoryBytes() <= TrackSurface::kMaxBytes);
+    CHECK(!geometry->surface.empty());
+}
+
+TEST(coneFieldFindsEachConeOnce) {
+    std::vector<glm::vec2> centerline = sample_tracks::circle(400, 50.0f);
+    std::vector<glm::vec2> left;
+    std::vector<glm::vec2> right;
+    sample_tracks::cones(centerline, 4.0f, 1, left, right);
+    ConeField field;
+    field.build(left, right, 1.55f);
+    CHECK(field.size() == 800);
+    uint32_t found[16];
+    int mismatches = 0;
+    for (uint32_t i = 0; i < field.size(); ++i) {
+        size_t count = field.query(field.cone(i).pos, 0.01f, found, 16);
+        if (count != 1 || found[0] != i) {
+            ++mismatches;
+        }
+    }
+    CHECK(mismatches == 0);
+    CHECK(field.query({0.0f, 0.0f}, 1.0f, found, 16) == 0);
+}
+
+TEST(meshChunksCoverTrackWithShortIndices) {
+    TrackMesh mesh;
+    auto geometry = buildGeometry(sample_tracks::twisty(200000, 2.5f), 10.0f, &mesh);
+    size_t vertexCount = mesh.vertices.size() / static_cast<size_t>(mesh.stride);
+    size_t indexCount = 0;
+    int outOfRange = 0;
+    for (const TrackChunk &chunk : mesh.chunks) {
+        indexCount += chunk.indexCount;
+        for (uint32_t i = 0; i < chunk.indexCount; ++i) {
+            if (chunk.baseVertex + mesh.indices[chunk.firstIndex + i] >= vertexCount) {
+                ++outOfRange;
+            }
+        }
+        CHECK(chunk.boundsMin.x <= chunk.boundsMax.x && chunk.boundsMin.z <= chunk.boundsMax.z);
+    }
+    CHECK(outOfRange == 0);
+    CHECK(indexCount == mesh.indices.size());
+    // A closed track repeats its first row, so every sample starts one quad.
+    CHECK(indexCount == geometry->samples.size() * 6);
+}
+
+TEST(adaptiveResamplingBoundsChordErrorAndSavesSamples) {
+    const float width = 10.0f;
+    const float radius = 40.0f;
+    auto circle = buildGeometry(sample_tracks::circle(2000, radius), width);
+    float worst = 0.0f;
+    const std::vector<glm::vec2> &samples = circle->samples;
+    for (size_t i = 0; i < samples.size(); ++i) {
+        glm::vec2 midpoint = (samples[i] + samples[(i + 1) % samples.size()]) * 0.5f;
+        worst = std::max(worst, radius - glm::length(midpoint));
+    }
+    CHECK(worst <= width * 0.01f + 0.01f);
+
+    auto stadium = buildGeometry(sample_tracks::stadium(1000.0f, 30.0f, 1.0f), width);
+    // Uniform quarter-width spacing needs totalLength / 2.5 samples.
+    CHECK(static_cast<float>(stadium->samples.size()) < stadium->totalLength / 2.5f / 3.0f);
+}
+
+TEST(stepDrivesStraightAndTurnsWithSteering) {
+    Car car;
+    car.throttle = 1.0f;
+    for (int i = 0; i < 60; ++i) {
+        step(car, 1.0f / 60.0f);
+    }
+    CHECK(car.speed > 5.0f);
+    CHECK_NEAR(car.heading, 0.0, 1e-6);
+    CHECK_NEAR(car.pos.y, 0.0, 1e-4);
+
+    car.steer = 0.3f;
+    step(car, 1.0f / 60.0f);
+    CHECK(car.heading > 0.0f);
+}
+
+TEST(simulationKeepsCarInsideBarrier) {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 50.0f), 8.0f);
+    Simulation simulation;
+    simulation.loadTrack(geometry);
+    Controls controls;
+    controls.throttle = 1.0f;
+    controls.steer = -1.0f;
+    float worst = -1e9f;
+    for (int i = 0; i < 2000; ++i) {
+        simulation.tick(1.0f / 60.0f, controls);
+        worst = std::max(worst, simulation.state().surface.edgeDistance);
+    }
+    CHECK(worst <= 8.0f * 0.5f + 0.05f);
+}
+
+TEST(simulationCountsKnockedConesOnce) {
+    std::vector<glm::vec2> centerline = sample_tracks::circle(400, 50.0f);
+    auto geometry = buildGeometry(centerline, 8.0f);
+    std::vector<glm::vec2> left;
+    std::vector<glm::vec2> right;
+    sample_tracks::cones(centerline, 4.0f, 4, left, right);
+    geometry->cones.build(left, right, Simulation::kCarRadius + Simulation::kConeRadius);
+
+    Simulation simulation;
+    simulation.loadTrack(geometry);
+    Controls controls;
+    controls.throttle = 1.0f;
+    controls.steer = -1.0f;
+    for (int i = 0; i < 600; ++i) {
+        simulation.tick(1.0f / 60.0f, controls);
+    }
+    const SimState &state = simulation.state();
+    CHECK(state.knockedCones > 0);
+    CHECK_NEAR(state.penaltyTime, state.knockedCones * Simulation::kConePenaltySeconds, 1e-4);
+}
+
+// Inputs that sweep both steering directions, the straight-ahead dead zone and the clamps.
+void driveInputs(int car, int tick, float &steer, float &throttle, float &brake) {
+    float phase = static_cast<float>(car) * 0.37f + static_cast<float>(tick) * 0.01f;
+    steer = 0.7f * std::sin(phase) * (car % 5 == 0 ? 0.0f : 1.0f);
+    throttle = car % 3 == 0 ? 1.0f : 0.5f + 0.5f * std::cos(phase * 0.5f);
+    brake = (tick / 200 + car) % 7 == 0 ? 0.6f : 0.0f;
+}
+
+TEST(batchStepMatchesScalarStep) {
+    const int cars = 64;
+    std::vector<Car> scalar(cars);
+    VehicleBatch batch;
+    batch.resize(cars);
+    for (int c = 0; c < cars; ++c) {
+        scalar[c].heading = static_cast<float>(c) * 0.3f;
+        scalar[c].pos = {static_cast<float>(c), -static_cast<float>(c)};
+        scalar[c].grip = c % 4 == 0 ? 0.6f : 1.0f;
+        batch.setCar(c, scalar[c]);
+    }
+    for (int tick = 0; tick < 1200; ++tick) {
+        for (int c = 0; c < cars; ++c) {
+            driveInputs(c, tick, scalar[c].steer, scalar[c].throttle, scalar[c].brake);
+            driveInputs(c, tick, batch.steer()[c], batch.throttle()[c], batch.brake()[c]);
+            step(scalar[c], 1.0f / 120.0f);
+        }
+        batch.step(1.0f / 120.0f);
+    }
+    double worstPos = 0.0;
+    double worstHeading = 0.0;
+    double worstSpeed = 0.0;
+    for (int c = 0; c < cars; ++c) {
+        Car car = batch.car(c);
+        worstPos = std::max(worstPos, static_cast<double>(glm::distance(car.pos, scalar[c].pos)));
+        worstHeading = std::max(worstHeading, std::fabs(static_cast<double>(car.heading - scalar[c].heading)));
+        worstSpeed = std::max(worstSpeed, std::fabs(static_cast<double>(car.speed - scalar[c].speed)));
+    }
+    // Ten seconds of driving, up to a few hundred metres per car.
+    CHECK_NEAR(worstPos, 0.0, 0.01);
+    CHECK_NEAR(worstHeading, 0.0, 1e-4);
+    CHECK_NEAR(worstSpeed, 0.0, 1e-4);
+}
+
+TEST(batchFollowsSimulationIntoBarrier) {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 50.0f), 8.0f);
+    Simulation simulation;
+    simulation.loadTrack(geometry);
+    VehicleBatch batch;
+    batch.resize(1);
+    batch.setCar(0, simulation.state().car);
+    Controls controls;
+    controls.throttle = 1.0f;
+    controls.steer = -1.0f;
+    float worst = 0.0f;
+    int contacts = 0;
+    for (int i = 0; i < 600; ++i) {
+        simulation.tick(1.0f / 60.0f, controls);
+        batch.steer()[0] = controls.steer * 0.5f;
+        batch.throttle()[0] = controls.throttle;
+        batch.step(1.0f / 60.0f, geometry.get());
+        const Car &car = simulation.state().car;
+        worst = std::max(worst, glm::distance(car.pos, glm::vec2(batch.x()[0], batch.y()[0])));
+        contacts += batch.edgeDistance()[0] >= 8.0f * 0.5f - 1e-3f ? 1 : 0;
+    }
+    CHECK(contacts > 0);
+    CHECK_NEAR(worst, 0.0, 0.01);
+}
+
+TEST(batchGivesSameResultOnWorkerThreads) {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 50.0f), 8.0f);
+    const size_t cars = VehicleBatch::kParallelGrain * 4;
+    VehicleBatch serial;
+    VehicleBatch threaded;
+    for (VehicleBatch *batch : {&serial, &threaded}) {
+        batch->resize(cars);
+        for (size_t c = 0; c < cars; ++c) {
+            Car car;
+            car.pos = geometry->samples[c % geometry->samples.size()];
+            car.heading = static_cast<float>(c);
+            batch->setCar(c, car);
+        }
+    }
+    ParallelFor workers(4);
+    for (int tick = 0; tick < 240; ++tick) {
+        for (VehicleBatch *batch : {&serial, &threaded}) {
+            for (size_t c = 0; c < cars; ++c) {
+                driveInputs(static_cast<int>(c), tick, batch->steer()[c], batch->throttle()[c], batch->brake()[c]);
+            }
+        }
+        serial.step(1.0f / 120.0f, geometry.get());
+        threaded.step(1.0f / 120.0f, geometry.get(), &workers);
+    }
+    size_t mismatches = 0;
+    for (size_t c = 0; c < cars; ++c) {
+        mismatches += serial.x()[c] != threaded.x()[c] || serial.speed()[c] != threaded.speed()[c] ? 1 : 0;
+    }
+    CHECK(mismatches == 0);
+}
+
+TEST(lapSimulationHoldsCornerSpeedOnCircle) {
+    const float radius = 50.0f;
+    auto geometry = buildGeometry(sample_tracks::circle(400, radius), 10.0f);
+    LapOptions options;
+    LapResult result = simulateLap(geometry, options);
+    CHECK(result.completed);
+    // Flat out the whole lap at the lateral limit: v = sqrt(a r).
+    float cornerSpeed = std::sqrt(options.driver.lateralLimit * radius);
+    CHECK_NEAR(result.lapTime, 2.0f * kPi * radius / cornerSpeed, 1.5);
+    CHECK_NEAR(result.timeOffTrack, 0.0, 0.0);
+    CHECK(result.timeAtLimit > result.lapTime * 0.5f);
+}
+
+TEST(lapSimulationGivesSameResultOnWorkerThreads) {
+    std::vector<std::shared_ptr<const TrackGeometry>> tracks;
+    for (int i = 0; i < 6; ++i) {
+        tracks.push_back(buildGeometry(sample_tracks::circle(200 + 50 * i, 40.0f + 10.0f * i), 10.0f));
+    }
+    ParallelFor workers(3);
+    std::vector<LapResult> serial = simulateLaps(tracks);
+    std::vector<LapResult> threaded = simulateLaps(tracks, LapOptions(), &workers);
+    CHECK(serial.size() == tracks.size() && threaded.size() == tracks.size());
+    for (size_t i = 0; i < serial.size() && i < threaded.size(); ++i) {
+        CHECK(serial[i].completed);
+        CHECK(serial[i].ticks == threaded[i].ticks);
+        CHECK(serial[i].lapTime == threaded[i].lapTime);
+    }
+}
+
+// Summed squared curvature along a polyline, per metre: the quantity a racing line minimises.
+double bending(const std::vector<glm::vec2> &points, bool closed) {
+    size_t n = points.size();
+    double total = 0.0;
+    for (size_t i = closed ? 0 : 1; i < (closed ? n : n - 1); ++i) {
+        glm::vec2 in = points[i] - points[(i + n - 1) % n];
+        glm::vec2 out = points[(i + 1) % n] - points[i];
+        double turn = std::atan2(in.x * out.y - in.y * out.x, glm::dot(in, out));
+        double length = 0.5 * (glm::length(in) + glm::length(out));
+        total += turn * turn / length;
+    }
+    return total;
+}
+
+TEST(racingLineRunsWideOnCircle) {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 50.0f), 10.0f);
+    RacingLine line;
+    CHECK(RacingLineSolver().solve(*geometry, line));
+    CHECK(line.closed && line.points.size() > 100);
+    // The widest circle the limits allow: 5 m half width less the 1.5 m margin.
+    for (const glm::vec2 &point : line.points) {
+        CHECK_NEAR(glm::length(point), 53.5, 0.1);
+    }
+}
+
+TEST(racingLineStaysInsideLimitsAndStraightensCorners) {
+    auto geometry = buildGeometry(sample_tracks::twisty(4000, 2.5f), 10.0f);
+    RacingLineSolver::Options options;
+    RacingLine line;
+    CHECK(RacingLineSolver(options).solve(*geometry, line));
+    CHECK(line.iterations < options.maxIterations);
+    float limit = 5.0f - options.margin;
+    float widest = 0.0f;
+    for (size_t i = 0; i < line.points.size(); ++i) {
+        TrackProjection projection;
+        geometry->index.project(line.points[i], projection);
+        widest = std::max(widest, std::fabs(projection.lateral));
+        CHECK(std::fabs(line.offsets[i]) <= limit);
+    }
+    CHECK(widest <= limit + 0.05f);
+    CHECK(bending(line.points, true) < 0.75 * bending(geometry->samples, true));
+}
+
+TEST(racingLineLapBeatsCenterlineLap) {
+    auto geometry = buildGeometry(sample_tracks::twisty(4000, 2.5f), 10.0f);
+    LapOptions options;
+    LapResult centerline = simulateLap(geometry, options);
+    options.racingLine = true;
+    LapResult racing = simulateLap(geometry, options);
+    CHECK(centerline.completed && racing.completed);
+    CHECK(racing.lapTime < centerline.lapTime * 0.98f);
+    CHECK_NEAR(racing.timeOffTrack, 0.0, 0.0);
+}
+
+// Steers each environment back towards the centerline at part throttle.
+void environmentActions(const std::vector<float> &observations, std::vector<float> &actions) {
+    for (size_t i = 0; i < actions.size() / environment::kActionSize; ++i) {
+        const float *observation = &observations[i * environment::kObservationSize];
+        actions[i * environment::kActionSize] = glm::clamp(-2.0f * observation[5] - 0.1f * observation[4], -1.0f, 1.0f);
+        actions[i * environment::kActionSize + 1] = 0.5f;
+        actions[i * environment::kActionSize + 2] = 0.0f;
+    }
+}
+
+TEST(environmentsRewardProgressAndRespawn) {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 80.0f), 10.0f);
+    EnvironmentOptions options;
+    options.episodeSteps = 50;
+    const size_t count = EnvironmentBatch::kShardSize * 2 + 5;
+    EnvironmentBatch serial(geometry, options);
+    EnvironmentBatch threaded(geometry, options);
+    std::vector<float> observations(count * environment::kObservationSize);
+    std::vector<float> threadedObservations(observations.size());
+    std::vector<float> actions(count * environment::kActionSize);
+    std::vector<float> rewards(count);
+    std::vector<float> threadedRewards(count);
+    std::vector<uint8_t> dones(count);
+    std::vector<uint8_t> threadedDones(count);
+    serial.reset(count, 3, observations.data());
+    threaded.reset(count, 3, threadedObservations.data());
+    CHECK(observations == threadedObservations);
+    for (size_t i = 0; i < count; ++i) {
+        CHECK(observations[i * environment::kObservationSize + 6] < 0.0f);
+    }
+
+    ParallelFor workers(3);
+    double total = 0.0;
+    size_t finished = 0;
+    for (uint32_t stepIndex = 1; stepIndex <= options.episodeSteps; ++stepIndex) {
+        environmentActions(observations, actions);
+        serial.step(actions.data(), observations.data(), rewards.data(), dones.data());
+        threaded.step(actions.data(), threadedObservations.data(), threadedRewards.data(), threadedDones.data(),
+                      &workers);
+        for (size_t i = 0; i < count; ++i) {
+            total += rewards[i];
+            finished += dones[i];
+            CHECK(dones[i] == (stepIndex == options.episodeSteps ? 1 : 0));
+        }
+        CHECK(observations == threadedObservations && rewards == threadedRewards && dones == threadedDones);
+    }
+    CHECK(finished == count);
+    // Under a second from a standstill at half throttle: about 2 m of centerline each.
+    CHECK_NEAR(total / static_cast<double>(count), 2.0, 0.5);
+    for (size_t i = 0; i < count; ++i) {
+        CHECK_NEAR(observations[i * environment::kObservationSize + 3], 0.0, 0.0);
+    }
+}
+
+TEST(simServerStepsEnvironmentsForClient) {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 80.0f), 10.0f);
+    SimServer::Options options;
+    options.socketPath = "racingsim_test.sock";
+    options.threads = 2;
+    SimServer server(geometry, options);
+    CHECK(server.listen());
+    std::thread serving([&server] { server.serve(); });
+
+    const uint32_t count = 70;
+    EnvironmentBatch local(geometry, options.environment);
+    std::vector<float> expected(count * environment::kObservationSize);
+    std::vector<float> expectedRewards(count);
+    std::vector<uint8_t> expectedDones(count);
+    local.reset(count, 11, expected.data());
+
+    SimClient client;
+    std::vector<float> observations;
+    std::vector<float> rewards;
+    std::vector<uint8_t> dones;
+    CHECK(client.connectUnix(options.socketPath));
+    CHECK(client.reset(count, 11, observations));
+    CHECK(observations == expected);
+    std::vector<float> actions(count * environment::kActionSize);
+    for (int stepIndex = 0; stepIndex < 30; ++stepIndex) {
+        environmentActions(expected, actions);
+        local.step(actions.data(), expected.data(), expectedRewards.data(), expectedDones.data());
+        CHECK(client.step(actions, observations, rewards, dones));
+        CHECK(observations == expected && rewards == expectedRewards && dones == expectedDones);
+    }
+    uint64_t served = 0;
+    CHECK(client.environmentSteps(served));
+    CHECK(served == count * 30);
+    CHECK(client.step(std::vector<float>(actions.size()), observations, rewards, dones));
+    // A malformed request gets an error and the connection closes.
+    CHECK(!client.reset(0, 1, observations));
+    CHECK(!client.connected());
+
+    server.stop();
+    serving.join();
+    CHECK(server.stats().environmentSteps == count * 31);
+}
+
+// Ten seconds of the simulated car weaving around a circuit, one sample per 60 Hz tick.
+std::vector<TelemetrySample> drivenSamples() {
+    auto geometry = buildGeometry(sample_tracks::circle(400, 80.0f), 10.0f);
+    Simulation simulation;
+    simulation.loadTrack(geometry);
+    std::vector<TelemetrySample> samples;
+    Controls controls;
+    controls.throttle = 0.8f;
+    for (int i = 0; i < 600; ++i) {
+        controls.steer = 0.3f + 0.3f * std::sin(static_cast<float>(i) * 0.02f);
+        simulation.tick(1.0f / 60.0f, controls);
+        samples.push_back(telemetry::sampleOf(simulation.state().car));
+    }
+    return samples;
+}
+
+TEST(telemetryRoundTripsWithinQuantization) {
+    std::vector<TelemetrySample> samples = drivenSamples();
+    TelemetryEncoder encoder;
+    TelemetryDecoder decoder;
+    std::vector<uint8_t> bytes;
+    for (const TelemetrySample &sample : samples) {
+        uint8_t frame[telemetry::kMaxFrameBytes];
+        size_t length = encoder.encode(sample, frame);
+        bytes.insert(bytes.end(), frame, frame + length);
+    }
+    size_t cursor = 0;
+    int worst = 0;
+    for (const TelemetrySample &expected : samples) {
+        TelemetrySample decoded;
+        size_t length = decoder.decode(bytes.data() + cursor, bytes.size() - cursor, decoded);
+        CHECK(length > 0);
+        cursor += length;
+        bool close = std::fabs(decoded.x - expected.x) <= 0.005f + 1e-4f
+                     && std::fabs(decoded.y - expected.y) <= 0.005f + 1e-4f
+                     && std::fabs(decoded.heading - expected.heading) <= 1e-4f
+                     && std::fabs(decoded.speed - expected.speed) <= 0.005f + 1e-4f
+                     && std::fabs(decoded.steer - expected.steer) <= 0.002f + 1e-5f;
+        worst += close ? 0 : 1;
+    }
+    CHECK(worst == 0);
+    CHECK(cursor == bytes.size());
+    // About 4 bytes a frame for a car that is always accelerating and turning.
+    CHECK(bytes.size() < samples.size() * 5);
+}
+
+TEST(telemetryDecoderResyncsAtKeyframe) {
+    std::vector<TelemetrySample> samples = drivenSamples();
+    TelemetryEncoder encoder;
+    std::vector<uint8_t> bytes;
+    std::vector<size_t> offsets;
+    for (const TelemetrySample &sample : samples) {
+        uint8_t frame[telemetry::kMaxFrameBytes];
+        offsets.push_back(bytes.size());
+        size_t length = encoder.encode(sample, frame);
+        bytes.insert(bytes.end(), frame, frame + length);
+    }
+    // Join mid-stream: delta frames are skipped until the next keyframe.
+    TelemetryDecoder decoder;
+    size_t cursor = offsets[50];
+    size_t frame = 50;
+    TelemetrySample decoded;
+    while (!decoder.synced()) {
+        cursor += decoder.decode(bytes.data() + cursor, bytes.size() - cursor, decoded);
+        ++frame;
+    }
+    CHECK(frame - 1 == telemetry::kKeyframeInterval);
+    CHECK_NEAR(decoded.x, samples[frame - 1].x, 0.006);
+    // A keyframe cut off after its tag byte is not a frame.
+    CHECK(TelemetryDecoder().decode(bytes.data(), 1, decoded) == 0);
+}
+
+TEST(recordedTelemetryReplaysAsGhost) {
+    std::vector<TelemetrySample> samples = drivenSamples();
+    std::string path = "racingsim_test_ghost.rstl";
+    {
+        TelemetryRecorder recorder;
+        recorder.begin(path, 60);
+        for (const TelemetrySample &sample : samples) {
+            recorder.record(sample);
+        }
+        recorder.end();
+        recorder.flush();
+        CHECK(recorder.framesRecorded() == samples.size());
+        CHECK(recorder.framesDropped() == 0);
+    }
+    GhostCar ghost;
+    CHECK(ghost.load(path));
+    std::remove(path.c_str());
+    float worst = 0.0f;
+    // Half-frame steps exercise the interpolation between recorded frames.
+    for (size_t i = 1; i < samples.size(); ++i) {
+        CHECK(ghost.advance(1.0f / 120.0f));
+        CHECK(ghost.advance(1.0f / 120.0f));
+        worst = std::max(worst, glm::distance(ghost.car().pos, glm::vec2(samples[i].x, samples[i].y)));
+    }
+    CHECK_NEAR(worst, 0.0, 0.01);
+    CHECK(!ghost.advance(1.0f / 60.0f));
+    CHECK(ghost.finished());
+}
+
+TEST(fullRecorderRingDropsFramesButStaysDecodable) {
+    std::vector<TelemetrySample> samples = drivenSamples();
+    std::string path = "racingsim_test_dropped.rstl";
+    uint64_t dropped;
+    {
+        // Too small for the flush thread to keep up with a burst of frames.
+        TelemetryRecorder recorder(256);
+        recorder.begin(path, 60);
+        for (const TelemetrySample &sample : samples) {
+            recorder.record(sample);
+        }
+        dropped = recorder.framesDropped();
+    }
+    CHECK(dropped > 0);
+    GhostCar ghost;
+    CHECK(ghost.load(path));
+    std::remove(path.c_str());
+    int frames = 0;
+    while (ghost.advance(1.0f / 60.0f)) {
+        ++frames;
+    }
+    CHECK(frames > 0);
+    CHECK(static_cast<uint64_t>(frames) < samples.size());
+}
+
+TEST(tripleBufferDeliversLatestValue) {
+    TripleBuffer<int> buffer;
+    CHECK(!buffer.update());
+    buffer.writeBuffer() = 1;
+    buffer.publish();
+    buffer.writeBuffer() = 2;
+    buffer.publish();
+    CHECK(buffer.update());
+    CHECK(buffer.read() == 2);
+    CHECK(!buffer.update());
+    CHECK(buffer.read() == 2);
+}
+
+TEST(controlInputSplitsDriveAxis) {
+    ControlInput input;
+    input.set(-0.5f, 0.75f);
+    Controls controls = input.load();
+    CHECK_NEAR(controls.steer, -0.5, 0.0);
+    CHECK_NEAR(controls.throttle, 0.75, 0.0);
+    CHECK_NEAR(controls.brake, 0.0, 0.0);
+    input.set(0.0f, -0.25f);
+    CHECK_NEAR(input.load().brake, 0.25, 0.0);
+    input.release();
+    CHECK_NEAR(input.load().throttle, 0.0, 0.0);
+}
+
+} // namespace
+
+int main() {
+    for (const TestCase &test : registry()) {
+        int before = gFailures;
+        test.run();
+        std::printf("%s %s\n", gFailures == before ? "PASS" : "FAIL", test.name);
+    }
+    std::printf("%zu tests, %d failed checks\n", registry().size(), gFailures);
+    return gFailures == 0 ? 0 : 1;
+}
@@ -0,0 +1,99 @@
+// Scores tracks from the command line by simulating a flying lap of each with the headless lap
+// simulator. Built by the non-Android branch of CMakeLists.txt.
+//
+//   racingsim_lapsim [--width W] [--threads N] [--racing-line] TRACK...
+//   racingsim_lapsim [--threads N] [--racing-line] --sample COUNT
+//
+// TRACK files are described in track_file.h. --sample scores COUNT generated twisty courses
+// instead. --racing-line drives the minimum-curvature racing line rather than the centerline. One tab-separated row per track goes to stdout, and the wall time to stderr.
+
+#include <algorithm>
+#include <chrono>
+#include <cstdio>
+#include <cstdlib>
+#include <cstring>
+#include <memory>
+#include <string>
+#include <thread>
+#include <vector>
+
+#include "../bench/sample_tracks.h"
+#include "lap_simulator.h"
+#include "parallel_for.h"
+#include "track_file.h"
+
+namespace {
+
+int usage() {
+    std::fprintf(stderr, "usage: racingsim_lapsim [--width W] [--threads N] [--racing-line] TRACK...\n"
+                         "       racingsim_lapsim [--threads N] [--racing-line] --sample COUNT\n");
+    return 2;
+}
+
+} // namespace
+
+int main(int argc, char **argv) {
+    float width = 10.0f;
+    int threads = static_cast<int>(std::max(1u, std::thread::hardware_concurrency()));
+    int samples = 0;
+    LapOptions options;
+    std::vector<std::string> names;
+    std::vector<std::vector<glm::vec2>> centerlines;
+    for (int i = 1; i < argc; ++i) {
+        bool hasValue = i + 1 < argc;
+        if (std::strcmp(argv[i], "--width") == 0 && hasValue) {
+            width = std::strtof(argv[++i], nullptr);
+        } else if (std::strcmp(argv[i], "--threads") == 0 && hasValue) {
+            threads = std::max(1, std::atoi(argv[++i]));
+        } else if (std::strcmp(argv[i], "--sample") == 0 && hasValue) {
+            samples = std::max(0, std::atoi(argv[++i]));
+        } else if (std::strcmp(argv[i], "--racing-line") == 0) {
+            options.racingLine = true;
+        } else if (argv[i][0] == '-') {
+            return usage();
+        } else {
+            std::vector<glm::vec2> points;
+            if (!readTrackFile(argv[i], points)) {
+                std::fprintf(stderr, "%s: not a track file\n", argv[i]);
+                return 1;
+            }
+            names.emplace_back(argv[i]);
+            centerlines.push_back(std::move(points));
+        }
+    }
+    for (int s = 0; s < samples; ++s) {
+        names.push_back("sample-" + std::to_string(s));
+        centerlines.push_back(sample_tracks::twisty(2000 + 500 * s, 2.5f));
+    }
+    if (centerlines.empty()) {
+        return usage();
+    }
+
+    auto start = std::chrono::steady_clock::now();
+    ParallelFor workers(threads);
+    std::vector<std::shared_ptr<const TrackGeometry>> tracks(centerlines.size());
+    workers.run(tracks.size(), 1, [&](size_t begin, size_t end) {
+        for (size_t i = begin; i < end; ++i) {
+            auto geometry = std::make_shared<TrackGeometry>();
+            TrackMesh mesh;
+            if (buildTrackMesh(centerlines[i], width, mesh, *geometry)) {
+                tracks[i] = std::move(geometry);
+            }
+        }
+    });
+    std::vector<LapResult> results = simulateLaps(tracks, options, &workers);
+    double seconds = std::chrono::duration<double>(std::chrono::steady_clock::now() - start).count();
+
+    std::printf("track\tlength_m\tcompleted\tlap_s\tmin_speed\tavg_speed\tat_limit_s\toff_track_s\n");
+    double simulated = 0.0;
+    for (size_t i = 0; i < results.size(); ++i) {
+        const LapResult &r = results[i];
+        simulated += static_cast<double>(r.ticks) * options.dt;
+        std::printf("%s\t%.1f\t%d\t%.3f\t%.2f\t%.2f\t%.3f\t%.3f\n", names[i].c_str(),
+                    tracks[i] ? tracks[i]->totalLength : 0.0f, r.completed ? 1 : 0, r.lapTime, r.minSpeed,
+                    r.averageSpeed, r.timeAtLimit, r.timeOffTrack);
+    }
+    std::fprintf(stderr, "%zu tracks on %d threads in %.3f s (%.0fx real time for the timed laps)\n",
+                 results.size(), threads, seconds, simulated / std::max(seconds, 1e-9));
+    return 0;
+}
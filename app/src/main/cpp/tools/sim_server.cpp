@@ -0,0 +1,154 @@
+// Serves the simulation to external training code over a local socket (see sim_server.h for the
+// server and sim_protocol.h for the wire format), or with --bench measures the environment steps
+// per second a client gets at 1, 2, 4... server threads. Built by the non-Android branch of
+// CMakeLists.txt.
+//
+//   racingsim_server [--socket PATH | --port N] [--threads N] [--width W] [--track FILE]
+//   racingsim_server --bench ENVIRONMENTS [--seconds S] [--threads N] [--width W] [--track FILE]
+//
+// Without --track the environments share a generated 10 km twisty course; TRACK files are
+// described in track_file.h.
+
+#include <algorithm>
+#include <chrono>
+#include <cstdio>
+#include <cstdlib>
+#include <cstring>
+#include <memory>
+#include <string>
+#include <thread>
+#include <vector>
+
+#include "../bench/sample_tracks.h"
+#include "environment_batch.h"
+#include "sim_client.h"
+#include "sim_protocol.h"
+#include "sim_server.h"
+#include "track_file.h"
+
+namespace {
+
+using Clock = std::chrono::steady_clock;
+
+int usage() {
+    std::fprintf(stderr, "usage: racingsim_server [--socket PATH | --port N] [--threads N] [--width W] [--track FILE]\n"
+                         "       racingsim_server --bench ENVIRONMENTS [--seconds S] [--threads N] [--width W]"
+                         " [--track FILE]\n");
+    return 2;
+}
+
+// A client that steers back towards the centerline, so the cars drive rather than idle.
+void followCenterline(const std::vector<float> &observations, std::vector<float> &actions) {
+    size_t count = actions.size() / environment::kActionSize;
+    for (size_t i = 0; i < count; ++i) {
+        const float *observation = &observations[i * environment::kObservationSize];
+        float *action = &actions[i * environment::kActionSize];
+        action[0] = std::max(-1.0f, std::min(1.0f, -2.0f * observation[5] - 0.1f * observation[4]));
+        action[1] = 0.6f;
+        action[2] = 0.0f;
+    }
+}
+
+int bench(std::shared_ptr<const TrackGeometry> track, uint32_t environments, double seconds, int maxThreads) {
+    std::printf("%u environments, %.1f s per row, Unix socket\n", environments, seconds);
+    std::printf("%8s %16s %10s %14s %10s\n", "threads", "env-steps/s", "speedup", "us/request", "stepping");
+    double single = 0.0;
+    for (int threads = 1;; threads = std::min(threads * 2, maxThreads)) {
+        SimServer::Options options;
+        options.socketPath = "racingsim_bench.sock";
+        options.threads = threads;
+        SimServer server(track, options);
+        if (!server.listen()) {
+            return 1;
+        }
+        std::thread serving([&server] { server.serve(); });
+
+        SimClient client;
+        std::vector<float> observations;
+        std::vector<float> actions(static_cast<size_t>(environments) * environment::kActionSize);
+        std::vector<float> rewards;
+        std::vector<uint8_t> dones;
+        uint64_t requests = 0;
+        bool ok = client.connectUnix(options.socketPath) && client.reset(environments, 1, observations);
+        Clock::time_point start = Clock::now();
+        double elapsed = 0.0;
+        while (ok && elapsed < seconds) {
+            followCenterline(observations, actions);
+            ok = client.step(actions, observations, rewards, dones);
+            ++requests;
+            elapsed = std::chrono::duration<double>(Clock::now() - start).count();
+        }
+        client.close();
+        server.stop();
+        serving.join();
+        if (!ok) {
+            return 1;
+        }
+
+        double rate = static_cast<double>(requests) * environments / elapsed;
+        single = threads == 1 ? rate : single;
+        SimServer::Stats stats = server.stats();
+        std::printf("%8d %16.0f %10.2f %14.1f %9.0f%%\n", threads, rate, rate / single, elapsed / requests * 1e6,
+                    100.0 * stats.stepSeconds / elapsed);
+        if (threads == maxThreads) {
+            return 0;
+        }
+    }
+}
+
+} // namespace
+
+int main(int argc, char **argv) {
+    SimServer::Options options;
+    options.threads = static_cast<int>(std::max(1u, std::thread::hardware_concurrency()));
+    float width = 10.0f;
+    const char *trackPath = nullptr;
+    long benchEnvironments = 0;
+    double benchSeconds = 2.0;
+    for (int i = 1; i < argc; ++i) {
+        bool hasValue = i + 1 < argc;
+        if (std::strcmp(argv[i], "--socket") == 0 && hasValue) {
+            options.socketPath = argv[++i];
+        } else if (std::strcmp(argv[i], "--port") == 0 && hasValue) {
+            options.port = std::atoi(argv[++i]);
+        } else if (std::strcmp(argv[i], "--threads") == 0 && hasValue) {
+            options.threads = std::max(1, std::atoi(argv[++i]));
+        } else if (std::strcmp(argv[i], "--width") == 0 && hasValue) {
+            width = std::strtof(argv[++i], nullptr);
+        } else if (std::strcmp(argv[i], "--track") == 0 && hasValue) {
+            trackPath = argv[++i];
+        } else if (std::strcmp(argv[i], "--bench") == 0 && hasValue) {
+            benchEnvironments = std::atol(argv[++i]);
+        } else if (std::strcmp(argv[i], "--seconds") == 0 && hasValue) {
+            benchSeconds = std::max(0.1, std::atof(argv[++i]));
+        } else {
+            return usage();
+        }
+    }
+
+    std::vector<glm::vec2> centerline;
+    if (trackPath != nullptr && !readTrackFile(trackPath, centerline)) {
+        std::fprintf(stderr, "%s: not a track file\n", trackPath);
+        return 1;
+    }
+    if (trackPath == nullptr) {
+        centerline = sample_tracks::twisty(4000, 2.5f);
+    }
+    auto track = std::make_shared<TrackGeometry>();
+    TrackMesh mesh;
+    if (!buildTrackMesh(centerline, width, mesh, *track)) {
+        std::fprintf(stderr, "Cannot build the track\n");
+        return 1;
+    }
+
+    if (benchEnvironments > 0) {
+        auto environments = static_cast<uint32_t>(std::min<long>(benchEnvironments, sim_protocol::kMaxEnvironments));
+        return bench(std::move(track), environments, benchSeconds, options.threads);
+    }
+    SimServer server(std::move(track), options);
+    if (!server.listen()) {
+        return 1;
+    }
+    server.serve();
+    return 0;
+}
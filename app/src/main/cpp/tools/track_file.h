@@ -0,0 +1,31 @@
+#pragma once
+
+// Track files for the command-line tools: centerline points as whitespace-separated "x y" pairs in
+// metres; lines starting with '#' are comments.
+
+#include <fstream>
+#include <sstream>
+#include <string>
+#include <vector>
+
+#include "math_glm/glm.hpp"
+
+inline bool readTrackFile(const char *path, std::vector<glm::vec2> &points) {
+    std::ifstream in(path);
+    if (!in) {
+        return false;
+    }
+    std::string line;
+    while (std::getline(in, line)) {
+        if (!line.empty() && line[0] == '#') {
+            continue;
+        }
+        std::istringstream fields(line);
+        float x;
+        float y;
+        while (fields >> x >> y) {
+            points.emplace_back(x, y);
+        }
+    }
+    return points.size() >= 2;
+}
@@ -0,0 +1,122 @@
+#include "trace.h"
+
+#ifdef __ANDROID__
+#include <android/trace.h>
+#include <unistd.h>
+#elif defined(__linux__)
+#include <sys/syscall.h>
+#include <unistd.h>
+#else
+#include <functional>
+#include <thread>
+#include <unistd.h>
+#endif
+
+#include <chrono>
+#include <cinttypes>
+#include <cstdio>
+#include <mutex>
+#include <vector>
+
+namespace trace {
+namespace {
+
+constexpr size_t kMaxEvents = 1024;
+
+struct Event {
+    const char *name;
+    int64_t trackId;
+    int64_t timestampNanos;
+    int64_t durationNanos;
+    int tid;
+    char phase;
+};
+
+std::mutex gMutex;
+std::vector<Event> gEvents;
+
+int64_t nowNanos() {
+    // steady_clock is CLOCK_MONOTONIC on Android, the clock behind System.nanoTime().
+    return std::chrono::duration_cast<std::chrono::nanoseconds>(
+            std::chrono::steady_clock::now().time_since_epoch()).count();
+}
+
+int currentTid() {
+#ifdef __ANDROID__
+    return static_cast<int>(gettid());
+#elif defined(__linux__)
+    return static_cast<int>(syscall(SYS_gettid));
+#else
+    return static_cast<int>(std::hash<std::thread::id>()(std::this_thread::get_id()));
+#endif
+}
+
+void record(const Event &event) {
+    std::lock_guard<std::mutex> lock(gMutex);
+    if (gEvents.size() >= kMaxEvents) {
+        gEvents.erase(gEvents.begin());
+    }
+    gEvents.push_back(event);
+}
+
+} // namespace
+
+Scope::Scope(const char *name, int64_t trackId)
+        : name_(name), trackId_(trackId), startNanos_(nowNanos()) {
+#ifdef __ANDROID__
+    ATrace_beginSection(name);
+#endif
+}
+
+Scope::~Scope() {
+#ifdef __ANDROID__
+    ATrace_endSection();
+#endif
+    record({name_, trackId_, startNanos_, nowNanos() - startNanos_, currentTid(), 'X'});
+}
+
+void instant(const char *name, int64_t trackId) {
+    record({name, trackId, nowNanos(), 0, currentTid(), 'i'});
+}
+
+std::string drainJson(int64_t trackId) {
+    std::vector<Event> drained;
+    {
+        std::lock_guard<std::mutex> lock(gMutex);
+        auto keep = gEvents.begin();
+        for (auto it = gEvents.begin(); it != gEvents.end(); ++it) {
+            if (trackId == kNoTrack || it->trackId == trackId) {
+                drained.push_back(*it);
+            } else {
+                *keep++ = *it;
+            }
+        }
+        gEvents.erase(keep, gEvents.end());
+    }
+
+    std::string json;
+    char line[256];
+    int pid = static_cast<int>(getpid());
+    for (const Event &event : drained) {
+        if (!json.empty()) {
+            json += ",\n";
+        }
+        std::snprintf(line, sizeof(line),
+                      "{\"name\":\"%s\",\"cat\":\"native\",\"ph\":\"%c\",\"ts\":%.3f,",
+                      event.name, event.phase, static_cast<double>(event.timestampNanos) / 1000.0);
+        json += line;
+        if (event.phase == 'X') {
+            std::snprintf(line, sizeof(line), "\"dur\":%.3f,",
+                          static_cast<double>(event.durationNanos) / 1000.0);
+        } else {
+            std::snprintf(line, sizeof(line), "\"s\":\"t\",");
+        }
+        json += line;
+        std::snprintf(line, sizeof(line), "\"pid\":%d,\"tid\":%d,\"args\":{\"track\":%" PRId64 "}}",
+                      pid, event.tid, event.trackId);
+        json += line;
+    }
+    return json;
+}
+
+} // namespace trace
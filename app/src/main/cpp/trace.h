@@ -0,0 +1,34 @@
+#pragma once
+
+#include <cstdint>
+#include <string>
+
+// Named spans for the track pipeline, mirroring com.example.racingsim.perf.Tracer. Each span is
+// emitted as an ATrace section (on Android) and also recorded, with the correlation id of its track, in a
+// bounded log that Java drains into the Chrome trace file. Names must be string literals.
+namespace trace {
+
+constexpr int64_t kNoTrack = 0;
+
+class Scope {
+public:
+    Scope(const char *name, int64_t trackId);
+    ~Scope();
+
+    Scope(const Scope &) = delete;
+    Scope &operator=(const Scope &) = delete;
+
+private:
+    const char *name_;
+    int64_t trackId_;
+    int64_t startNanos_;
+};
+
+// Zero-duration marker, e.g. the first frame that shows a track.
+void instant(const char *name, int64_t trackId);
+
+// Removes the recorded events of trackId (all events for kNoTrack) and returns them as
+// comma-separated Chrome trace event objects.
+std::string drainJson(int64_t trackId);
+
+} // namespace trace
@@ -0,0 +1,34 @@
+#include "track_contact.h"
+
+#include <cmath>
+
+namespace track_contact {
+
+bool resolveBarrier(float barrier, SurfaceSample &surface, glm::vec2 &pos, float &heading, float &speed) {
+    float penetration = surface.edgeDistance - barrier;
+    if (penetration <= 0.0f || glm::length(surface.outward) < 0.5f) {
+        return false;
+    }
+    pos = pos - surface.outward * penetration;
+    surface.edgeDistance = barrier;
+    glm::vec2 forward{std::cos(heading), std::sin(heading)};
+    glm::vec2 velocity = forward * speed;
+    float into = glm::dot(velocity, surface.outward);
+    if (into <= 0.0f) {
+        return false;
+    }
+    velocity = velocity - surface.outward * (into * (1.0f + kBarrierRestitution));
+    float newSpeed = glm::length(velocity);
+    if (newSpeed < 1e-3f) {
+        speed = 0.0f;
+        return false;
+    }
+    // Keep the car's facing: a car reversing into the wall keeps reversing along it.
+    bool reversing = glm::dot(velocity, forward) < 0.0f;
+    glm::vec2 facing = reversing ? velocity * -1.0f : velocity;
+    heading = std::atan2(facing.y, facing.x);
+    speed = reversing ? -newSpeed : newSpeed;
+    return true;
+}
+
+} // namespace track_contact
@@ -0,0 +1,23 @@
+#pragma once
+
+#include "math_glm/glm.hpp"
+#include "track_surface.h"
+
+// How the track surface acts on a car, shared by Simulation and VehicleBatch so a field car and
+// the player's car respond identically.
+namespace track_contact {
+
+constexpr float kOffTrackGrip = 0.6f;
+constexpr float kOffTrackDrag = 1.5f;       // 1/s, on top of rolling friction
+// The barrier runs this fraction of the track width beyond each edge.
+constexpr float kRunOffFraction = 0.5f;
+constexpr float kBarrierRestitution = 0.2f;
+
+inline float gripFor(float edgeDistance) { return edgeDistance <= 0.0f ? 1.0f : kOffTrackGrip; }
+
+// Pushes a car that is past the barrier back onto it and cancels the velocity into it, keeping the
+// sliding component. `surface` is the sample at `pos` and is updated to match. Returns true when
+// the heading changed.
+bool resolveBarrier(float barrier, SurfaceSample &surface, glm::vec2 &pos, float &heading, float &speed);
+
+} // namespace track_contact
@@ -0,0 +1,142 @@
+#include "track_index.h"
+
+#include <algorithm>
+#include <cmath>
+#include <limits>
+
+void TrackIndex::build(const std::vector<glm::vec2> &samples, bool closed, float reach) {
+    points_ = samples;
+    closed_ = closed && samples.size() > 2;
+    reach_ = std::max(reach, 1e-3f);
+    segmentCount_ = samples.size() < 2 ? 0
+            : static_cast<uint32_t>(closed_ ? samples.size() : samples.size() - 1);
+    distances_.assign(samples.size() + 1, 0.0f);
+    for (uint32_t s = 0; s < segmentCount_; ++s) {
+        glm::vec2 a = points_[s];
+        glm::vec2 b = points_[(s + 1) % points_.size()];
+        distances_[s + 1] = distances_[s] + glm::distance(a, b);
+    }
+    length_ = distances_[segmentCount_];
+    cellStart_.clear();
+    cellSegments_.clear();
+    columns_ = 0;
+    rows_ = 0;
+    if (segmentCount_ == 0) {
+        return;
+    }
+
+    glm::vec2 lo = points_.front();
+    glm::vec2 hi = points_.front();
+    for (const glm::vec2 &p : points_) {
+        lo = {std::min(lo.x, p.x), std::min(lo.y, p.y)};
+        hi = {std::max(hi.x, p.x), std::max(hi.y, p.y)};
+    }
+    lo = lo - glm::vec2(reach_, reach_);
+    hi = hi + glm::vec2(reach_, reach_);
+    glm::vec2 extent = hi - lo;
+    // Cells about as large as the reach keep per-cell lists short; grow them if the budget demands.
+    cellSize_ = std::max({reach_, extent.x / kMaxCellsPerAxis, extent.y / kMaxCellsPerAxis});
+    origin_ = lo;
+    columns_ = std::max(1, static_cast<int>(std::ceil(extent.x / cellSize_)));
+    rows_ = std::max(1, static_cast<int>(std::ceil(extent.y / cellSize_)));
+
+    // Two passes into a compressed cell -> segment list.
+    auto cellRange = [&](uint32_t s, int &c0, int &r0, int &c1, int &r1) {
+        glm::vec2 a = points_[s];
+        glm::vec2 b = points_[(s + 1) % points_.size()];
+        glm::vec2 segLo = glm::vec2(std::min(a.x, b.x), std::min(a.y, b.y)) - glm::vec2(reach_, reach_);
+        glm::vec2 segHi = glm::vec2(std::max(a.x, b.x), std::max(a.y, b.y)) + glm::vec2(reach_, reach_);
+        c0 = std::max(0, static_cast<int>((segLo.x - origin_.x) / cellSize_));
+        r0 = std::max(0, static_cast<int>((segLo.y - origin_.y) / cellSize_));
+        c1 = std::min(columns_ - 1, static_cast<int>((segHi.x - origin_.x) / cellSize_));
+        r1 = std::min(rows_ - 1, static_cast<int>((segHi.y - origin_.y) / cellSize_));
+    };
+    size_t cellCount = static_cast<size_t>(columns_) * static_cast<size_t>(rows_);
+    cellStart_.assign(cellCount + 1, 0);
+    int c0, r0, c1, r1;
+    for (uint32_t s = 0; s < segmentCount_; ++s) {
+        cellRange(s, c0, r0, c1, r1);
+        for (int r = r0; r <= r1; ++r) {
+            for (int c = c0; c <= c1; ++c) {
+                ++cellStart_[static_cast<size_t>(r) * columns_ + c + 1];
+            }
+        }
+    }
+    for (size_t i = 1; i <= cellCount; ++i) {
+        cellStart_[i] += cellStart_[i - 1];
+    }
+    cellSegments_.resize(cellStart_[cellCount]);
+    std::vector<uint32_t> cursor(cellStart_.begin(), cellStart_.end() - 1);
+    for (uint32_t s = 0; s < segmentCount_; ++s) {
+        cellRange(s, c0, r0, c1, r1);
+        for (int r = r0; r <= r1; ++r) {
+            for (int c = c0; c <= c1; ++c) {
+                cellSegments_[cursor[static_cast<size_t>(r) * columns_ + c]++] = s;
+            }
+        }
+    }
+}
+
+size_t TrackIndex::memoryBytes() const {
+    return points_.size() * sizeof(glm::vec2) + distances_.size() * sizeof(float)
+           + cellStart_.size() * sizeof(uint32_t) + cellSegments_.size() * sizeof(uint32_t);
+}
+
+bool TrackIndex::project(glm::vec2 point, TrackProjection &out) const {
+    if (segmentCount_ == 0) {
+        return false;
+    }
+    float bestDistanceSq = std::numeric_limits<float>::max();
+    int column = static_cast<int>(std::floor((point.x - origin_.x) / cellSize_));
+    int row = static_cast<int>(std::floor((point.y - origin_.y) / cellSize_));
+    if (column >= 0 && column < columns_ && row >= 0 && row < rows_) {
+        size_t cell = static_cast<size_t>(row) * columns_ + column;
+        for (uint32_t i = cellStart_[cell]; i < cellStart_[cell + 1]; ++i) {
+            projectOnSegment(cellSegments_[i], point, bestDistanceSq, out);
+        }
+    }
+    if (bestDistanceSq > reach_ * reach_) {
+        // Beyond the reach the cell list is not guaranteed to hold the nearest segment.
+        for (uint32_t s = 0; s < segmentCount_; ++s) {
+            projectOnSegment(s, point, bestDistanceSq, out);
+        }
+    }
+    return true;
+}
+
+void TrackIndex::projectOnSegment(uint32_t segment, glm::vec2 point, float &bestDistanceSq,
+                                  TrackProjection &best) const {
+    glm::vec2 a = points_[segment];
+    glm::vec2 b = points_[(segment + 1) % points_.size()];
+    glm::vec2 ab = b - a;
+    float lengthSq = glm::dot(ab, ab);
+    float t = lengthSq > 1e-12f ? glm::clamp(glm::dot(point - a, ab) / lengthSq, 0.0f, 1.0f) : 0.0f;
+    glm::vec2 closest = a + ab * t;
+    glm::vec2 offset = point - closest;
+    float distanceSq = glm::dot(offset, offset);
+    if (distanceSq >= bestDistanceSq) {
+        return;
+    }
+    bestDistanceSq = distanceSq;
+    float segmentLength = std::sqrt(lengthSq);
+    glm::vec2 tangent = segmentLength > 1e-6f ? ab * (1.0f / segmentLength) : glm::vec2(1.0f, 0.0f);
+    best.segment = segment;
+    best.t = t;
+    best.point = closest;
+    best.tangent = tangent;
+    // Positive to the left: the cross product of the tangent and the offset.
+    best.lateral = std::copysign(std::sqrt(distanceSq), tangent.x * offset.y - tangent.y * offset.x);
+    best.progress = distances_[segment] + segmentLength * t;
+}
+
+float TrackIndex::progressDelta(float from, float to) const {
+    float delta = to - from;
+    if (closed_ && length_ > 0.0f) {
+        if (delta > length_ * 0.5f) {
+            delta -= length_;
+        } else if (delta < -length_ * 0.5f) {
+            delta += length_;
+        }
+    }
+    return delta;
+}
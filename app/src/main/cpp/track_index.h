@@ -0,0 +1,57 @@
+#pragma once
+
+#include <cstddef>
+#include <cstdint>
+#include <vector>
+
+#include "math_glm/glm.hpp"
+
+// Where a point lies relative to the centerline polyline.
+struct TrackProjection {
+    uint32_t segment = 0;
+    float t = 0.0f;              // position along the segment, 0..1
+    glm::vec2 point{0.0f, 0.0f}; // closest point on the centerline
+    glm::vec2 tangent{1.0f, 0.0f};
+    float lateral = 0.0f;        // signed distance, positive to the left of the driving direction
+    float progress = 0.0f;       // arc length from the first sample, 0..length()
+};
+
+// Uniform grid over the centerline segments. Each cell lists the segments that come within
+// `reach` of it, so any point closer than `reach` to the track is projected exactly by testing a
+// single cell, typically a handful of segments. Points farther away fall back to a full scan.
+class TrackIndex {
+public:
+    // Cells per axis are capped so the index stays within a fixed memory budget.
+    static constexpr int kMaxCellsPerAxis = 256;
+
+    void build(const std::vector<glm::vec2> &samples, bool closed, float reach);
+    bool empty() const { return segmentCount_ == 0; }
+    float length() const { return length_; }
+    bool closed() const { return closed_; }
+    float reach() const { return reach_; }
+    size_t memoryBytes() const;
+
+    bool project(glm::vec2 point, TrackProjection &out) const;
+
+    // Shortest signed arc-length step from `from` to `to`, accounting for wrap-around on closed
+    // tracks.
+    float progressDelta(float from, float to) const;
+
+private:
+    void projectOnSegment(uint32_t segment, glm::vec2 point, float &bestDistanceSq,
+                          TrackProjection &best) const;
+
+    std::vector<glm::vec2> points_;
+    std::vector<float> distances_;
+    uint32_t segmentCount_ = 0;
+    bool closed_ = false;
+    float length_ = 0.0f;
+    float reach_ = 0.0f;
+
+    glm::vec2 origin_{0.0f, 0.0f};
+    float cellSize_ = 1.0f;
+    int columns_ = 0;
+    int rows_ = 0;
+    std::vector<uint32_t> cellStart_;
+    std::vector<uint32_t> cellSegments_;
+};
@@ -0,0 +1,108 @@
+#include "track_loader.h"
+
+#include <utility>
+
+#include "native_log.h"
+#include "simulation.h"
+#include "trace.h"
+
+namespace {
+constexpr const char *kTag = "TrackLoader";
+}
+
+TrackLoader::~TrackLoader() {
+    {
+        std::lock_guard<std::mutex> lock(mutex_);
+        stopping_ = true;
+    }
+    wake_.notify_one();
+    if (thread_.joinable()) {
+        thread_.join();
+    }
+}
+
+void TrackLoader::submit(TrackRequest request) {
+    {
+        std::lock_guard<std::mutex> lock(mutex_);
+        if (request_) {
+            logging::info(kTag, "Track %lld superseded before it was built",
+                                static_cast<long long>(request_->traceId));
+        }
+        request_ = std::make_unique<TrackRequest>(std::move(request));
+        if (!thread_.joinable()) {
+            thread_ = std::thread(&TrackLoader::run, this);
+        }
+    }
+    wake_.notify_one();
+}
+
+std::unique_ptr<LoadedTrack> TrackLoader::takeReady() {
+    std::lock_guard<std::mutex> lock(mutex_);
+    ready_.store(false, std::memory_order_relaxed);
+    return std::move(finished_);
+}
+
+std::unique_ptr<LoadedRacingLine> TrackLoader::takeRacingLine() {
+    std::lock_guard<std::mutex> lock(mutex_);
+    lineReady_.store(false, std::memory_order_relaxed);
+    return std::move(racingLine_);
+}
+
+void TrackLoader::run() {
+    for (;;) {
+        std::unique_ptr<TrackRequest> request;
+        {
+            std::unique_lock<std::mutex> lock(mutex_);
+            wake_.wait(lock, [this] { return stopping_ || request_ != nullptr; });
+            if (stopping_) {
+                return;
+            }
+            request = std::move(request_);
+        }
+
+        auto loaded = std::make_unique<LoadedTrack>();
+        auto geometry = std::make_shared<TrackGeometry>();
+        {
+            trace::Scope span("buildTrackMesh", request->traceId);
+            if (!buildTrackMesh(request->centerline, request->width, loaded->mesh, *geometry)) {
+                continue;
+            }
+            geometry->cones.build(request->leftCones, request->rightCones,
+                                  Simulation::kCarRadius + Simulation::kConeRadius);
+        }
+        loaded->geometry = geometry;
+        loaded->traceId = request->traceId;
+
+        {
+            std::lock_guard<std::mutex> lock(mutex_);
+            if (finished_) {
+                logging::info(kTag, "Track %lld replaced before it was drawn",
+                              static_cast<long long>(finished_->traceId));
+            }
+            finished_ = std::move(loaded);
+            ready_.store(true, std::memory_order_release);
+            // A track that is already superseded would only be drawn for a moment; build the next.
+            if (request_ != nullptr || stopping_) {
+                continue;
+            }
+        }
+        solveRacingLine(*geometry, request->traceId);
+    }
+}
+
+void TrackLoader::solveRacingLine(const TrackGeometry &geometry, int64_t traceId) {
+    auto solved = std::make_unique<LoadedRacingLine>();
+    solved->traceId = traceId;
+    {
+        trace::Scope span("racingLine", traceId);
+        if (!lineSolver_.solve(geometry, solved->line)) {
+            return;
+        }
+    }
+    logging::info(kTag, "Racing line for track %lld: %zu points in %d passes", static_cast<long long>(traceId),
+                  solved->line.points.size(), solved->line.iterations);
+
+    std::lock_guard<std::mutex> lock(mutex_);
+    racingLine_ = std::move(solved);
+    lineReady_.store(true, std::memory_order_release);
+}
@@ -0,0 +1,74 @@
+#pragma once
+
+#include <atomic>
+#include <condition_variable>
+#include <cstdint>
+#include <memory>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+#include "math_glm/glm.hpp"
+#include "racing_line.h"
+#include "track_mesh.h"
+
+struct TrackRequest {
+    std::vector<glm::vec2> centerline;
+    std::vector<glm::vec2> leftCones;
+    std::vector<glm::vec2> rightCones;
+    float width = 0.0f;
+    int64_t traceId = 0;
+};
+
+struct LoadedTrack {
+    TrackMesh mesh;
+    std::shared_ptr<const TrackGeometry> geometry;
+    int64_t traceId = 0;
+};
+
+struct LoadedRacingLine {
+    RacingLine line;
+    int64_t traceId = 0;
+};
+
+// Builds track meshes and geometry on a worker thread. submit() only queues the request, so callers
+// on the UI thread never pay for the build; a finished track waits in a single handoff slot that the
+// GL thread empties without blocking. A request submitted before the worker picks up the previous
+// one replaces it, as does a track finished before the GL thread took the one in the slot. Once a
+// track is handed over, and unless another request is already waiting, the worker goes on to solve
+// its racing line, which follows through a second slot tagged with the track's trace id.
+class TrackLoader {
+public:
+    TrackLoader() = default;
+    ~TrackLoader();
+
+    TrackLoader(const TrackLoader &) = delete;
+    TrackLoader &operator=(const TrackLoader &) = delete;
+
+    // Any thread. Starts the worker on first use.
+    void submit(TrackRequest request);
+    // A cheap check for the GL thread before it calls takeReady().
+    bool hasReady() const { return ready_.load(std::memory_order_acquire); }
+    // Returns the newest finished track, or null; never waits for a build in progress.
+    std::unique_ptr<LoadedTrack> takeReady();
+    bool hasRacingLine() const { return lineReady_.load(std::memory_order_acquire); }
+    // Returns the newest solved racing line, or null. It may belong to a track the caller has
+    // not switched to yet, or has already replaced; compare trace ids.
+    std::unique_ptr<LoadedRacingLine> takeRacingLine();
+
+private:
+    void run();
+    void solveRacingLine(const TrackGeometry &geometry, int64_t traceId);
+
+    std::mutex mutex_;
+    std::condition_variable wake_;
+    std::unique_ptr<TrackRequest> request_;
+    std::unique_ptr<LoadedTrack> finished_;
+    std::atomic<bool> ready_{false};
+    std::unique_ptr<LoadedRacingLine> racingLine_;
+    std::atomic<bool> lineReady_{false};
+    bool stopping_ = false;
+    std::thread thread_;
+    // Worker thread only.
+    RacingLineSolver lineSolver_;
+};
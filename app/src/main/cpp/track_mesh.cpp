@@ -1,11 +1,18 @@
 #include "track_mesh.h"
 
 #include <algorithm>
-#include <android/log.h>
+
+#include "native_log.h"
 
 namespace {
 
 constexpr const char *kTag = "TrackMesh";
+// Resampling bounds, in track widths: the centerline may deviate from the spline by at most the chord
+// error, samples are never farther apart than the maximum spacing, and the spline is evaluated at
+// the minimum spacing before simplification.
+constexpr float kMaxChordErrorInWidths = 0.01f;
+constexpr float kMaxSpacingInWidths = 2.0f;
+constexpr float kMinSpacingInWidths = 1.0f / 16.0f;
 
 std::vector<float> buildCumulativeDistances(const std::vector<glm::vec2> &points) {
     std::vector<float> cumulative(points.size(), 0.0f);
@@ -15,44 +22,96 @@ std::vector<float> buildCumulativeDistances(const std::vector<glm::vec2> &points
     return cumulative;
 }
 
-std::vector<glm::vec2> resample(const std::vector<glm::vec2> &points, float spacing) {
-    if (points.size() < 2 || spacing <= 0.0f) {
-        return points;
+glm::vec2 catmullRom(glm::vec2 p0, glm::vec2 p1, glm::vec2 p2, glm::vec2 p3, float t) {
+    float t2 = t * t;
+    float t3 = t2 * t;
+    return (p1 * 2.0f + (p2 - p0) * t + (p0 * 2.0f - p1 * 5.0f + p2 * 4.0f - p3) * t2
+            + (p1 * 3.0f - p0 - p2 * 3.0f + p3) * t3) * 0.5f;
+}
+
+// Subdivides every input segment into pieces no longer than `spacing` along a Catmull-Rom spline
+// through the input points, so tight corners given by only a few points become smooth.
+std::vector<glm::vec2> densify(const std::vector<glm::vec2> &points, bool closed, float spacing) {
+    size_t count = points.size();
+    size_t segments = closed ? count : count - 1;
+    auto at = [&](long index) {
+        if (closed) {
+            return points[static_cast<size_t>((index % static_cast<long>(count) + static_cast<long>(count))
+                                              % static_cast<long>(count))];
+        }
+        return points[static_cast<size_t>(glm::clamp(index, 0L, static_cast<long>(count) - 1))];
+    };
+    std::vector<glm::vec2> dense;
+    dense.reserve(count * 2);
+    for (size_t s = 0; s < segments; ++s) {
+        auto i = static_cast<long>(s);
+        glm::vec2 p0 = at(i - 1);
+        glm::vec2 p1 = at(i);
+        glm::vec2 p2 = at(i + 1);
+        glm::vec2 p3 = at(i + 2);
+        int pieces = std::max(1, static_cast<int>(std::ceil(glm::distance(p1, p2) / spacing)));
+        for (int k = 0; k < pieces; ++k) {
+            dense.push_back(k == 0 ? p1 : catmullRom(p0, p1, p2, p3, static_cast<float>(k) / pieces));
+        }
     }
-    std::vector<float> cumulative = buildCumulativeDistances(points);
-    float totalLength = cumulative.back();
-    if (totalLength < spacing * 0.5f) {
-        return points;
+    if (!closed) {
+        dense.push_back(points.back());
     }
-    std::vector<glm::vec2> result;
-    result.reserve(static_cast<size_t>(totalLength / spacing) + 2);
-    result.push_back(points.front());
-    int sampleCount = static_cast<int>(totalLength / spacing);
-    for (int i = 1; i <= sampleCount; ++i) {
-        float target = spacing * static_cast<float>(i);
-        if (target >= totalLength) {
-            break;
+    return dense;
+}
+
+float distanceToChord(glm::vec2 point, glm::vec2 a, glm::vec2 b) {
+    glm::vec2 ab = b - a;
+    float lengthSq = glm::dot(ab, ab);
+    float t = lengthSq > 1e-12f ? glm::clamp(glm::dot(point - a, ab) / lengthSq, 0.0f, 1.0f) : 0.0f;
+    return glm::distance(point, a + ab * t);
+}
+
+// Keeps the fewest dense points such that every dropped point lies within `maxError` of the chord
+// that replaces it and no chord is longer than `maxSpacing`. Long straights collapse to a few
+// samples while hairpins keep as many as the error bound needs. Returns indices into `dense`.
+std::vector<size_t> simplify(const std::vector<glm::vec2> &dense, bool closed, float maxError, float maxSpacing) {
+    // A closed loop is walked back to its first point, which is then dropped again.
+    size_t end = closed ? dense.size() : dense.size() - 1;
+    auto point = [&](size_t index) { return dense[index % dense.size()]; };
+    std::vector<size_t> kept;
+    kept.push_back(0);
+    size_t anchor = 0;
+    while (anchor < end) {
+        size_t next = anchor + 1;
+        float arc = glm::distance(point(anchor), point(next));
+        while (next < end) {
+            size_t candidate = next + 1;
+            float candidateArc = arc + glm::distance(point(next), point(candidate));
+            if (candidateArc > maxSpacing) {
+                break;
+            }
+            bool fits = true;
+            for (size_t i = anchor + 1; i < candidate && fits; ++i) {
+                fits = distanceToChord(point(i), point(anchor), point(candidate)) <= maxError;
+            }
+            if (!fits) {
+                break;
+            }
+            next = candidate;
+            arc = candidateArc;
         }
-        auto it = std::lower_bound(cumulative.begin(), cumulative.end(), target);
-        size_t index = static_cast<size_t>(std::max<int>(0, static_cast<int>(it - cumulative.begin()) - 1));
-        size_t nextIndex = std::min(points.size() - 1, index + 1);
-        float segmentStart = cumulative[index];
-        float segmentEnd = cumulative[nextIndex];
-        float segmentLength = std::max(segmentEnd - segmentStart, 1e-4f);
-        float factor = (target - segmentStart) / segmentLength;
-        glm::vec2 sample = points[index] + (points[nextIndex] - points[index]) * factor;
-        result.push_back(sample);
-    }
-    if (glm::distance(result.back(), points.back()) > 1e-3f) {
-        result.push_back(points.back());
+        if (next < end || !closed) {
+            kept.push_back(next);
+        }
+        anchor = next;
     }
-    return result;
+    return kept;
 }
 
-glm::vec2 computeTangent(const std::vector<glm::vec2> &samples, size_t index) {
+glm::vec2 computeTangent(const std::vector<glm::vec2> &samples, size_t index, bool closed) {
     if (samples.size() < 2) {
         return {1.0f, 0.0f};
     }
+    if (closed) {
+        size_t count = samples.size();
+        return glm::normalize(samples[(index + 1) % count] - samples[(index + count - 1) % count]);
+    }
     if (index == 0) {
         return glm::normalize(samples[1] - samples[0]);
     }
@@ -69,45 +128,74 @@ bool buildTrackMesh(const std::vector<glm::vec2> &centerline,
                     TrackMesh &outMesh,
                     TrackGeometry &outGeometry) {
     if (centerline.size() < 2 || width <= 0.0f) {
-        __android_log_print(ANDROID_LOG_WARN, kTag, "Invalid track data: points=%zu width=%f",
+        logging::warn(kTag, "Invalid track data: points=%zu width=%f",
                              centerline.size(), width);
         return false;
     }
 
-    float spacing = std::max(width * 0.25f, 1.0f);
-    std::vector<glm::vec2> samples = resample(centerline, spacing);
+    // The generator emits loops without repeating the first point; treat a short gap as closed.
+    float closingGap = std::max(width * 0.5f, 1.0f);
+    std::vector<glm::vec2> points = centerline;
+    bool closed = points.size() > 2 && glm::distance(points.front(), points.back()) <= closingGap;
+    if (closed && glm::distance(points.front(), points.back()) < 1e-4f) {
+        points.pop_back();
+    }
+
+    std::vector<glm::vec2> dense = densify(points, closed, width * kMinSpacingInWidths);
+    std::vector<size_t> kept = simplify(dense, closed, width * kMaxChordErrorInWidths,
+                                        width * kMaxSpacingInWidths);
+    std::vector<glm::vec2> samples;
+    samples.reserve(kept.size());
+    for (size_t index : kept) {
+        samples.push_back(dense[index]);
+    }
     std::vector<float> cumulative = buildCumulativeDistances(samples);
 
-    if (samples.size() < 2) {
-        __android_log_print(ANDROID_LOG_WARN, kTag, "Resampled track too short");
+    if (samples.size() < 2 || (closed && samples.size() < 3)) {
+        logging::warn(kTag, "Resampled track too short");
         return false;
     }
 
     outGeometry.samples = samples;
     outGeometry.width = width;
-    outGeometry.totalLength = cumulative.back();
+    outGeometry.closed = closed;
     outGeometry.tangents.resize(samples.size());
+    // Single-cell projections out to one and a half widths from the centerline, which covers the
+    // run-off up to the simulation's barrier; only cars beyond it pay for a full scan.
+    outGeometry.index.build(samples, closed, width * 1.5f);
+    outGeometry.totalLength = outGeometry.index.length();
+    // Resolve edge distances a full width into the run-off, past the simulation's barrier.
+    outGeometry.surface.build(samples, closed, width, width);
 
     float halfWidth = width * 0.5f;
     float uvScale = 1.0f / std::max(width, 1.0f);
+    // A closed track repeats its first sample as a final row so the last quad has its own texture
+    // coordinates instead of wrapping back to v = 0.
+    size_t rows = samples.size() + (closed ? 1 : 0);
 
     outMesh.vertices.clear();
     outMesh.indices.clear();
+    outMesh.chunks.clear();
     outMesh.stride = 5;
-    outMesh.vertices.reserve(samples.size() * 2 * outMesh.stride);
-    outMesh.indices.reserve((samples.size() - 1) * 6);
+    outMesh.vertices.reserve(rows * 2 * outMesh.stride);
+    outMesh.indices.reserve((rows - 1) * 6);
 
     for (size_t i = 0; i < samples.size(); ++i) {
-        glm::vec2 tangent = computeTangent(samples, i);
-        outGeometry.tangents[i] = tangent;
-        glm::vec2 normal{-tangent.y, tangent.x};
-        normal = glm::normalize(normal);
+        // The dense neighbours give a centred tangent however unevenly the samples are spaced.
+        outGeometry.tangents[i] = computeTangent(dense, kept[i], closed);
+    }
+    std::vector<float> rowDistance(rows);
+    for (size_t row = 0; row < rows; ++row) {
+        size_t i = row % samples.size();
+        glm::vec2 tangent = outGeometry.tangents[i];
+        glm::vec2 normal = glm::normalize(glm::vec2(-tangent.y, tangent.x));
 
         glm::vec2 center = samples[i];
         glm::vec2 left = center + normal * halfWidth;
         glm::vec2 right = center - normal * halfWidth;
 
-        float v = cumulative[i] * uvScale;
+        rowDistance[row] = row < samples.size() ? cumulative[i] : outGeometry.totalLength;
+        float v = rowDistance[row] * uvScale;
 
         outMesh.vertices.push_back(left.x);
         outMesh.vertices.push_back(0.0f);
@@ -120,17 +208,51 @@ bool buildTrackMesh(const std::vector<glm::vec2> &centerline,
         outMesh.vertices.push_back(right.y);
         outMesh.vertices.push_back(1.0f);
         outMesh.vertices.push_back(v);
+    }
 
-        if (i + 1 < samples.size()) {
-            uint32_t base = static_cast<uint32_t>(i * 2);
+    // Fixed-length chunks. Consecutive chunks share a base vertex until their vertices no longer fit
+    // 16-bit indices, so drawing rarely has to re-point the attributes.
+    float chunkLength = width * TrackMesh::kChunkLengthInWidths;
+    uint32_t baseVertex = 0;
+    size_t firstRow = 0;
+    while (firstRow + 1 < rows) {
+        size_t lastRow = firstRow + 1;
+        while (lastRow + 1 < rows && lastRow - firstRow < TrackMesh::kMaxChunkQuads
+               && rowDistance[lastRow] - rowDistance[firstRow] < chunkLength) {
+            ++lastRow;
+        }
+        if (lastRow * 2 + 1 - baseVertex > 0xFFFFu) {
+            baseVertex = static_cast<uint32_t>(firstRow * 2);
+        }
+
+        TrackChunk chunk;
+        chunk.firstIndex = static_cast<uint32_t>(outMesh.indices.size());
+        chunk.baseVertex = baseVertex;
+        chunk.boundsMin = {outMesh.vertices[firstRow * 2 * outMesh.stride], 0.0f,
+                           outMesh.vertices[firstRow * 2 * outMesh.stride + 2]};
+        chunk.boundsMax = chunk.boundsMin;
+        for (size_t row = firstRow; row <= lastRow; ++row) {
+            for (size_t side = 0; side < 2; ++side) {
+                const float *vertex = &outMesh.vertices[(row * 2 + side) * outMesh.stride];
+                chunk.boundsMin.x = std::min(chunk.boundsMin.x, vertex[0]);
+                chunk.boundsMin.z = std::min(chunk.boundsMin.z, vertex[2]);
+                chunk.boundsMax.x = std::max(chunk.boundsMax.x, vertex[0]);
+                chunk.boundsMax.z = std::max(chunk.boundsMax.z, vertex[2]);
+            }
+        }
+        for (size_t row = firstRow; row < lastRow; ++row) {
+            auto base = static_cast<uint16_t>(row * 2 - baseVertex);
             outMesh.indices.push_back(base);
-            outMesh.indices.push_back(base + 1);
-            outMesh.indices.push_back(base + 2);
+            outMesh.indices.push_back(static_cast<uint16_t>(base + 1));
+            outMesh.indices.push_back(static_cast<uint16_t>(base + 2));
 
-            outMesh.indices.push_back(base + 1);
-            outMesh.indices.push_back(base + 3);
-            outMesh.indices.push_back(base + 2);
+            outMesh.indices.push_back(static_cast<uint16_t>(base + 1));
+            outMesh.indices.push_back(static_cast<uint16_t>(base + 3));
+            outMesh.indices.push_back(static_cast<uint16_t>(base + 2));
         }
+        chunk.indexCount = static_cast<uint32_t>(outMesh.indices.size()) - chunk.firstIndex;
+        outMesh.chunks.push_back(chunk);
+        firstRow = lastRow;
     }
 
     return true;
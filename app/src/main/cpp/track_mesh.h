@@ -3,11 +3,29 @@
 #include <cstdint>
 #include <vector>
 
+#include "cone_field.h"
 #include "math_glm/glm.hpp"
+#include "track_index.h"
+#include "track_surface.h"
+
+// A run of the track drawn with one call. Its 16-bit indices are relative to baseVertex, so the
+// vertex attributes must point there when it is drawn.
+struct TrackChunk {
+    uint32_t firstIndex = 0;
+    uint32_t indexCount = 0;
+    uint32_t baseVertex = 0;
+    glm::vec3 boundsMin{0.0f, 0.0f, 0.0f};
+    glm::vec3 boundsMax{0.0f, 0.0f, 0.0f};
+};
 
 struct TrackMesh {
+    // Target chunk length along the centerline, in track widths.
+    static constexpr float kChunkLengthInWidths = 8.0f;
+    static constexpr uint32_t kMaxChunkQuads = 1024;
+
     std::vector<float> vertices;
-    std::vector<uint32_t> indices;
+    std::vector<uint16_t> indices;
+    std::vector<TrackChunk> chunks;
     int stride = 5;
 };
 
@@ -16,6 +34,12 @@ struct TrackGeometry {
     std::vector<glm::vec2> tangents;
     float width = 0.0f;
     float totalLength = 0.0f;
+    // Whether the last sample connects back to the first.
+    bool closed = false;
+    TrackIndex index;
+    TrackSurface surface;
+    // Filled by the caller after buildTrackMesh; empty when the course has no cones.
+    ConeField cones;
 };
 
 bool buildTrackMesh(const std::vector<glm::vec2> &centerline,
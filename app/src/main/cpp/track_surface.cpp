@@ -0,0 +1,154 @@
+#include "track_surface.h"
+
+#include <algorithm>
+#include <cmath>
+#include <limits>
+
+namespace {
+// A fixed fraction of the width resolves the edge to a few centimetres on typical courses.
+constexpr float kCellsPerWidth = 8.0f;
+constexpr float kMaxTexel = 32767.0f;
+}
+
+void TrackSurface::build(const std::vector<glm::vec2> &samples, bool closed, float width, float band) {
+    texels_.clear();
+    columns_ = 0;
+    rows_ = 0;
+    if (samples.size() < 2 || width <= 0.0f) {
+        return;
+    }
+    float halfWidth = width * 0.5f;
+    band_ = std::max(band, 0.0f);
+    float reach = halfWidth + band_;
+
+    glm::vec2 lo = samples.front();
+    glm::vec2 hi = samples.front();
+    for (const glm::vec2 &p : samples) {
+        lo = {std::min(lo.x, p.x), std::min(lo.y, p.y)};
+        hi = {std::max(hi.x, p.x), std::max(hi.y, p.y)};
+    }
+    lo = lo - glm::vec2(reach, reach);
+    hi = hi + glm::vec2(reach, reach);
+    glm::vec2 extent = hi - lo;
+
+    size_t maxTexels = kMaxBytes / sizeof(int16_t);
+    cellSize_ = std::max(width / kCellsPerWidth, 1e-3f);
+    float budgetCell = std::sqrt(extent.x * extent.y / static_cast<float>(maxTexels));
+    cellSize_ = std::max(cellSize_, budgetCell);
+    // Texels sit on cell corners, hence the +1; rounding can still overshoot, so grow until it fits.
+    for (;;) {
+        columns_ = static_cast<int>(std::ceil(extent.x / cellSize_)) + 1;
+        rows_ = static_cast<int>(std::ceil(extent.y / cellSize_)) + 1;
+        if (static_cast<size_t>(columns_) * static_cast<size_t>(rows_) <= maxTexels) {
+            break;
+        }
+        cellSize_ *= 1.05f;
+    }
+    origin_ = lo;
+    quantum_ = std::max(reach, 1e-3f) / kMaxTexel;
+
+    // Every texel starts at the clamp; each segment then lowers the texels it can reach.
+    auto far = static_cast<int16_t>(std::lround(band_ / quantum_));
+    texels_.assign(static_cast<size_t>(columns_) * static_cast<size_t>(rows_), far);
+    size_t segmentCount = closed ? samples.size() : samples.size() - 1;
+    for (size_t s = 0; s < segmentCount; ++s) {
+        glm::vec2 a = samples[s];
+        glm::vec2 b = samples[(s + 1) % samples.size()];
+        glm::vec2 ab = b - a;
+        float lengthSq = glm::dot(ab, ab);
+        int c0 = std::max(0, static_cast<int>(std::floor((std::min(a.x, b.x) - reach - origin_.x) / cellSize_)));
+        int r0 = std::max(0, static_cast<int>(std::floor((std::min(a.y, b.y) - reach - origin_.y) / cellSize_)));
+        int c1 = std::min(columns_ - 1, static_cast<int>(std::ceil((std::max(a.x, b.x) + reach - origin_.x) / cellSize_)));
+        int r1 = std::min(rows_ - 1, static_cast<int>(std::ceil((std::max(a.y, b.y) + reach - origin_.y) / cellSize_)));
+        for (int r = r0; r <= r1; ++r) {
+            int16_t *row = &texels_[static_cast<size_t>(r) * columns_];
+            for (int c = c0; c <= c1; ++c) {
+                glm::vec2 p = origin_ + glm::vec2(static_cast<float>(c), static_cast<float>(r)) * cellSize_;
+                float t = lengthSq > 1e-12f ? glm::clamp(glm::dot(p - a, ab) / lengthSq, 0.0f, 1.0f) : 0.0f;
+                float distance = glm::distance(p, a + ab * t) - halfWidth;
+                if (distance >= band_) {
+                    continue;
+                }
+                auto value = static_cast<int16_t>(std::lround(distance / quantum_));
+                row[c] = std::min(row[c], value);
+            }
+        }
+    }
+}
+
+float TrackSurface::texel(int column, int row) const {
+    column = glm::clamp(column, 0, columns_ - 1);
+    row = glm::clamp(row, 0, rows_ - 1);
+    return static_cast<float>(texels_[static_cast<size_t>(row) * columns_ + column]) * quantum_;
+}
+
+SurfaceSample TrackSurface::sample(glm::vec2 point) const {
+    SurfaceSample result;
+    if (texels_.empty()) {
+        result.edgeDistance = std::numeric_limits<float>::max();
+        return result;
+    }
+    glm::vec2 cell = (point - origin_) * (1.0f / cellSize_);
+    if (cell.x < 0.0f || cell.y < 0.0f || cell.x > static_cast<float>(columns_ - 1)
+        || cell.y > static_cast<float>(rows_ - 1)) {
+        // Outside the raster everything is at least `band` from the track; point back at it.
+        glm::vec2 center = origin_ + glm::vec2(static_cast<float>(columns_ - 1),
+                                               static_cast<float>(rows_ - 1)) * (cellSize_ * 0.5f);
+        glm::vec2 away = point - center;
+        float length = glm::length(away);
+        result.edgeDistance = band_;
+        result.outward = length > 1e-6f ? away * (1.0f / length) : glm::vec2(0.0f, 0.0f);
+        return result;
+    }
+    int column = std::min(static_cast<int>(cell.x), columns_ - 2 < 0 ? 0 : columns_ - 2);
+    int row = std::min(static_cast<int>(cell.y), rows_ - 2 < 0 ? 0 : rows_ - 2);
+    float fx = cell.x - static_cast<float>(column);
+    float fy = cell.y - static_cast<float>(row);
+    float d00 = texel(column, row);
+    float d10 = texel(column + 1, row);
+    float d01 = texel(column, row + 1);
+    float d11 = texel(column + 1, row + 1);
+
+    float bottom = d00 + (d10 - d00) * fx;
+    float top = d01 + (d11 - d01) * fx;
+    result.edgeDistance = bottom + (top - bottom) * fy;
+
+    glm::vec2 gradient{(d10 - d00) + ((d11 - d01) - (d10 - d00)) * fy,
+                       (d01 - d00) + ((d11 - d10) - (d01 - d00)) * fx};
+    float length = glm::length(gradient);
+    result.outward = length > 1e-6f ? gradient * (1.0f / length) : glm::vec2(0.0f, 0.0f);
+    return result;
+}
+
+void TrackSurface::edgeDistances(const float *x, const float *y, size_t count, float *out) const {
+    if (texels_.empty()) {
+        std::fill(out, out + count, std::numeric_limits<float>::max());
+        return;
+    }
+    // Same arithmetic as sample(), so results match it exactly. build() always makes at least two
+    // columns and rows, so the corner reads below need no clamping.
+    float inverseCell = 1.0f / cellSize_;
+    auto lastColumn = static_cast<float>(columns_ - 1);
+    auto lastRow = static_cast<float>(rows_ - 1);
+    const int16_t *texels = texels_.data();
+    for (size_t i = 0; i < count; ++i) {
+        float cellX = (x[i] - origin_.x) * inverseCell;
+        float cellY = (y[i] - origin_.y) * inverseCell;
+        if (cellX < 0.0f || cellY < 0.0f || cellX > lastColumn || cellY > lastRow) {
+            out[i] = band_;
+            continue;
+        }
+        int column = std::min(static_cast<int>(cellX), columns_ - 2);
+        int row = std::min(static_cast<int>(cellY), rows_ - 2);
+        float fx = cellX - static_cast<float>(column);
+        float fy = cellY - static_cast<float>(row);
+        const int16_t *corner = texels + static_cast<size_t>(row) * columns_ + column;
+        float d00 = static_cast<float>(corner[0]) * quantum_;
+        float d10 = static_cast<float>(corner[1]) * quantum_;
+        float d01 = static_cast<float>(corner[columns_]) * quantum_;
+        float d11 = static_cast<float>(corner[columns_ + 1]) * quantum_;
+        float bottom = d00 + (d10 - d00) * fx;
+        float top = d01 + (d11 - d01) * fx;
+        out[i] = bottom + (top - bottom) * fy;
+    }
+}
@@ -0,0 +1,47 @@
+#pragma once
+
+#include <cstddef>
+#include <cstdint>
+#include <vector>
+
+#include "math_glm/glm.hpp"
+
+// Signed distance to the nearest track edge and the direction away from the track.
+struct SurfaceSample {
+    float edgeDistance = 0.0f;      // negative on the track surface, positive off it
+    glm::vec2 outward{0.0f, 0.0f};  // unit gradient of edgeDistance; zero where it is flat
+};
+
+// Signed-distance raster of the track surface, built once per course from the centerline. Lookups
+// are four texel reads and a bilinear blend, independent of track length. Distance is the exact
+// distance to the centerline polyline minus half the width, so inside corners and hairpins are
+// right where a nearest-sample clamp is not. Values are stored as 16-bit fixed point and the grid
+// resolution is lowered until it fits kMaxBytes.
+class TrackSurface {
+public:
+    static constexpr size_t kMaxBytes = 512 * 1024;
+
+    // `band` is how far beyond the edges distances are resolved; farther cells clamp to it.
+    void build(const std::vector<glm::vec2> &samples, bool closed, float width, float band);
+    bool empty() const { return texels_.empty(); }
+    float cellSize() const { return cellSize_; }
+    float band() const { return band_; }
+    size_t memoryBytes() const { return texels_.size() * sizeof(int16_t); }
+
+    float edgeDistance(glm::vec2 point) const { return sample(point).edgeDistance; }
+    bool onSurface(glm::vec2 point) const { return edgeDistance(point) <= 0.0f; }
+    SurfaceSample sample(glm::vec2 point) const;
+    // edgeDistance() for many points at once, without the gradient: out[i] for (x[i], y[i]).
+    void edgeDistances(const float *x, const float *y, size_t count, float *out) const;
+
+private:
+    float texel(int column, int row) const;
+
+    glm::vec2 origin_{0.0f, 0.0f};
+    float cellSize_ = 1.0f;
+    float band_ = 0.0f;
+    float quantum_ = 1.0f;
+    int columns_ = 0;
+    int rows_ = 0;
+    std::vector<int16_t> texels_;
+};
@@ -0,0 +1,40 @@
+#pragma once
+
+#include <atomic>
+#include <cstdint>
+
+// Single-producer, single-consumer triple buffer. The writer fills writeBuffer() and publishes it;
+// the reader picks up the latest published value with update() and reads it until the next
+// update(). Neither side ever waits for the other, and the reader always sees a complete value.
+template <typename T>
+class TripleBuffer {
+public:
+    // Writer side.
+    T &writeBuffer() { return slots_[back_]; }
+
+    void publish() {
+        uint32_t previous = middle_.exchange(back_ | kFreshBit, std::memory_order_acq_rel);
+        back_ = previous & kIndexMask;
+    }
+
+    // Reader side. Returns true when a newer value was published since the last call.
+    bool update() {
+        if ((middle_.load(std::memory_order_relaxed) & kFreshBit) == 0) {
+            return false;
+        }
+        uint32_t previous = middle_.exchange(front_, std::memory_order_acq_rel);
+        front_ = previous & kIndexMask;
+        return true;
+    }
+
+    const T &read() const { return slots_[front_]; }
+
+private:
+    static constexpr uint32_t kFreshBit = 0x4;
+    static constexpr uint32_t kIndexMask = 0x3;
+
+    T slots_[3]{};
+    uint32_t back_ = 0;
+    std::atomic<uint32_t> middle_{1};
+    uint32_t front_ = 2;
+};
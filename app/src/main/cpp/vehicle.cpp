@@ -3,14 +3,7 @@
 #include <algorithm>
 #include <cmath>
 
-namespace {
-constexpr float kMaxSteer = 0.5f;           // radians
-constexpr float kMaxSpeed = 60.0f;          // m/s equivalent
-constexpr float kMaxReverseSpeed = -10.0f;
-constexpr float kEngineAcceleration = 12.0f;
-constexpr float kBrakeDeceleration = 25.0f;
-constexpr float kRollingFriction = 3.0f;
-}
+using namespace vehicle;
 
 void step(Car &car, float dt) {
     if (dt <= 0.0f) {
@@ -20,8 +13,9 @@ void step(Car &car, float dt) {
     float steer = glm::clamp(car.steer, -kMaxSteer, kMaxSteer);
     float throttle = glm::clamp(car.throttle, 0.0f, 1.0f);
     float brake = glm::clamp(car.brake, 0.0f, 1.0f);
+    float grip = glm::clamp(car.grip, 0.0f, 1.0f);
 
-    float acceleration = throttle * kEngineAcceleration - brake * kBrakeDeceleration;
+    float acceleration = (throttle * kEngineAcceleration - brake * kBrakeDeceleration) * grip;
     acceleration -= glm::clamp(car.speed, -kMaxSpeed, kMaxSpeed) * kRollingFriction * 0.02f;
 
     car.speed += acceleration * dt;
@@ -30,7 +24,7 @@ void step(Car &car, float dt) {
     float angularVelocity = 0.0f;
     if (std::fabs(steer) > 1e-4f) {
         float turnRadius = car.wheelbase / std::tan(steer);
-        angularVelocity = car.speed / turnRadius;
+        angularVelocity = car.speed / turnRadius * grip;
     }
     car.heading += angularVelocity * dt;
 
@@ -2,6 +2,16 @@
 
 #include "math_glm/glm.hpp"
 
+// Handling limits shared by step() and VehicleBatch.
+namespace vehicle {
+constexpr float kMaxSteer = 0.5f;           // radians
+constexpr float kMaxSpeed = 60.0f;          // m/s equivalent
+constexpr float kMaxReverseSpeed = -10.0f;
+constexpr float kEngineAcceleration = 12.0f;
+constexpr float kBrakeDeceleration = 25.0f;
+constexpr float kRollingFriction = 3.0f;
+} // namespace vehicle
+
 struct Car {
     float steer = 0.0f;
     float throttle = 0.0f;
@@ -9,6 +19,8 @@ struct Car {
     float heading = 0.0f;
     float speed = 0.0f;
     glm::vec2 pos{0.0f, 0.0f};
+    // Surface friction: 1 on the track, lower off it. Set by the simulation before each step.
+    float grip = 1.0f;
     float wheelbase = 2.6f;
 };
 
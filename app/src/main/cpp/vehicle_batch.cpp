@@ -0,0 +1,159 @@
+#include "vehicle_batch.h"
+
+#include <cmath>
+
+#include "parallel_for.h"
+#include "track_contact.h"
+
+using namespace vehicle;
+
+namespace {
+// By value, so the loop below selects between registers rather than addresses.
+inline float clampValue(float value, float low, float high) {
+    value = value < low ? low : value;
+    return value > high ? high : value;
+}
+
+// Restrict-qualified parameters rather than locals: GCC only drops the alias checks for the former.
+void stepCars(size_t begin, size_t end, float dt, const float *__restrict steerIn,
+              const float *__restrict throttleIn, const float *__restrict brakeIn,
+              const float *__restrict gripIn, const float *__restrict inverseWheelbase,
+              float *__restrict heading, float *__restrict speed, float *__restrict x, float *__restrict y,
+              float *__restrict dirX, float *__restrict dirY) {
+    for (size_t i = begin; i < end; ++i) {
+        float steer = clampValue(steerIn[i], -kMaxSteer, kMaxSteer);
+        float throttle = clampValue(throttleIn[i], 0.0f, 1.0f);
+        float brake = clampValue(brakeIn[i], 0.0f, 1.0f);
+        float grip = clampValue(gripIn[i], 0.0f, 1.0f);
+
+        float acceleration = (throttle * kEngineAcceleration - brake * kBrakeDeceleration) * grip;
+        acceleration -= clampValue(speed[i], -kMaxSpeed, kMaxSpeed) * kRollingFriction * 0.02f;
+        float v = clampValue(speed[i] + acceleration * dt, kMaxReverseSpeed, kMaxSpeed);
+        speed[i] = v;
+
+        // tan(steer) to a few ulp over [-kMaxSteer, kMaxSteer].
+        float s2 = steer * steer;
+        float tanSteer = steer * (1.0f + s2 * (1.0f / 3.0f + s2 * (2.0f / 15.0f + s2 * (17.0f / 315.0f +
+                         s2 * (62.0f / 2835.0f + s2 * (1382.0f / 155925.0f))))));
+        float straight = std::fabs(steer) > 1e-4f ? 1.0f : 0.0f;
+        float turn = v * tanSteer * inverseWheelbase[i] * grip * dt * straight;
+        heading[i] += turn;
+
+        // Rotate the heading direction by `turn` and pull it back to unit length.
+        float t2 = turn * turn;
+        float cosTurn = 1.0f - t2 * (0.5f - t2 * (1.0f / 24.0f - t2 * (1.0f / 720.0f)));
+        float sinTurn = turn * (1.0f - t2 * (1.0f / 6.0f - t2 * (1.0f / 120.0f - t2 * (1.0f / 5040.0f))));
+        float fx = dirX[i] * cosTurn - dirY[i] * sinTurn;
+        float fy = dirX[i] * sinTurn + dirY[i] * cosTurn;
+        float renormalize = 1.5f - 0.5f * (fx * fx + fy * fy);
+        fx *= renormalize;
+        fy *= renormalize;
+        dirX[i] = fx;
+        dirY[i] = fy;
+
+        x[i] += fx * (v * dt);
+        y[i] += fy * (v * dt);
+    }
+}
+} // namespace
+
+void VehicleBatch::resize(size_t count) {
+    Car car;
+    steer_.resize(count, car.steer);
+    throttle_.resize(count, car.throttle);
+    brake_.resize(count, car.brake);
+    heading_.resize(count, car.heading);
+    speed_.resize(count, car.speed);
+    x_.resize(count, car.pos.x);
+    y_.resize(count, car.pos.y);
+    dirX_.resize(count, std::cos(car.heading));
+    dirY_.resize(count, std::sin(car.heading));
+    grip_.resize(count, car.grip);
+    inverseWheelbase_.resize(count, 1.0f / car.wheelbase);
+    edge_.resize(count, 0.0f);
+}
+
+void VehicleBatch::setCar(size_t index, const Car &car) {
+    steer_[index] = car.steer;
+    throttle_[index] = car.throttle;
+    brake_[index] = car.brake;
+    heading_[index] = car.heading;
+    speed_[index] = car.speed;
+    x_[index] = car.pos.x;
+    y_[index] = car.pos.y;
+    dirX_[index] = std::cos(car.heading);
+    dirY_[index] = std::sin(car.heading);
+    grip_[index] = car.grip;
+    inverseWheelbase_[index] = 1.0f / car.wheelbase;
+}
+
+Car VehicleBatch::car(size_t index) const {
+    Car car;
+    car.steer = steer_[index];
+    car.throttle = throttle_[index];
+    car.brake = brake_[index];
+    car.heading = heading_[index];
+    car.speed = speed_[index];
+    car.pos = {x_[index], y_[index]};
+    car.grip = grip_[index];
+    car.wheelbase = 1.0f / inverseWheelbase_[index];
+    return car;
+}
+
+void VehicleBatch::step(float dt, const TrackGeometry *track, ParallelFor *workers) {
+    if (dt <= 0.0f || size() == 0) {
+        return;
+    }
+    bool constrain = track != nullptr && !track->surface.empty();
+    auto body = [&](size_t begin, size_t end) {
+        stepRange(begin, end, dt);
+        if (constrain) {
+            constrainRange(begin, end, dt, *track);
+        }
+    };
+    if (workers != nullptr) {
+        workers->run(size(), kParallelGrain, body);
+    } else {
+        body(0, size());
+    }
+}
+
+void VehicleBatch::stepRange(size_t begin, size_t end, float dt) {
+    stepCars(begin, end, dt, steer_.data(), throttle_.data(), brake_.data(), grip_.data(),
+             inverseWheelbase_.data(), heading_.data(), speed_.data(), x_.data(), y_.data(), dirX_.data(),
+             dirY_.data());
+}
+
+void VehicleBatch::constrainRange(size_t begin, size_t end, float dt, const TrackGeometry &track) {
+    const TrackSurface &surface = track.surface;
+    surface.edgeDistances(x_.data() + begin, y_.data() + begin, end - begin, edge_.data() + begin);
+
+    float drag = std::exp(-track_contact::kOffTrackDrag * dt);
+    const float *__restrict edge = edge_.data();
+    float *__restrict speed = speed_.data();
+    for (size_t i = begin; i < end; ++i) {
+        speed[i] *= edge[i] > 0.0f ? drag : 1.0f;
+    }
+
+    // Only cars past the barrier need the gradient; on a racing field that is rarely any of them.
+    float barrier = track.width * track_contact::kRunOffFraction;
+    for (size_t i = begin; i < end; ++i) {
+        if (edge_[i] <= barrier) {
+            continue;
+        }
+        glm::vec2 pos{x_[i], y_[i]};
+        SurfaceSample sample = surface.sample(pos);
+        if (track_contact::resolveBarrier(barrier, sample, pos, heading_[i], speed_[i])) {
+            dirX_[i] = std::cos(heading_[i]);
+            dirY_[i] = std::sin(heading_[i]);
+        }
+        x_[i] = pos.x;
+        y_[i] = pos.y;
+        edge_[i] = sample.edgeDistance;
+    }
+
+    float *__restrict grip = grip_.data();
+    for (size_t i = begin; i < end; ++i) {
+        grip[i] = track_contact::gripFor(edge[i]);
+    }
+}
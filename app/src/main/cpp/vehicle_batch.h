@@ -0,0 +1,60 @@
+#pragma once
+
+#include <cstddef>
+#include <vector>
+
+#include "track_mesh.h"
+#include "vehicle.h"
+
+class ParallelFor;
+
+// Many cars stepped together: the same dynamics as step(Car &, float), with state held as one array
+// per field so the per-car loop has no calls and vectorizes. Instead of tan/cos/sin per car it uses
+// a polynomial tan of the clamped steer angle and turns a stored heading direction by the small
+// per-tick rotation, which agrees with step() to float rounding for turns under ~0.5 rad per tick.
+// The track surface (off-track drag, grip and the run-off barrier) is applied as a second pass over
+// the same cars. Not thread-safe; step() itself may split the field across a ParallelFor.
+class VehicleBatch {
+public:
+    // Fields smaller than this many cars per thread are stepped on the calling thread.
+    static constexpr size_t kParallelGrain = 4096;
+
+    size_t size() const { return heading_.size(); }
+    // New cars start as Car{}.
+    void resize(size_t count);
+    void setCar(size_t index, const Car &car);
+    Car car(size_t index) const;
+
+    // Per-car inputs, with the same meaning and range as the Car fields. Callers fill them in bulk.
+    float *steer() { return steer_.data(); }
+    float *throttle() { return throttle_.data(); }
+    float *brake() { return brake_.data(); }
+
+    const float *x() const { return x_.data(); }
+    const float *y() const { return y_.data(); }
+    const float *heading() const { return heading_.data(); }
+    const float *speed() const { return speed_.data(); }
+    // Signed distance to the nearest track edge after the last step; 0 when there is no track.
+    const float *edgeDistance() const { return edge_.data(); }
+
+    // Advances every car by dt. With a track the surface constrains the cars as in Simulation.
+    void step(float dt, const TrackGeometry *track = nullptr, ParallelFor *workers = nullptr);
+
+private:
+    void stepRange(size_t begin, size_t end, float dt);
+    void constrainRange(size_t begin, size_t end, float dt, const TrackGeometry &track);
+
+    std::vector<float> steer_;
+    std::vector<float> throttle_;
+    std::vector<float> brake_;
+    std::vector<float> heading_;
+    std::vector<float> speed_;
+    std::vector<float> x_;
+    std::vector<float> y_;
+    // Unit vector along heading_, turned incrementally each step.
+    std::vector<float> dirX_;
+    std::vector<float> dirY_;
+    std::vector<float> grip_;
+    std::vector<float> inverseWheelbase_;
+    std::vector<float> edge_;
+};
@@ -19,6 +19,7 @@ import androidx.appcompat.app.AppCompatDelegate;
 import com.example.racingsim.model.DefaultMapPointsProvider;
 import com.example.racingsim.model.MapPoints;
 import com.example.racingsim.model.MapPointsProvider;
+import com.example.racingsim.perf.Tracer;
 import com.example.racingsim.preview.PreviewActivity;
 import com.example.racingsim.track.TrackData;
 import com.example.racingsim.track.TrackGenerator;
@@ -40,6 +41,7 @@ public class MainActivity extends AppCompatActivity {
     private final TrackGenerator trackGenerator = new TrackGenerator();
     private final MapPointsProvider mapPointsProvider = new DefaultMapPointsProvider();
     private TrackData lastGeneratedTrack;
+    private long lastTrackTraceId = Tracer.NO_TRACK;
     private final ExecutorService renderExecutor = Executors.newSingleThreadExecutor(task -> {
         Thread thread = new Thread(() -> {
             Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
@@ -121,33 +123,44 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void generateAndShowTrack() {
-        int width = trackImageView.getWidth();
-        int height = trackImageView.getHeight();
-
-        if (width <= 0 || height <= 0) {
-            width = getResources().getDisplayMetrics().widthPixels;
-            height = (int) (width * 0.75f);
-        }
-
-        final int renderWidth = width;
-        final int renderHeight = height;
-
-        final int requestId = generationCounter.incrementAndGet();
-        try {
-            renderExecutor.submit(() -> {
-                TrackData trackData = trackGenerator.generate(renderWidth, renderHeight);
-                Bitmap bitmap = TrackRenderer.renderTrack(renderWidth, renderHeight, trackData);
-                mainHandler.post(() -> {
-                    if (isDestroyed() || requestId != generationCounter.get()) {
-                        bitmap.recycle();
-                        return;
+        Tracer tracer = Tracer.get();
+        final long traceId = tracer.newTrackId();
+        try (Tracer.Span ignored = tracer.begin("generateAndShowTrack", traceId)) {
+            int width = trackImageView.getWidth();
+            int height = trackImageView.getHeight();
+
+            if (width <= 0 || height <= 0) {
+                width = getResources().getDisplayMetrics().widthPixels;
+                height = (int) (width * 0.75f);
+            }
+
+            final int renderWidth = width;
+            final int renderHeight = height;
+
+            final int requestId = generationCounter.incrementAndGet();
+            try {
+                renderExecutor.submit(() -> {
+                    TrackData trackData;
+                    try (Tracer.Span span = tracer.begin("TrackGenerator.generate", traceId)) {
+                        trackData = trackGenerator.generate(renderWidth, renderHeight);
                     }
-                    lastGeneratedTrack = trackData;
-                    trackImageView.setImageBitmap(bitmap);
+                    Bitmap bitmap;
+                    try (Tracer.Span span = tracer.begin("TrackRenderer.renderTrack", traceId)) {
+                        bitmap = TrackRenderer.renderTrack(renderWidth, renderHeight, trackData);
+                    }
+                    mainHandler.post(() -> {
+                        if (isDestroyed() || requestId != generationCounter.get()) {
+                            bitmap.recycle();
+                            return;
+                        }
+                        lastGeneratedTrack = trackData;
+                        lastTrackTraceId = traceId;
+                        trackImageView.setImageBitmap(bitmap);
+                    });
                 });
-            });
-        } catch (RejectedExecutionException exception) {
-            Log.w(TAG, "Render executor rejected track generation request", exception);
+            } catch (RejectedExecutionException exception) {
+                Log.w(TAG, "Render executor rejected track generation request", exception);
+            }
         }
     }
 
@@ -157,21 +170,30 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        float[] points = buildCenterlineArray(lastGeneratedTrack);
-        if (points == null || points.length < 4) {
-            Toast.makeText(this, R.string.error_no_track_available, Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        float width = lastGeneratedTrack.getTrackWidth();
-        if (width <= 0.0f) {
-            width = 8.0f;
+        Tracer tracer = Tracer.get();
+        long traceId = lastTrackTraceId;
+        try (Tracer.Span ignored = tracer.begin("open3DPreview", traceId)) {
+            float[] points = buildCenterlineArray(lastGeneratedTrack);
+            if (points == null || points.length < 4) {
+                Toast.makeText(this, R.string.error_no_track_available, Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            float width = lastGeneratedTrack.getTrackWidth();
+            if (width <= 0.0f) {
+                width = 8.0f;
+            }
+
+            Intent intent = new Intent(this, PreviewActivity.class);
+            intent.putExtra(PreviewActivity.EXTRA_TRACK_POINTS, points);
+            intent.putExtra(PreviewActivity.EXTRA_TRACK_WIDTH, width);
+            intent.putExtra(PreviewActivity.EXTRA_LEFT_CONES, toPointArray(lastGeneratedTrack.getLeftCones()));
+            intent.putExtra(PreviewActivity.EXTRA_RIGHT_CONES, toPointArray(lastGeneratedTrack.getRightCones()));
+            intent.putExtra(PreviewActivity.EXTRA_TRACE_ID, traceId);
+            tracer.beginAsync(PreviewActivity.TRACE_TO_FIRST_FRAME, traceId);
+            tracer.beginAsync(PreviewActivity.TRACE_INTENT_HANDOFF, traceId);
+            startActivity(intent);
         }
-
-        Intent intent = new Intent(this, PreviewActivity.class);
-        intent.putExtra(PreviewActivity.EXTRA_TRACK_POINTS, points);
-        intent.putExtra(PreviewActivity.EXTRA_TRACK_WIDTH, width);
-        startActivity(intent);
     }
 
     private float[] buildCenterlineArray(TrackData data) {
@@ -182,6 +204,13 @@ public class MainActivity extends AppCompatActivity {
         if (source == null || source.size() < 2) {
             return null;
         }
+        return toPointArray(source);
+    }
+
+    private static float[] toPointArray(java.util.List<PointF> source) {
+        if (source == null) {
+            return new float[0];
+        }
         float[] buffer = new float[source.size() * 2];
         for (int i = 0; i < source.size(); i++) {
             PointF point = source.get(i);
@@ -0,0 +1,298 @@
+package com.example.racingsim.gl;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.opengl.GLUtils;
+
+import java.nio.Buffer;
+
+/**
+ * {@link GlApi} backed by the platform GLES bindings. Must be created on the GL thread once a context
+ * is current so the ES version can be queried.
+ */
+public final class AndroidGl implements GlApi {
+
+    private final boolean es3;
+
+    public AndroidGl() {
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        es3 = isEs3OrNewer(version);
+    }
+
+    static boolean isEs3OrNewer(String version) {
+        if (version == null) {
+            return false;
+        }
+        String prefix = "OpenGL ES ";
+        int start = version.indexOf(prefix);
+        if (start < 0 || start + prefix.length() >= version.length()) {
+            return false;
+        }
+        char major = version.charAt(start + prefix.length());
+        return major >= '3' && major <= '9';
+    }
+
+    @Override
+    public boolean supportsVertexArrayObjects() {
+        return es3;
+    }
+
+    @Override
+    public boolean supportsHalfFloatVertices() {
+        return es3;
+    }
+
+    @Override
+    public boolean supportsProgramBinaries() {
+        if (!es3) {
+            return false;
+        }
+        int[] formats = new int[1];
+        GLES20.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+        return formats[0] > 0;
+    }
+
+    @Override
+    public boolean supportsEtc2Textures() {
+        // ETC2/EAC decoding is mandatory from GLES 3.0.
+        return es3;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        return GLES20.glGetString(name);
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        GLES20.glClearColor(red, green, blue, alpha);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        GLES20.glClear(mask);
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        GLES20.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void glEnable(int capability) {
+        GLES20.glEnable(capability);
+    }
+
+    @Override
+    public void glDisable(int capability) {
+        GLES20.glDisable(capability);
+    }
+
+    @Override
+    public void glBlendFunc(int sourceFactor, int destinationFactor) {
+        GLES20.glBlendFunc(sourceFactor, destinationFactor);
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        return GLES20.glCreateShader(type);
+    }
+
+    @Override
+    public void glShaderSource(int shader, String source) {
+        GLES20.glShaderSource(shader, source);
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        GLES20.glCompileShader(shader);
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int parameter, int[] values, int offset) {
+        GLES20.glGetShaderiv(shader, parameter, values, offset);
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        return GLES20.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        GLES20.glDeleteShader(shader);
+    }
+
+    @Override
+    public int glCreateProgram() {
+        return GLES20.glCreateProgram();
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        GLES20.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        GLES20.glLinkProgram(program);
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int parameter, int[] values, int offset) {
+        GLES20.glGetProgramiv(program, parameter, values, offset);
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        return GLES20.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        GLES20.glDeleteProgram(program);
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int parameter, int value) {
+        GLES30.glProgramParameteri(program, parameter, value);
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufferSize, int[] length, int lengthOffset,
+                                   int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        GLES30.glGetProgramBinary(program, bufferSize, length, lengthOffset, binaryFormat, binaryFormatOffset, binary);
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        GLES30.glProgramBinary(program, binaryFormat, binary, length);
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        GLES20.glUseProgram(program);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        return GLES20.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        return GLES20.glGetAttribLocation(program, name);
+    }
+
+    @Override
+    public void glUniform1i(int location, int value) {
+        GLES20.glUniform1i(location, value);
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z) {
+        GLES20.glUniform3f(location, x, y, z);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] values, int offset) {
+        GLES20.glUniformMatrix4fv(location, count, transpose, values, offset);
+    }
+
+    @Override
+    public void glGenBuffers(int count, int[] buffers, int offset) {
+        GLES20.glGenBuffers(count, buffers, offset);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        GLES20.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void glBufferData(int target, int sizeBytes, Buffer data, int usage) {
+        GLES20.glBufferData(target, sizeBytes, data, usage);
+    }
+
+    @Override
+    public void glGenVertexArrays(int count, int[] arrays, int offset) {
+        GLES30.glGenVertexArrays(count, arrays, offset);
+    }
+
+    @Override
+    public void glBindVertexArray(int array) {
+        GLES30.glBindVertexArray(array);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        GLES20.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        GLES20.glDisableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int strideBytes, int offsetBytes) {
+        GLES20.glVertexAttribPointer(index, size, type, normalized, strideBytes, offsetBytes);
+    }
+
+    @Override
+    public void glVertexAttrib4f(int index, float x, float y, float z, float w) {
+        GLES20.glVertexAttrib4f(index, x, y, z, w);
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        GLES20.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offsetBytes) {
+        GLES20.glDrawElements(mode, count, type, offsetBytes);
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        GLES20.glActiveTexture(texture);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        GLES20.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void glGenTextures(int count, int[] textures, int offset) {
+        GLES20.glGenTextures(count, textures, offset);
+    }
+
+    @Override
+    public void glDeleteTextures(int count, int[] textures, int offset) {
+        GLES20.glDeleteTextures(count, textures, offset);
+    }
+
+    @Override
+    public void glTexParameteri(int target, int parameter, int value) {
+        GLES20.glTexParameteri(target, parameter, value);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, Bitmap bitmap) {
+        GLUtils.texImage2D(target, level, bitmap, 0);
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalFormat, int width, int height,
+                                       int imageSize, Buffer data) {
+        GLES20.glCompressedTexImage2D(target, level, internalFormat, width, height, 0, imageSize, data);
+    }
+
+    @Override
+    public void glGenerateMipmap(int target) {
+        GLES20.glGenerateMipmap(target);
+    }
+}
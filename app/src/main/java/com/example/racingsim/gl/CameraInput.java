@@ -0,0 +1,64 @@
+package com.example.racingsim.gl;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free handoff of orbit and zoom input from the UI thread to the GL thread.
+ * The UI thread folds each event into an immutable pending record; the GL thread swaps the record
+ * out once per frame with a single atomic exchange, so it never waits on touch handling.
+ */
+final class CameraInput {
+
+    static final Delta EMPTY = new Delta(0f, 0f, 1f, 0);
+
+    private final AtomicReference<Delta> pending = new AtomicReference<>(EMPTY);
+
+    void addOrbit(float deltaYaw, float deltaPitch) {
+        Delta current;
+        Delta next;
+        do {
+            current = pending.get();
+            next = new Delta(current.yawDegrees + deltaYaw, current.pitchDegrees + deltaPitch,
+                    current.zoomScale, current.eventCount + 1);
+        } while (!pending.compareAndSet(current, next));
+    }
+
+    void addZoom(float scaleFactor) {
+        Delta current;
+        Delta next;
+        do {
+            current = pending.get();
+            next = new Delta(current.yawDegrees, current.pitchDegrees,
+                    current.zoomScale * scaleFactor, current.eventCount + 1);
+        } while (!pending.compareAndSet(current, next));
+    }
+
+    /**
+     * Returns all input accumulated since the previous call; wait-free for the calling thread.
+     */
+    Delta drain() {
+        return pending.getAndSet(EMPTY);
+    }
+
+    boolean hasPending() {
+        return pending.get() != EMPTY;
+    }
+
+    static final class Delta {
+        final float yawDegrees;
+        final float pitchDegrees;
+        final float zoomScale;
+        final int eventCount;
+
+        Delta(float yawDegrees, float pitchDegrees, float zoomScale, int eventCount) {
+            this.yawDegrees = yawDegrees;
+            this.pitchDegrees = pitchDegrees;
+            this.zoomScale = zoomScale;
+            this.eventCount = eventCount;
+        }
+
+        boolean isEmpty() {
+            return eventCount == 0;
+        }
+    }
+}
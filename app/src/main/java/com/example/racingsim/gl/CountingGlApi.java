@@ -0,0 +1,527 @@
+package com.example.racingsim.gl;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link GlApi} decorator that counts every call. With a {@code null} delegate it acts as a headless
+ * GL that hands out fresh object names and reports successful compiles and links, which is enough to
+ * drive the renderer in plain JVM tests. Headless program binaries are a fixed byte pattern in
+ * {@link #HEADLESS_BINARY_FORMAT}; binaries in any other format are rejected at link time.
+ */
+public class CountingGlApi implements GlApi {
+
+    /**
+     * What a call does, for per-frame budgets. Texture parameters count as state; a clear counts as
+     * a draw since it touches every pixel.
+     */
+    public enum Kind {
+        DRAW, STATE, UNIFORM, UPLOAD, OBJECT, QUERY
+    }
+
+    public enum Call {
+        CLEAR(Kind.DRAW), DRAW_ARRAYS(Kind.DRAW), DRAW_ELEMENTS(Kind.DRAW),
+        CLEAR_COLOR(Kind.STATE), VIEWPORT(Kind.STATE), ENABLE(Kind.STATE), DISABLE(Kind.STATE),
+        BLEND_FUNC(Kind.STATE), USE_PROGRAM(Kind.STATE), BIND_BUFFER(Kind.STATE),
+        BIND_VERTEX_ARRAY(Kind.STATE), ENABLE_VERTEX_ATTRIB_ARRAY(Kind.STATE),
+        DISABLE_VERTEX_ATTRIB_ARRAY(Kind.STATE), VERTEX_ATTRIB_POINTER(Kind.STATE),
+        VERTEX_ATTRIB_4F(Kind.STATE), ACTIVE_TEXTURE(Kind.STATE), BIND_TEXTURE(Kind.STATE),
+        TEX_PARAMETER_I(Kind.STATE),
+        UNIFORM_1I(Kind.UNIFORM), UNIFORM_3F(Kind.UNIFORM), UNIFORM_MATRIX_4FV(Kind.UNIFORM),
+        PROGRAM_BINARY(Kind.UPLOAD), BUFFER_DATA(Kind.UPLOAD), TEX_IMAGE_2D(Kind.UPLOAD),
+        COMPRESSED_TEX_IMAGE_2D(Kind.UPLOAD), GENERATE_MIPMAP(Kind.UPLOAD),
+        CREATE_SHADER(Kind.OBJECT), SHADER_SOURCE(Kind.OBJECT), COMPILE_SHADER(Kind.OBJECT),
+        DELETE_SHADER(Kind.OBJECT), CREATE_PROGRAM(Kind.OBJECT), ATTACH_SHADER(Kind.OBJECT),
+        LINK_PROGRAM(Kind.OBJECT), DELETE_PROGRAM(Kind.OBJECT), PROGRAM_PARAMETER_I(Kind.OBJECT),
+        GEN_BUFFERS(Kind.OBJECT), GEN_VERTEX_ARRAYS(Kind.OBJECT), GEN_TEXTURES(Kind.OBJECT),
+        DELETE_TEXTURES(Kind.OBJECT),
+        GET_STRING(Kind.QUERY), GET_SHADER_IV(Kind.QUERY), GET_SHADER_INFO_LOG(Kind.QUERY),
+        GET_PROGRAM_IV(Kind.QUERY), GET_PROGRAM_INFO_LOG(Kind.QUERY), GET_PROGRAM_BINARY(Kind.QUERY),
+        GET_UNIFORM_LOCATION(Kind.QUERY), GET_ATTRIB_LOCATION(Kind.QUERY);
+
+        public final Kind kind;
+
+        Call(Kind kind) {
+            this.kind = kind;
+        }
+    }
+
+    public static final int HEADLESS_BINARY_FORMAT = 0x4844;
+    private static final int HEADLESS_BINARY_LENGTH = 16;
+
+    private final GlApi delegate;
+    private final boolean es3;
+    private final long[] counts = new long[Call.values().length];
+    private int nextName = 1;
+    private int nextUniformLocation;
+    private int nextAttribLocation;
+    private final Set<Integer> unlinkedPrograms = new HashSet<>();
+
+    public CountingGlApi(GlApi delegate) {
+        this(delegate, delegate != null && delegate.supportsVertexArrayObjects());
+    }
+
+    /**
+     * @param es3 whether to report GLES3 features (vertex array objects, half-float vertices)
+     */
+    public CountingGlApi(GlApi delegate, boolean es3) {
+        this.delegate = delegate;
+        this.es3 = es3;
+    }
+
+    public long getCount(Call call) {
+        return counts[call.ordinal()];
+    }
+
+    public long getTotalCalls() {
+        long total = 0L;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public void resetCounts() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0L;
+        }
+    }
+
+    protected void count(Call call) {
+        counts[call.ordinal()]++;
+    }
+
+    private int newName() {
+        return nextName++;
+    }
+
+    @Override
+    public boolean supportsVertexArrayObjects() {
+        return es3;
+    }
+
+    @Override
+    public boolean supportsHalfFloatVertices() {
+        return es3;
+    }
+
+    @Override
+    public boolean supportsProgramBinaries() {
+        return delegate != null ? delegate.supportsProgramBinaries() : es3;
+    }
+
+    @Override
+    public boolean supportsEtc2Textures() {
+        return delegate != null ? delegate.supportsEtc2Textures() : es3;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        count(Call.GET_STRING);
+        return delegate != null ? delegate.glGetString(name) : "headless";
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        count(Call.CLEAR_COLOR);
+        if (delegate != null) {
+            delegate.glClearColor(red, green, blue, alpha);
+        }
+    }
+
+    @Override
+    public void glClear(int mask) {
+        count(Call.CLEAR);
+        if (delegate != null) {
+            delegate.glClear(mask);
+        }
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        count(Call.VIEWPORT);
+        if (delegate != null) {
+            delegate.glViewport(x, y, width, height);
+        }
+    }
+
+    @Override
+    public void glEnable(int capability) {
+        count(Call.ENABLE);
+        if (delegate != null) {
+            delegate.glEnable(capability);
+        }
+    }
+
+    @Override
+    public void glDisable(int capability) {
+        count(Call.DISABLE);
+        if (delegate != null) {
+            delegate.glDisable(capability);
+        }
+    }
+
+    @Override
+    public void glBlendFunc(int sourceFactor, int destinationFactor) {
+        count(Call.BLEND_FUNC);
+        if (delegate != null) {
+            delegate.glBlendFunc(sourceFactor, destinationFactor);
+        }
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        count(Call.CREATE_SHADER);
+        return delegate != null ? delegate.glCreateShader(type) : newName();
+    }
+
+    @Override
+    public void glShaderSource(int shader, String source) {
+        count(Call.SHADER_SOURCE);
+        if (delegate != null) {
+            delegate.glShaderSource(shader, source);
+        }
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        count(Call.COMPILE_SHADER);
+        if (delegate != null) {
+            delegate.glCompileShader(shader);
+        }
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int parameter, int[] values, int offset) {
+        count(Call.GET_SHADER_IV);
+        if (delegate != null) {
+            delegate.glGetShaderiv(shader, parameter, values, offset);
+        } else {
+            values[offset] = parameter == GLES20.GL_COMPILE_STATUS ? GLES20.GL_TRUE : 0;
+        }
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        count(Call.GET_SHADER_INFO_LOG);
+        return delegate != null ? delegate.glGetShaderInfoLog(shader) : "";
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        count(Call.DELETE_SHADER);
+        if (delegate != null) {
+            delegate.glDeleteShader(shader);
+        }
+    }
+
+    @Override
+    public int glCreateProgram() {
+        count(Call.CREATE_PROGRAM);
+        if (delegate != null) {
+            return delegate.glCreateProgram();
+        }
+        nextUniformLocation = 0;
+        nextAttribLocation = 0;
+        return newName();
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        count(Call.ATTACH_SHADER);
+        if (delegate != null) {
+            delegate.glAttachShader(program, shader);
+        }
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        count(Call.LINK_PROGRAM);
+        if (delegate != null) {
+            delegate.glLinkProgram(program);
+        }
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int parameter, int[] values, int offset) {
+        count(Call.GET_PROGRAM_IV);
+        if (delegate != null) {
+            delegate.glGetProgramiv(program, parameter, values, offset);
+        } else {
+            if (parameter == GLES20.GL_LINK_STATUS) {
+                values[offset] = unlinkedPrograms.contains(program) ? GLES20.GL_FALSE : GLES20.GL_TRUE;
+            } else if (parameter == GLES30.GL_PROGRAM_BINARY_LENGTH) {
+                values[offset] = HEADLESS_BINARY_LENGTH;
+            } else {
+                values[offset] = 0;
+            }
+        }
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        count(Call.GET_PROGRAM_INFO_LOG);
+        return delegate != null ? delegate.glGetProgramInfoLog(program) : "";
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        count(Call.DELETE_PROGRAM);
+        if (delegate != null) {
+            delegate.glDeleteProgram(program);
+        }
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int parameter, int value) {
+        count(Call.PROGRAM_PARAMETER_I);
+        if (delegate != null) {
+            delegate.glProgramParameteri(program, parameter, value);
+        }
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufferSize, int[] length, int lengthOffset,
+                                   int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        count(Call.GET_PROGRAM_BINARY);
+        if (delegate != null) {
+            delegate.glGetProgramBinary(program, bufferSize, length, lengthOffset,
+                    binaryFormat, binaryFormatOffset, binary);
+            return;
+        }
+        int written = Math.min(bufferSize, HEADLESS_BINARY_LENGTH);
+        ByteBuffer target = (ByteBuffer) binary;
+        for (int i = 0; i < written; i++) {
+            target.put(target.position() + i, (byte) i);
+        }
+        length[lengthOffset] = written;
+        binaryFormat[binaryFormatOffset] = HEADLESS_BINARY_FORMAT;
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        count(Call.PROGRAM_BINARY);
+        if (delegate != null) {
+            delegate.glProgramBinary(program, binaryFormat, binary, length);
+        } else if (binaryFormat != HEADLESS_BINARY_FORMAT || length != HEADLESS_BINARY_LENGTH) {
+            unlinkedPrograms.add(program);
+        } else {
+            unlinkedPrograms.remove(program);
+        }
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        count(Call.USE_PROGRAM);
+        if (delegate != null) {
+            delegate.glUseProgram(program);
+        }
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        count(Call.GET_UNIFORM_LOCATION);
+        return delegate != null ? delegate.glGetUniformLocation(program, name) : nextUniformLocation++;
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        count(Call.GET_ATTRIB_LOCATION);
+        return delegate != null ? delegate.glGetAttribLocation(program, name) : nextAttribLocation++;
+    }
+
+    @Override
+    public void glUniform1i(int location, int value) {
+        count(Call.UNIFORM_1I);
+        if (delegate != null) {
+            delegate.glUniform1i(location, value);
+        }
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z) {
+        count(Call.UNIFORM_3F);
+        if (delegate != null) {
+            delegate.glUniform3f(location, x, y, z);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] values, int offset) {
+        count(Call.UNIFORM_MATRIX_4FV);
+        if (delegate != null) {
+            delegate.glUniformMatrix4fv(location, count, transpose, values, offset);
+        }
+    }
+
+    @Override
+    public void glGenBuffers(int count, int[] buffers, int offset) {
+        count(Call.GEN_BUFFERS);
+        if (delegate != null) {
+            delegate.glGenBuffers(count, buffers, offset);
+        } else {
+            for (int i = 0; i < count; i++) {
+                buffers[offset + i] = newName();
+            }
+        }
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        count(Call.BIND_BUFFER);
+        if (delegate != null) {
+            delegate.glBindBuffer(target, buffer);
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, int sizeBytes, Buffer data, int usage) {
+        count(Call.BUFFER_DATA);
+        if (delegate != null) {
+            delegate.glBufferData(target, sizeBytes, data, usage);
+        }
+    }
+
+    @Override
+    public void glGenVertexArrays(int count, int[] arrays, int offset) {
+        count(Call.GEN_VERTEX_ARRAYS);
+        if (delegate != null) {
+            delegate.glGenVertexArrays(count, arrays, offset);
+        } else {
+            for (int i = 0; i < count; i++) {
+                arrays[offset + i] = newName();
+            }
+        }
+    }
+
+    @Override
+    public void glBindVertexArray(int array) {
+        count(Call.BIND_VERTEX_ARRAY);
+        if (delegate != null) {
+            delegate.glBindVertexArray(array);
+        }
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        count(Call.ENABLE_VERTEX_ATTRIB_ARRAY);
+        if (delegate != null) {
+            delegate.glEnableVertexAttribArray(index);
+        }
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        count(Call.DISABLE_VERTEX_ATTRIB_ARRAY);
+        if (delegate != null) {
+            delegate.glDisableVertexAttribArray(index);
+        }
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int strideBytes, int offsetBytes) {
+        count(Call.VERTEX_ATTRIB_POINTER);
+        if (delegate != null) {
+            delegate.glVertexAttribPointer(index, size, type, normalized, strideBytes, offsetBytes);
+        }
+    }
+
+    @Override
+    public void glVertexAttrib4f(int index, float x, float y, float z, float w) {
+        count(Call.VERTEX_ATTRIB_4F);
+        if (delegate != null) {
+            delegate.glVertexAttrib4f(index, x, y, z, w);
+        }
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        count(Call.DRAW_ARRAYS);
+        if (delegate != null) {
+            delegate.glDrawArrays(mode, first, count);
+        }
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offsetBytes) {
+        count(Call.DRAW_ELEMENTS);
+        if (delegate != null) {
+            delegate.glDrawElements(mode, count, type, offsetBytes);
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        count(Call.ACTIVE_TEXTURE);
+        if (delegate != null) {
+            delegate.glActiveTexture(texture);
+        }
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        count(Call.BIND_TEXTURE);
+        if (delegate != null) {
+            delegate.glBindTexture(target, texture);
+        }
+    }
+
+    @Override
+    public void glGenTextures(int count, int[] textures, int offset) {
+        count(Call.GEN_TEXTURES);
+        if (delegate != null) {
+            delegate.glGenTextures(count, textures, offset);
+        } else {
+            for (int i = 0; i < count; i++) {
+                textures[offset + i] = newName();
+            }
+        }
+    }
+
+    @Override
+    public void glDeleteTextures(int count, int[] textures, int offset) {
+        count(Call.DELETE_TEXTURES);
+        if (delegate != null) {
+            delegate.glDeleteTextures(count, textures, offset);
+        }
+    }
+
+    @Override
+    public void glTexParameteri(int target, int parameter, int value) {
+        count(Call.TEX_PARAMETER_I);
+        if (delegate != null) {
+            delegate.glTexParameteri(target, parameter, value);
+        }
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, Bitmap bitmap) {
+        count(Call.TEX_IMAGE_2D);
+        if (delegate != null) {
+            delegate.glTexImage2D(target, level, bitmap);
+        }
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalFormat, int width, int height,
+                                       int imageSize, Buffer data) {
+        count(Call.COMPRESSED_TEX_IMAGE_2D);
+        if (delegate != null) {
+            delegate.glCompressedTexImage2D(target, level, internalFormat, width, height, imageSize, data);
+        }
+    }
+
+    @Override
+    public void glGenerateMipmap(int target) {
+        count(Call.GENERATE_MIPMAP);
+        if (delegate != null) {
+            delegate.glGenerateMipmap(target);
+        }
+    }
+}
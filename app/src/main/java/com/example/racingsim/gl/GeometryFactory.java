@@ -1,8 +1,5 @@
 package com.example.racingsim.gl;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Creates simple geometry meshes used by the 3D preview.
  */
@@ -11,7 +8,8 @@ public final class GeometryFactory {
     private GeometryFactory() {
     }
 
-    public static Mesh createConeWithStripe(float radiusBase,
+    public static Mesh createConeWithStripe(GlStateTracker glState,
+                                            float radiusBase,
                                             float height,
                                             int slices,
                                             float stripeCenter,
@@ -22,114 +20,72 @@ public final class GeometryFactory {
         float stripeLower = clamp(stripeCenter - stripeHalf, 0f, height);
         float stripeUpper = clamp(stripeCenter + stripeHalf, 0f, height);
 
-        List<Float> ringHeights = new ArrayList<>();
-        ringHeights.add(0f);
+        float[] ringHeights = new float[4];
+        int ringCount = 0;
+        ringHeights[ringCount++] = 0f;
         if (stripeLower > 0.0001f) {
-            ringHeights.add(stripeLower);
+            ringHeights[ringCount++] = stripeLower;
         }
         if (stripeUpper > stripeLower + 0.0001f && stripeUpper < height) {
-            ringHeights.add(stripeUpper);
+            ringHeights[ringCount++] = stripeUpper;
         }
-        ringHeights.add(height);
+        ringHeights[ringCount++] = height;
 
-        int ringCount = ringHeights.size();
         int verticesPerRing = slices + 1;
         int totalSideVertices = ringCount * verticesPerRing;
-        List<Float> vertices = new ArrayList<>(totalSideVertices * 9);
+        VertexFormat format = new VertexFormat(
+                positionAttribute(glState),
+                VertexAttribute.normalizedByte(3),
+                VertexAttribute.normalizedUnsignedByte(3));
+        MeshBuilder builder = new MeshBuilder(format, totalSideVertices + 1,
+                slices * (ringCount - 1) * 6 + slices * 3);
 
         float slope = radiusBase / height;
         float normalScale = (float) Math.sqrt(1f + slope * slope);
         float normalZ = slope / normalScale;
 
         for (int ringIndex = 0; ringIndex < ringCount; ringIndex++) {
-            float currentHeight = ringHeights.get(ringIndex);
+            float currentHeight = ringHeights[ringIndex];
             float radius = radiusBase * (1f - (currentHeight / height));
             Color3f color = selectColorForHeight(currentHeight, stripeLower, stripeUpper, bodyColor, stripeColor);
             for (int slice = 0; slice <= slices; slice++) {
                 float angle = (float) (2.0 * Math.PI * slice / slices);
                 float cos = (float) Math.cos(angle);
                 float sin = (float) Math.sin(angle);
-                float x = radius * cos;
-                float y = radius * sin;
-                float nx = cos / normalScale;
-                float ny = sin / normalScale;
-                float nz = normalZ;
-                // Position (x, y, z)
-                vertices.add(x);
-                vertices.add(y);
-                vertices.add(currentHeight);
-                // Normal (x, y, z)
-                vertices.add(nx);
-                vertices.add(ny);
-                vertices.add(nz);
-                // Color (r, g, b)
-                vertices.add(color.r);
-                vertices.add(color.g);
-                vertices.add(color.b);
-            }
-        }
-
-        List<Short> indices = new ArrayList<>(slices * (ringCount - 1) * 6 + slices * 3);
-        for (int ring = 0; ring < ringCount - 1; ring++) {
-            int ringStart = ring * verticesPerRing;
-            int nextRingStart = (ring + 1) * verticesPerRing;
-            for (int slice = 0; slice < slices; slice++) {
-                short current = (short) (ringStart + slice);
-                short next = (short) (ringStart + slice + 1);
-                short upper = (short) (nextRingStart + slice);
-                short upperNext = (short) (nextRingStart + slice + 1);
-
-                indices.add(current);
-                indices.add(upper);
-                indices.add(upperNext);
-
-                indices.add(current);
-                indices.add(upperNext);
-                indices.add(next);
+                builder.put(radius * cos, radius * sin, currentHeight)
+                        .put(cos / normalScale, sin / normalScale, normalZ)
+                        .put(color.r, color.g, color.b);
             }
         }
+        addSideIndices(builder, ringCount, slices);
 
         // Base disc (downward normal)
-        Color3f baseColor = bodyColor;
-        short baseCenterIndex = (short) (totalSideVertices);
-        vertices.add(0f);
-        vertices.add(0f);
-        vertices.add(0f);
-        vertices.add(0f);
-        vertices.add(0f);
-        vertices.add(-1f);
-        vertices.add(baseColor.r);
-        vertices.add(baseColor.g);
-        vertices.add(baseColor.b);
-
+        int baseCenterIndex = totalSideVertices;
+        builder.put(0f, 0f, 0f)
+                .put(0f, 0f, -1f)
+                .put(bodyColor.r, bodyColor.g, bodyColor.b);
         for (int slice = 0; slice < slices; slice++) {
-            short current = (short) slice;
-            short next = (short) (slice + 1);
-            indices.add(baseCenterIndex);
-            indices.add(next);
-            indices.add(current);
+            builder.triangle(baseCenterIndex, slice + 1, slice);
         }
 
-        float[] vertexArray = new float[vertices.size()];
-        for (int i = 0; i < vertices.size(); i++) {
-            vertexArray[i] = vertices.get(i);
-        }
-        short[] indexArray = new short[indices.size()];
-        for (int i = 0; i < indices.size(); i++) {
-            indexArray[i] = indices.get(i);
-        }
-
-        return new Mesh(vertexArray, indexArray, new int[]{3, 3, 3});
+        return builder.build(glState);
     }
 
-    public static Mesh createCylinder(float radius,
+    public static Mesh createCylinder(GlStateTracker glState,
+                                      float radius,
                                       float height,
                                       int slices,
                                       Color3f color) {
         int ringCount = 2;
         int verticesPerRing = slices + 1;
         int totalSideVertices = ringCount * verticesPerRing;
-        List<Float> vertices = new ArrayList<>(totalSideVertices * 9);
+        // A cylinder has a single colour, so it is fed as a constant attribute instead of per vertex.
+        VertexFormat format = new VertexFormat(
+                positionAttribute(glState),
+                VertexAttribute.normalizedByte(3),
+                VertexAttribute.constant(color.r, color.g, color.b));
+        MeshBuilder builder = new MeshBuilder(format, totalSideVertices + 2,
+                slices * (ringCount - 1) * 6 + slices * 6);
 
         float[] ringHeights = new float[]{0f, height};
         for (int ringIndex = 0; ringIndex < ringCount; ringIndex++) {
@@ -138,96 +94,53 @@ public final class GeometryFactory {
                 float angle = (float) (2.0 * Math.PI * slice / slices);
                 float cos = (float) Math.cos(angle);
                 float sin = (float) Math.sin(angle);
-                float x = radius * cos;
-                float y = radius * sin;
-                float nx = cos;
-                float ny = sin;
-                // Position (x, y, z)
-                vertices.add(x);
-                vertices.add(y);
-                vertices.add(currentHeight);
-                // Normal (x, y, z)
-                vertices.add(nx);
-                vertices.add(ny);
-                vertices.add(0f);
-                // Color (r, g, b)
-                vertices.add(color.r);
-                vertices.add(color.g);
-                vertices.add(color.b);
-            }
-        }
-
-        List<Short> indices = new ArrayList<>(slices * (ringCount - 1) * 6 + slices * 6);
-        for (int ring = 0; ring < ringCount - 1; ring++) {
-            int ringStart = ring * verticesPerRing;
-            int nextRingStart = (ring + 1) * verticesPerRing;
-            for (int slice = 0; slice < slices; slice++) {
-                short current = (short) (ringStart + slice);
-                short next = (short) (ringStart + slice + 1);
-                short upper = (short) (nextRingStart + slice);
-                short upperNext = (short) (nextRingStart + slice + 1);
-
-                indices.add(current);
-                indices.add(upper);
-                indices.add(upperNext);
-
-                indices.add(current);
-                indices.add(upperNext);
-                indices.add(next);
+                builder.put(radius * cos, radius * sin, currentHeight)
+                        .put(cos, sin, 0f);
             }
         }
+        addSideIndices(builder, ringCount, slices);
 
         // Bottom disc (downward normal)
-        short bottomCenterIndex = (short) (totalSideVertices);
-        vertices.add(0f);
-        vertices.add(0f);
-        vertices.add(0f);
-        vertices.add(0f);
-        vertices.add(0f);
-        vertices.add(-1f);
-        vertices.add(color.r);
-        vertices.add(color.g);
-        vertices.add(color.b);
-
+        int bottomCenterIndex = totalSideVertices;
+        builder.put(0f, 0f, 0f).put(0f, 0f, -1f);
         for (int slice = 0; slice < slices; slice++) {
-            short current = (short) slice;
-            short next = (short) (slice + 1);
-            indices.add(bottomCenterIndex);
-            indices.add(next);
-            indices.add(current);
+            builder.triangle(bottomCenterIndex, slice + 1, slice);
         }
 
         // Top disc (upward normal)
-        short topCenterIndex = (short) (totalSideVertices + 1);
-        vertices.add(0f);
-        vertices.add(0f);
-        vertices.add(height);
-        vertices.add(0f);
-        vertices.add(0f);
-        vertices.add(1f);
-        vertices.add(color.r);
-        vertices.add(color.g);
-        vertices.add(color.b);
-
+        int topCenterIndex = totalSideVertices + 1;
+        builder.put(0f, 0f, height).put(0f, 0f, 1f);
         int topRingStart = verticesPerRing;
         for (int slice = 0; slice < slices; slice++) {
-            short current = (short) (topRingStart + slice);
-            short next = (short) (topRingStart + slice + 1);
-            indices.add(topCenterIndex);
-            indices.add(current);
-            indices.add(next);
+            builder.triangle(topCenterIndex, topRingStart + slice, topRingStart + slice + 1);
         }
 
-        float[] vertexArray = new float[vertices.size()];
-        for (int i = 0; i < vertices.size(); i++) {
-            vertexArray[i] = vertices.get(i);
-        }
-        short[] indexArray = new short[indices.size()];
-        for (int i = 0; i < indices.size(); i++) {
-            indexArray[i] = indices.get(i);
+        return builder.build(glState);
+    }
+
+    private static void addSideIndices(MeshBuilder builder, int ringCount, int slices) {
+        int verticesPerRing = slices + 1;
+        for (int ring = 0; ring < ringCount - 1; ring++) {
+            int ringStart = ring * verticesPerRing;
+            int nextRingStart = (ring + 1) * verticesPerRing;
+            for (int slice = 0; slice < slices; slice++) {
+                int current = ringStart + slice;
+                int next = ringStart + slice + 1;
+                int upper = nextRingStart + slice;
+                int upperNext = nextRingStart + slice + 1;
+                builder.triangle(current, upper, upperNext);
+                builder.triangle(current, upperNext, next);
+            }
         }
+    }
 
-        return new Mesh(vertexArray, indexArray, new int[]{3, 3, 3});
+    /**
+     * Half floats keep 11 significant bits, enough for model-space positions of a few hundred metres.
+     */
+    private static VertexAttribute positionAttribute(GlStateTracker glState) {
+        return glState.gl().supportsHalfFloatVertices()
+                ? VertexAttribute.float16(3)
+                : VertexAttribute.float32(3);
     }
 
     private static Color3f selectColorForHeight(float height,
@@ -245,31 +158,33 @@ public final class GeometryFactory {
         return Math.max(min, Math.min(max, value));
     }
 
-    public static Mesh createGround(float size, Color3f color) {
+    public static Mesh createGround(GlStateTracker glState, float size, Color3f color) {
         float half = size * 0.5f;
-        float[] vertices = new float[]{
-                -half, -half, 0f, 0f, 0f, 1f, color.r, color.g, color.b,
-                half, -half, 0f, 0f, 0f, 1f, color.r, color.g, color.b,
-                half, half, 0f, 0f, 0f, 1f, color.r, color.g, color.b,
-                -half, half, 0f, 0f, 0f, 1f, color.r, color.g, color.b
-        };
-        short[] indices = new short[]{
-                0, 1, 2,
-                0, 2, 3
-        };
-        return new Mesh(vertices, indices, new int[]{3, 3, 3});
+        VertexFormat format = new VertexFormat(
+                positionAttribute(glState),
+                VertexAttribute.constant(0f, 0f, 1f),
+                VertexAttribute.constant(color.r, color.g, color.b));
+        MeshBuilder builder = new MeshBuilder(format, 4, 6);
+        builder.put(-half, -half, 0f)
+                .put(half, -half, 0f)
+                .put(half, half, 0f)
+                .put(-half, half, 0f);
+        builder.triangle(0, 1, 2).triangle(0, 2, 3);
+        return builder.build(glState);
     }
 
-    public static Mesh createTexturedQuad(float width, float height) {
+    public static Mesh createTexturedQuad(GlStateTracker glState, float width, float height) {
         float halfWidth = width * 0.5f;
-        float[] vertices = new float[]{
-                -halfWidth, 0f, 0f, 0f, 1f,
-                halfWidth, 0f, 0f, 1f, 1f,
-                halfWidth, 0f, height, 1f, 0f,
-                -halfWidth, 0f, height, 0f, 0f
-        };
-        short[] indices = new short[]{0, 1, 2, 0, 2, 3};
-        return new Mesh(vertices, indices, new int[]{3, 2});
+        VertexFormat format = new VertexFormat(
+                positionAttribute(glState),
+                VertexAttribute.normalizedUnsignedByte(2));
+        MeshBuilder builder = new MeshBuilder(format, 4, 6);
+        builder.put(-halfWidth, 0f, 0f).put(0f, 1f)
+                .put(halfWidth, 0f, 0f).put(1f, 1f)
+                .put(halfWidth, 0f, height).put(1f, 0f)
+                .put(-halfWidth, 0f, height).put(0f, 0f);
+        builder.triangle(0, 1, 2).triangle(0, 2, 3);
+        return builder.build(glState);
     }
 
     public static final class Color3f {
@@ -0,0 +1,119 @@
+package com.example.racingsim.gl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * The subset of OpenGL ES used by the Java renderer. Routing calls through this interface lets the
+ * renderer run against {@link AndroidGl} on device and against {@link CountingGlApi} in JVM tests.
+ */
+public interface GlApi {
+
+    boolean supportsVertexArrayObjects();
+
+    boolean supportsHalfFloatVertices();
+
+    boolean supportsProgramBinaries();
+
+    boolean supportsEtc2Textures();
+
+    String glGetString(int name);
+
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    void glClear(int mask);
+
+    void glViewport(int x, int y, int width, int height);
+
+    void glEnable(int capability);
+
+    void glDisable(int capability);
+
+    void glBlendFunc(int sourceFactor, int destinationFactor);
+
+    int glCreateShader(int type);
+
+    void glShaderSource(int shader, String source);
+
+    void glCompileShader(int shader);
+
+    void glGetShaderiv(int shader, int parameter, int[] values, int offset);
+
+    String glGetShaderInfoLog(int shader);
+
+    void glDeleteShader(int shader);
+
+    int glCreateProgram();
+
+    void glAttachShader(int program, int shader);
+
+    void glLinkProgram(int program);
+
+    void glGetProgramiv(int program, int parameter, int[] values, int offset);
+
+    String glGetProgramInfoLog(int program);
+
+    void glDeleteProgram(int program);
+
+    void glProgramParameteri(int program, int parameter, int value);
+
+    void glGetProgramBinary(int program, int bufferSize, int[] length, int lengthOffset,
+                            int[] binaryFormat, int binaryFormatOffset, Buffer binary);
+
+    void glProgramBinary(int program, int binaryFormat, Buffer binary, int length);
+
+    void glUseProgram(int program);
+
+    int glGetUniformLocation(int program, String name);
+
+    int glGetAttribLocation(int program, String name);
+
+    void glUniform1i(int location, int value);
+
+    void glUniform3f(int location, float x, float y, float z);
+
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] values, int offset);
+
+    void glGenBuffers(int count, int[] buffers, int offset);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBufferData(int target, int sizeBytes, Buffer data, int usage);
+
+    void glGenVertexArrays(int count, int[] arrays, int offset);
+
+    void glBindVertexArray(int array);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glDisableVertexAttribArray(int index);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int strideBytes, int offsetBytes);
+
+    void glVertexAttrib4f(int index, float x, float y, float z, float w);
+
+    void glDrawArrays(int mode, int first, int count);
+
+    void glDrawElements(int mode, int count, int type, int offsetBytes);
+
+    void glActiveTexture(int texture);
+
+    void glBindTexture(int target, int texture);
+
+    void glGenTextures(int count, int[] textures, int offset);
+
+    void glDeleteTextures(int count, int[] textures, int offset);
+
+    void glTexParameteri(int target, int parameter, int value);
+
+    /**
+     * Uploads a bitmap in its own format, as {@code GLUtils.texImage2D} does.
+     */
+    void glTexImage2D(int target, int level, Bitmap bitmap);
+
+    void glCompressedTexImage2D(int target, int level, int internalFormat, int width, int height,
+                                int imageSize, Buffer data);
+
+    void glGenerateMipmap(int target);
+}
@@ -0,0 +1,304 @@
+package com.example.racingsim.gl;
+
+import android.opengl.GLES20;
+
+import java.util.Arrays;
+
+/**
+ * Shadows the GL binding and capability state so redundant program, buffer, attribute, capability,
+ * texture and uniform calls are skipped. All GL state changes on the Java render path must go
+ * through the tracker; call {@link #reset()} after anything touches GL behind its back.
+ */
+public final class GlStateTracker {
+
+    private static final int UNKNOWN = -1;
+    private static final int TRACKED_ATTRIBUTE_LOCATIONS = 16;
+
+    private final GlApi gl;
+    private boolean cachingEnabled = true;
+
+    private ShaderProgram currentProgram;
+    private int arrayBuffer;
+    private int elementBuffer;
+    private int vertexArray;
+    private int defaultAttributeMask;
+    private Object vertexLayoutOwner;
+    private int[] vertexLayoutLocations;
+    private int blendEnabled;
+    private int cullEnabled;
+    private int depthEnabled;
+    private int blendSource;
+    private int blendDestination;
+    private int activeTextureUnit;
+    private int boundTexture2D;
+    private final float[] constantAttributes = new float[TRACKED_ATTRIBUTE_LOCATIONS * 4];
+    private final boolean[] constantAttributesValid = new boolean[TRACKED_ATTRIBUTE_LOCATIONS];
+
+    private long skippedCalls;
+
+    public GlStateTracker(GlApi gl) {
+        this.gl = gl;
+        reset();
+    }
+
+    public GlApi gl() {
+        return gl;
+    }
+
+    public boolean supportsVertexArrayObjects() {
+        return gl.supportsVertexArrayObjects();
+    }
+
+    /**
+     * Disables caching so every request is forwarded; used to measure the uncached baseline.
+     */
+    public void setCachingEnabled(boolean enabled) {
+        cachingEnabled = enabled;
+        reset();
+    }
+
+    /**
+     * Forgets all shadowed state. Attribute arrays of the default vertex array are assumed disabled,
+     * which holds for a fresh context.
+     */
+    public void reset() {
+        currentProgram = null;
+        arrayBuffer = UNKNOWN;
+        elementBuffer = UNKNOWN;
+        vertexArray = UNKNOWN;
+        defaultAttributeMask = 0;
+        vertexLayoutOwner = null;
+        vertexLayoutLocations = null;
+        blendEnabled = UNKNOWN;
+        cullEnabled = UNKNOWN;
+        depthEnabled = UNKNOWN;
+        blendSource = UNKNOWN;
+        blendDestination = UNKNOWN;
+        activeTextureUnit = UNKNOWN;
+        boundTexture2D = UNKNOWN;
+        Arrays.fill(constantAttributesValid, false);
+    }
+
+    public long getSkippedCallCount() {
+        return skippedCalls;
+    }
+
+    public void resetSkippedCallCount() {
+        skippedCalls = 0L;
+    }
+
+    public void useProgram(ShaderProgram program) {
+        if (cachingEnabled && program == currentProgram) {
+            skippedCalls++;
+            return;
+        }
+        currentProgram = program;
+        gl.glUseProgram(program != null ? program.getProgramId() : 0);
+    }
+
+    public void bindVertexArray(int array, int elementBufferInArray) {
+        if (cachingEnabled && array == vertexArray) {
+            skippedCalls++;
+            return;
+        }
+        vertexArray = array;
+        elementBuffer = array != 0 ? elementBufferInArray : UNKNOWN;
+        vertexLayoutOwner = null;
+        vertexLayoutLocations = null;
+        gl.glBindVertexArray(array);
+    }
+
+    public void bindArrayBuffer(int buffer) {
+        if (cachingEnabled && buffer == arrayBuffer) {
+            skippedCalls++;
+            return;
+        }
+        arrayBuffer = buffer;
+        vertexLayoutOwner = null;
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffer);
+    }
+
+    public void bindElementBuffer(int buffer) {
+        if (cachingEnabled && buffer == elementBuffer) {
+            skippedCalls++;
+            return;
+        }
+        elementBuffer = buffer;
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, buffer);
+    }
+
+    /**
+     * Returns {@code true} when attribute pointers must be specified for the given owner and
+     * locations, i.e. the currently bound array buffer was last described by someone else.
+     */
+    public boolean claimVertexLayout(Object owner, int[] locations) {
+        if (cachingEnabled && owner == vertexLayoutOwner && locations == vertexLayoutLocations) {
+            skippedCalls++;
+            return false;
+        }
+        vertexLayoutOwner = owner;
+        vertexLayoutLocations = locations;
+        return true;
+    }
+
+    /**
+     * Enables exactly the attribute arrays in {@code mask} on the default vertex array.
+     */
+    public void setEnabledAttributes(int mask) {
+        if (!cachingEnabled) {
+            enableAttributes(mask);
+            defaultAttributeMask = mask;
+            return;
+        }
+        skippedCalls += Integer.bitCount(mask & defaultAttributeMask);
+        enableAttributes(mask & ~defaultAttributeMask);
+        int toDisable = defaultAttributeMask & ~mask;
+        while (toDisable != 0) {
+            int location = Integer.numberOfTrailingZeros(toDisable);
+            gl.glDisableVertexAttribArray(location);
+            toDisable &= toDisable - 1;
+        }
+        defaultAttributeMask = mask;
+    }
+
+    private void enableAttributes(int mask) {
+        while (mask != 0) {
+            int location = Integer.numberOfTrailingZeros(mask);
+            gl.glEnableVertexAttribArray(location);
+            mask &= mask - 1;
+        }
+    }
+
+    /**
+     * Sets the value a disabled attribute array reads for every vertex.
+     */
+    public void constantAttribute(int location, float x, float y, float z, float w) {
+        if (location < 0) {
+            return;
+        }
+        boolean tracked = location < TRACKED_ATTRIBUTE_LOCATIONS;
+        int base = location * 4;
+        if (cachingEnabled && tracked && constantAttributesValid[location]
+                && constantAttributes[base] == x && constantAttributes[base + 1] == y
+                && constantAttributes[base + 2] == z && constantAttributes[base + 3] == w) {
+            skippedCalls++;
+            return;
+        }
+        if (tracked) {
+            constantAttributes[base] = x;
+            constantAttributes[base + 1] = y;
+            constantAttributes[base + 2] = z;
+            constantAttributes[base + 3] = w;
+            constantAttributesValid[location] = true;
+        }
+        gl.glVertexAttrib4f(location, x, y, z, w);
+    }
+
+    public void setBlendEnabled(boolean enabled) {
+        blendEnabled = setCapability(GLES20.GL_BLEND, enabled, blendEnabled);
+    }
+
+    public void setCullFaceEnabled(boolean enabled) {
+        cullEnabled = setCapability(GLES20.GL_CULL_FACE, enabled, cullEnabled);
+    }
+
+    public void setDepthTestEnabled(boolean enabled) {
+        depthEnabled = setCapability(GLES20.GL_DEPTH_TEST, enabled, depthEnabled);
+    }
+
+    private int setCapability(int capability, boolean enabled, int current) {
+        int requested = enabled ? 1 : 0;
+        if (cachingEnabled && requested == current) {
+            skippedCalls++;
+            return current;
+        }
+        if (enabled) {
+            gl.glEnable(capability);
+        } else {
+            gl.glDisable(capability);
+        }
+        return requested;
+    }
+
+    public void blendFunc(int source, int destination) {
+        if (cachingEnabled && source == blendSource && destination == blendDestination) {
+            skippedCalls++;
+            return;
+        }
+        blendSource = source;
+        blendDestination = destination;
+        gl.glBlendFunc(source, destination);
+    }
+
+    public void bindTexture2D(int unit, int texture) {
+        if (!cachingEnabled || unit != activeTextureUnit) {
+            activeTextureUnit = unit;
+            gl.glActiveTexture(GLES20.GL_TEXTURE0 + unit);
+            boundTexture2D = UNKNOWN;
+        } else {
+            skippedCalls++;
+        }
+        if (cachingEnabled && texture == boundTexture2D) {
+            skippedCalls++;
+            return;
+        }
+        boundTexture2D = texture;
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+    }
+
+    /**
+     * Uploads a vec3 uniform of the current program unless it already holds the same value.
+     */
+    public void uniform3f(ShaderProgram program, int location, float x, float y, float z) {
+        if (location < 0) {
+            return;
+        }
+        if (isCached(program, location)) {
+            int base = location * 4;
+            float[] cache = program.uniformCache;
+            if (cache[base] == x && cache[base + 1] == y && cache[base + 2] == z) {
+                skippedCalls++;
+                return;
+            }
+        }
+        if (location < ShaderProgram.CACHED_UNIFORM_LOCATIONS) {
+            int base = location * 4;
+            program.uniformCache[base] = x;
+            program.uniformCache[base + 1] = y;
+            program.uniformCache[base + 2] = z;
+            program.uniformCacheValid[location] = true;
+        }
+        gl.glUniform3f(location, x, y, z);
+    }
+
+    /**
+     * Uploads an int/sampler uniform of the current program unless it already holds the same value.
+     */
+    public void uniform1i(ShaderProgram program, int location, int value) {
+        if (location < 0) {
+            return;
+        }
+        if (isCached(program, location) && program.uniformCache[location * 4] == value) {
+            skippedCalls++;
+            return;
+        }
+        if (location < ShaderProgram.CACHED_UNIFORM_LOCATIONS) {
+            program.uniformCache[location * 4] = value;
+            program.uniformCacheValid[location] = true;
+        }
+        gl.glUniform1i(location, value);
+    }
+
+    public void uniformMatrix4fv(int location, float[] values, int offset) {
+        if (location < 0) {
+            return;
+        }
+        gl.glUniformMatrix4fv(location, 1, false, values, offset);
+    }
+
+    private boolean isCached(ShaderProgram program, int location) {
+        return cachingEnabled
+                && location < ShaderProgram.CACHED_UNIFORM_LOCATIONS
+                && program.uniformCacheValid[location];
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.racingsim.gl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Parsed KTX 1.1 container holding a compressed 2D texture and its mip chain.
+ */
+final class KtxTexture {
+
+    private static final byte[] IDENTIFIER = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+    };
+    private static final int HEADER_BYTES = 64;
+    private static final int ENDIANNESS_REFERENCE = 0x04030201;
+
+    final int internalFormat;
+    final int width;
+    final int height;
+    final ByteBuffer[] levels;
+
+    private KtxTexture(int internalFormat, int width, int height, ByteBuffer[] levels) {
+        this.internalFormat = internalFormat;
+        this.width = width;
+        this.height = height;
+        this.levels = levels;
+    }
+
+    /**
+     * Total bytes of all mip levels, i.e. the GPU memory the texture occupies.
+     */
+    long getSizeBytes() {
+        long total = 0L;
+        for (ByteBuffer level : levels) {
+            total += level.remaining();
+        }
+        return total;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code data} is not a compressed 2D KTX 1.1 texture
+     */
+    static KtxTexture parse(ByteBuffer data) {
+        ByteBuffer buffer = data.duplicate();
+        if (buffer.remaining() < HEADER_BYTES) {
+            throw new IllegalArgumentException("KTX data shorter than header");
+        }
+        for (byte expected : IDENTIFIER) {
+            if (buffer.get() != expected) {
+                throw new IllegalArgumentException("Not a KTX 1.1 file");
+            }
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int endianness = buffer.getInt();
+        if (endianness != ENDIANNESS_REFERENCE) {
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (Integer.reverseBytes(endianness) != ENDIANNESS_REFERENCE) {
+                throw new IllegalArgumentException("Bad KTX endianness marker");
+            }
+        }
+        int glType = buffer.getInt();
+        buffer.getInt(); // glTypeSize
+        buffer.getInt(); // glFormat
+        int internalFormat = buffer.getInt();
+        buffer.getInt(); // glBaseInternalFormat
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int depth = buffer.getInt();
+        int arrayElements = buffer.getInt();
+        int faces = buffer.getInt();
+        int mipLevels = Math.max(1, buffer.getInt());
+        int keyValueBytes = buffer.getInt();
+        if (glType != 0 || depth != 0 || arrayElements != 0 || faces != 1 || width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Only compressed 2D KTX textures are supported");
+        }
+        if (keyValueBytes < 0 || keyValueBytes > buffer.remaining()) {
+            throw new IllegalArgumentException("Bad KTX key/value length");
+        }
+        buffer.position(buffer.position() + keyValueBytes);
+
+        ByteBuffer[] levels = new ByteBuffer[mipLevels];
+        for (int level = 0; level < mipLevels; level++) {
+            if (buffer.remaining() < 4) {
+                throw new IllegalArgumentException("Truncated KTX level " + level);
+            }
+            int imageSize = buffer.getInt();
+            if (imageSize <= 0 || imageSize > buffer.remaining()) {
+                throw new IllegalArgumentException("Bad KTX image size at level " + level);
+            }
+            ByteBuffer image = buffer.slice();
+            image.limit(imageSize);
+            levels[level] = image;
+            int padded = (imageSize + 3) & ~3;
+            buffer.position(Math.min(buffer.limit(), buffer.position() + padded));
+        }
+        return new KtxTexture(internalFormat, width, height, levels);
+    }
+}
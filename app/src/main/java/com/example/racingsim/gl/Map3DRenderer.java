@@ -4,10 +4,13 @@ import android.content.Context;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
+import android.util.Log;
 
 import com.example.racingsim.R;
 import com.example.racingsim.model.MapPoints;
+import com.example.racingsim.perf.FrameStats;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,6 +22,9 @@ import javax.microedition.khronos.opengles.GL10;
  */
 public class Map3DRenderer implements GLSurfaceView.Renderer {
 
+    private static final String TAG = "Map3DRenderer";
+    private static final String PROGRAM_CACHE_DIR = "gl_programs";
+    private static final String CAR_TEXTURE_ASSET = "textures/car_nora.ktx";
     private static final float CYLINDER_HEIGHT_M = 0.45f;
     private static final float CYLINDER_RADIUS_M = 0.115f;
     private static final int CYLINDER_SLICES = 32;
@@ -34,6 +40,11 @@ public class Map3DRenderer implements GLSurfaceView.Renderer {
     private static final float MAX_CAMERA_PITCH = 80f;
     private static final float GROUND_MARGIN = 12f;
     private static final float MAX_NORMALISED_RADIUS = 40f;
+    private static final float CAMERA_SMOOTHING_RATE = 14f;
+    private static final float CAMERA_SETTLE_EPSILON = 0.01f;
+    private static final float MAX_FRAME_DELTA_S = 0.1f;
+    private static final int FRAME_STATS_CAPACITY = 512;
+    private static final long FRAME_BUDGET_NANOS = 16_666_667L;
 
     private final Context context;
     private final List<float[]> bluePoints = new ArrayList<>();
@@ -43,31 +54,43 @@ public class Map3DRenderer implements GLSurfaceView.Renderer {
     private final float[] viewMatrix = new float[16];
     private final float[] viewProjectionMatrix = new float[16];
     private final float[] modelMatrix = new float[16];
-    private final float[] mvpMatrix = new float[16];
+    private final RenderQueue renderQueue = new RenderQueue();
+    private final MeshCache meshCache = new MeshCache();
+    private final FrameStats frameStats = new FrameStats(FRAME_STATS_CAPACITY, FRAME_BUDGET_NANOS);
 
+    private GlApi glApi;
+    private GlStateTracker glState;
     private ShaderProgram colorProgram;
     private TexturedProgram texturedProgram;
-
+    private ColorMaterial groundMaterial;
+    private ColorMaterial blueConeMaterial;
+    private ColorMaterial yellowConeMaterial;
+    private TexturedMaterial billboardMaterial;
+    private volatile long skippedGlCallsLastFrame;
+    private long surfaceCreatedNanos;
+    private boolean firstFramePending;
+    private volatile long timeToFirstFrameMillis = -1L;
+    private volatile boolean firstFrameWarm;
+
+    // One white mesh, fetched for each side and tinted by that side's material.
     private Mesh blueCylinderMesh;
     private Mesh yellowCylinderMesh;
     private Mesh groundMesh;
     private Mesh carBillboardMesh;
 
-    private int colorMvpLocation;
-    private int colorModelLocation;
-    private int colorLightDirectionLocation;
-    private int colorPositionAttribute;
-    private int colorNormalAttribute;
-    private int colorColorAttribute;
-    private final int[] colorAttributeLocations = new int[3];
-
-    private int carTextureId;
-    private final int[] textureAttributeLocations = new int[2];
+    private final TextureLoader textureLoader;
+    private TextureHandle carTexture;
 
     private float orbitYawDegrees = 45f;
     private float orbitPitchDegrees = 40f;
     private float orbitDistance;
-    private final Object cameraLock = new Object();
+    private final CameraInput cameraInput = new CameraInput();
+
+    private float displayedYawDegrees;
+    private float displayedPitchDegrees;
+    private float displayedDistance;
+    private long lastFrameNanos;
+    private FrameListener frameListener;
 
     private float sceneRadius;
 
@@ -75,7 +98,16 @@ public class Map3DRenderer implements GLSurfaceView.Renderer {
     private final float[] normalizedLightDirection = new float[3];
 
     public Map3DRenderer(Context context, MapPoints mapPoints) {
-        this.context = context.getApplicationContext();
+        this(context.getApplicationContext(), mapPoints,
+                new TextureLoader(context.getApplicationContext().getResources()));
+    }
+
+    /**
+     * @param context application context; may be {@code null} when driven through {@link #createScene}
+     */
+    Map3DRenderer(Context context, MapPoints mapPoints, TextureLoader textureLoader) {
+        this.context = context;
+        this.textureLoader = textureLoader;
         MapPoints safePoints = mapPoints != null ? mapPoints : MapPoints.createDemoCourse();
         copyPoints(safePoints.getBlue(), bluePoints);
         copyPoints(safePoints.getYellow(), yellowPoints);
@@ -84,6 +116,27 @@ public class Map3DRenderer implements GLSurfaceView.Renderer {
         orbitDistance = clamp(Math.max(DEFAULT_CAMERA_DISTANCE, sceneRadius * 1.2f),
                 MIN_CAMERA_DISTANCE, MAX_CAMERA_DISTANCE);
         normaliseLightDirection();
+        displayedYawDegrees = orbitYawDegrees;
+        displayedPitchDegrees = orbitPitchDegrees;
+        displayedDistance = orbitDistance;
+    }
+
+    /**
+     * Receives a callback on the GL thread after every frame.
+     */
+    public interface FrameListener {
+        void onFrameRendered(boolean cameraSettling);
+    }
+
+    public void setFrameListener(FrameListener listener) {
+        frameListener = listener;
+    }
+
+    /**
+     * Invoked from a background thread when new content (such as a decoded texture) needs a frame.
+     */
+    public void setRenderRequester(Runnable requester) {
+        textureLoader.setDecodeListener(requester);
     }
 
     private void normaliseCourse() {
@@ -181,61 +234,113 @@ public class Map3DRenderer implements GLSurfaceView.Renderer {
         sceneRadius = Math.max(15f, maxDistance + GROUND_MARGIN);
     }
 
+    /**
+     * Redundant GL calls the state tracker dropped while rendering the previous frame.
+     */
+    public long getSkippedGlCallsLastFrame() {
+        return skippedGlCallsLastFrame;
+    }
+
+    MeshCache getMeshCache() {
+        return meshCache;
+    }
+
+    /**
+     * Per-frame CPU timings; "physics" covers camera input and easing.
+     */
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
+
+    /**
+     * Milliseconds from {@link #onSurfaceCreated} to the end of the first frame drawn in that surface,
+     * or -1 before it has been drawn.
+     */
+    public long getTimeToFirstFrameMillis() {
+        return timeToFirstFrameMillis;
+    }
+
+    /**
+     * Whether every program of the last surface came from the program binary cache.
+     */
+    public boolean isFirstFrameWarm() {
+        return firstFrameWarm;
+    }
+
     @Override
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
-        GLES20.glClearColor(0.05f, 0.05f, 0.08f, 1f);
-        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-        GLES20.glEnable(GLES20.GL_CULL_FACE);
-
-        colorProgram = new ShaderProgram(COLOR_VERTEX_SHADER, COLOR_FRAGMENT_SHADER);
-        colorMvpLocation = colorProgram.getUniformLocation("uMVPMatrix");
-        colorModelLocation = colorProgram.getUniformLocation("uModelMatrix");
-        colorLightDirectionLocation = colorProgram.getUniformLocation("uLightDirection");
-        colorPositionAttribute = colorProgram.getAttributeLocation("aPosition");
-        colorNormalAttribute = colorProgram.getAttributeLocation("aNormal");
-        colorColorAttribute = colorProgram.getAttributeLocation("aColor");
-        colorAttributeLocations[0] = colorPositionAttribute;
-        colorAttributeLocations[1] = colorNormalAttribute;
-        colorAttributeLocations[2] = colorColorAttribute;
-
-        texturedProgram = new TexturedProgram();
-        textureAttributeLocations[0] = texturedProgram.getPositionAttribute();
-        textureAttributeLocations[1] = texturedProgram.getTexCoordAttribute();
-
-        GeometryFactory.Color3f blueBody = new GeometryFactory.Color3f(0.0f, 0.35f, 0.9f);
-        GeometryFactory.Color3f yellowBody = new GeometryFactory.Color3f(0.95f, 0.8f, 0.05f);
+        createScene(new AndroidGl(), new File(context.getCodeCacheDir(), PROGRAM_CACHE_DIR));
+    }
+
+    /**
+     * Creates programs, meshes and textures for a new surface. GLSurfaceView only calls
+     * {@link #onSurfaceCreated} for a new GL context (the view preserves its context on pause), so
+     * nothing built for an earlier context is usable here.
+     */
+    void createScene(GlApi gl, File programCacheDir) {
+        surfaceCreatedNanos = System.nanoTime();
+        firstFramePending = true;
+        glApi = gl;
+        glState = new GlStateTracker(glApi);
+        renderQueue.resetSortIds();
+        glApi.glClearColor(0.05f, 0.05f, 0.08f, 1f);
+        glState.setDepthTestEnabled(true);
+        glState.setCullFaceEnabled(true);
+
+        ProgramBinaryCache programCache = new ProgramBinaryCache(programCacheDir,
+                ProgramBinaryCache.driverString(glApi));
+        colorProgram = new ShaderProgram(glApi, COLOR_VERTEX_SHADER, COLOR_FRAGMENT_SHADER, programCache);
+        groundMaterial = new ColorMaterial(colorProgram, normalizedLightDirection, 1.0f, 1.0f, 1.0f);
+        blueConeMaterial = new ColorMaterial(colorProgram, normalizedLightDirection, 0.0f, 0.35f, 0.9f);
+        yellowConeMaterial = new ColorMaterial(colorProgram, normalizedLightDirection, 0.95f, 0.8f, 0.05f);
+        texturedProgram = new TexturedProgram(glApi, programCache);
+        firstFrameWarm = programCache.getMisses() == 0 && programCache.getRejects() == 0;
+
+        GeometryFactory.Color3f white = new GeometryFactory.Color3f(1.0f, 1.0f, 1.0f);
         GeometryFactory.Color3f groundColor = new GeometryFactory.Color3f(0.1f, 0.1f, 0.12f);
 
-        blueCylinderMesh = GeometryFactory.createCylinder(CYLINDER_RADIUS_M, CYLINDER_HEIGHT_M,
-                CYLINDER_SLICES, blueBody);
-        yellowCylinderMesh = GeometryFactory.createCylinder(CYLINDER_RADIUS_M, CYLINDER_HEIGHT_M,
-                CYLINDER_SLICES, yellowBody);
-        groundMesh = GeometryFactory.createGround(sceneRadius * 2f, groundColor);
-        carBillboardMesh = GeometryFactory.createTexturedQuad(CAR_WIDTH_M, CAR_HEIGHT_M);
+        meshCache.clear();
+        blueCylinderMesh = meshCache.cylinder(glState, CYLINDER_RADIUS_M, CYLINDER_HEIGHT_M,
+                CYLINDER_SLICES, white);
+        yellowCylinderMesh = meshCache.cylinder(glState, CYLINDER_RADIUS_M, CYLINDER_HEIGHT_M,
+                CYLINDER_SLICES, white);
+        groundMesh = meshCache.ground(glState, sceneRadius * 2f, groundColor);
+        carBillboardMesh = meshCache.texturedQuad(glState, CAR_WIDTH_M, CAR_HEIGHT_M);
 
-        carTextureId = TextureUtils.loadTexture(context, R.drawable.car_nora);
+        carTexture = textureLoader.load(glApi, CAR_TEXTURE_ASSET, R.drawable.car_nora);
+        billboardMaterial = new TexturedMaterial(texturedProgram, carTexture);
     }
 
     @Override
     public void onSurfaceChanged(GL10 gl, int width, int height) {
-        GLES20.glViewport(0, 0, width, height);
+        glApi.glViewport(0, 0, width, height);
         float aspect = (float) width / (float) height;
         Matrix.perspectiveM(projectionMatrix, 0, 45f, aspect, 0.1f, 400f);
     }
 
     @Override
     public void onDrawFrame(GL10 gl) {
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
-
-        float yaw;
-        float pitch;
-        float distance;
-        synchronized (cameraLock) {
-            yaw = orbitYawDegrees;
-            pitch = orbitPitchDegrees;
-            distance = orbitDistance;
+        long frameStart = System.nanoTime();
+        frameStats.beginFrame(frameStart);
+        glApi.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        glState.resetSkippedCallCount();
+        frameStats.beginPhase(FrameStats.PHASE_UPLOAD, frameStart);
+        if (textureLoader.processUploads(glState, TextureLoader.DEFAULT_UPLOAD_BUDGET_NANOS) > 0
+                && carTexture.isReady()) {
+            Log.i(TAG, "Car texture ready: " + carTexture.getSizeBytes() + " bytes"
+                    + (carTexture.isCompressed() ? " (ETC2)" : " (RGBA8)"));
         }
 
+        frameStats.beginPhase(FrameStats.PHASE_PHYSICS, System.nanoTime());
+        applyPendingInput(cameraInput.drain());
+        boolean settling = advanceCamera(orbitYawDegrees, orbitPitchDegrees, orbitDistance)
+                || cameraInput.hasPending()
+                || textureLoader.hasReadyUploads();
+        float yaw = displayedYawDegrees;
+        float pitch = displayedPitchDegrees;
+        float distance = displayedDistance;
+
+        frameStats.beginPhase(FrameStats.PHASE_DRAW, System.nanoTime());
         float yawRad = (float) Math.toRadians(yaw);
         float pitchRad = (float) Math.toRadians(pitch);
         float cosPitch = (float) Math.cos(pitchRad);
@@ -246,54 +351,86 @@ public class Map3DRenderer implements GLSurfaceView.Renderer {
         Matrix.setLookAtM(viewMatrix, 0, eyeX, eyeY, eyeZ, 0f, 0f, 0f, 0f, 0f, 1f);
         Matrix.multiplyMM(viewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
 
-        drawGround();
-        drawCylinders(blueCylinderMesh, bluePoints);
-        drawCylinders(yellowCylinderMesh, yellowPoints);
-        drawCarBillboard(yaw);
+        submitGround();
+        submitCylinders(blueConeMaterial, blueCylinderMesh, bluePoints);
+        submitCylinders(yellowConeMaterial, yellowCylinderMesh, yellowPoints);
+        submitCarBillboard(yaw);
+        renderQueue.flush(glState, viewProjectionMatrix);
+        skippedGlCallsLastFrame = glState.getSkippedCallCount();
+        frameStats.endFrame(System.nanoTime(), settling);
+
+        if (firstFramePending) {
+            firstFramePending = false;
+            timeToFirstFrameMillis = (System.nanoTime() - surfaceCreatedNanos) / 1_000_000L;
+            Log.i(TAG, "First frame after " + timeToFirstFrameMillis + " ms ("
+                    + (firstFrameWarm ? "warm" : "cold") + " program cache)");
+        }
+
+        FrameListener listener = frameListener;
+        if (listener != null) {
+            listener.onFrameRendered(settling);
+        }
+    }
+
+    /**
+     * Eases the displayed camera towards the requested orbit and reports whether it is still moving.
+     */
+    private boolean advanceCamera(float targetYaw, float targetPitch, float targetDistance) {
+        long now = System.nanoTime();
+        float dt = lastFrameNanos == 0L ? MAX_FRAME_DELTA_S
+                : Math.min((now - lastFrameNanos) / 1_000_000_000f, MAX_FRAME_DELTA_S);
+        lastFrameNanos = now;
+        float smoothing = 1f - (float) Math.exp(-dt * CAMERA_SMOOTHING_RATE);
+
+        float yawDelta = wrapDegrees(targetYaw - displayedYawDegrees);
+        float pitchDelta = targetPitch - displayedPitchDegrees;
+        float distanceDelta = targetDistance - displayedDistance;
+        if (Math.abs(yawDelta) < CAMERA_SETTLE_EPSILON
+                && Math.abs(pitchDelta) < CAMERA_SETTLE_EPSILON
+                && Math.abs(distanceDelta) < CAMERA_SETTLE_EPSILON) {
+            displayedYawDegrees = targetYaw;
+            displayedPitchDegrees = targetPitch;
+            displayedDistance = targetDistance;
+            return false;
+        }
+        displayedYawDegrees = wrapDegrees(displayedYawDegrees + yawDelta * smoothing);
+        displayedPitchDegrees += pitchDelta * smoothing;
+        displayedDistance += distanceDelta * smoothing;
+        return true;
+    }
+
+    private static float wrapDegrees(float degrees) {
+        float wrapped = degrees % 360f;
+        if (wrapped > 180f) {
+            wrapped -= 360f;
+        } else if (wrapped < -180f) {
+            wrapped += 360f;
+        }
+        return wrapped;
     }
 
-    private void drawGround() {
-        colorProgram.use();
-        GLES20.glUniform3f(colorLightDirectionLocation, normalizedLightDirection[0],
-                normalizedLightDirection[1], normalizedLightDirection[2]);
+    private void submitGround() {
         Matrix.setIdentityM(modelMatrix, 0);
-        Matrix.multiplyMM(mvpMatrix, 0, viewProjectionMatrix, 0, modelMatrix, 0);
-        GLES20.glUniformMatrix4fv(colorMvpLocation, 1, false, mvpMatrix, 0);
-        GLES20.glUniformMatrix4fv(colorModelLocation, 1, false, modelMatrix, 0);
-        groundMesh.draw(GLES20.GL_TRIANGLES, colorAttributeLocations);
+        renderQueue.submit(groundMaterial, groundMesh, GLES20.GL_TRIANGLES, modelMatrix, 0);
     }
 
-    private void drawCylinders(Mesh mesh, List<float[]> points) {
-        colorProgram.use();
-        GLES20.glUniform3f(colorLightDirectionLocation, normalizedLightDirection[0],
-                normalizedLightDirection[1], normalizedLightDirection[2]);
+    private void submitCylinders(ColorMaterial material, Mesh mesh, List<float[]> points) {
         for (float[] point : points) {
             Matrix.setIdentityM(modelMatrix, 0);
             Matrix.translateM(modelMatrix, 0, point[0], point[1], 0f);
-            Matrix.multiplyMM(mvpMatrix, 0, viewProjectionMatrix, 0, modelMatrix, 0);
-            GLES20.glUniformMatrix4fv(colorMvpLocation, 1, false, mvpMatrix, 0);
-            GLES20.glUniformMatrix4fv(colorModelLocation, 1, false, modelMatrix, 0);
-            mesh.draw(GLES20.GL_TRIANGLES, colorAttributeLocations);
+            renderQueue.submit(material, mesh, GLES20.GL_TRIANGLES, modelMatrix, 0);
         }
     }
 
-    private void drawCarBillboard(float cameraYawDegrees) {
-        texturedProgram.use();
+    private void submitCarBillboard(float cameraYawDegrees) {
+        if (!carTexture.isReady()) {
+            return;
+        }
         Matrix.setIdentityM(modelMatrix, 0);
         Matrix.translateM(modelMatrix, 0, 0f, 0f, CAR_LIFT_M);
         Matrix.rotateM(modelMatrix, 0, cameraYawDegrees, 0f, 0f, 1f);
-        Matrix.multiplyMM(mvpMatrix, 0, viewProjectionMatrix, 0, modelMatrix, 0);
-        GLES20.glUniformMatrix4fv(texturedProgram.getMvpLocation(), 1, false, mvpMatrix, 0);
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, carTextureId);
-        GLES20.glUniform1i(texturedProgram.getTextureLocation(), 0);
-        GLES20.glDisable(GLES20.GL_CULL_FACE);
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
-        carBillboardMesh.draw(GLES20.GL_TRIANGLES, textureAttributeLocations);
-        GLES20.glDisable(GLES20.GL_BLEND);
-        GLES20.glEnable(GLES20.GL_CULL_FACE);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        renderQueue.submit(billboardMaterial, carBillboardMesh, GLES20.GL_TRIANGLES, modelMatrix,
+                RenderQueue.STATE_BLENDED | RenderQueue.STATE_DOUBLE_SIDED);
     }
 
     private void normaliseLightDirection() {
@@ -311,18 +448,28 @@ public class Map3DRenderer implements GLSurfaceView.Renderer {
         }
     }
 
+    /**
+     * Queues an orbit change; safe to call from any thread and applied on the next frame.
+     */
     public void applyOrbitDelta(float deltaYaw, float deltaPitch) {
-        synchronized (cameraLock) {
-            orbitYawDegrees = (orbitYawDegrees + deltaYaw) % 360f;
-            orbitPitchDegrees = clamp(orbitPitchDegrees + deltaPitch, MIN_CAMERA_PITCH, MAX_CAMERA_PITCH);
-        }
+        cameraInput.addOrbit(deltaYaw, deltaPitch);
     }
 
+    /**
+     * Queues a pinch zoom factor; safe to call from any thread and applied on the next frame.
+     */
     public void applyZoom(float scaleFactor) {
-        synchronized (cameraLock) {
-            float safeScale = Math.max(0.2f, Math.min(scaleFactor, 5f));
-            float newDistance = orbitDistance / safeScale;
-            orbitDistance = clamp(newDistance, MIN_CAMERA_DISTANCE, MAX_CAMERA_DISTANCE);
+        cameraInput.addZoom(Math.max(0.2f, Math.min(scaleFactor, 5f)));
+    }
+
+    private void applyPendingInput(CameraInput.Delta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        orbitYawDegrees = (orbitYawDegrees + delta.yawDegrees) % 360f;
+        orbitPitchDegrees = clamp(orbitPitchDegrees + delta.pitchDegrees, MIN_CAMERA_PITCH, MAX_CAMERA_PITCH);
+        if (delta.zoomScale > 0f) {
+            orbitDistance = clamp(orbitDistance / delta.zoomScale, MIN_CAMERA_DISTANCE, MAX_CAMERA_DISTANCE);
         }
     }
 
@@ -330,10 +477,105 @@ public class Map3DRenderer implements GLSurfaceView.Renderer {
         return Math.max(min, Math.min(max, value));
     }
 
+    /**
+     * Lit vertex-colour material, tinted so the cones of both sides can share one white mesh.
+     */
+    private static final class ColorMaterial extends RenderQueue.Material {
+
+        private final ShaderProgram program;
+        private final float[] lightDirection;
+        private final int mvpLocation;
+        private final int modelLocation;
+        private final int lightDirectionLocation;
+        private final int tintLocation;
+        private final float tintR;
+        private final float tintG;
+        private final float tintB;
+        private final int[] attributeLocations;
+
+        ColorMaterial(ShaderProgram program, float[] lightDirection, float tintR, float tintG, float tintB) {
+            this.program = program;
+            this.lightDirection = lightDirection;
+            this.tintR = tintR;
+            this.tintG = tintG;
+            this.tintB = tintB;
+            mvpLocation = program.getUniformLocation("uMVPMatrix");
+            modelLocation = program.getUniformLocation("uModelMatrix");
+            lightDirectionLocation = program.getUniformLocation("uLightDirection");
+            tintLocation = program.getUniformLocation("uTint");
+            attributeLocations = new int[]{
+                    program.getAttributeLocation("aPosition"),
+                    program.getAttributeLocation("aNormal"),
+                    program.getAttributeLocation("aColor")
+            };
+        }
+
+        @Override
+        public ShaderProgram getProgram() {
+            return program;
+        }
+
+        @Override
+        public int[] getAttributeLocations() {
+            return attributeLocations;
+        }
+
+        @Override
+        protected void bind(GlStateTracker glState) {
+            glState.uniform3f(program, lightDirectionLocation,
+                    lightDirection[0], lightDirection[1], lightDirection[2]);
+            glState.uniform3f(program, tintLocation, tintR, tintG, tintB);
+        }
+
+        @Override
+        protected void applyTransform(GlStateTracker glState, float[] modelMatrix, int offset, float[] mvpMatrix) {
+            glState.uniformMatrix4fv(mvpLocation, mvpMatrix, 0);
+            glState.uniformMatrix4fv(modelLocation, modelMatrix, offset);
+        }
+    }
+
+    /**
+     * Alpha-tested textured material used for the car billboard.
+     */
+    private static final class TexturedMaterial extends RenderQueue.Material {
+
+        private final TexturedProgram program;
+        private final TextureHandle texture;
+        private final int[] attributeLocations;
+
+        TexturedMaterial(TexturedProgram program, TextureHandle texture) {
+            this.program = program;
+            this.texture = texture;
+            attributeLocations = new int[]{program.getPositionAttribute(), program.getTexCoordAttribute()};
+        }
+
+        @Override
+        public ShaderProgram getProgram() {
+            return program;
+        }
+
+        @Override
+        public int[] getAttributeLocations() {
+            return attributeLocations;
+        }
+
+        @Override
+        protected void bind(GlStateTracker glState) {
+            glState.bindTexture2D(0, texture.getTextureId());
+            glState.uniform1i(program, program.getTextureLocation(), 0);
+        }
+
+        @Override
+        protected void applyTransform(GlStateTracker glState, float[] modelMatrix, int offset, float[] mvpMatrix) {
+            glState.uniformMatrix4fv(program.getMvpLocation(), mvpMatrix, 0);
+        }
+    }
+
     private static final String COLOR_VERTEX_SHADER =
             "uniform mat4 uMVPMatrix;\n" +
                     "uniform mat4 uModelMatrix;\n" +
                     "uniform vec3 uLightDirection;\n" +
+                    "uniform vec3 uTint;\n" +
                     "attribute vec3 aPosition;\n" +
                     "attribute vec3 aNormal;\n" +
                     "attribute vec3 aColor;\n" +
@@ -343,7 +585,7 @@ public class Map3DRenderer implements GLSurfaceView.Renderer {
                     "    vec3 worldNormal = normalize((uModelMatrix * vec4(aNormal, 0.0)).xyz);\n" +
                     "    float lambert = max(dot(normalize(-uLightDirection), worldNormal), 0.0);\n" +
                     "    vLightIntensity = max(lambert, 0.2);\n" +
-                    "    vColor = aColor;\n" +
+                    "    vColor = aColor * uTint;\n" +
                     "    gl_Position = uMVPMatrix * vec4(aPosition, 1.0);\n" +
                     "}";
 
@@ -6,9 +6,12 @@ import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 
 import com.example.racingsim.model.MapPoints;
+import com.example.racingsim.perf.FrameStats;
 
 /**
  * Custom GLSurfaceView that wires touch input into the renderer.
+ * By default it renders on demand: frames are requested only while the user orbits or zooms and
+ * while the camera settles afterwards.
  */
 public class Map3DView extends GLSurfaceView {
 
@@ -17,6 +20,10 @@ public class Map3DView extends GLSurfaceView {
 
     private final Map3DRenderer renderer;
     private final ScaleGestureDetector scaleGestureDetector;
+    private final RenderScheduler renderScheduler = new RenderScheduler();
+    private final Runnable idleFrameRequest = this::requestRender;
+
+    private volatile boolean renderOnDemand;
 
     private float previousX;
     private float previousY;
@@ -25,20 +32,88 @@ public class Map3DView extends GLSurfaceView {
         super(context);
         setEGLContextClientVersion(2);
         setEGLConfigChooser(8, 8, 8, 8, 16, 0);
+        setPreserveEGLContextOnPause(true);
 
         renderer = new Map3DRenderer(context, mapPoints);
+        renderer.setFrameListener(this::onFrameRendered);
+        renderer.setRenderRequester(this::requestRender);
         setRenderer(renderer);
-        setRenderMode(RENDERMODE_CONTINUOUSLY);
+        setRenderOnDemand(true);
 
         scaleGestureDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
             @Override
             public boolean onScale(ScaleGestureDetector detector) {
                 renderer.applyZoom(detector.getScaleFactor());
+                onCameraInput();
                 return true;
             }
         });
     }
 
+    /**
+     * Switches between dirty tracking ({@code RENDERMODE_WHEN_DIRTY}) and continuous rendering.
+     */
+    public void setRenderOnDemand(boolean enabled) {
+        renderOnDemand = enabled;
+        setRenderMode(enabled ? RENDERMODE_WHEN_DIRTY : RENDERMODE_CONTINUOUSLY);
+        if (enabled) {
+            requestRender();
+        } else {
+            removeCallbacks(idleFrameRequest);
+        }
+    }
+
+    public boolean isRenderOnDemand() {
+        return renderOnDemand;
+    }
+
+    /**
+     * Caps the frame rate while the scene is idle in on-demand mode; 0 stops rendering entirely.
+     */
+    public void setIdleFrameRateCap(int framesPerSecond) {
+        renderScheduler.setIdleFrameRateCap(framesPerSecond);
+        if (renderOnDemand) {
+            requestRender();
+        }
+    }
+
+    public int getFramesPerMinute() {
+        return renderScheduler.getFramesPerMinute();
+    }
+
+    public long getIdleTimeMillis() {
+        return renderScheduler.getIdleTimeMillis(System.nanoTime());
+    }
+
+    public FrameStats getFrameStats() {
+        return renderer.getFrameStats();
+    }
+
+    public long getTotalFramesRendered() {
+        return renderScheduler.getTotalFrames();
+    }
+
+    private void onCameraInput() {
+        renderScheduler.onInput(System.nanoTime());
+        if (renderOnDemand) {
+            removeCallbacks(idleFrameRequest);
+            requestRender();
+        }
+    }
+
+    private void onFrameRendered(boolean cameraSettling) {
+        long delayMillis = renderScheduler.onFrameRendered(System.nanoTime(), cameraSettling);
+        if (!renderOnDemand || delayMillis == RenderScheduler.NO_FRAME) {
+            return;
+        }
+        if (delayMillis == 0L) {
+            requestRender();
+        } else {
+            removeCallbacks(idleFrameRequest);
+            postDelayed(idleFrameRequest, delayMillis);
+        }
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         scaleGestureDetector.onTouchEvent(event);
@@ -47,6 +122,7 @@ public class Map3DView extends GLSurfaceView {
             case MotionEvent.ACTION_DOWN:
                 previousX = event.getX();
                 previousY = event.getY();
+                renderScheduler.onInputStarted(System.nanoTime());
                 break;
             case MotionEvent.ACTION_POINTER_DOWN:
                 previousX = event.getX(0);
@@ -69,6 +145,7 @@ public class Map3DView extends GLSurfaceView {
                     float deltaX = currentX - previousX;
                     float deltaY = currentY - previousY;
                     renderer.applyOrbitDelta(deltaX * ORBIT_SENSITIVITY, deltaY * PITCH_SENSITIVITY);
+                    onCameraInput();
                     previousX = currentX;
                     previousY = currentY;
                 }
@@ -77,6 +154,10 @@ public class Map3DView extends GLSurfaceView {
             case MotionEvent.ACTION_CANCEL:
                 previousX = 0f;
                 previousY = 0f;
+                renderScheduler.onInputEnded(System.nanoTime());
+                if (renderOnDemand) {
+                    requestRender();
+                }
                 break;
             default:
                 break;
@@ -4,11 +4,11 @@ import android.opengl.GLES20;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
 /**
  * Stores interleaved vertex buffers together with their attribute layout.
+ * On GLES3 contexts the layout is captured once in a vertex array object.
  */
 public class Mesh {
 
@@ -16,81 +16,158 @@ public class Mesh {
     private final int indexBufferId;
     private final int vertexCount;
     private final int indexCount;
-    private final int[] attributeSizes;
-    private final int vertexStrideBytes;
+    private final VertexFormat format;
+    private final int vertexBufferBytes;
+    final RenderQueue.SortSlot sortSlot = new RenderQueue.SortSlot();
 
-    public Mesh(float[] vertexData, short[] indexData, int[] attributeSizes) {
-        this.attributeSizes = attributeSizes.clone();
-        this.vertexStrideBytes = calculateStride(attributeSizes);
-        this.vertexCount = vertexData.length / componentsPerVertex(attributeSizes);
-        this.indexCount = indexData != null ? indexData.length : 0;
+    private int vertexArrayId;
+    private int[] vertexArrayLocations;
 
-        FloatBuffer vertexBuffer = ByteBuffer
-                .allocateDirect(vertexData.length * 4)
-                .order(ByteOrder.nativeOrder())
-                .asFloatBuffer();
-        vertexBuffer.put(vertexData).position(0);
+    public Mesh(GlStateTracker glState, VertexFormat format, ByteBuffer vertexData, short[] indexData) {
+        this(glState, format, vertexData, toDirectBuffer(indexData));
+    }
+
+    /**
+     * Uploads {@code vertexData} and {@code indexData} between their positions and limits. Both must be
+     * direct buffers; an empty or {@code null} index buffer selects non-indexed drawing.
+     */
+    public Mesh(GlStateTracker glState, VertexFormat format, ByteBuffer vertexData, ShortBuffer indexData) {
+        GlApi gl = glState.gl();
+        this.format = format;
+        this.vertexBufferBytes = vertexData.remaining();
+        this.vertexCount = vertexBufferBytes / format.getStrideBytes();
+        this.indexCount = indexData != null ? indexData.remaining() : 0;
+
+        if (glState.supportsVertexArrayObjects()) {
+            // Element array bindings are vertex array state; keep uploads away from live VAOs.
+            glState.bindVertexArray(0, 0);
+        }
 
         int[] buffers = new int[1];
-        GLES20.glGenBuffers(1, buffers, 0);
+        gl.glGenBuffers(1, buffers, 0);
         vertexBufferId = buffers[0];
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferId);
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexBuffer.capacity() * 4, vertexBuffer, GLES20.GL_STATIC_DRAW);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        glState.bindArrayBuffer(vertexBufferId);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexBufferBytes, vertexData, GLES20.GL_STATIC_DRAW);
 
         if (indexCount > 0) {
-            ShortBuffer indexBuffer = ByteBuffer
-                    .allocateDirect(indexCount * 2)
-                    .order(ByteOrder.nativeOrder())
-                    .asShortBuffer();
-            indexBuffer.put(indexData).position(0);
-            GLES20.glGenBuffers(1, buffers, 0);
+            gl.glGenBuffers(1, buffers, 0);
             indexBufferId = buffers[0];
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
-            GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.capacity() * 2, indexBuffer, GLES20.GL_STATIC_DRAW);
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+            glState.bindElementBuffer(indexBufferId);
+            gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexCount * 2, indexData, GLES20.GL_STATIC_DRAW);
         } else {
             indexBufferId = 0;
         }
     }
 
-    private static int componentsPerVertex(int[] attributeSizes) {
-        int total = 0;
-        for (int size : attributeSizes) {
-            total += size;
+    private static ShortBuffer toDirectBuffer(short[] indexData) {
+        if (indexData == null) {
+            return null;
         }
-        return total;
+        ShortBuffer buffer = ByteBuffer
+                .allocateDirect(indexData.length * 2)
+                .order(ByteOrder.nativeOrder())
+                .asShortBuffer();
+        buffer.put(indexData).position(0);
+        return buffer;
     }
 
-    private static int calculateStride(int[] attributeSizes) {
-        return componentsPerVertex(attributeSizes) * 4;
+    public VertexFormat getFormat() {
+        return format;
     }
 
-    public void draw(int primitiveType, int[] attributeLocations) {
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferId);
-        int offset = 0;
-        for (int i = 0; i < attributeLocations.length; i++) {
-            int location = attributeLocations[i];
-            if (location >= 0) {
-                GLES20.glEnableVertexAttribArray(location);
-                GLES20.glVertexAttribPointer(location, attributeSizes[i], GLES20.GL_FLOAT, false, vertexStrideBytes, offset);
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getVertexBufferBytes() {
+        return vertexBufferBytes;
+    }
+
+    public void draw(GlStateTracker glState, int primitiveType, int[] attributeLocations) {
+        GlApi gl = glState.gl();
+        if (glState.supportsVertexArrayObjects()) {
+            if (vertexArrayId == 0 || vertexArrayLocations != attributeLocations) {
+                createVertexArray(glState, attributeLocations);
+            }
+            glState.bindVertexArray(vertexArrayId, indexBufferId);
+        } else {
+            glState.bindArrayBuffer(vertexBufferId);
+            if (glState.claimVertexLayout(this, attributeLocations)) {
+                specifyAttributes(gl, attributeLocations);
+            }
+            glState.setEnabledAttributes(arrayAttributeMask(attributeLocations));
+            if (indexCount > 0) {
+                glState.bindElementBuffer(indexBufferId);
             }
-            offset += attributeSizes[i] * 4;
         }
+        applyConstantAttributes(glState, attributeLocations);
 
         if (indexCount > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
-            GLES20.glDrawElements(primitiveType, indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+            gl.glDrawElements(primitiveType, indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
         } else {
-            GLES20.glDrawArrays(primitiveType, 0, vertexCount);
+            gl.glDrawArrays(primitiveType, 0, vertexCount);
         }
+    }
 
-        for (int location : attributeLocations) {
-            if (location >= 0) {
-                GLES20.glDisableVertexAttribArray(location);
+    private void createVertexArray(GlStateTracker glState, int[] attributeLocations) {
+        GlApi gl = glState.gl();
+        if (vertexArrayId == 0) {
+            int[] arrays = new int[1];
+            gl.glGenVertexArrays(1, arrays, 0);
+            vertexArrayId = arrays[0];
+        }
+        glState.bindVertexArray(vertexArrayId, 0);
+        if (vertexArrayLocations != null) {
+            for (int location : vertexArrayLocations) {
+                if (location >= 0) {
+                    gl.glDisableVertexAttribArray(location);
+                }
+            }
+        }
+        vertexArrayLocations = attributeLocations;
+        glState.bindArrayBuffer(vertexBufferId);
+        int mask = arrayAttributeMask(attributeLocations);
+        while (mask != 0) {
+            gl.glEnableVertexAttribArray(Integer.numberOfTrailingZeros(mask));
+            mask &= mask - 1;
+        }
+        specifyAttributes(gl, attributeLocations);
+        if (indexCount > 0) {
+            glState.bindElementBuffer(indexBufferId);
+        }
+    }
+
+    private void specifyAttributes(GlApi gl, int[] attributeLocations) {
+        int stride = format.getStrideBytes();
+        for (int i = 0; i < attributeLocations.length; i++) {
+            int location = attributeLocations[i];
+            VertexAttribute attribute = format.getAttribute(i);
+            if (location >= 0 && !attribute.isConstant()) {
+                gl.glVertexAttribPointer(location, attribute.components, attribute.type,
+                        attribute.normalized, stride, format.getOffset(i));
+            }
+        }
+    }
+
+    private void applyConstantAttributes(GlStateTracker glState, int[] attributeLocations) {
+        for (int i = 0; i < attributeLocations.length; i++) {
+            VertexAttribute attribute = format.getAttribute(i);
+            if (attribute.isConstant()) {
+                glState.constantAttribute(attributeLocations[i], attribute.constantComponent(0),
+                        attribute.constantComponent(1), attribute.constantComponent(2),
+                        attribute.constantComponent(3));
+            }
+        }
+    }
+
+    private int arrayAttributeMask(int[] attributeLocations) {
+        int mask = 0;
+        for (int i = 0; i < attributeLocations.length; i++) {
+            int location = attributeLocations[i];
+            if (location >= 0 && !format.getAttribute(i).isConstant()) {
+                mask |= 1 << location;
             }
         }
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        return mask;
     }
 }
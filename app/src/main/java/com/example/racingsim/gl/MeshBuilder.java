@@ -0,0 +1,125 @@
+package com.example.racingsim.gl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Growable vertex and index storage that encodes vertices straight into a direct buffer in a given
+ * {@link VertexFormat}. Components are supplied in attribute order (constant attributes skipped);
+ * once a full vertex has been supplied it is packed and its index becomes available. Call
+ * {@link #reset} to reuse the storage for another mesh.
+ */
+public final class MeshBuilder {
+
+    private static final int MAX_VERTICES = 1 << 16;
+
+    private final VertexFormat format;
+    private final float[] pending;
+    private int pendingCount;
+    private int vertexCount;
+    private ByteBuffer vertices;
+    private ShortBuffer indices;
+
+    public MeshBuilder(VertexFormat format, int expectedVertices, int expectedIndices) {
+        this.format = format;
+        this.pending = new float[Math.max(1, format.getLogicalComponents())];
+        this.vertices = allocate(Math.max(1, expectedVertices) * format.getStrideBytes());
+        this.indices = allocate(Math.max(1, expectedIndices) * 2).asShortBuffer();
+    }
+
+    public VertexFormat getFormat() {
+        return format;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getIndexCount() {
+        return indices.position();
+    }
+
+    public MeshBuilder put(float x, float y) {
+        return put(x).put(y);
+    }
+
+    public MeshBuilder put(float x, float y, float z) {
+        return put(x).put(y).put(z);
+    }
+
+    public MeshBuilder put(float value) {
+        pending[pendingCount++] = value;
+        if (pendingCount == format.getLogicalComponents()) {
+            emitVertex();
+        }
+        return this;
+    }
+
+    public MeshBuilder index(int vertex) {
+        if (vertex < 0 || vertex >= MAX_VERTICES) {
+            throw new IllegalArgumentException("Vertex index out of 16-bit range: " + vertex);
+        }
+        if (!indices.hasRemaining()) {
+            ShortBuffer grown = allocate(indices.capacity() * 4).asShortBuffer();
+            indices.flip();
+            grown.put(indices);
+            indices = grown;
+        }
+        indices.put((short) vertex);
+        return this;
+    }
+
+    public MeshBuilder triangle(int a, int b, int c) {
+        return index(a).index(b).index(c);
+    }
+
+    public void reset() {
+        pendingCount = 0;
+        vertexCount = 0;
+        vertices.clear();
+        indices.clear();
+    }
+
+    /**
+     * Uploads the accumulated vertices and indices. The builder may be reset and reused afterwards.
+     */
+    public Mesh build(GlStateTracker glState) {
+        if (pendingCount != 0) {
+            throw new IllegalStateException("Incomplete vertex: " + pendingCount + " of "
+                    + format.getLogicalComponents() + " components supplied");
+        }
+        ByteBuffer vertexData = vertices.duplicate();
+        vertexData.flip();
+        ShortBuffer indexData = indices.duplicate();
+        indexData.flip();
+        return new Mesh(glState, format, vertexData, indexData);
+    }
+
+    private void emitVertex() {
+        if (vertexCount == MAX_VERTICES) {
+            throw new IllegalStateException("Mesh exceeds " + MAX_VERTICES + " vertices");
+        }
+        int stride = format.getStrideBytes();
+        if (vertices.remaining() < stride) {
+            ByteBuffer grown = allocate(Math.max(vertices.capacity() * 2, stride));
+            vertices.flip();
+            grown.put(vertices);
+            vertices = grown;
+        }
+        int source = 0;
+        for (int i = 0; i < format.getAttributeCount(); i++) {
+            VertexAttribute attribute = format.getAttribute(i);
+            if (!attribute.isConstant()) {
+                attribute.write(vertices, pending, source);
+                source += attribute.components;
+            }
+        }
+        pendingCount = 0;
+        vertexCount++;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.racingsim.gl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps meshes built by {@link GeometryFactory} keyed by their construction parameters so identical
+ * meshes are uploaded once. Buffer names are only valid in the context that created them, so the
+ * owner must {@link #clear} the cache whenever a new context is created.
+ * Must only be used on the GL thread.
+ */
+public final class MeshCache {
+
+    private static final int KIND_CONE = 0;
+    private static final int KIND_CYLINDER = 1;
+    private static final int KIND_GROUND = 2;
+    private static final int KIND_TEXTURED_QUAD = 3;
+
+    private final Map<Key, Mesh> meshes = new HashMap<>();
+    private int buildCount;
+
+    /**
+     * Forgets every mesh without deleting its buffers, which died with the context that created them.
+     */
+    public void clear() {
+        meshes.clear();
+    }
+
+    public int size() {
+        return meshes.size();
+    }
+
+    /**
+     * Number of meshes built since the cache was created, including ones dropped by {@link #clear}.
+     */
+    public int getBuildCount() {
+        return buildCount;
+    }
+
+    public Mesh coneWithStripe(GlStateTracker glState, float radiusBase, float height, int slices,
+                               float stripeCenter, float stripeHeight,
+                               GeometryFactory.Color3f bodyColor, GeometryFactory.Color3f stripeColor) {
+        Key key = new Key(KIND_CONE, radiusBase, height, slices, stripeCenter, stripeHeight,
+                bodyColor.r, bodyColor.g, bodyColor.b, stripeColor.r, stripeColor.g, stripeColor.b);
+        Mesh mesh = meshes.get(key);
+        if (mesh == null) {
+            mesh = GeometryFactory.createConeWithStripe(glState, radiusBase, height, slices,
+                    stripeCenter, stripeHeight, bodyColor, stripeColor);
+            store(key, mesh);
+        }
+        return mesh;
+    }
+
+    public Mesh cylinder(GlStateTracker glState, float radius, float height, int slices,
+                         GeometryFactory.Color3f color) {
+        Key key = new Key(KIND_CYLINDER, radius, height, slices, color.r, color.g, color.b);
+        Mesh mesh = meshes.get(key);
+        if (mesh == null) {
+            mesh = GeometryFactory.createCylinder(glState, radius, height, slices, color);
+            store(key, mesh);
+        }
+        return mesh;
+    }
+
+    public Mesh ground(GlStateTracker glState, float size, GeometryFactory.Color3f color) {
+        Key key = new Key(KIND_GROUND, size, color.r, color.g, color.b);
+        Mesh mesh = meshes.get(key);
+        if (mesh == null) {
+            mesh = GeometryFactory.createGround(glState, size, color);
+            store(key, mesh);
+        }
+        return mesh;
+    }
+
+    public Mesh texturedQuad(GlStateTracker glState, float width, float height) {
+        Key key = new Key(KIND_TEXTURED_QUAD, width, height);
+        Mesh mesh = meshes.get(key);
+        if (mesh == null) {
+            mesh = GeometryFactory.createTexturedQuad(glState, width, height);
+            store(key, mesh);
+        }
+        return mesh;
+    }
+
+    private void store(Key key, Mesh mesh) {
+        meshes.put(key, mesh);
+        buildCount++;
+    }
+
+    private static final class Key {
+        private final int kind;
+        private final float[] parameters;
+        private final int hash;
+
+        Key(int kind, float... parameters) {
+            this.kind = kind;
+            this.parameters = parameters;
+            this.hash = 31 * kind + Arrays.hashCode(parameters);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return kind == key.kind && Arrays.equals(parameters, key.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.racingsim.gl;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stores linked program binaries on disk so later launches can skip GLSL compilation. Entries are
+ * keyed by a hash of both shader sources and the driver string, so a driver update or a shader edit
+ * simply misses; a binary the driver still rejects is deleted and the program is rebuilt from source.
+ * Must only be used on the GL thread.
+ */
+public final class ProgramBinaryCache {
+
+    private static final String TAG = "ProgramBinaryCache";
+    private static final int MAGIC = 0x52534250;
+    private static final int MAX_BINARY_BYTES = 4 * 1024 * 1024;
+
+    private final File directory;
+    private final String driver;
+
+    private int hits;
+    private int misses;
+    private int rejects;
+
+    public ProgramBinaryCache(File directory, String driver) {
+        this.directory = directory;
+        this.driver = driver;
+    }
+
+    /**
+     * Vendor, renderer and version strings of the current context.
+     */
+    public static String driverString(GlApi gl) {
+        return gl.glGetString(GLES20.GL_VENDOR) + '|'
+                + gl.glGetString(GLES20.GL_RENDERER) + '|'
+                + gl.glGetString(GLES20.GL_VERSION);
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Stored binaries that failed to load and were rebuilt from source.
+     */
+    public int getRejects() {
+        return rejects;
+    }
+
+    String keyFor(String vertexShaderSource, String fragmentShaderSource) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(vertexShaderSource.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(fragmentShaderSource.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(driver.getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digest.digest();
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    /**
+     * Creates a program from a stored binary.
+     *
+     * @return the linked program, or {@code 0} when nothing usable is stored
+     */
+    int load(GlApi gl, String key) {
+        File file = fileFor(key);
+        if (!gl.supportsProgramBinaries() || !file.isFile()) {
+            misses++;
+            return 0;
+        }
+        int format;
+        ByteBuffer binary;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Bad header");
+            }
+            format = in.readInt();
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_BINARY_BYTES) {
+                throw new IOException("Bad length " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            binary = ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+            binary.put(bytes).position(0);
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable program binary " + file.getName(), e);
+            rejects++;
+            discard(file);
+            return 0;
+        }
+
+        int program = gl.glCreateProgram();
+        gl.glProgramBinary(program, format, binary, binary.capacity());
+        int[] status = new int[1];
+        gl.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.i(TAG, "Driver rejected program binary " + file.getName() + "; rebuilding from source");
+            gl.glDeleteProgram(program);
+            rejects++;
+            discard(file);
+            return 0;
+        }
+        hits++;
+        return program;
+    }
+
+    /**
+     * Marks a program that is about to be linked so the driver keeps its binary retrievable.
+     */
+    void prepareForLink(GlApi gl, int program) {
+        if (gl.supportsProgramBinaries()) {
+            gl.glProgramParameteri(program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES20.GL_TRUE);
+        }
+    }
+
+    void store(GlApi gl, int program, String key) {
+        if (!gl.supportsProgramBinaries()) {
+            return;
+        }
+        int[] values = new int[1];
+        gl.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, values, 0);
+        int length = values[0];
+        if (length <= 0 || length > MAX_BINARY_BYTES) {
+            return;
+        }
+        ByteBuffer binary = ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+        int[] written = new int[1];
+        int[] format = new int[1];
+        gl.glGetProgramBinary(program, length, written, 0, format, 0, binary);
+        if (written[0] <= 0) {
+            return;
+        }
+        byte[] bytes = new byte[written[0]];
+        binary.get(bytes);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Unable to create " + directory);
+            return;
+        }
+        File target = fileFor(key);
+        File temp = new File(directory, key + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(format[0]);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write program binary " + target.getName(), e);
+            discard(temp);
+            return;
+        }
+        // Rename so a crash mid-write never leaves a truncated entry behind.
+        if (!temp.renameTo(target)) {
+            discard(temp);
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, key + ".bin");
+    }
+
+    private static void discard(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Unable to delete " + file);
+        }
+    }
+}
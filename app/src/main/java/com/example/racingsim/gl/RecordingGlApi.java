@@ -0,0 +1,159 @@
+package com.example.racingsim.gl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link CountingGlApi} that also groups calls into frames, so tests can hold the renderer to
+ * per-frame budgets of draw calls, state changes and uploaded bytes. Calls made outside
+ * {@link #beginFrame()}/{@link #endFrame()} are only counted in the totals.
+ */
+public class RecordingGlApi extends CountingGlApi {
+
+    private final List<Frame> frames = new ArrayList<>();
+    private final long[] kindCounts = new long[Kind.values().length];
+    private boolean inFrame;
+    private long bufferUploads;
+    private long textureUploads;
+    private long bytesUploaded;
+
+    public RecordingGlApi(GlApi delegate, boolean es3) {
+        super(delegate, es3);
+    }
+
+    public void beginFrame() {
+        if (inFrame) {
+            throw new IllegalStateException("Frame " + frames.size() + " has not ended");
+        }
+        inFrame = true;
+        for (int i = 0; i < kindCounts.length; i++) {
+            kindCounts[i] = 0L;
+        }
+        bufferUploads = 0L;
+        textureUploads = 0L;
+        bytesUploaded = 0L;
+    }
+
+    public Frame endFrame() {
+        if (!inFrame) {
+            throw new IllegalStateException("No frame in progress");
+        }
+        inFrame = false;
+        Frame frame = new Frame(frames.size(), kindCounts.clone(), bufferUploads, textureUploads, bytesUploaded);
+        frames.add(frame);
+        return frame;
+    }
+
+    public List<Frame> getFrames() {
+        return Collections.unmodifiableList(frames);
+    }
+
+    @Override
+    protected void count(Call call) {
+        super.count(call);
+        if (inFrame) {
+            kindCounts[call.kind.ordinal()]++;
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, int sizeBytes, Buffer data, int usage) {
+        super.glBufferData(target, sizeBytes, data, usage);
+        if (inFrame) {
+            bufferUploads++;
+            bytesUploaded += sizeBytes;
+        }
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, Bitmap bitmap) {
+        super.glTexImage2D(target, level, bitmap);
+        if (inFrame) {
+            textureUploads++;
+            bytesUploaded += bitmap != null ? bitmap.getByteCount() : 0;
+        }
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalFormat, int width, int height,
+                                       int imageSize, Buffer data) {
+        super.glCompressedTexImage2D(target, level, internalFormat, width, height, imageSize, data);
+        if (inFrame) {
+            textureUploads++;
+            bytesUploaded += imageSize;
+        }
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        super.glProgramBinary(program, binaryFormat, binary, length);
+        if (inFrame) {
+            bytesUploaded += length;
+        }
+    }
+
+    /**
+     * Calls recorded between one {@link #beginFrame()} and {@link #endFrame()}.
+     */
+    public static final class Frame {
+        private final int index;
+        private final long[] kindCounts;
+        private final long bufferUploads;
+        private final long textureUploads;
+        private final long bytesUploaded;
+
+        Frame(int index, long[] kindCounts, long bufferUploads, long textureUploads, long bytesUploaded) {
+            this.index = index;
+            this.kindCounts = kindCounts;
+            this.bufferUploads = bufferUploads;
+            this.textureUploads = textureUploads;
+            this.bytesUploaded = bytesUploaded;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getCount(Kind kind) {
+            return kindCounts[kind.ordinal()];
+        }
+
+        /**
+         * Draw calls, including the clear.
+         */
+        public long getDrawCalls() {
+            return kindCounts[Kind.DRAW.ordinal()];
+        }
+
+        public long getStateChanges() {
+            return kindCounts[Kind.STATE.ordinal()];
+        }
+
+        public long getUniformUpdates() {
+            return kindCounts[Kind.UNIFORM.ordinal()];
+        }
+
+        public long getBufferUploads() {
+            return bufferUploads;
+        }
+
+        public long getTextureUploads() {
+            return textureUploads;
+        }
+
+        public long getBytesUploaded() {
+            return bytesUploaded;
+        }
+
+        @Override
+        public String toString() {
+            return "frame " + index + ": " + getDrawCalls() + " draws, " + getStateChanges() + " state changes, "
+                    + getUniformUpdates() + " uniforms, " + bufferUploads + " buffer uploads, "
+                    + textureUploads + " texture uploads, " + bytesUploaded + " bytes";
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.racingsim.gl;
+
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects draw requests for a frame and replays them sorted by render state, program, material and
+ * mesh so the {@link GlStateTracker} can drop most state changes between neighbouring draws.
+ * Storage grows to the largest frame seen and is reused afterwards.
+ */
+public final class RenderQueue {
+
+    public static final int STATE_DOUBLE_SIDED = 1;
+    public static final int STATE_BLENDED = 2;
+
+    // Sort key layout, most significant first: state (3 bits), program (12), material (12),
+    // mesh (12), submission index (24). Blended draws therefore always come last. Program, material
+    // and mesh ids are handed out by the queue per GL context (see resetSortIds); past 4095 they
+    // saturate, which only coarsens batching since ties keep submission order.
+    private static final int STATE_SHIFT = 60;
+    private static final int PROGRAM_SHIFT = 48;
+    private static final int MATERIAL_SHIFT = 36;
+    private static final int MESH_SHIFT = 24;
+    private static final int MAX_ID = 0xFFF;
+    private static final long INDEX_MASK = 0xFFFFFFL;
+    private static final AtomicInteger NEXT_GENERATION = new AtomicInteger();
+    private static final int KIND_PROGRAM = 0;
+    private static final int KIND_MATERIAL = 1;
+    private static final int KIND_MESH = 2;
+
+    private final float[] mvpMatrix = new float[16];
+
+    private long[] sortKeys = new long[0];
+    private Material[] materials = new Material[0];
+    private Mesh[] meshes = new Mesh[0];
+    private int[] primitiveTypes = new int[0];
+    private int[] stateFlags = new int[0];
+    private float[] modelMatrices = new float[0];
+    private int count;
+    private int generation = NEXT_GENERATION.incrementAndGet();
+    private final int[] nextIds = new int[3];
+
+    /**
+     * Starts handing out sort ids from zero again. Call when a new GL context is created, after which
+     * programs, materials and meshes of the old context are no longer submitted.
+     */
+    public void resetSortIds() {
+        generation = NEXT_GENERATION.incrementAndGet();
+        Arrays.fill(nextIds, 0);
+    }
+
+    public void clear() {
+        Arrays.fill(materials, 0, count, null);
+        Arrays.fill(meshes, 0, count, null);
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void submit(Material material, Mesh mesh, int primitiveType, float[] modelMatrix, int flags) {
+        if (count == sortKeys.length) {
+            grow();
+        }
+        int index = count++;
+        materials[index] = material;
+        meshes[index] = mesh;
+        primitiveTypes[index] = primitiveType;
+        stateFlags[index] = flags;
+        System.arraycopy(modelMatrix, 0, modelMatrices, index * 16, 16);
+        sortKeys[index] = ((long) (flags & 0x7) << STATE_SHIFT)
+                | ((long) sortId(material.getProgram().sortSlot, KIND_PROGRAM) << PROGRAM_SHIFT)
+                | ((long) sortId(material.sortSlot, KIND_MATERIAL) << MATERIAL_SHIFT)
+                | ((long) sortId(mesh.sortSlot, KIND_MESH) << MESH_SHIFT)
+                | (index & INDEX_MASK);
+    }
+
+    private int sortId(SortSlot slot, int kind) {
+        if (slot.generation != generation) {
+            slot.assign(generation, nextIds[kind]);
+            nextIds[kind] = Math.min(nextIds[kind] + 1, MAX_ID);
+        }
+        return slot.id;
+    }
+
+    /**
+     * Sorts and issues all submitted draws, then clears the queue.
+     */
+    public void flush(GlStateTracker glState, float[] viewProjectionMatrix) {
+        Arrays.sort(sortKeys, 0, count);
+        Material boundMaterial = null;
+        for (int i = 0; i < count; i++) {
+            int index = (int) (sortKeys[i] & INDEX_MASK);
+            Material material = materials[index];
+            int flags = stateFlags[index];
+
+            boolean blended = (flags & STATE_BLENDED) != 0;
+            glState.setBlendEnabled(blended);
+            if (blended) {
+                glState.blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+            }
+            glState.setCullFaceEnabled((flags & STATE_DOUBLE_SIDED) == 0);
+
+            if (material != boundMaterial) {
+                glState.useProgram(material.getProgram());
+                material.bind(glState);
+                boundMaterial = material;
+            }
+
+            int modelOffset = index * 16;
+            Matrix.multiplyMM(mvpMatrix, 0, viewProjectionMatrix, 0, modelMatrices, modelOffset);
+            material.applyTransform(glState, modelMatrices, modelOffset, mvpMatrix);
+            meshes[index].draw(glState, primitiveTypes[index], material.getAttributeLocations());
+        }
+        clear();
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, sortKeys.length * 2);
+        sortKeys = Arrays.copyOf(sortKeys, capacity);
+        materials = Arrays.copyOf(materials, capacity);
+        meshes = Arrays.copyOf(meshes, capacity);
+        primitiveTypes = Arrays.copyOf(primitiveTypes, capacity);
+        stateFlags = Arrays.copyOf(stateFlags, capacity);
+        modelMatrices = Arrays.copyOf(modelMatrices, capacity * 16);
+    }
+
+    /**
+     * The sort id a queue gave an object, valid while the queue's generation matches. GL thread only.
+     */
+    static final class SortSlot {
+        private int generation;
+        private int id;
+
+        void assign(int generation, int id) {
+            this.generation = generation;
+            this.id = id;
+        }
+    }
+
+    /**
+     * A program plus the uniforms shared by every draw that uses it.
+     */
+    public abstract static class Material {
+
+        final SortSlot sortSlot = new SortSlot();
+
+        public abstract ShaderProgram getProgram();
+
+        public abstract int[] getAttributeLocations();
+
+        /**
+         * Called with the program current whenever a run of draws with this material starts.
+         */
+        protected abstract void bind(GlStateTracker glState);
+
+        /**
+         * Uploads per-draw transforms; {@code modelMatrix} holds the model matrix at {@code offset}.
+         */
+        protected abstract void applyTransform(GlStateTracker glState, float[] modelMatrix, int offset, float[] mvpMatrix);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.racingsim.gl;
+
+/**
+ * Decides when an on-demand GL view needs another frame and keeps simple frame/idle statistics.
+ * Input is reported from the UI thread, frames from the GL thread. Entering and leaving idle happen
+ * on both, so the idle bookkeeping is guarded by one lock; it is taken once per frame or input event.
+ */
+public class RenderScheduler {
+
+    public static final long NO_FRAME = -1L;
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final long STATS_WINDOW_NANOS = 60_000L * NANOS_PER_MILLI;
+
+    private final Object idleLock = new Object();
+
+    private volatile int idleFrameRateCap;
+    private volatile boolean settling;
+    // Guarded by idleLock.
+    private boolean inputActive;
+    private boolean idle;
+    private long idleSinceNanos;
+    private long accumulatedIdleNanos;
+
+    private volatile long totalFrames;
+    private volatile int framesInLastWindow = -1;
+    private long windowStartNanos = -1L;
+    private int framesInWindow;
+
+    /**
+     * Limits the frame rate while nothing moves; 0 disables idle frames entirely.
+     */
+    public void setIdleFrameRateCap(int framesPerSecond) {
+        idleFrameRateCap = Math.max(0, framesPerSecond);
+    }
+
+    public int getIdleFrameRateCap() {
+        return idleFrameRateCap;
+    }
+
+    public void onInputStarted(long nowNanos) {
+        synchronized (idleLock) {
+            inputActive = true;
+            leaveIdle(nowNanos);
+        }
+    }
+
+    public void onInput(long nowNanos) {
+        synchronized (idleLock) {
+            leaveIdle(nowNanos);
+        }
+    }
+
+    public void onInputEnded(long nowNanos) {
+        synchronized (idleLock) {
+            inputActive = false;
+            leaveIdle(nowNanos);
+        }
+    }
+
+    /**
+     * Records a rendered frame and returns the delay in milliseconds before the next frame should be
+     * requested, 0 for immediately or {@link #NO_FRAME} when the view may stay idle.
+     */
+    public long onFrameRendered(long nowNanos, boolean cameraSettling) {
+        settling = cameraSettling;
+        totalFrames++;
+        if (windowStartNanos < 0L) {
+            windowStartNanos = nowNanos;
+        }
+        if (nowNanos - windowStartNanos >= STATS_WINDOW_NANOS) {
+            framesInLastWindow = framesInWindow;
+            framesInWindow = 0;
+            windowStartNanos = nowNanos;
+        }
+        framesInWindow++;
+
+        if (cameraSettling) {
+            return 0L;
+        }
+        boolean nowIdle;
+        synchronized (idleLock) {
+            if (!inputActive && !idle) {
+                idle = true;
+                idleSinceNanos = nowNanos;
+            }
+            nowIdle = idle;
+        }
+        int cap = idleFrameRateCap;
+        if (nowIdle && cap > 0) {
+            return Math.max(1L, 1000L / cap);
+        }
+        return NO_FRAME;
+    }
+
+    public boolean isIdle() {
+        synchronized (idleLock) {
+            return idle;
+        }
+    }
+
+    public boolean isSettling() {
+        return settling;
+    }
+
+    public long getTotalFrames() {
+        return totalFrames;
+    }
+
+    /**
+     * Frames rendered during the last full minute, or the running count during the first minute.
+     */
+    public int getFramesPerMinute() {
+        int completed = framesInLastWindow;
+        return completed >= 0 ? completed : framesInWindow;
+    }
+
+    /**
+     * Total time spent without input or camera motion, including the current idle stretch.
+     */
+    public long getIdleTimeMillis(long nowNanos) {
+        long total;
+        synchronized (idleLock) {
+            total = accumulatedIdleNanos;
+            if (idle) {
+                total += Math.max(0L, nowNanos - idleSinceNanos);
+            }
+        }
+        return total / NANOS_PER_MILLI;
+    }
+
+    // Callers hold idleLock.
+    private void leaveIdle(long nowNanos) {
+        if (idle) {
+            idle = false;
+            accumulatedIdleNanos += Math.max(0L, nowNanos - idleSinceNanos);
+        }
+    }
+}
@@ -3,31 +3,68 @@ package com.example.racingsim.gl;
 import android.opengl.GLES20;
 import android.util.Log;
 
+import java.util.Arrays;
+
 /**
- * Helper that compiles and links OpenGL shader programs.
+ * Helper that compiles and links OpenGL shader programs, optionally through a {@link ProgramBinaryCache}.
  */
 public class ShaderProgram {
 
     private static final String TAG = "ShaderProgram";
 
+    static final int CACHED_UNIFORM_LOCATIONS = 16;
+
+    private final GlApi gl;
     private final int programId;
 
-    public ShaderProgram(String vertexShaderSource, String fragmentShaderSource) {
-        int vertexShader = compileShader(GLES20.GL_VERTEX_SHADER, vertexShaderSource);
-        int fragmentShader = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShaderSource);
-        programId = linkProgram(vertexShader, fragmentShader);
+    final RenderQueue.SortSlot sortSlot = new RenderQueue.SortSlot();
+
+    // Last values uploaded per uniform location, four floats each; used by GlStateTracker.
+    final float[] uniformCache = new float[CACHED_UNIFORM_LOCATIONS * 4];
+    final boolean[] uniformCacheValid = new boolean[CACHED_UNIFORM_LOCATIONS];
+
+    public ShaderProgram(GlApi gl, String vertexShaderSource, String fragmentShaderSource) {
+        this(gl, vertexShaderSource, fragmentShaderSource, null);
+    }
+
+    /**
+     * @param binaryCache cache to load the linked program from and store it to, or {@code null}
+     *                    to always compile from source
+     */
+    public ShaderProgram(GlApi gl, String vertexShaderSource, String fragmentShaderSource,
+                         ProgramBinaryCache binaryCache) {
+        this.gl = gl;
+        String cacheKey = null;
+        int program = 0;
+        if (binaryCache != null) {
+            cacheKey = binaryCache.keyFor(vertexShaderSource, fragmentShaderSource);
+            program = binaryCache.load(gl, cacheKey);
+        }
+        if (program == 0) {
+            int vertexShader = compileShader(gl, GLES20.GL_VERTEX_SHADER, vertexShaderSource);
+            int fragmentShader = compileShader(gl, GLES20.GL_FRAGMENT_SHADER, fragmentShaderSource);
+            program = linkProgram(gl, vertexShader, fragmentShader, binaryCache);
+            if (binaryCache != null) {
+                binaryCache.store(gl, program, cacheKey);
+            }
+        }
+        programId = program;
     }
 
     public void use() {
-        GLES20.glUseProgram(programId);
+        gl.glUseProgram(programId);
     }
 
     public int getProgramId() {
         return programId;
     }
 
+    void invalidateUniformCache() {
+        Arrays.fill(uniformCacheValid, false);
+    }
+
     public int getUniformLocation(String name) {
-        int location = GLES20.glGetUniformLocation(programId, name);
+        int location = gl.glGetUniformLocation(programId, name);
         if (location < 0) {
             Log.w(TAG, "Uniform not found: " + name);
         }
@@ -35,47 +72,51 @@ public class ShaderProgram {
     }
 
     public int getAttributeLocation(String name) {
-        int location = GLES20.glGetAttribLocation(programId, name);
+        int location = gl.glGetAttribLocation(programId, name);
         if (location < 0) {
             Log.w(TAG, "Attribute not found: " + name);
         }
         return location;
     }
 
-    private static int compileShader(int type, String source) {
-        int shader = GLES20.glCreateShader(type);
+    private static int compileShader(GlApi gl, int type, String source) {
+        int shader = gl.glCreateShader(type);
         if (shader == 0) {
             throw new IllegalStateException("Unable to create shader of type " + type);
         }
-        GLES20.glShaderSource(shader, source);
-        GLES20.glCompileShader(shader);
+        gl.glShaderSource(shader, source);
+        gl.glCompileShader(shader);
         int[] status = new int[1];
-        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        gl.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
         if (status[0] == 0) {
-            String log = GLES20.glGetShaderInfoLog(shader);
-            GLES20.glDeleteShader(shader);
+            String log = gl.glGetShaderInfoLog(shader);
+            gl.glDeleteShader(shader);
             throw new IllegalStateException("Shader compilation failed: " + log);
         }
         return shader;
     }
 
-    private static int linkProgram(int vertexShader, int fragmentShader) {
-        int program = GLES20.glCreateProgram();
+    private static int linkProgram(GlApi gl, int vertexShader, int fragmentShader,
+                                   ProgramBinaryCache binaryCache) {
+        int program = gl.glCreateProgram();
         if (program == 0) {
             throw new IllegalStateException("Unable to create shader program");
         }
-        GLES20.glAttachShader(program, vertexShader);
-        GLES20.glAttachShader(program, fragmentShader);
-        GLES20.glLinkProgram(program);
+        if (binaryCache != null) {
+            binaryCache.prepareForLink(gl, program);
+        }
+        gl.glAttachShader(program, vertexShader);
+        gl.glAttachShader(program, fragmentShader);
+        gl.glLinkProgram(program);
         int[] status = new int[1];
-        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        gl.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
         if (status[0] == 0) {
-            String log = GLES20.glGetProgramInfoLog(program);
-            GLES20.glDeleteProgram(program);
+            String log = gl.glGetProgramInfoLog(program);
+            gl.glDeleteProgram(program);
             throw new IllegalStateException("Program link failed: " + log);
         }
-        GLES20.glDeleteShader(vertexShader);
-        GLES20.glDeleteShader(fragmentShader);
+        gl.glDeleteShader(vertexShader);
+        gl.glDeleteShader(fragmentShader);
         return program;
     }
 }
@@ -0,0 +1,55 @@
+package com.example.racingsim.gl;
+
+/**
+ * A texture requested from {@link TextureLoader}. The GL name stays 0 until the decoded image has been
+ * uploaded on the GL thread; all accessors are meant for the GL thread.
+ */
+public final class TextureHandle {
+
+    private final String name;
+    private int textureId;
+    private long sizeBytes;
+    private boolean compressed;
+    private boolean failed;
+
+    TextureHandle(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isReady() {
+        return textureId != 0;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public int getTextureId() {
+        return textureId;
+    }
+
+    /**
+     * GPU memory of the uploaded texture including its mip chain.
+     */
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    void onUploaded(int textureId, long sizeBytes, boolean compressed) {
+        this.textureId = textureId;
+        this.sizeBytes = sizeBytes;
+        this.compressed = compressed;
+    }
+
+    void onFailed() {
+        failed = true;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.racingsim.gl;
+
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads textures without stalling the GL thread. Files are read and decoded on a shared background
+ * thread; the GL thread then uploads finished images from {@link #processUploads} within a time
+ * budget per frame. An ETC2 KTX variant under {@code assets/} (produced by the {@code compressTextures}
+ * Gradle task) is preferred on GLES3; otherwise the PNG resource is decoded and mipmapped on upload.
+ */
+public final class TextureLoader {
+
+    /**
+     * Upload budget per frame; a single texture always uploads even if it takes longer.
+     */
+    public static final long DEFAULT_UPLOAD_BUDGET_NANOS = 2_000_000L;
+
+    private static final String TAG = "TextureLoader";
+    private static final int GL_COMPRESSED_RGBA8_ETC2_EAC = GLES30.GL_COMPRESSED_RGBA8_ETC2_EAC;
+
+    private static final ExecutorService DECODER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "TextureDecoder");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private final AssetManager assets;
+    private final Resources resources;
+    private final ConcurrentLinkedQueue<Decoded> decoded = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile Runnable decodeListener;
+
+    public TextureLoader(Resources resources) {
+        this.resources = resources;
+        this.assets = resources != null ? resources.getAssets() : null;
+    }
+
+    /**
+     * Called on the decoder thread whenever an image is ready for upload, e.g. to request a render.
+     */
+    public void setDecodeListener(Runnable listener) {
+        decodeListener = listener;
+    }
+
+    /**
+     * Starts decoding a texture. Call on the GL thread so the compressed-format check sees the context.
+     *
+     * @param compressedAsset asset path of an ETC2 KTX variant, or {@code null}
+     * @param fallbackResourceId drawable decoded when the compressed variant is missing or unusable
+     */
+    public TextureHandle load(GlApi gl, String compressedAsset, int fallbackResourceId) {
+        TextureHandle handle = new TextureHandle(compressedAsset != null ? compressedAsset
+                : Integer.toHexString(fallbackResourceId));
+        boolean preferCompressed = compressedAsset != null && gl.supportsEtc2Textures();
+        inFlight.incrementAndGet();
+        DECODER.execute(() -> {
+            Decoded image = null;
+            try {
+                if (preferCompressed) {
+                    image = decodeCompressed(handle, compressedAsset);
+                }
+                if (image == null) {
+                    image = decodeBitmap(handle, fallbackResourceId);
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Decoding " + handle.getName() + " failed", e);
+                image = new BitmapImage(handle, null);
+            }
+            enqueue(image);
+        });
+        return handle;
+    }
+
+    /**
+     * Whether requested textures are still decoding or waiting for upload.
+     */
+    public boolean hasPendingWork() {
+        return inFlight.get() > 0;
+    }
+
+    /**
+     * Whether decoded textures are waiting for {@link #processUploads}.
+     */
+    public boolean hasReadyUploads() {
+        return !decoded.isEmpty();
+    }
+
+    /**
+     * Uploads decoded textures until {@code budgetNanos} is spent. Must run on the GL thread.
+     *
+     * @return number of textures uploaded
+     */
+    public int processUploads(GlStateTracker glState, long budgetNanos) {
+        long start = System.nanoTime();
+        int uploaded = 0;
+        Decoded image;
+        while ((uploaded == 0 || System.nanoTime() - start < budgetNanos)
+                && (image = decoded.poll()) != null) {
+            image.upload(glState);
+            inFlight.decrementAndGet();
+            uploaded++;
+        }
+        return uploaded;
+    }
+
+    void enqueueCompressed(TextureHandle handle, KtxTexture texture) {
+        inFlight.incrementAndGet();
+        enqueue(new CompressedImage(handle, texture));
+    }
+
+    private void enqueue(Decoded image) {
+        decoded.add(image);
+        Runnable listener = decodeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private Decoded decodeCompressed(TextureHandle handle, String assetPath) {
+        try (InputStream in = assets.open(assetPath)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+            byte[] chunk = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                bytes.write(chunk, 0, read);
+            }
+            ByteBuffer data = ByteBuffer.allocateDirect(bytes.size()).order(ByteOrder.nativeOrder());
+            data.put(bytes.toByteArray()).position(0);
+            KtxTexture texture = KtxTexture.parse(data);
+            if (texture.internalFormat != GL_COMPRESSED_RGBA8_ETC2_EAC) {
+                Log.w(TAG, assetPath + " has unexpected format 0x" + Integer.toHexString(texture.internalFormat));
+                return null;
+            }
+            return new CompressedImage(handle, texture);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            Log.w(TAG, "Unable to read " + assetPath + "; falling back to PNG", e);
+            return null;
+        }
+    }
+
+    private Decoded decodeBitmap(TextureHandle handle, int resourceId) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapFactory.decodeResource(resources, resourceId, options);
+        return new BitmapImage(handle, bitmap);
+    }
+
+    private static int createTexture(GlStateTracker glState, boolean mipmapped) {
+        GlApi gl = glState.gl();
+        int[] names = new int[1];
+        gl.glGenTextures(1, names, 0);
+        if (names[0] == 0) {
+            throw new IllegalStateException("Failed to generate texture handle");
+        }
+        glState.bindTexture2D(0, names[0]);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
+                mipmapped ? GLES20.GL_LINEAR_MIPMAP_LINEAR : GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        return names[0];
+    }
+
+    private abstract static class Decoded {
+        final TextureHandle handle;
+
+        Decoded(TextureHandle handle) {
+            this.handle = handle;
+        }
+
+        abstract void upload(GlStateTracker glState);
+    }
+
+    private static final class CompressedImage extends Decoded {
+        private final KtxTexture texture;
+
+        CompressedImage(TextureHandle handle, KtxTexture texture) {
+            super(handle);
+            this.texture = texture;
+        }
+
+        @Override
+        void upload(GlStateTracker glState) {
+            GlApi gl = glState.gl();
+            int levels = texture.levels.length;
+            int textureId = createTexture(glState, levels > 1);
+            if (levels > 1) {
+                // Tolerate truncated chains instead of leaving the texture incomplete.
+                gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES30.GL_TEXTURE_MAX_LEVEL, levels - 1);
+            }
+            int width = texture.width;
+            int height = texture.height;
+            for (int level = 0; level < levels; level++) {
+                ByteBuffer data = texture.levels[level];
+                gl.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, level, texture.internalFormat,
+                        width, height, data.remaining(), data);
+                width = Math.max(1, width / 2);
+                height = Math.max(1, height / 2);
+            }
+            handle.onUploaded(textureId, texture.getSizeBytes(), true);
+        }
+    }
+
+    private static final class BitmapImage extends Decoded {
+        private final Bitmap bitmap;
+
+        BitmapImage(TextureHandle handle, Bitmap bitmap) {
+            super(handle);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        void upload(GlStateTracker glState) {
+            if (bitmap == null) {
+                Log.e(TAG, "Failed to decode texture " + handle.getName());
+                handle.onFailed();
+                return;
+            }
+            GlApi gl = glState.gl();
+            int textureId = createTexture(glState, true);
+            gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap);
+            gl.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+            // Base level in RGBA8 plus a third for the mip chain.
+            long sizeBytes = (long) bitmap.getWidth() * bitmap.getHeight() * 4L * 4L / 3L;
+            handle.onUploaded(textureId, sizeBytes, false);
+            bitmap.recycle();
+        }
+    }
+}
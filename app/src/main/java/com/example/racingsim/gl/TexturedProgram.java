@@ -10,8 +10,12 @@ public class TexturedProgram extends ShaderProgram {
     private final int positionAttribute;
     private final int texCoordAttribute;
 
-    public TexturedProgram() {
-        super(VERTEX_SHADER, FRAGMENT_SHADER);
+    public TexturedProgram(GlApi gl) {
+        this(gl, null);
+    }
+
+    public TexturedProgram(GlApi gl, ProgramBinaryCache binaryCache) {
+        super(gl, VERTEX_SHADER, FRAGMENT_SHADER, binaryCache);
         mvpLocation = getUniformLocation("uMVPMatrix");
         textureLocation = getUniformLocation("uTexture");
         positionAttribute = getAttributeLocation("aPosition");
@@ -0,0 +1,135 @@
+package com.example.racingsim.gl;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Describes how one vertex attribute is stored: component count, GL component type and whether
+ * integer components are normalised. Attributes that are the same for every vertex of a mesh can be
+ * declared {@link #constant constant}; they take no space in the vertex buffer and are fed through
+ * {@code glVertexAttrib4f} instead.
+ */
+public final class VertexAttribute {
+
+    public final int components;
+    public final int type;
+    public final boolean normalized;
+    /**
+     * Bytes occupied in the vertex, padded to a multiple of four for aligned fetches.
+     */
+    public final int sizeBytes;
+
+    private final float[] constantValue;
+
+    private VertexAttribute(int components, int type, boolean normalized, float[] constantValue) {
+        this.components = components;
+        this.type = type;
+        this.normalized = normalized;
+        this.constantValue = constantValue;
+        this.sizeBytes = constantValue != null ? 0 : align4(components * bytesPerComponent(type));
+    }
+
+    public static VertexAttribute float32(int components) {
+        return new VertexAttribute(components, GLES20.GL_FLOAT, false, null);
+    }
+
+    /**
+     * 16-bit float components; requires GLES3 (or {@code OES_vertex_half_float}).
+     */
+    public static VertexAttribute float16(int components) {
+        return new VertexAttribute(components, GLES30.GL_HALF_FLOAT, false, null);
+    }
+
+    /**
+     * Signed bytes mapped to [-1, 1]; suited to unit normals.
+     */
+    public static VertexAttribute normalizedByte(int components) {
+        return new VertexAttribute(components, GLES20.GL_BYTE, true, null);
+    }
+
+    /**
+     * Unsigned bytes mapped to [0, 1]; suited to colours and texture coordinates.
+     */
+    public static VertexAttribute normalizedUnsignedByte(int components) {
+        return new VertexAttribute(components, GLES20.GL_UNSIGNED_BYTE, true, null);
+    }
+
+    /**
+     * Signed shorts mapped to [-1, 1].
+     */
+    public static VertexAttribute normalizedShort(int components) {
+        return new VertexAttribute(components, GLES20.GL_SHORT, true, null);
+    }
+
+    public static VertexAttribute constant(float x, float y, float z) {
+        return new VertexAttribute(3, GLES20.GL_FLOAT, false, new float[]{x, y, z, 1f});
+    }
+
+    public boolean isConstant() {
+        return constantValue != null;
+    }
+
+    float constantComponent(int index) {
+        return constantValue[index];
+    }
+
+    /**
+     * Writes {@code components} values from {@code source} at the buffer's position, including padding.
+     */
+    void write(ByteBuffer target, float[] source, int sourceOffset) {
+        if (constantValue != null) {
+            return;
+        }
+        int start = target.position();
+        for (int i = 0; i < components; i++) {
+            float value = source[sourceOffset + i];
+            switch (type) {
+                case GLES20.GL_FLOAT:
+                    target.putFloat(value);
+                    break;
+                case GLES30.GL_HALF_FLOAT:
+                    target.putShort(HalfFloat.fromFloat(value));
+                    break;
+                case GLES20.GL_BYTE:
+                    target.put((byte) Math.round(clamp(value, -1f, 1f) * 127f));
+                    break;
+                case GLES20.GL_UNSIGNED_BYTE:
+                    target.put((byte) Math.round(clamp(value, 0f, 1f) * 255f));
+                    break;
+                case GLES20.GL_SHORT:
+                    target.putShort((short) Math.round(clamp(value, -1f, 1f) * 32767f));
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported attribute type " + type);
+            }
+        }
+        while (target.position() - start < sizeBytes) {
+            target.put((byte) 0);
+        }
+    }
+
+    private static int bytesPerComponent(int type) {
+        switch (type) {
+            case GLES20.GL_FLOAT:
+                return 4;
+            case GLES30.GL_HALF_FLOAT:
+            case GLES20.GL_SHORT:
+                return 2;
+            case GLES20.GL_BYTE:
+            case GLES20.GL_UNSIGNED_BYTE:
+                return 1;
+            default:
+                throw new IllegalArgumentException("Unsupported attribute type " + type);
+        }
+    }
+
+    private static int align4(int bytes) {
+        return (bytes + 3) & ~3;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.racingsim.gl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Interleaved vertex layout made of {@link VertexAttribute}s in shader attribute order.
+ */
+public final class VertexFormat {
+
+    private final VertexAttribute[] attributes;
+    private final int[] offsets;
+    private final int strideBytes;
+    private final int logicalComponents;
+
+    public VertexFormat(VertexAttribute... attributes) {
+        this.attributes = attributes.clone();
+        this.offsets = new int[attributes.length];
+        int offset = 0;
+        int components = 0;
+        for (int i = 0; i < attributes.length; i++) {
+            offsets[i] = offset;
+            offset += attributes[i].sizeBytes;
+            if (!attributes[i].isConstant()) {
+                components += attributes[i].components;
+            }
+        }
+        this.strideBytes = offset;
+        this.logicalComponents = components;
+    }
+
+    public int getAttributeCount() {
+        return attributes.length;
+    }
+
+    public VertexAttribute getAttribute(int index) {
+        return attributes[index];
+    }
+
+    public int getOffset(int index) {
+        return offsets[index];
+    }
+
+    public int getStrideBytes() {
+        return strideBytes;
+    }
+
+    /**
+     * Number of floats per vertex expected by {@link #pack}; constant attributes are not included.
+     */
+    public int getLogicalComponents() {
+        return logicalComponents;
+    }
+
+    /**
+     * Converts float vertex data laid out as consecutive non-constant attributes into a direct buffer
+     * in this format, ready for upload.
+     */
+    public ByteBuffer pack(float[] vertexData) {
+        int vertexCount = vertexData.length / logicalComponents;
+        ByteBuffer buffer = ByteBuffer
+                .allocateDirect(vertexCount * strideBytes)
+                .order(ByteOrder.nativeOrder());
+        int source = 0;
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            for (VertexAttribute attribute : attributes) {
+                if (attribute.isConstant()) {
+                    continue;
+                }
+                attribute.write(buffer, vertexData, source);
+                source += attribute.components;
+            }
+        }
+        buffer.position(0);
+        return buffer;
+    }
+}
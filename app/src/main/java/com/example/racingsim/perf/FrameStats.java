@@ -0,0 +1,241 @@
+package com.example.racingsim.perf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size ring of per-frame timings written by the render thread and read from any thread without
+ * locks. Each frame stores the CPU time of its {@link #PHASE_PHYSICS physics}, {@link #PHASE_UPLOAD
+ * upload} and {@link #PHASE_DRAW draw} phases plus the interval since the previous frame began.
+ * Recording never allocates; {@link #snapshot} and {@link #writeCsv} copy the ring and may be called
+ * while frames are being recorded.
+ */
+public final class FrameStats {
+
+    public static final int PHASE_PHYSICS = 0;
+    public static final int PHASE_UPLOAD = 1;
+    public static final int PHASE_DRAW = 2;
+    public static final int PHASE_COUNT = 3;
+    /**
+     * Column index of the frame-to-frame interval in {@link Summary}.
+     */
+    public static final int INTERVAL = PHASE_COUNT;
+
+    static final int COLUMNS = PHASE_COUNT + 1;
+    private static final long NO_INTERVAL = -1L;
+    private static final String[] COLUMN_NAMES = {"physics", "upload", "draw", "interval"};
+
+    private final int capacity;
+    private final int mask;
+    private final long[] samples;
+    private final long jankThresholdNanos;
+    private final AtomicLong published = new AtomicLong();
+    private volatile long jankFrames;
+
+    // Render-thread state.
+    private final long[] current = new long[PHASE_COUNT];
+    private long frameStartNanos;
+    private long phaseStartNanos;
+    private int openPhase = -1;
+    private boolean intervalValid;
+
+    /**
+     * @param capacity          frames kept; rounded up to a power of two
+     * @param frameBudgetNanos  display refresh period; intervals over 1.5x this count as jank
+     */
+    public FrameStats(int capacity, long frameBudgetNanos) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.samples = new long[size * COLUMNS];
+        this.jankThresholdNanos = frameBudgetNanos + frameBudgetNanos / 2;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getTotalFrames() {
+        return published.get();
+    }
+
+    public long getJankFrames() {
+        return jankFrames;
+    }
+
+    public void beginFrame(long nowNanos) {
+        long interval = intervalValid ? nowNanos - frameStartNanos : NO_INTERVAL;
+        frameStartNanos = nowNanos;
+        current[0] = 0L;
+        current[1] = 0L;
+        current[2] = 0L;
+        openPhase = -1;
+        int base = (int) (published.get() & mask) * COLUMNS;
+        samples[base + INTERVAL] = interval;
+        if (interval > jankThresholdNanos) {
+            jankFrames = jankFrames + 1;
+        }
+    }
+
+    public void beginPhase(int phase, long nowNanos) {
+        endPhase(nowNanos);
+        openPhase = phase;
+        phaseStartNanos = nowNanos;
+    }
+
+    public void endPhase(long nowNanos) {
+        if (openPhase >= 0) {
+            current[openPhase] += nowNanos - phaseStartNanos;
+            openPhase = -1;
+        }
+    }
+
+    /**
+     * Publishes the frame.
+     *
+     * @param continuous whether another frame follows immediately; on-demand renderers pass
+     *                   {@code false} when going idle so the idle gap is not reported as an interval
+     */
+    public void endFrame(long nowNanos, boolean continuous) {
+        endPhase(nowNanos);
+        long frame = published.get();
+        int base = (int) (frame & mask) * COLUMNS;
+        samples[base + PHASE_PHYSICS] = current[PHASE_PHYSICS];
+        samples[base + PHASE_UPLOAD] = current[PHASE_UPLOAD];
+        samples[base + PHASE_DRAW] = current[PHASE_DRAW];
+        intervalValid = continuous;
+        published.lazySet(frame + 1);
+    }
+
+    /**
+     * Copies the frames currently in the ring into {@code out} and computes percentiles.
+     */
+    public void snapshot(Summary out) {
+        long end = published.get();
+        long start = Math.max(0L, end - capacity);
+        int count = (int) (end - start);
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(samples, (int) ((start + i) & mask) * COLUMNS, out.rows, i * COLUMNS, COLUMNS);
+        }
+        // Frames the writer lapped while we were copying may be torn; drop them.
+        long overwrittenBefore = published.get() + 1 - capacity;
+        int skip = (int) Math.max(0L, Math.min(count, overwrittenBefore - start));
+        out.fill(skip, count, end, jankFrames);
+    }
+
+    public Summary snapshot() {
+        Summary summary = new Summary(capacity);
+        snapshot(summary);
+        return summary;
+    }
+
+    /**
+     * Writes the frames in the ring as CSV in milliseconds, preceded by a summary comment.
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        Summary summary = snapshot();
+        writer.write("# " + summary.format().replace("\n", "\n# ") + "\n");
+        writer.write("frame,physics_ms,upload_ms,draw_ms,interval_ms\n");
+        long first = summary.totalFrames - summary.frames;
+        for (int i = 0; i < summary.frames; i++) {
+            int base = (summary.firstRow + i) * COLUMNS;
+            StringBuilder line = new StringBuilder().append(first + i);
+            for (int column = 0; column < COLUMNS; column++) {
+                long value = summary.rows[base + column];
+                line.append(',');
+                if (value >= 0L) {
+                    line.append(String.format(Locale.US, "%.3f", value / 1_000_000.0));
+                }
+            }
+            writer.write(line.append('\n').toString());
+        }
+    }
+
+    /**
+     * Percentiles over the frames that were in the ring when the snapshot was taken. Reusable so
+     * periodic readers such as an overlay do not allocate per refresh.
+     */
+    public static final class Summary {
+        private final long[] rows;
+        private final long[] sorted;
+        private final long[][] percentiles = new long[COLUMNS][3];
+        private int firstRow;
+        int frames;
+        long totalFrames;
+        long jankFrames;
+
+        public Summary(int capacity) {
+            rows = new long[capacity * COLUMNS];
+            sorted = new long[capacity];
+        }
+
+        void fill(int skip, int count, long total, long janks) {
+            firstRow = skip;
+            frames = count - skip;
+            totalFrames = total;
+            jankFrames = janks;
+            for (int column = 0; column < COLUMNS; column++) {
+                int n = 0;
+                for (int i = skip; i < count; i++) {
+                    long value = rows[i * COLUMNS + column];
+                    if (value >= 0L) {
+                        sorted[n++] = value;
+                    }
+                }
+                Arrays.sort(sorted, 0, n);
+                percentiles[column][0] = percentile(n, 0.50);
+                percentiles[column][1] = percentile(n, 0.95);
+                percentiles[column][2] = percentile(n, 0.99);
+            }
+        }
+
+        private long percentile(int n, double fraction) {
+            if (n == 0) {
+                return 0L;
+            }
+            int index = (int) Math.ceil(fraction * n) - 1;
+            return sorted[Math.max(0, Math.min(n - 1, index))];
+        }
+
+        public int getFrames() {
+            return frames;
+        }
+
+        public long getTotalFrames() {
+            return totalFrames;
+        }
+
+        public long getJankFrames() {
+            return jankFrames;
+        }
+
+        /**
+         * @param column one of the {@code PHASE_*} constants or {@link #INTERVAL}
+         */
+        public double p50Millis(int column) {
+            return percentiles[column][0] / 1_000_000.0;
+        }
+
+        public double p95Millis(int column) {
+            return percentiles[column][1] / 1_000_000.0;
+        }
+
+        public double p99Millis(int column) {
+            return percentiles[column][2] / 1_000_000.0;
+        }
+
+        public String format() {
+            StringBuilder text = new StringBuilder(160);
+            text.append(String.format(Locale.US, "frames %d (window %d)  jank %d",
+                    totalFrames, frames, jankFrames));
+            for (int column = 0; column < COLUMNS; column++) {
+                text.append(String.format(Locale.US, "\n%-8s p50 %6.2f  p95 %6.2f  p99 %6.2f ms",
+                        COLUMN_NAMES[column], p50Millis(column), p95Millis(column), p99Millis(column)));
+            }
+            return text.toString();
+        }
+    }
+}
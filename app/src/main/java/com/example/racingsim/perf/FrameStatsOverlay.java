@@ -0,0 +1,88 @@
+package com.example.racingsim.perf;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.example.racingsim.R;
+
+import java.io.File;
+
+/**
+ * Optional on-screen frame statistics. Enabled by launching the activity with
+ * {@link #EXTRA_SHOW_FRAME_STATS} set, e.g.
+ * {@code adb shell am start -n com.example.racingsim/.ui.Map3DActivity --ez com.example.racingsim.extra.SHOW_FRAME_STATS true}.
+ * Tapping the overlay dumps the current window of frames to a CSV file in the app's external files
+ * directory.
+ */
+public final class FrameStatsOverlay {
+
+    public static final String EXTRA_SHOW_FRAME_STATS = "com.example.racingsim.extra.SHOW_FRAME_STATS";
+
+    private static final long REFRESH_INTERVAL_MS = 500L;
+
+    /**
+     * Supplies the text and dump for one renderer.
+     */
+    public interface Source {
+        String describe();
+
+        boolean dump(File file);
+    }
+
+    private final Activity activity;
+    private final TextView view;
+    private final Source source;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refresh = this::refresh;
+
+    private FrameStatsOverlay(Activity activity, TextView view, Source source) {
+        this.activity = activity;
+        this.view = view;
+        this.source = source;
+        view.setVisibility(View.VISIBLE);
+        view.setOnClickListener(clicked -> dump());
+    }
+
+    /**
+     * @return the overlay, or {@code null} when the activity was not asked to show one
+     */
+    public static FrameStatsOverlay attachIfRequested(Activity activity, Source source) {
+        if (!activity.getIntent().getBooleanExtra(EXTRA_SHOW_FRAME_STATS, false)) {
+            return null;
+        }
+        TextView view = activity.findViewById(R.id.frame_stats_overlay);
+        if (view == null) {
+            return null;
+        }
+        return new FrameStatsOverlay(activity, view, source);
+    }
+
+    public void start() {
+        handler.removeCallbacks(refresh);
+        handler.post(refresh);
+    }
+
+    public void stop() {
+        handler.removeCallbacks(refresh);
+    }
+
+    private void refresh() {
+        view.setText(source.describe());
+        handler.postDelayed(refresh, REFRESH_INTERVAL_MS);
+    }
+
+    private void dump() {
+        File directory = activity.getExternalFilesDir(null);
+        if (directory == null) {
+            directory = activity.getFilesDir();
+        }
+        File file = new File(directory, "frame_stats_" + System.currentTimeMillis() + ".csv");
+        boolean written = source.dump(file);
+        Toast.makeText(activity, written ? file.getAbsolutePath() : "Frame stats dump failed",
+                Toast.LENGTH_LONG).show();
+    }
+}
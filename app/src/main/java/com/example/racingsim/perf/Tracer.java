@@ -0,0 +1,287 @@
+package com.example.racingsim.perf;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named spans for the track pipeline, from generating a track to the first 3D frame showing it.
+ * Every span carries the correlation id of the track it belongs to. Spans are emitted as
+ * {@link Trace} sections for systrace/Perfetto and also kept in a bounded in-memory log that can be
+ * written as a Chrome trace ({@code chrome://tracing}, ui.perfetto.dev) together with the events
+ * recorded by the native tracer.
+ *
+ * <p>Synchronous spans must end on the thread that began them. Spans that cross threads or
+ * activities, such as the Intent handoff, use {@link #beginAsync}/{@link #endAsync}.
+ */
+public final class Tracer {
+
+    /**
+     * Correlation id for events that do not belong to a particular track.
+     */
+    public static final long NO_TRACK = 0L;
+
+    private static final String TAG = "Tracer";
+    private static final String CATEGORY = "pipeline";
+    private static final int MAX_EVENTS = 2048;
+    private static final int MAX_NATIVE_BATCHES = 16;
+    private static final int MAX_SECTION_NAME = 127;
+
+    private static final Tracer INSTANCE = new Tracer(true);
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "TraceWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final boolean platform;
+    private final AtomicLong nextTrackId = new AtomicLong(1L);
+    private final ArrayDeque<Event> events = new ArrayDeque<>();
+    private final ArrayDeque<NativeEvents> nativeEvents = new ArrayDeque<>();
+    private int dropped;
+
+    Tracer(boolean platform) {
+        this.platform = platform;
+    }
+
+    public static Tracer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return a fresh correlation id for a newly generated track
+     */
+    public long newTrackId() {
+        return nextTrackId.getAndIncrement();
+    }
+
+    /**
+     * Begins a span on the calling thread; close it on the same thread, e.g. with try-with-resources.
+     */
+    public Span begin(String name, long trackId) {
+        if (platform) {
+            Trace.beginSection(sectionName(name));
+        }
+        return new Span(name, trackId, System.nanoTime(), currentTid());
+    }
+
+    /**
+     * Begins a span that may end on another thread or in another activity.
+     */
+    public void beginAsync(String name, long trackId) {
+        if (platform && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(sectionName(name), (int) trackId);
+        }
+        record(new Event('b', name, trackId, System.nanoTime(), 0L, currentTid()));
+    }
+
+    public void endAsync(String name, long trackId) {
+        if (platform && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(sectionName(name), (int) trackId);
+        }
+        record(new Event('e', name, trackId, System.nanoTime(), 0L, currentTid()));
+    }
+
+    /**
+     * Adds events drained from the native tracer for one track: comma-separated Chrome trace event
+     * objects.
+     */
+    public void addNativeEvents(long trackId, String json) {
+        if (json == null || json.isEmpty()) {
+            return;
+        }
+        synchronized (events) {
+            if (nativeEvents.size() == MAX_NATIVE_BATCHES) {
+                nativeEvents.removeFirst();
+            }
+            nativeEvents.addLast(new NativeEvents(trackId, json));
+        }
+    }
+
+    /**
+     * Writes the Java and native events of one track as a Chrome trace.
+     *
+     * @param trackId correlation id to keep, or {@link #NO_TRACK} for every event
+     */
+    public void writeChromeTrace(Writer writer, long trackId) throws IOException {
+        List<Event> snapshot;
+        List<NativeEvents> nativeSnapshot;
+        int droppedEvents;
+        synchronized (events) {
+            snapshot = new ArrayList<>(events);
+            nativeSnapshot = new ArrayList<>(nativeEvents);
+            droppedEvents = dropped;
+        }
+        int pid = platform ? Process.myPid() : 0;
+        writer.write("{\"displayTimeUnit\":\"ms\",\"otherData\":{\"droppedEvents\":" + droppedEvents
+                + "},\"traceEvents\":[");
+        boolean first = true;
+        for (Event event : snapshot) {
+            if (trackId != NO_TRACK && event.trackId != trackId) {
+                continue;
+            }
+            if (!first) {
+                writer.write(",\n");
+            }
+            first = false;
+            event.writeJson(writer, pid);
+        }
+        for (NativeEvents batch : nativeSnapshot) {
+            if (trackId != NO_TRACK && batch.trackId != trackId) {
+                continue;
+            }
+            if (!first) {
+                writer.write(",\n");
+            }
+            first = false;
+            writer.write(batch.json);
+        }
+        writer.write("]}\n");
+    }
+
+    /**
+     * Writes {@link #writeChromeTrace} output to {@code file} on a background thread.
+     */
+    public void writeChromeTraceAsync(File file, long trackId) {
+        WRITER.execute(() -> {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                Log.w(TAG, "Unable to create " + parent);
+                return;
+            }
+            try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+                writeChromeTrace(writer, trackId);
+                Log.i(TAG, "Wrote trace for track " + trackId + " to " + file);
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to write trace " + file, e);
+            }
+        });
+    }
+
+    private void record(Event event) {
+        synchronized (events) {
+            if (events.size() == MAX_EVENTS) {
+                events.removeFirst();
+                dropped++;
+            }
+            events.addLast(event);
+        }
+    }
+
+    private int currentTid() {
+        return platform ? Process.myTid() : (int) Thread.currentThread().getId();
+    }
+
+    private static String sectionName(String name) {
+        return name.length() <= MAX_SECTION_NAME ? name : name.substring(0, MAX_SECTION_NAME);
+    }
+
+    /**
+     * A synchronous span; {@link #close()} ends it.
+     */
+    public final class Span implements AutoCloseable {
+        private final String name;
+        private final long trackId;
+        private final long startNanos;
+        private final int tid;
+        private boolean closed;
+
+        Span(String name, long trackId, long startNanos, int tid) {
+            this.name = name;
+            this.trackId = trackId;
+            this.startNanos = startNanos;
+            this.tid = tid;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long duration = System.nanoTime() - startNanos;
+            if (platform) {
+                Trace.endSection();
+            }
+            record(new Event('X', name, trackId, startNanos, duration, tid));
+        }
+    }
+
+    private static final class NativeEvents {
+        final long trackId;
+        final String json;
+
+        NativeEvents(long trackId, String json) {
+            this.trackId = trackId;
+            this.json = json;
+        }
+    }
+
+    private static final class Event {
+        final char phase;
+        final String name;
+        final long trackId;
+        final long timestampNanos;
+        final long durationNanos;
+        final int tid;
+
+        Event(char phase, String name, long trackId, long timestampNanos, long durationNanos, int tid) {
+            this.phase = phase;
+            this.name = name;
+            this.trackId = trackId;
+            this.timestampNanos = timestampNanos;
+            this.durationNanos = durationNanos;
+            this.tid = tid;
+        }
+
+        void writeJson(Writer writer, int pid) throws IOException {
+            StringBuilder json = new StringBuilder(160);
+            json.append("{\"name\":\"");
+            escape(name, json);
+            json.append("\",\"cat\":\"").append(CATEGORY)
+                    .append("\",\"ph\":\"").append(phase)
+                    .append("\",\"ts\":").append(micros(timestampNanos));
+            if (phase == 'X') {
+                json.append(",\"dur\":").append(micros(durationNanos));
+            } else {
+                json.append(",\"id\":").append(trackId);
+            }
+            json.append(",\"pid\":").append(pid)
+                    .append(",\"tid\":").append(tid)
+                    .append(",\"args\":{\"track\":").append(trackId).append("}}");
+            writer.write(json.toString());
+        }
+
+        private static String micros(long nanos) {
+            return String.format(Locale.US, "%.3f", nanos / 1000.0);
+        }
+
+        private static void escape(String text, StringBuilder out) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.append('\\').append(c);
+                } else if (c < 0x20) {
+                    out.append(String.format(Locale.US, "\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+            }
+        }
+    }
+}
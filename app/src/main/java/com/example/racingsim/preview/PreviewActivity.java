@@ -3,6 +3,7 @@ package com.example.racingsim.preview;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
@@ -19,12 +20,38 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.example.racingsim.R;
+import com.example.racingsim.perf.FrameStatsOverlay;
+import com.example.racingsim.perf.Tracer;
 import com.google.android.material.button.MaterialButton;
 
 public class PreviewActivity extends Activity implements SensorEventListener {
 
     public static final String EXTRA_TRACK_POINTS = "com.example.racingsim.extra.TRACK_POINTS";
     public static final String EXTRA_TRACK_WIDTH = "com.example.racingsim.extra.TRACK_WIDTH";
+    /**
+     * Optional interleaved x/y cone positions on each side of the track, in centerline coordinates.
+     */
+    public static final String EXTRA_LEFT_CONES = "com.example.racingsim.extra.LEFT_CONES";
+    public static final String EXTRA_RIGHT_CONES = "com.example.racingsim.extra.RIGHT_CONES";
+    /**
+     * Correlation id of the track for {@link Tracer} spans.
+     */
+    public static final String EXTRA_TRACE_ID = "com.example.racingsim.extra.TRACE_ID";
+    /**
+     * Physics tick rate in Hz; defaults to {@link #DEFAULT_PHYSICS_HZ}.
+     */
+    public static final String EXTRA_PHYSICS_HZ = "com.example.racingsim.extra.PHYSICS_HZ";
+    public static final int DEFAULT_PHYSICS_HZ = 60;
+    /**
+     * Optional file to record the drive's telemetry into; it starts over whenever the track loads.
+     */
+    public static final String EXTRA_RECORD_PATH = "com.example.racingsim.extra.RECORD_PATH";
+    /**
+     * Optional telemetry recording to race against as a ghost car.
+     */
+    public static final String EXTRA_GHOST_PATH = "com.example.racingsim.extra.GHOST_PATH";
+    public static final String TRACE_INTENT_HANDOFF = "intentHandoff";
+    public static final String TRACE_TO_FIRST_FRAME = "open3DPreview->firstFrame";
 
     static {
         System.loadLibrary("racingsim");
@@ -37,12 +64,24 @@ public class PreviewActivity extends Activity implements SensorEventListener {
     private boolean brakePressed;
     private float currentSteer;
     private float currentDrive;
+    private FrameStatsOverlay frameStatsOverlay;
 
     private static native void nativeInit();
+    private static native void nativeSetProgramCacheDir(String path);
     private static native void nativeResize(int width, int height);
-    private static native void nativeRender();
+    private static native boolean nativeRender();
+    private static native void nativeSetPaused(boolean paused);
+    private static native void nativeSetPhysicsTickRate(int hz);
     private static native void nativeOnTouch(int action, float x, float y);
-    private static native void nativeLoadTrack(float[] xy, int count, float width);
+    private static native void nativeLoadTrack(float[] xy, int count, float width, float[] leftCones,
+                                               float[] rightCones, long traceId);
+    private static native void nativeStartRecording(String path);
+    private static native void nativeStopRecording();
+    private static native boolean nativeLoadGhost(String path);
+    private static native void nativeClearGhost();
+    private static native String nativeFrameStatsSummary();
+    private static native boolean nativeDumpFrameStats(String path);
+    private static native String nativeDrainTraceEvents(long traceId);
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -52,6 +91,8 @@ public class PreviewActivity extends Activity implements SensorEventListener {
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
 
         Intent intent = getIntent();
+        long traceId = intent.getLongExtra(EXTRA_TRACE_ID, Tracer.NO_TRACK);
+        Tracer.get().endAsync(TRACE_INTENT_HANDOFF, traceId);
         float[] points = intent.getFloatArrayExtra(EXTRA_TRACK_POINTS);
         float trackWidth = intent.getFloatExtra(EXTRA_TRACK_WIDTH, 0.0f);
         if (points == null || points.length < 4 || trackWidth <= 0.0f) {
@@ -70,9 +111,17 @@ public class PreviewActivity extends Activity implements SensorEventListener {
             return;
         }
 
+        java.io.File programCacheDir = new java.io.File(getCodeCacheDir(), "native_programs");
+        if (programCacheDir.isDirectory() || programCacheDir.mkdirs()) {
+            nativeSetProgramCacheDir(programCacheDir.getAbsolutePath());
+        }
+
         setContentView(R.layout.activity_map_3d);
         android.widget.FrameLayout container = findViewById(R.id.map3d_container);
-        surfaceView = new PreviewSurfaceView(this);
+        // Trace files are only written by debuggable builds.
+        java.io.File traceDir = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0
+                ? new java.io.File(getExternalFilesDir(null), "traces") : null;
+        surfaceView = new PreviewSurfaceView(this, traceId, traceDir);
         container.addView(surfaceView, new android.widget.FrameLayout.LayoutParams(
                 android.view.ViewGroup.LayoutParams.MATCH_PARENT,
                 android.view.ViewGroup.LayoutParams.MATCH_PARENT));
@@ -83,17 +132,46 @@ public class PreviewActivity extends Activity implements SensorEventListener {
         accelerateButton.setOnTouchListener((view, event) -> handlePedalTouch(view, event, true));
         brakeButton.setOnTouchListener((view, event) -> handlePedalTouch(view, event, false));
 
+        frameStatsOverlay = FrameStatsOverlay.attachIfRequested(this, new FrameStatsOverlay.Source() {
+            @Override
+            public String describe() {
+                return nativeFrameStatsSummary();
+            }
+
+            @Override
+            public boolean dump(java.io.File file) {
+                return nativeDumpFrameStats(file.getAbsolutePath());
+            }
+        });
+
+        nativeSetPhysicsTickRate(intent.getIntExtra(EXTRA_PHYSICS_HZ, DEFAULT_PHYSICS_HZ));
+        String ghostPath = intent.getStringExtra(EXTRA_GHOST_PATH);
+        // The native renderer outlives this activity, so a ghost from an earlier session must go.
+        if (ghostPath == null) {
+            nativeClearGhost();
+        } else if (!nativeLoadGhost(ghostPath)) {
+            Toast.makeText(this, "Ghost recording unavailable", Toast.LENGTH_SHORT).show();
+        }
+        String recordPath = intent.getStringExtra(EXTRA_RECORD_PATH);
+        if (recordPath != null) {
+            nativeStartRecording(recordPath);
+        }
         updateDriveState();
-        nativeLoadTrack(points, points.length / 2, trackWidth);
+        nativeLoadTrack(points, points.length / 2, trackWidth, intent.getFloatArrayExtra(EXTRA_LEFT_CONES),
+                intent.getFloatArrayExtra(EXTRA_RIGHT_CONES), traceId);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
+        nativeSetPaused(false);
         surfaceView.onResume();
         if (sensorManager != null && accelerometer != null) {
             sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_GAME);
         }
+        if (frameStatsOverlay != null) {
+            frameStatsOverlay.start();
+        }
     }
 
     @Override
@@ -101,11 +179,24 @@ public class PreviewActivity extends Activity implements SensorEventListener {
         if (sensorManager != null) {
             sensorManager.unregisterListener(this);
         }
+        if (frameStatsOverlay != null) {
+            frameStatsOverlay.stop();
+        }
         nativeOnTouch(MotionEvent.ACTION_UP, 0.0f, 0.0f);
         surfaceView.onPause();
+        nativeSetPaused(true);
         super.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        if (getIntent().getStringExtra(EXTRA_RECORD_PATH) != null) {
+            nativeStopRecording();
+        }
+        nativeClearGhost();
+        super.onDestroy();
+    }
+
     @Override
     public void onSensorChanged(SensorEvent event) {
         if (event.sensor.getType() != Sensor.TYPE_ACCELEROMETER) {
@@ -174,10 +265,10 @@ public class PreviewActivity extends Activity implements SensorEventListener {
 
         private final PreviewRenderer renderer;
 
-        PreviewSurfaceView(Context context) {
+        PreviewSurfaceView(Context context, long traceId, java.io.File traceDir) {
             super(context);
             setEGLContextClientVersion(3);
-            renderer = new PreviewRenderer();
+            renderer = new PreviewRenderer(traceId, traceDir);
             setRenderer(renderer);
             setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
             setPreserveEGLContextOnPause(true);
@@ -186,6 +277,14 @@ public class PreviewActivity extends Activity implements SensorEventListener {
 
     private static class PreviewRenderer implements GLSurfaceView.Renderer {
 
+        private final long traceId;
+        private final java.io.File traceDir;
+
+        PreviewRenderer(long traceId, java.io.File traceDir) {
+            this.traceId = traceId;
+            this.traceDir = traceDir;
+        }
+
         @Override
         public void onSurfaceCreated(@NonNull javax.microedition.khronos.opengles.GL10 gl, @NonNull javax.microedition.khronos.egl.EGLConfig config) {
             nativeInit();
@@ -198,7 +297,18 @@ public class PreviewActivity extends Activity implements SensorEventListener {
 
         @Override
         public void onDrawFrame(@NonNull javax.microedition.khronos.opengles.GL10 gl) {
-            nativeRender();
+            if (nativeRender()) {
+                onFirstTrackFrame();
+            }
+        }
+
+        private void onFirstTrackFrame() {
+            Tracer tracer = Tracer.get();
+            tracer.endAsync(TRACE_TO_FIRST_FRAME, traceId);
+            tracer.addNativeEvents(traceId, nativeDrainTraceEvents(traceId));
+            if (traceDir != null) {
+                tracer.writeChromeTraceAsync(new java.io.File(traceDir, "track_" + traceId + ".json"), traceId);
+            }
         }
     }
 }
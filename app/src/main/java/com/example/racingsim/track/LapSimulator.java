@@ -0,0 +1,124 @@
+package com.example.racingsim.track;
+
+/**
+ * Scores tracks by driving a simulated lap of each in native code, with no rendering and no
+ * wall-clock pacing. A built-in path follower drives the centerline; closed tracks are timed on a
+ * flying lap, open ones from the start line to the end. Tracks run in parallel on up to
+ * {@code threads} threads.
+ * <p>
+ * On a device the code lives in the app's {@code racingsim} library. JVM unit tests load
+ * {@code racingsim_headless} from the host CMake build, with {@code -Djava.library.path} pointing
+ * at it, and should skip when {@link #isAvailable()} is false.
+ */
+public final class LapSimulator {
+
+    private static final int RESULT_FIELDS = 6;
+    private static final String[] LIBRARIES = {"racingsim", "racingsim_headless"};
+
+    private static Boolean available;
+
+    private LapSimulator() {
+    }
+
+    /**
+     * Outcome of one simulated lap. Times are in seconds and speeds in metres per second.
+     */
+    public static final class Result {
+        private final boolean completed;
+        private final float lapTime;
+        private final float minSpeed;
+        private final float averageSpeed;
+        private final float timeAtLimit;
+        private final float timeOffTrack;
+
+        Result(float[] packed, int offset) {
+            completed = packed[offset] != 0.0f;
+            lapTime = packed[offset + 1];
+            minSpeed = packed[offset + 2];
+            averageSpeed = packed[offset + 3];
+            timeAtLimit = packed[offset + 4];
+            timeOffTrack = packed[offset + 5];
+        }
+
+        /**
+         * @return false when the car could not get round within the simulated time limit
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        public float getLapTime() {
+            return lapTime;
+        }
+
+        /**
+         * @return the lowest speed of the timed lap, after the launch on open tracks
+         */
+        public float getMinSpeed() {
+            return minSpeed;
+        }
+
+        public float getAverageSpeed() {
+            return averageSpeed;
+        }
+
+        /**
+         * @return time spent cornering near the driver's grip limit or at full steering lock
+         */
+        public float getTimeAtLimit() {
+            return timeAtLimit;
+        }
+
+        public float getTimeOffTrack() {
+            return timeOffTrack;
+        }
+    }
+
+    /**
+     * @return whether a native library with the simulator could be loaded
+     */
+    public static synchronized boolean isAvailable() {
+        if (available == null) {
+            available = false;
+            for (String library : LIBRARIES) {
+                try {
+                    System.loadLibrary(library);
+                    available = true;
+                    break;
+                } catch (UnsatisfiedLinkError ignored) {
+                    // Try the next one.
+                }
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Simulates one lap per track.
+     *
+     * @param centerlines interleaved x/y centerline points in metres, one array per track
+     * @param widths      track width in metres, one per track
+     * @param threads     upper bound on the threads used
+     * @return one result per track, in order
+     * @throws IllegalStateException when the native library is unavailable
+     */
+    public static Result[] simulate(float[][] centerlines, float[] widths, int threads) {
+        if (centerlines.length != widths.length) {
+            throw new IllegalArgumentException(centerlines.length + " centerlines but " + widths.length + " widths");
+        }
+        if (!isAvailable()) {
+            throw new IllegalStateException("Native lap simulator not loaded");
+        }
+        float[] packed = nativeSimulate(centerlines, widths, Math.max(1, threads));
+        if (packed == null || packed.length < centerlines.length * RESULT_FIELDS) {
+            throw new IllegalStateException("Native lap simulator returned no results");
+        }
+        Result[] results = new Result[centerlines.length];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new Result(packed, i * RESULT_FIELDS);
+        }
+        return results;
+    }
+
+    private static native float[] nativeSimulate(float[][] centerlines, float[] widths, int threads);
+}
@@ -10,6 +10,13 @@ import androidx.annotation.Nullable;
 import com.example.racingsim.R;
 import com.example.racingsim.gl.Map3DView;
 import com.example.racingsim.model.MapPoints;
+import com.example.racingsim.perf.FrameStats;
+import com.example.racingsim.perf.FrameStatsOverlay;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 
 /**
  * Hosts the OpenGL preview for the generated map in 3D.
@@ -19,6 +26,7 @@ public class Map3DActivity extends Activity {
     public static final String EXTRA_MAP_POINTS_JSON = "MAP_POINTS_JSON";
 
     private Map3DView map3DView;
+    private FrameStatsOverlay frameStatsOverlay;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -43,16 +51,44 @@ public class Map3DActivity extends Activity {
                 ViewGroup.LayoutParams.MATCH_PARENT,
                 ViewGroup.LayoutParams.MATCH_PARENT);
         container.addView(map3DView, params);
+
+        FrameStats frameStats = map3DView.getFrameStats();
+        frameStatsOverlay = FrameStatsOverlay.attachIfRequested(this, new FrameStatsOverlay.Source() {
+            // Refreshed on the main thread only, so one summary is reused across refreshes.
+            private final FrameStats.Summary summary = new FrameStats.Summary(frameStats.getCapacity());
+
+            @Override
+            public String describe() {
+                frameStats.snapshot(summary);
+                return summary.format();
+            }
+
+            @Override
+            public boolean dump(File file) {
+                try (Writer writer = new FileWriter(file)) {
+                    frameStats.writeCsv(writer);
+                    return true;
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+        });
     }
 
     @Override
     protected void onResume() {
         super.onResume();
         map3DView.onResume();
+        if (frameStatsOverlay != null) {
+            frameStatsOverlay.start();
+        }
     }
 
     @Override
     protected void onPause() {
+        if (frameStatsOverlay != null) {
+            frameStatsOverlay.stop();
+        }
         map3DView.onPause();
         super.onPause();
     }
@@ -0,0 +1,125 @@
+package android.opengl;
+
+/**
+ * The subset of the platform matrix helpers the renderer uses, for the JVM test classpath.
+ * Same column-major layout and argument order as android.opengl.Matrix, so draw calls and
+ * uniform uploads see the values they would on a device.
+ */
+public final class Matrix {
+
+    private Matrix() {
+    }
+
+    public static void multiplyMM(float[] result, int resultOffset,
+                                  float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+        float[] product = new float[16];
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                float sum = 0f;
+                for (int k = 0; k < 4; k++) {
+                    sum += lhs[lhsOffset + k * 4 + row] * rhs[rhsOffset + column * 4 + k];
+                }
+                product[column * 4 + row] = sum;
+            }
+        }
+        System.arraycopy(product, 0, result, resultOffset, 16);
+    }
+
+    public static void setIdentityM(float[] m, int offset) {
+        for (int i = 0; i < 16; i++) {
+            m[offset + i] = i % 5 == 0 ? 1f : 0f;
+        }
+    }
+
+    public static void translateM(float[] m, int offset, float x, float y, float z) {
+        for (int row = 0; row < 4; row++) {
+            m[offset + 12 + row] += m[offset + row] * x + m[offset + 4 + row] * y + m[offset + 8 + row] * z;
+        }
+    }
+
+    public static void rotateM(float[] m, int offset, float angleDegrees, float x, float y, float z) {
+        float[] rotation = new float[16];
+        setRotateM(rotation, angleDegrees, x, y, z);
+        multiplyMM(m, offset, m, offset, rotation, 0);
+    }
+
+    public static void perspectiveM(float[] m, int offset, float fovyDegrees, float aspect, float zNear, float zFar) {
+        float f = 1f / (float) Math.tan(Math.toRadians(fovyDegrees) / 2.0);
+        float rangeReciprocal = 1f / (zNear - zFar);
+        for (int i = 0; i < 16; i++) {
+            m[offset + i] = 0f;
+        }
+        m[offset] = f / aspect;
+        m[offset + 5] = f;
+        m[offset + 10] = (zFar + zNear) * rangeReciprocal;
+        m[offset + 11] = -1f;
+        m[offset + 14] = 2f * zFar * zNear * rangeReciprocal;
+    }
+
+    public static void setLookAtM(float[] m, int offset, float eyeX, float eyeY, float eyeZ,
+                                  float centerX, float centerY, float centerZ,
+                                  float upX, float upY, float upZ) {
+        float fx = centerX - eyeX;
+        float fy = centerY - eyeY;
+        float fz = centerZ - eyeZ;
+        float rlf = 1f / length(fx, fy, fz);
+        fx *= rlf;
+        fy *= rlf;
+        fz *= rlf;
+
+        float sx = fy * upZ - fz * upY;
+        float sy = fz * upX - fx * upZ;
+        float sz = fx * upY - fy * upX;
+        float rls = 1f / length(sx, sy, sz);
+        sx *= rls;
+        sy *= rls;
+        sz *= rls;
+
+        float ux = sy * fz - sz * fy;
+        float uy = sz * fx - sx * fz;
+        float uz = sx * fy - sy * fx;
+
+        m[offset] = sx;
+        m[offset + 1] = ux;
+        m[offset + 2] = -fx;
+        m[offset + 3] = 0f;
+        m[offset + 4] = sy;
+        m[offset + 5] = uy;
+        m[offset + 6] = -fy;
+        m[offset + 7] = 0f;
+        m[offset + 8] = sz;
+        m[offset + 9] = uz;
+        m[offset + 10] = -fz;
+        m[offset + 11] = 0f;
+        m[offset + 12] = 0f;
+        m[offset + 13] = 0f;
+        m[offset + 14] = 0f;
+        m[offset + 15] = 1f;
+        translateM(m, offset, -eyeX, -eyeY, -eyeZ);
+    }
+
+    private static void setRotateM(float[] m, float angleDegrees, float x, float y, float z) {
+        double radians = Math.toRadians(angleDegrees);
+        float s = (float) Math.sin(radians);
+        float c = (float) Math.cos(radians);
+        float reciprocal = 1f / length(x, y, z);
+        x *= reciprocal;
+        y *= reciprocal;
+        z *= reciprocal;
+        float nc = 1f - c;
+        setIdentityM(m, 0);
+        m[0] = x * x * nc + c;
+        m[4] = x * y * nc - z * s;
+        m[8] = z * x * nc + y * s;
+        m[1] = x * y * nc + z * s;
+        m[5] = y * y * nc + c;
+        m[9] = y * z * nc - x * s;
+        m[2] = z * x * nc - y * s;
+        m[6] = y * z * nc + x * s;
+        m[10] = z * z * nc + c;
+    }
+
+    private static float length(float x, float y, float z) {
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+}
@@ -0,0 +1,37 @@
+package android.util;
+
+/**
+ * Stand-in for the platform logger on the JVM test classpath, where android.jar only throws.
+ * Messages go to standard error so a failing test still shows what the code reported.
+ */
+public final class Log {
+
+    private Log() {
+    }
+
+    public static int i(String tag, String msg) {
+        return print("I", tag, msg, null);
+    }
+
+    public static int w(String tag, String msg) {
+        return print("W", tag, msg, null);
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return print("W", tag, msg, tr);
+    }
+
+    public static int e(String tag, String msg) {
+        return print("E", tag, msg, null);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return print("E", tag, msg, tr);
+    }
+
+    private static int print(String level, String tag, String msg, Throwable tr) {
+        String line = level + "/" + tag + ": " + msg + (tr != null ? " (" + tr + ")" : "");
+        System.err.println(line);
+        return line.length();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.racingsim.gl;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CameraInputTest {
+
+    private static final int EVENTS_PER_WRITER = 200_000;
+
+    @Test
+    public void drainReturnsAccumulatedDeltasOnce() {
+        CameraInput input = new CameraInput();
+        input.addOrbit(2f, -1f);
+        input.addOrbit(3f, 4f);
+        input.addZoom(2f);
+
+        CameraInput.Delta delta = input.drain();
+        assertEquals(5f, delta.yawDegrees, 0f);
+        assertEquals(3f, delta.pitchDegrees, 0f);
+        assertEquals(2f, delta.zoomScale, 0f);
+        assertEquals(3, delta.eventCount);
+        assertTrue(input.drain().isEmpty());
+    }
+
+    @Test
+    public void readerNeverBlocksAndLosesNoInputUnderStress() throws InterruptedException {
+        CameraInput input = new CameraInput();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicBoolean readerRunning = new AtomicBoolean(false);
+        AtomicBoolean readerBlocked = new AtomicBoolean(false);
+        CountDownLatch start = new CountDownLatch(1);
+        float[] drainedYaw = new float[1];
+        float[] drainedZoom = {1f};
+        long[] drainedEvents = new long[1];
+
+        Thread writer = new Thread(() -> {
+            awaitQuietly(start);
+            for (int i = 0; i < EVENTS_PER_WRITER; i++) {
+                input.addOrbit(1f, 0f);
+                input.addZoom((i & 1) == 0 ? 2f : 0.5f);
+            }
+            writing.set(false);
+        }, "ui");
+
+        Thread reader = new Thread(() -> {
+            awaitQuietly(start);
+            readerRunning.set(true);
+            while (writing.get() || input.hasPending()) {
+                CameraInput.Delta delta = input.drain();
+                drainedYaw[0] += delta.yawDegrees;
+                drainedZoom[0] *= delta.zoomScale;
+                drainedEvents[0] += delta.eventCount;
+            }
+        }, "gl");
+
+        Thread monitor = new Thread(() -> {
+            while (reader.getState() != Thread.State.TERMINATED) {
+                Thread.State state = reader.getState();
+                boolean parked = state == Thread.State.BLOCKED || state == Thread.State.WAITING
+                        || state == Thread.State.TIMED_WAITING;
+                if (parked && readerRunning.get()) {
+                    readerBlocked.set(true);
+                }
+                Thread.yield();
+            }
+        }, "monitor");
+
+        writer.start();
+        reader.start();
+        monitor.start();
+        start.countDown();
+        writer.join();
+        reader.join();
+        monitor.join();
+
+        assertFalse("GL-side drain must never block", readerBlocked.get());
+        assertEquals(EVENTS_PER_WRITER, drainedYaw[0], 0f);
+        assertEquals(1f, drainedZoom[0], 0f);
+        assertEquals(EVENTS_PER_WRITER * 2L, drainedEvents[0]);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.racingsim.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class MeshBuilderTest {
+
+    private static final GeometryFactory.Color3f BLUE = new GeometryFactory.Color3f(0f, 0.35f, 0.9f);
+
+    @Test
+    public void growsPastInitialCapacity() {
+        GlStateTracker glState = new GlStateTracker(new CountingGlApi(null, true));
+        VertexFormat format = new VertexFormat(VertexAttribute.float32(3), VertexAttribute.normalizedByte(3));
+        MeshBuilder builder = new MeshBuilder(format, 1, 1);
+
+        for (int i = 0; i < 1000; i++) {
+            builder.put(i, 0f, 0f).put(0f, 0f, 1f);
+            builder.index(i);
+        }
+        Mesh mesh = builder.build(glState);
+
+        assertEquals(1000, mesh.getVertexCount());
+        assertEquals(1000 * 16, mesh.getVertexBufferBytes());
+        assertEquals(1000, builder.getIndexCount());
+
+        builder.reset();
+        assertEquals(0, builder.getVertexCount());
+        assertEquals(0, builder.getIndexCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsIncompleteVertex() {
+        GlStateTracker glState = new GlStateTracker(new CountingGlApi(null, true));
+        MeshBuilder builder = new MeshBuilder(new VertexFormat(VertexAttribute.float32(3)), 4, 0);
+        builder.put(1f, 2f);
+        builder.build(glState);
+    }
+
+    @Test
+    public void cacheBuildsIdenticalMeshesOnceUntilCleared() {
+        CountingGlApi gl = new CountingGlApi(null, true);
+        GlStateTracker glState = new GlStateTracker(gl);
+        MeshCache cache = new MeshCache();
+
+        Mesh first = cache.cylinder(glState, 0.1f, 1f, 16, BLUE);
+        long uploads = gl.getCount(CountingGlApi.Call.BUFFER_DATA);
+        assertSame(first, cache.cylinder(glState, 0.1f, 1f, 16, BLUE));
+        assertNotSame(first, cache.cylinder(glState, 0.2f, 1f, 16, BLUE));
+        assertEquals(uploads * 2, gl.getCount(CountingGlApi.Call.BUFFER_DATA));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNotSame(first, cache.cylinder(glState, 0.1f, 1f, 16, BLUE));
+        assertEquals(3, cache.getBuildCount());
+    }
+}
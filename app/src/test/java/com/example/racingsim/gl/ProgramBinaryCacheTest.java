@@ -0,0 +1,86 @@
+package com.example.racingsim.gl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ProgramBinaryCacheTest {
+
+    private static final String VERTEX = "attribute vec3 aPosition;\nvoid main() { gl_Position = vec4(aPosition, 1.0); }";
+    private static final String FRAGMENT = "void main() { gl_FragColor = vec4(1.0); }";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void secondLaunchSkipsCompilation() throws IOException {
+        File directory = folder.newFolder();
+
+        CountingGlApi cold = new CountingGlApi(null, true);
+        ProgramBinaryCache coldCache = new ProgramBinaryCache(directory, "driver-a");
+        new ShaderProgram(cold, VERTEX, FRAGMENT, coldCache);
+        assertEquals(2, cold.getCount(CountingGlApi.Call.COMPILE_SHADER));
+        assertEquals(1, coldCache.getMisses());
+        assertEquals(1, directory.listFiles().length);
+
+        CountingGlApi warm = new CountingGlApi(null, true);
+        ProgramBinaryCache warmCache = new ProgramBinaryCache(directory, "driver-a");
+        new ShaderProgram(warm, VERTEX, FRAGMENT, warmCache);
+        assertEquals(0, warm.getCount(CountingGlApi.Call.COMPILE_SHADER));
+        assertEquals(1, warm.getCount(CountingGlApi.Call.PROGRAM_BINARY));
+        assertEquals(1, warmCache.getHits());
+    }
+
+    @Test
+    public void keyDependsOnSourcesAndDriver() {
+        File directory = folder.getRoot();
+        String key = new ProgramBinaryCache(directory, "driver-a").keyFor(VERTEX, FRAGMENT);
+        assertEquals(key, new ProgramBinaryCache(directory, "driver-a").keyFor(VERTEX, FRAGMENT));
+        assertNotEquals(key, new ProgramBinaryCache(directory, "driver-b").keyFor(VERTEX, FRAGMENT));
+        assertNotEquals(key, new ProgramBinaryCache(directory, "driver-a").keyFor(VERTEX, FRAGMENT + " "));
+    }
+
+    @Test
+    public void rejectedBinaryFallsBackToSourceAndIsReplaced() throws IOException {
+        File directory = folder.newFolder();
+        new ShaderProgram(new CountingGlApi(null, true), VERTEX, FRAGMENT,
+                new ProgramBinaryCache(directory, "driver-a"));
+        File stored = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(stored, "rw")) {
+            // Overwrite the binary format so the driver refuses it.
+            file.seek(4);
+            file.writeInt(0x1234);
+        }
+
+        CountingGlApi gl = new CountingGlApi(null, true);
+        ProgramBinaryCache cache = new ProgramBinaryCache(directory, "driver-a");
+        new ShaderProgram(gl, VERTEX, FRAGMENT, cache);
+
+        assertEquals(1, cache.getRejects());
+        assertEquals(2, gl.getCount(CountingGlApi.Call.COMPILE_SHADER));
+        assertEquals(1, gl.getCount(CountingGlApi.Call.DELETE_PROGRAM));
+
+        ProgramBinaryCache again = new ProgramBinaryCache(directory, "driver-a");
+        new ShaderProgram(new CountingGlApi(null, true), VERTEX, FRAGMENT, again);
+        assertEquals(1, again.getHits());
+    }
+
+    @Test
+    public void contextsWithoutBinarySupportAlwaysCompile() throws IOException {
+        File directory = folder.newFolder();
+        CountingGlApi gl = new CountingGlApi(null, false);
+        ProgramBinaryCache cache = new ProgramBinaryCache(directory, "driver-a");
+        new ShaderProgram(gl, VERTEX, FRAGMENT, cache);
+        new ShaderProgram(gl, VERTEX, FRAGMENT, cache);
+
+        assertEquals(4, gl.getCount(CountingGlApi.Call.COMPILE_SHADER));
+        assertEquals(0, directory.listFiles().length);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.racingsim.gl;
+
+import com.example.racingsim.model.MapPoints;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Per-frame GL budgets for {@link Map3DRenderer}, measured against a headless {@link RecordingGlApi}.
+ * A budget failure means a change added draw calls, state changes or uploads to every frame.
+ */
+public class RenderBudgetTest {
+
+    private static final int CONES = 2_000;
+    private static final int FRAMES = 5;
+    /**
+     * One draw per cone plus the clear, the ground and the car billboard.
+     */
+    private static final long MAX_DRAW_CALLS = CONES + 3;
+    /**
+     * Sorting keeps state changes independent of the number of cones; ES2 rebinds attributes per mesh.
+     */
+    private static final long MAX_STATE_CHANGES = 24;
+    /**
+     * MVP and model matrix per cone.
+     */
+    private static final long MAX_UNIFORM_UPDATES = 2L * CONES + 8;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void steadyFramesStayWithinBudgets() throws Exception {
+        for (boolean es3 : new boolean[]{true, false}) {
+            List<RecordingGlApi.Frame> frames = renderFrames(es3, folder.newFolder());
+            for (RecordingGlApi.Frame frame : frames.subList(1, frames.size())) {
+                String where = (es3 ? "ES3 " : "ES2 ") + frame;
+                assertTrue(where, frame.getDrawCalls() <= MAX_DRAW_CALLS);
+                assertTrue(where, frame.getStateChanges() <= MAX_STATE_CHANGES);
+                assertTrue(where, frame.getUniformUpdates() <= MAX_UNIFORM_UPDATES);
+            }
+        }
+    }
+
+    @Test
+    public void uploadsVertexDataOnlyBeforeTheFirstFrame() throws Exception {
+        List<RecordingGlApi.Frame> frames = renderFrames(true, folder.newFolder());
+
+        RecordingGlApi.Frame setup = frames.get(0);
+        assertTrue(setup.toString(), setup.getBufferUploads() > 0);
+        assertTrue(setup.toString(), setup.getBytesUploaded() > 0);
+        for (RecordingGlApi.Frame frame : frames.subList(1, frames.size())) {
+            assertEquals(frame.toString(), 0, frame.getBufferUploads());
+            assertEquals(frame.toString(), 0, frame.getBytesUploaded());
+            assertEquals(frame.toString(), 0, frame.getCount(CountingGlApi.Kind.OBJECT));
+        }
+    }
+
+    @Test
+    public void newSurfaceUploadsMeshesAgain() throws Exception {
+        RecordingGlApi gl = new RecordingGlApi(null, true);
+        Map3DRenderer renderer = new Map3DRenderer(null, course(), new TextureLoader(null));
+        File cacheDir = folder.newFolder();
+        gl.beginFrame();
+        renderer.createScene(gl, cacheDir);
+        renderer.onSurfaceChanged(null, 1080, 1920);
+        renderer.onDrawFrame(null);
+        RecordingGlApi.Frame first = gl.endFrame();
+
+        // A new surface comes with a new context, where the old buffer names are dead.
+        gl.beginFrame();
+        renderer.createScene(gl, cacheDir);
+        renderer.onDrawFrame(null);
+        RecordingGlApi.Frame recreated = gl.endFrame();
+
+        assertEquals(recreated.toString(), first.getBufferUploads(), recreated.getBufferUploads());
+    }
+
+    @Test
+    public void conesOfBothSidesShareOneMesh() throws Exception {
+        Map3DRenderer renderer = new Map3DRenderer(null, course(), new TextureLoader(null));
+        renderer.createScene(new RecordingGlApi(null, true), folder.newFolder());
+
+        // Cylinder, ground and billboard quad; the blue and yellow cones differ only by material.
+        assertEquals(3, renderer.getMeshCache().size());
+        assertEquals(3, renderer.getMeshCache().getBuildCount());
+    }
+
+    /**
+     * Frame 0 includes surface creation; the rest are steady-state frames.
+     */
+    private static List<RecordingGlApi.Frame> renderFrames(boolean es3, File cacheDir) {
+        RecordingGlApi gl = new RecordingGlApi(null, es3);
+        Map3DRenderer renderer = new Map3DRenderer(null, course(), new TextureLoader(null));
+        gl.beginFrame();
+        renderer.createScene(gl, cacheDir);
+        renderer.onSurfaceChanged(null, 1080, 1920);
+        renderer.onDrawFrame(null);
+        gl.endFrame();
+        for (int i = 1; i < FRAMES; i++) {
+            gl.beginFrame();
+            renderer.applyOrbitDelta(3f, 1f);
+            renderer.onDrawFrame(null);
+            gl.endFrame();
+        }
+        return new ArrayList<>(gl.getFrames());
+    }
+
+    private static MapPoints course() {
+        List<float[]> blue = new ArrayList<>();
+        List<float[]> yellow = new ArrayList<>();
+        int perSide = CONES / 2;
+        for (int i = 0; i < perSide; i++) {
+            double angle = 2.0 * Math.PI * i / perSide;
+            float cos = (float) Math.cos(angle);
+            float sin = (float) Math.sin(angle);
+            blue.add(new float[]{cos * 36f, sin * 24f});
+            yellow.add(new float[]{cos * 42f, sin * 30f});
+        }
+        return new MapPoints(blue, yellow);
+    }
+}
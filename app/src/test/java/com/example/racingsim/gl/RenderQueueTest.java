@@ -0,0 +1,164 @@
+package com.example.racingsim.gl;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RenderQueueTest {
+
+    private static final int CONES_PER_SIDE = 200;
+
+    @Test
+    public void stateTrackerRemovesRedundantCallsFromSteadyStateFrames() {
+        long uncachedCalls = callsPerSteadyFrame(false, false);
+        long cachedCalls = callsPerSteadyFrame(true, false);
+        long cachedVaoCalls = callsPerSteadyFrame(true, true);
+
+        // Per cone: two matrix uploads plus the draw are the irreducible minimum.
+        long floor = (2L * CONES_PER_SIDE + 1) * 3 + 2;
+        assertTrue("uncached " + uncachedCalls + " vs cached " + cachedCalls, cachedCalls * 2 < uncachedCalls);
+        assertTrue("cached calls " + cachedCalls + " should approach " + floor, cachedCalls < floor + 40);
+        assertTrue(cachedVaoCalls <= cachedCalls);
+    }
+
+    @Test
+    public void sortingGroupsDrawsByProgramAndKeepsBlendedLast() {
+        CountingGlApi gl = new CountingGlApi(null, false);
+        GlStateTracker glState = new GlStateTracker(gl);
+        Scene scene = new Scene(glState);
+
+        scene.submitInterleaved();
+        gl.resetCounts();
+        scene.queue.flush(glState, scene.viewProjection);
+
+        assertEquals(2, gl.getCount(CountingGlApi.Call.USE_PROGRAM));
+        assertEquals(1, gl.getCount(CountingGlApi.Call.UNIFORM_3F));
+        assertEquals(1, gl.getCount(CountingGlApi.Call.BLEND_FUNC));
+        assertEquals(0, scene.queue.size());
+    }
+
+    @Test
+    public void sortIdsRestartForANewContext() {
+        CountingGlApi gl = new CountingGlApi(null, true);
+        GlStateTracker glState = new GlStateTracker(gl);
+        Scene old = new Scene(glState);
+        // Use up every mesh id, as a long run of surface recreations used to.
+        for (int i = 0; i < 4096; i++) {
+            old.queue.submit(old.colorMaterial, GeometryFactory.createTexturedQuad(glState, 1f, 1f),
+                    GLES20.GL_TRIANGLES, old.model, 0);
+        }
+        old.queue.clear();
+
+        Scene scene = new Scene(glState);
+        RenderQueue queue = old.queue;
+        queue.resetSortIds();
+        for (int i = 0; i < CONES_PER_SIDE; i++) {
+            queue.submit(scene.colorMaterial, scene.blueCone, GLES20.GL_TRIANGLES, scene.model, 0);
+            queue.submit(scene.colorMaterial, scene.yellowCone, GLES20.GL_TRIANGLES, scene.model, 0);
+        }
+        gl.resetCounts();
+        queue.flush(glState, scene.viewProjection);
+
+        assertEquals(2 * CONES_PER_SIDE, gl.getCount(CountingGlApi.Call.DRAW_ELEMENTS));
+        assertEquals(2, gl.getCount(CountingGlApi.Call.BIND_VERTEX_ARRAY));
+    }
+
+    @Test
+    public void detectsEs3Contexts() {
+        assertTrue(AndroidGl.isEs3OrNewer("OpenGL ES 3.2 V@0502.0"));
+        assertFalse(AndroidGl.isEs3OrNewer("OpenGL ES 2.0 build 1.13"));
+        assertFalse(AndroidGl.isEs3OrNewer(null));
+    }
+
+    private static long callsPerSteadyFrame(boolean caching, boolean vertexArrayObjects) {
+        CountingGlApi gl = new CountingGlApi(null, vertexArrayObjects);
+        GlStateTracker glState = new GlStateTracker(gl);
+        Scene scene = new Scene(glState);
+        glState.setCachingEnabled(caching);
+
+        scene.submitInterleaved();
+        scene.queue.flush(glState, scene.viewProjection);
+        gl.resetCounts();
+        scene.submitInterleaved();
+        scene.queue.flush(glState, scene.viewProjection);
+        return gl.getTotalCalls();
+    }
+
+    private static final class Scene {
+        final RenderQueue queue = new RenderQueue();
+        final float[] viewProjection = new float[16];
+        final float[] model = new float[16];
+        final TestMaterial colorMaterial;
+        final TestMaterial billboardMaterial;
+        final Mesh blueCone;
+        final Mesh yellowCone;
+        final Mesh billboard;
+
+        Scene(GlStateTracker glState) {
+            GlApi gl = glState.gl();
+            colorMaterial = new TestMaterial(new ShaderProgram(gl, "vs", "fs"), 3, 0);
+            billboardMaterial = new TestMaterial(new ShaderProgram(gl, "vs", "fs"), 2, 7);
+            GeometryFactory.Color3f blue = new GeometryFactory.Color3f(0f, 0f, 1f);
+            GeometryFactory.Color3f yellow = new GeometryFactory.Color3f(1f, 1f, 0f);
+            blueCone = GeometryFactory.createCylinder(glState, 0.1f, 0.4f, 16, blue);
+            yellowCone = GeometryFactory.createCylinder(glState, 0.1f, 0.4f, 16, yellow);
+            billboard = GeometryFactory.createTexturedQuad(glState, 1f, 1f);
+        }
+
+        void submitInterleaved() {
+            queue.submit(billboardMaterial, billboard, GLES20.GL_TRIANGLES, model,
+                    RenderQueue.STATE_BLENDED | RenderQueue.STATE_DOUBLE_SIDED);
+            for (int i = 0; i < CONES_PER_SIDE; i++) {
+                queue.submit(colorMaterial, blueCone, GLES20.GL_TRIANGLES, model, 0);
+                queue.submit(colorMaterial, yellowCone, GLES20.GL_TRIANGLES, model, 0);
+            }
+        }
+    }
+
+    private static final class TestMaterial extends RenderQueue.Material {
+        private final ShaderProgram program;
+        private final int[] attributeLocations;
+        private final int textureId;
+
+        TestMaterial(ShaderProgram program, int attributeCount, int textureId) {
+            this.program = program;
+            this.textureId = textureId;
+            attributeLocations = new int[attributeCount];
+            for (int i = 0; i < attributeCount; i++) {
+                attributeLocations[i] = program.getAttributeLocation("a" + i);
+            }
+        }
+
+        @Override
+        public ShaderProgram getProgram() {
+            return program;
+        }
+
+        @Override
+        public int[] getAttributeLocations() {
+            return attributeLocations;
+        }
+
+        @Override
+        protected void bind(GlStateTracker glState) {
+            if (textureId != 0) {
+                glState.bindTexture2D(0, textureId);
+                glState.uniform1i(program, 1, 0);
+            } else {
+                glState.uniform3f(program, 0, 0f, 0f, -1f);
+            }
+        }
+
+        @Override
+        protected void applyTransform(GlStateTracker glState, float[] modelMatrix, int offset, float[] mvpMatrix) {
+            glState.uniformMatrix4fv(2, mvpMatrix, 0);
+            if (textureId == 0) {
+                glState.uniformMatrix4fv(3, modelMatrix, offset);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.racingsim.gl;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RenderSchedulerTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void inputThenSettlingThenIdle() {
+        RenderScheduler scheduler = new RenderScheduler();
+        scheduler.onInputStarted(0L);
+        assertEquals(RenderScheduler.NO_FRAME, scheduler.onFrameRendered(10 * MS, false));
+        assertFalse(scheduler.isIdle());
+
+        scheduler.onInputEnded(20 * MS);
+        assertEquals(0L, scheduler.onFrameRendered(30 * MS, true));
+        assertTrue(scheduler.isSettling());
+        assertFalse(scheduler.isIdle());
+
+        assertEquals(RenderScheduler.NO_FRAME, scheduler.onFrameRendered(40 * MS, false));
+        assertFalse(scheduler.isSettling());
+        assertTrue(scheduler.isIdle());
+
+        scheduler.onInput(50 * MS);
+        assertFalse(scheduler.isIdle());
+    }
+
+    @Test
+    public void idleFramesAreDelayedByTheCap() {
+        RenderScheduler scheduler = new RenderScheduler();
+        scheduler.setIdleFrameRateCap(10);
+        assertEquals(100L, scheduler.onFrameRendered(0L, false));
+        scheduler.setIdleFrameRateCap(2000);
+        assertEquals(1L, scheduler.onFrameRendered(MS, false));
+        scheduler.setIdleFrameRateCap(-5);
+        assertEquals(0, scheduler.getIdleFrameRateCap());
+        assertEquals(RenderScheduler.NO_FRAME, scheduler.onFrameRendered(2 * MS, false));
+    }
+
+    @Test
+    public void countsFramesPerMinute() {
+        RenderScheduler scheduler = new RenderScheduler();
+        for (int i = 0; i < 30; i++) {
+            scheduler.onFrameRendered(i * 1000 * MS, true);
+        }
+        // Still in the first minute: the running count.
+        assertEquals(30, scheduler.getFramesPerMinute());
+        for (int i = 30; i < 75; i++) {
+            scheduler.onFrameRendered(i * 1000 * MS, true);
+        }
+        // Frames 0..59 fell in the first full minute.
+        assertEquals(60, scheduler.getFramesPerMinute());
+        assertEquals(75, scheduler.getTotalFrames());
+    }
+
+    @Test
+    public void accumulatesIdleTimeAcrossStretches() {
+        RenderScheduler scheduler = new RenderScheduler();
+        scheduler.onFrameRendered(0L, false);
+        assertEquals(250L, scheduler.getIdleTimeMillis(250 * MS));
+
+        scheduler.onInputStarted(400 * MS);
+        scheduler.onInputEnded(500 * MS);
+        assertEquals(400L, scheduler.getIdleTimeMillis(900 * MS));
+
+        scheduler.onFrameRendered(1000 * MS, false);
+        assertEquals(500L, scheduler.getIdleTimeMillis(1100 * MS));
+    }
+
+    @Test
+    public void concurrentInputAndFramesKeepIdleTimeWithinElapsedTime() throws InterruptedException {
+        RenderScheduler scheduler = new RenderScheduler();
+        AtomicLong clock = new AtomicLong();
+        int rounds = 200_000;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread glThread = new Thread(() -> {
+            awaitQuietly(start);
+            for (int i = 0; i < rounds; i++) {
+                scheduler.onFrameRendered(clock.addAndGet(MS), false);
+            }
+        });
+        Thread uiThread = new Thread(() -> {
+            awaitQuietly(start);
+            for (int i = 0; i < rounds; i++) {
+                scheduler.onInput(clock.addAndGet(MS));
+            }
+        });
+        glThread.start();
+        uiThread.start();
+        start.countDown();
+        glThread.join();
+        uiThread.join();
+
+        long elapsedMillis = clock.get() / MS;
+        long idleMillis = scheduler.getIdleTimeMillis(clock.get());
+        assertTrue(idleMillis + " ms idle of " + elapsedMillis, idleMillis <= elapsedMillis);
+        // Every idle stretch a frame opened was closed by later input, or is still open.
+        scheduler.onInput(clock.addAndGet(MS));
+        assertFalse(scheduler.isIdle());
+        assertEquals(scheduler.getIdleTimeMillis(clock.get()), scheduler.getIdleTimeMillis(clock.get() + 1000 * MS));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.racingsim.gl;
+
+import android.opengl.GLES30;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TextureLoaderTest {
+
+    private static final byte[] IDENTIFIER = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+    };
+
+    @Test
+    public void parsesMipChainFromKtx() {
+        KtxTexture texture = KtxTexture.parse(ktx(8, 4, 3));
+
+        assertEquals(GLES30.GL_COMPRESSED_RGBA8_ETC2_EAC, texture.internalFormat);
+        assertEquals(8, texture.width);
+        assertEquals(4, texture.height);
+        assertEquals(3, texture.levels.length);
+        assertEquals(32, texture.levels[0].remaining());
+        assertEquals(16 + 16, texture.levels[1].remaining() + texture.levels[2].remaining());
+        assertEquals(64, texture.getSizeBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedKtx() {
+        ByteBuffer data = ktx(8, 4, 3);
+        data.limit(data.limit() - 8);
+        KtxTexture.parse(data);
+    }
+
+    @Test
+    public void uploadsOneTexturePerFrameWhenBudgetIsExhausted() {
+        CountingGlApi gl = new CountingGlApi(null, true);
+        GlStateTracker glState = new GlStateTracker(gl);
+        TextureLoader loader = new TextureLoader(null);
+        TextureHandle first = new TextureHandle("first");
+        TextureHandle second = new TextureHandle("second");
+        loader.enqueueCompressed(first, KtxTexture.parse(ktx(8, 4, 3)));
+        loader.enqueueCompressed(second, KtxTexture.parse(ktx(8, 4, 1)));
+
+        assertEquals(1, loader.processUploads(glState, 0L));
+        assertTrue(first.isReady());
+        assertTrue(first.isCompressed());
+        assertFalse(second.isReady());
+        assertEquals(3, gl.getCount(CountingGlApi.Call.COMPRESSED_TEX_IMAGE_2D));
+        assertTrue(loader.hasReadyUploads());
+
+        assertEquals(1, loader.processUploads(glState, Long.MAX_VALUE));
+        assertTrue(second.isReady());
+        assertFalse(loader.hasPendingWork());
+        assertEquals(0, gl.getCount(CountingGlApi.Call.GENERATE_MIPMAP));
+    }
+
+    /**
+     * ETC2 RGBA8 stores 16 bytes per 4x4 block.
+     */
+    private static ByteBuffer ktx(int width, int height, int levels) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(IDENTIFIER);
+        buffer.putInt(0x04030201);
+        buffer.putInt(0).putInt(1).putInt(0);
+        buffer.putInt(GLES30.GL_COMPRESSED_RGBA8_ETC2_EAC).putInt(0x1908);
+        buffer.putInt(width).putInt(height).putInt(0).putInt(0).putInt(1);
+        buffer.putInt(levels).putInt(0);
+        int w = width;
+        int h = height;
+        for (int level = 0; level < levels; level++) {
+            int size = ((w + 3) / 4) * ((h + 3) / 4) * 16;
+            buffer.putInt(size);
+            for (int i = 0; i < size; i++) {
+                buffer.put((byte) level);
+            }
+            w = Math.max(1, w / 2);
+            h = Math.max(1, h / 2);
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.racingsim.gl;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VertexFormatTest {
+
+    private static final GeometryFactory.Color3f ORANGE = new GeometryFactory.Color3f(1f, 0.5f, 0f);
+    private static final GeometryFactory.Color3f WHITE = new GeometryFactory.Color3f(1f, 1f, 1f);
+
+    @Test
+    public void packedLayoutsAreAlignedAndSkipConstants() {
+        VertexFormat format = new VertexFormat(
+                VertexAttribute.float16(3),
+                VertexAttribute.normalizedByte(3),
+                VertexAttribute.constant(1f, 0f, 0f));
+
+        assertEquals(12, format.getStrideBytes());
+        assertEquals(8, format.getOffset(1));
+        assertEquals(6, format.getLogicalComponents());
+
+        ByteBuffer packed = format.pack(new float[]{1f, -2f, 0.5f, 0f, 0f, -1f});
+        assertEquals(12, packed.remaining());
+        assertEquals(1f, HalfFloat.toFloat(packed.getShort(0)), 0f);
+        assertEquals(-2f, HalfFloat.toFloat(packed.getShort(2)), 0f);
+        assertEquals(-127, packed.get(10));
+    }
+
+    @Test
+    public void halfFloatRoundTripStaysWithinPrecision() {
+        for (float value = -300f; value <= 300f; value += 0.37f) {
+            float decoded = HalfFloat.toFloat(HalfFloat.fromFloat(value));
+            assertEquals(value, decoded, Math.max(Math.abs(value) / 2048f, 1e-4f));
+        }
+        assertEquals(65504f, HalfFloat.toFloat(HalfFloat.fromFloat(65504f)), 0f);
+        assertTrue(Float.isInfinite(HalfFloat.toFloat(HalfFloat.fromFloat(1e6f))));
+        assertEquals(5.96e-8f, HalfFloat.toFloat(HalfFloat.fromFloat(5.96e-8f)), 1e-9f);
+    }
+
+    @Test
+    public void compactMeshesUseLessThanHalfTheFloatMemory() {
+        GlStateTracker es3 = new GlStateTracker(new CountingGlApi(null, true));
+        GlStateTracker es2 = new GlStateTracker(new CountingGlApi(null, false));
+
+        Mesh cone = GeometryFactory.createConeWithStripe(es3, 0.3f, 0.6f, 24, 0.35f, 0.12f, ORANGE, WHITE);
+        Mesh cylinder = GeometryFactory.createCylinder(es3, 0.1f, 1f, 16, ORANGE);
+        Mesh fallbackCylinder = GeometryFactory.createCylinder(es2, 0.1f, 1f, 16, ORANGE);
+
+        // The original layout stored position, normal and colour as nine floats per vertex.
+        int floatBytesPerVertex = 9 * 4;
+        assertTrue(cone.getVertexBufferBytes() * 2 <= cone.getVertexCount() * floatBytesPerVertex);
+        assertTrue(cylinder.getVertexBufferBytes() * 2 <= cylinder.getVertexCount() * floatBytesPerVertex);
+        assertTrue(fallbackCylinder.getVertexBufferBytes() * 2 <= fallbackCylinder.getVertexCount() * floatBytesPerVertex);
+    }
+
+    @Test
+    public void constantAttributesAreSetOnceAcrossDraws() {
+        CountingGlApi gl = new CountingGlApi(null, true);
+        GlStateTracker glState = new GlStateTracker(gl);
+        Mesh cylinder = GeometryFactory.createCylinder(glState, 0.1f, 1f, 16, ORANGE);
+        int[] locations = {0, 1, 2};
+
+        for (int i = 0; i < 10; i++) {
+            cylinder.draw(glState, GLES20.GL_TRIANGLES, locations);
+        }
+
+        assertEquals(1, gl.getCount(CountingGlApi.Call.VERTEX_ATTRIB_4F));
+        assertEquals(2, gl.getCount(CountingGlApi.Call.ENABLE_VERTEX_ATTRIB_ARRAY));
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.racingsim.perf;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameStatsTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void reportsPercentilesPerPhase() {
+        FrameStats stats = new FrameStats(128, 16 * MS);
+        long now = 0L;
+        for (int i = 1; i <= 100; i++) {
+            now = frame(stats, now, i * MS / 10, MS, 2 * MS, 16 * MS, true);
+        }
+
+        FrameStats.Summary summary = stats.snapshot();
+        assertEquals(100, summary.getFrames());
+        assertEquals(5.0, summary.p50Millis(FrameStats.PHASE_PHYSICS), 1e-9);
+        assertEquals(9.5, summary.p95Millis(FrameStats.PHASE_PHYSICS), 1e-9);
+        assertEquals(9.9, summary.p99Millis(FrameStats.PHASE_PHYSICS), 1e-9);
+        assertEquals(1.0, summary.p50Millis(FrameStats.PHASE_UPLOAD), 1e-9);
+        assertEquals(2.0, summary.p99Millis(FrameStats.PHASE_DRAW), 1e-9);
+        assertEquals(16.0, summary.p50Millis(FrameStats.INTERVAL), 1e-9);
+        assertEquals(0L, summary.getJankFrames());
+    }
+
+    @Test
+    public void countsJankButNotIdleGaps() {
+        FrameStats stats = new FrameStats(64, 16 * MS);
+        long now = frame(stats, 0L, MS, 0L, MS, 16 * MS, true);
+        now = frame(stats, now, MS, 0L, MS, 40 * MS, true);
+        // The renderer goes idle after this frame, so the next interval is not measured.
+        now = frame(stats, now, MS, 0L, MS, 5_000 * MS, false);
+        frame(stats, now, MS, 0L, MS, 16 * MS, true);
+
+        FrameStats.Summary summary = stats.snapshot();
+        assertEquals(1L, summary.getJankFrames());
+        assertEquals(40.0, summary.p99Millis(FrameStats.INTERVAL), 1e-9);
+    }
+
+    @Test
+    public void keepsOnlyTheMostRecentFrames() throws Exception {
+        FrameStats stats = new FrameStats(50, 16 * MS);
+        assertEquals(64, stats.getCapacity());
+        long now = 0L;
+        for (int i = 0; i < 200; i++) {
+            now = frame(stats, now, MS, 0L, MS, 16 * MS, true);
+        }
+
+        FrameStats.Summary summary = stats.snapshot();
+        assertEquals(200L, summary.getTotalFrames());
+        assertTrue(summary.getFrames() >= 63 && summary.getFrames() <= 64);
+
+        StringWriter csv = new StringWriter();
+        stats.writeCsv(csv);
+        String[] lines = csv.toString().split("\n");
+        assertTrue(lines[lines.length - 1].startsWith("199,1.000,0.000,1.000,16.000"));
+    }
+
+    @Test
+    public void snapshotsWhileRecording() throws Exception {
+        FrameStats stats = new FrameStats(16, 16 * MS);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            long now = 0L;
+            long value = 1L;
+            while (running.get()) {
+                now = frame(stats, now, value * MS, value * MS, value * MS, 16 * MS, true);
+                value = value % 9 + 1;
+            }
+        });
+        writer.start();
+        try {
+            FrameStats.Summary summary = new FrameStats.Summary(stats.getCapacity());
+            for (int i = 0; i < 2_000; i++) {
+                stats.snapshot(summary);
+                assertTrue(summary.getFrames() <= stats.getCapacity());
+                assertTrue(summary.p99Millis(FrameStats.PHASE_DRAW) <= 9.0);
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long id = Thread.currentThread().getId();
+        FrameStats stats = new FrameStats(256, 16 * MS);
+        long now = 0L;
+        for (int i = 0; i < 10_000; i++) {
+            now = frame(stats, now, MS, MS, MS, 16 * MS, true);
+        }
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 100_000; i++) {
+            now = frame(stats, now, MS, MS, MS, 16 * MS, true);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static long frame(FrameStats stats, long start, long physics, long upload, long draw,
+                              long interval, boolean continuous) {
+        stats.beginFrame(start);
+        long now = start;
+        stats.beginPhase(FrameStats.PHASE_PHYSICS, now);
+        now += physics;
+        stats.beginPhase(FrameStats.PHASE_UPLOAD, now);
+        now += upload;
+        stats.beginPhase(FrameStats.PHASE_DRAW, now);
+        now += draw;
+        stats.endFrame(now, continuous);
+        return start + interval;
+    }
+}
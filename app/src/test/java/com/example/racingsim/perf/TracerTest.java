@@ -0,0 +1,77 @@
+package com.example.racingsim.perf;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TracerTest {
+
+    @Test
+    public void writesSpansOfOneTrackAsChromeTrace() throws Exception {
+        Tracer tracer = new Tracer(false);
+        long first = tracer.newTrackId();
+        long second = tracer.newTrackId();
+        try (Tracer.Span span = tracer.begin("TrackGenerator.generate", first)) {
+            Thread.sleep(1L);
+        }
+        tracer.begin("TrackGenerator.generate", second).close();
+        tracer.beginAsync("intentHandoff", first);
+        tracer.endAsync("intentHandoff", first);
+        tracer.addNativeEvents(first, "{\"name\":\"buildTrackMesh\",\"ph\":\"X\",\"ts\":1,\"dur\":2}");
+        tracer.addNativeEvents(second, "{\"name\":\"uploadMeshLocked\",\"ph\":\"X\",\"ts\":1,\"dur\":2}");
+
+        StringWriter out = new StringWriter();
+        tracer.writeChromeTrace(out, first);
+        String json = out.toString();
+
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\""));
+        assertTrue(json.trim().endsWith("]}"));
+        assertEquals(1, count(json, "\"name\":\"TrackGenerator.generate\""));
+        assertTrue(json.contains("\"ph\":\"X\""));
+        assertTrue(json.contains("\"ph\":\"b\",\"ts\":"));
+        assertTrue(json.contains("\"id\":" + first));
+        assertTrue(json.contains("buildTrackMesh"));
+        assertFalse(json.contains("uploadMeshLocked"));
+        assertEquals(3, count(json, "\"args\":{\"track\":" + first + "}"));
+        assertEquals(4, count(json, "{\"name\":"));
+    }
+
+    @Test
+    public void spanMeasuresElapsedTimeOnce() throws Exception {
+        Tracer tracer = new Tracer(false);
+        Tracer.Span span = tracer.begin("open3DPreview", 7L);
+        Thread.sleep(2L);
+        span.close();
+        span.close();
+
+        StringWriter out = new StringWriter();
+        tracer.writeChromeTrace(out, Tracer.NO_TRACK);
+        String json = out.toString();
+        assertEquals(1, count(json, "open3DPreview"));
+        int at = json.indexOf("\"dur\":") + 6;
+        double micros = Double.parseDouble(json.substring(at, json.indexOf(',', at)));
+        assertTrue(micros >= 2000.0);
+    }
+
+    @Test
+    public void escapesSpanNames() throws Exception {
+        Tracer tracer = new Tracer(false);
+        tracer.begin("a \"quoted\" \\ name", 1L).close();
+
+        StringWriter out = new StringWriter();
+        tracer.writeChromeTrace(out, 1L);
+        assertTrue(out.toString().contains("\"name\":\"a \\\"quoted\\\" \\\\ name\""));
+    }
+
+    private static int count(String text, String needle) {
+        int count = 0;
+        for (int at = text.indexOf(needle); at >= 0; at = text.indexOf(needle, at + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.racingsim.track;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs against the host build of the native simulator, which the Gradle test tasks build and put on
+ * {@code java.library.path} when the {@code racingsim.hostNative} property is set; skipped otherwise.
+ */
+public class LapSimulatorTest {
+
+    private static final float WIDTH = 10.0f;
+
+    @Before
+    public void requireNativeLibrary() {
+        assumeTrue("racingsim_headless not on java.library.path", LapSimulator.isAvailable());
+    }
+
+    @Test
+    public void circleLapHoldsTheCorneringSpeed() {
+        float radius = 60.0f;
+        LapSimulator.Result result = LapSimulator.simulate(new float[][]{circle(radius, 400)}, new float[]{WIDTH}, 1)[0];
+
+        assertTrue(result.isCompleted());
+        // The driver corners at 8 m/s^2, so about sqrt(8 r) all the way round.
+        float cornerSpeed = (float) Math.sqrt(8.0 * radius);
+        assertEquals(2.0 * Math.PI * radius / cornerSpeed, result.getLapTime(), 1.0);
+        assertEquals(cornerSpeed, result.getMinSpeed(), 1.5f);
+        assertEquals(0.0f, result.getTimeOffTrack(), 0.0f);
+    }
+
+    @Test
+    public void tighterTracksScoreSlowerAndIdenticallyInParallel() {
+        float[][] tracks = {circle(40.0f, 300), circle(120.0f, 600), circle(80.0f, 500)};
+        float[] widths = {WIDTH, WIDTH, WIDTH};
+
+        LapSimulator.Result[] serial = LapSimulator.simulate(tracks, widths, 1);
+        LapSimulator.Result[] parallel = LapSimulator.simulate(tracks, widths, 3);
+
+        assertTrue(serial[0].getAverageSpeed() < serial[2].getAverageSpeed());
+        assertTrue(serial[2].getAverageSpeed() < serial[1].getAverageSpeed());
+        for (int i = 0; i < tracks.length; i++) {
+            assertEquals(serial[i].getLapTime(), parallel[i].getLapTime(), 0.0f);
+        }
+    }
+
+    private static float[] circle(float radius, int points) {
+        float[] xy = new float[points * 2];
+        for (int i = 0; i < points; i++) {
+            double angle = 2.0 * Math.PI * i / points;
+            xy[i * 2] = (float) (radius * Math.cos(angle));
+            xy[i * 2 + 1] = (float) (radius * Math.sin(angle));
+        }
+        return xy;
+    }
+}